@@ -19,16 +19,31 @@ package com.github.jnidzwetzki.bitfinex.v2;
 
 import java.io.Closeable;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 import org.slf4j.Logger;
@@ -40,28 +55,34 @@ import com.github.jnidzwetzki.bitfinex.v2.callback.api.HeartbeatHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.api.NotificationHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.api.OrderHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.api.PositionHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.api.StreamingAPICallbackHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.api.TradeHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.api.WalletHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.BoundChannelHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.channel.CandlestickHandler;
-import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelCallbackHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ExecutedTradeHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.channel.OrderbookHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.channel.RawOrderbookHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.StreamingChannelCallbackHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.channel.TickHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.command.AuthCallbackHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.command.CommandCallbackHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.command.ConnectionHeartbeatCallback;
 import com.github.jnidzwetzki.bitfinex.v2.callback.command.DoNothingCommandCallback;
+import com.github.jnidzwetzki.bitfinex.v2.callback.command.ErrorCallback;
 import com.github.jnidzwetzki.bitfinex.v2.callback.command.SubscribedCallback;
 import com.github.jnidzwetzki.bitfinex.v2.callback.command.UnsubscribedCallback;
 import com.github.jnidzwetzki.bitfinex.v2.commands.AbstractAPICommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.AuthCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.CommandException;
+import com.github.jnidzwetzki.bitfinex.v2.commands.CommandPriority;
+import com.github.jnidzwetzki.bitfinex.v2.commands.ConfCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeCandlesCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeOrderbookCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeRawOrderbookCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeTickerCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeTradesCommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.UnsubscribeChannelCommand;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ConnectionCapabilities;
 import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
@@ -77,6 +98,16 @@ import com.github.jnidzwetzki.bitfinex.v2.manager.QuoteManager;
 import com.github.jnidzwetzki.bitfinex.v2.manager.RawOrderbookManager;
 import com.github.jnidzwetzki.bitfinex.v2.manager.TradeManager;
 import com.github.jnidzwetzki.bitfinex.v2.manager.WalletManager;
+import com.github.jnidzwetzki.bitfinex.v2.util.CommandScheduler;
+import com.github.jnidzwetzki.bitfinex.v2.util.FeedArbiter;
+import com.github.jnidzwetzki.bitfinex.v2.util.FrameClassifier;
+import com.github.jnidzwetzki.bitfinex.v2.util.FrameClassifier.FrameMarker;
+import com.github.jnidzwetzki.bitfinex.v2.util.FramePipeline;
+import com.github.jnidzwetzki.bitfinex.v2.util.JSONFrameReader;
+import com.github.jnidzwetzki.bitfinex.v2.util.MarketDataRingBuffer;
+import com.github.jnidzwetzki.bitfinex.v2.util.MarketDataRingBuffer.EventType;
+import com.github.jnidzwetzki.bitfinex.v2.util.MarketDataRingBuffer.WaitStrategy;
+import com.github.jnidzwetzki.bitfinex.v2.util.TimerWheel;
 
 public class BitfinexApiBroker implements Closeable {
 
@@ -86,19 +117,46 @@ public class BitfinexApiBroker implements Closeable {
 	public final static String BITFINEX_URI = "wss://api.bitfinex.com/ws/2";
 	
 	/**
-	 * The API callback
+	 * The connections, the first connection is the primary connection 
+	 * (authentication, orders, wallets). Additional connections are opened 
+	 * when all connections have reached the channel limit.
 	 */
-	private final Consumer<String> apiCallback = ((c) -> websocketCallback(c));
+	private final List<ConnectionShard> connections;
 	
 	/**
-	 * The websocket endpoint
+	 * The connection of the subscribed symbols
 	 */
-	private WebsocketClientEndpoint websocketEndpoint;
+	private final Map<BitfinexStreamSymbol, ConnectionShard> symbolConnections;
 	
 	/**
-	 * The channel map
+	 * The connection of the frame that is processed by the current thread
 	 */
-	private final Map<Integer, BitfinexStreamSymbol> channelIdSymbolMap;
+	private final ThreadLocal<ConnectionShard> currentConnection = new ThreadLocal<>();
+	
+	/**
+	 * The maximal number of connections
+	 */
+	private volatile int maxConnections = 1;
+	
+	/**
+	 * The maximal number of channels per connection
+	 */
+	private volatile int maxChannelsPerConnection = DEFAULT_MAX_CHANNELS_PER_CONNECTION;
+	
+	/**
+	 * The arbiter for the standby connections (null = disabled)
+	 */
+	private volatile FeedArbiter feedArbiter;
+	
+	/**
+	 * The rate limiter for the outbound commands (null = disabled)
+	 */
+	private volatile CommandScheduler commandScheduler;
+	
+	/**
+	 * The default channel limit of a connection
+	 */
+	public final static int DEFAULT_MAX_CHANNELS_PER_CONNECTION = 25;
 	
 	/**
 	 * The tick manager
@@ -169,6 +227,37 @@ public class BitfinexApiBroker implements Closeable {
 	 */
 	private final static int CONNECTION_READY_EVENTS = 4;
 	
+	/**
+	 * The time to wait for the resubscription of the channels
+	 */
+	private final static long RESUBSCRIPTION_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(5);
+	
+	/**
+	 * A channel without data or heartbeat for this time is resubscribed
+	 */
+	public final static long CHANNEL_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(5);
+	
+	/**
+	 * The tick of the channel timeout wheel
+	 */
+	private final static long CHANNEL_TIMEOUT_TICK_MS = TimeUnit.SECONDS.toMillis(1);
+	
+	/**
+	 * The slots of the channel timeout wheel
+	 */
+	private final static int CHANNEL_TIMEOUT_SLOTS = 512;
+	
+	/**
+	 * The deadlines of the channels per line (FeedArbiter.LINE_A and LINE_B), 
+	 * refreshed by the data and heartbeat frames of the line
+	 */
+	private final List<TimerWheel<BitfinexStreamSymbol>> channelTimeouts;
+	
+	/**
+	 * The number of retries for the channels that are not resubscribed
+	 */
+	private final static int RESUBSCRIPTION_RETRIES = 1;
+	
 	/**
 	 * The capabilities of the connection
 	 */
@@ -179,6 +268,26 @@ public class BitfinexApiBroker implements Closeable {
 	 */
 	private boolean authenticated;
 	
+	/**
+	 * Are the market data parsed into fixed-point values
+	 */
+	private volatile boolean fixedPointEnabled;
+	
+	/**
+	 * The optional ring buffer for the market data
+	 */
+	private volatile MarketDataRingBuffer marketDataRingBuffer;
+	
+	/**
+	 * The number of frame pipeline workers per connection (0 = disabled)
+	 */
+	private int framePipelineWorkers;
+	
+	/**
+	 * The frame pipeline capacity per worker
+	 */
+	private int framePipelineCapacity;
+	
 	/**
 	 * The channel handler
 	 */
@@ -194,6 +303,26 @@ public class BitfinexApiBroker implements Closeable {
 	 */
 	private final ExecutorService executorService;
 	
+	/**
+	 * Shutdown the executor service on close
+	 */
+	private final boolean shutdownExecutorService;
+	
+	/**
+	 * Execute every symbol and callback pair in its own lane
+	 */
+	private final boolean dedicatedCallbackLanes;
+	
+	/**
+	 * The default number of callback threads
+	 */
+	public final static int DEFAULT_CALLBACK_THREADS = 10;
+	
+	/**
+	 * The frame reader for the channel callbacks
+	 */
+	private final ThreadLocal<JSONFrameReader> frameReader = ThreadLocal.withInitial(JSONFrameReader::new);
+	
 	/**
 	 * The Logger
 	 */
@@ -201,21 +330,61 @@ public class BitfinexApiBroker implements Closeable {
 
 
 	public BitfinexApiBroker(final String apiKey, final String apiSecret) {
-		this();
-		this.apiKey = apiKey;
-		this.apiSecret = apiSecret;
+		this(apiKey, apiSecret, Executors.newFixedThreadPool(DEFAULT_CALLBACK_THREADS), true);
 	}
 	
 	public BitfinexApiBroker() {
-		this.executorService = Executors.newFixedThreadPool(10);
-		this.channelIdSymbolMap = new HashMap<>();
+		this(null, null);
+	}
+	
+	/**
+	 * Create a broker with the given callback executor, a shared executor
+	 * should not be shut down when the broker is closed
+	 * @param apiKey
+	 * @param apiSecret
+	 * @param executorService
+	 * @param shutdownExecutorService
+	 */
+	public BitfinexApiBroker(final String apiKey, final String apiSecret, 
+			final ExecutorService executorService, final boolean shutdownExecutorService) {
+		
+		this(apiKey, apiSecret, executorService, shutdownExecutorService, false);
+	}
+	
+	/**
+	 * Create a broker with the given callback executor. With dedicated callback 
+	 * lanes every symbol and callback pair is executed in its own lane, so a 
+	 * blocking callback does not delay the other callbacks (e.g. on virtual threads).
+	 * @param apiKey
+	 * @param apiSecret
+	 * @param executorService
+	 * @param shutdownExecutorService
+	 * @param dedicatedCallbackLanes
+	 */
+	public BitfinexApiBroker(final String apiKey, final String apiSecret, 
+			final ExecutorService executorService, final boolean shutdownExecutorService, 
+			final boolean dedicatedCallbackLanes) {
+		
+		this.apiKey = apiKey;
+		this.apiSecret = apiSecret;
+		this.executorService = Objects.requireNonNull(executorService);
+		this.shutdownExecutorService = shutdownExecutorService;
+		this.dedicatedCallbackLanes = dedicatedCallbackLanes;
+		this.connections = new CopyOnWriteArrayList<>();
+		this.connections.add(new ConnectionShard(0, this::websocketCallback));
+		this.symbolConnections = new ConcurrentHashMap<>();
 		this.lastHeatbeat = new AtomicLong();
+		this.channelTimeouts = Arrays.asList(
+				new TimerWheel<>(CHANNEL_TIMEOUT_TICK_MS, CHANNEL_TIMEOUT_SLOTS, CHANNEL_TIMEOUT_MS, 
+						(s) -> handleChannelTimeout(FeedArbiter.LINE_A, s)),
+				new TimerWheel<>(CHANNEL_TIMEOUT_TICK_MS, CHANNEL_TIMEOUT_SLOTS, CHANNEL_TIMEOUT_MS, 
+						(s) -> handleChannelTimeout(FeedArbiter.LINE_B, s)));
 		this.quoteManager = new QuoteManager(this);
 		this.orderbookManager = new OrderbookManager(this);
 		this.rawOrderbookManager = new RawOrderbookManager(this);
 		this.orderManager = new OrderManager(this);
 		this.tradeManager = new TradeManager(this);
-		this.positionManager = new PositionManager(executorService);
+		this.positionManager = new PositionManager(executorService, dedicatedCallbackLanes);
 		this.walletManager = new WalletManager(this);
 		this.capabilities = ConnectionCapabilities.NO_CAPABILITIES;
 		this.authenticated = false;
@@ -277,6 +446,8 @@ public class BitfinexApiBroker implements Closeable {
 		commandCallbacks.put("pong", new ConnectionHeartbeatCallback());
 		commandCallbacks.put("unsubscribed", new UnsubscribedCallback());
 		commandCallbacks.put("auth", new AuthCallbackHandler());
+		commandCallbacks.put("conf", new DoNothingCommandCallback());
+		commandCallbacks.put("error", new ErrorCallback());
 	}
 	
 	/**
@@ -285,10 +456,10 @@ public class BitfinexApiBroker implements Closeable {
 	 */
 	public void connect() throws APIException {
 		try {
-			final URI bitfinexURI = new URI(BITFINEX_URI);
-			websocketEndpoint = new WebsocketClientEndpoint(bitfinexURI);
-			websocketEndpoint.addConsumer(apiCallback);
-			websocketEndpoint.connect();
+			for(final ConnectionShard connection : getAllConnections()) {
+				openConnection(connection);
+			}
+			
 			updateConnectionHeartbeat();
 			
 			executeAuthentification();
@@ -338,13 +509,17 @@ public class BitfinexApiBroker implements Closeable {
 			heartbeatThread = null;
 		}
 		
-		if(websocketEndpoint != null) {
-			websocketEndpoint.removeConsumer(apiCallback);
-			websocketEndpoint.close();
-			websocketEndpoint = null;
+		getAllConnections().forEach(ConnectionShard::close);
+		
+		if(commandScheduler != null) {
+			commandScheduler.close();
+		}
+		
+		if(marketDataRingBuffer != null) {
+			marketDataRingBuffer.close();
 		}
 		
-		if(executorService != null) {
+		if(shutdownExecutorService) {
 			executorService.shutdown();
 		}
 	}
@@ -354,36 +529,166 @@ public class BitfinexApiBroker implements Closeable {
 	 * @param apiCommand
 	 */
 	public void sendCommand(final AbstractAPICommand apiCommand) {
+		sendCommand(getPrimaryConnection(), apiCommand);
+	}
+	
+	/**
+	 * Send a new API command on the given connection
+	 * @param connection
+	 * @param apiCommand
+	 */
+	private void sendCommand(final ConnectionShard connection, final AbstractAPICommand apiCommand) {
 		try {
 			final String command = apiCommand.getCommand(this);
-			logger.debug("Sending to server: {}", command);
-			websocketEndpoint.sendMessage(command);
+			final CommandScheduler scheduler = commandScheduler;
+			
+			if(scheduler == null) {
+				logger.debug("Sending to server on connection {}: {}", connection.getId(), command);
+				connection.sendMessage(command);
+				return;
+			}
+			
+			scheduler.submit(CommandPriority.forCommand(apiCommand), () -> {
+				logger.debug("Sending to server on connection {}: {}", connection.getId(), command);
+				connection.sendMessage(command);
+			});
 		} catch (CommandException e) {
 			logger.error("Got Exception while sending command", e);
 		}
 	}
 	
 	/**
-	 * Get the websocket endpoint
+	 * Open the websocket of the connection
+	 * @param connection
+	 * @throws Exception
+	 */
+	private void openConnection(final ConnectionShard connection) throws Exception {
+		connection.connect(new URI(BITFINEX_URI));
+		sendCommand(connection, new ConfCommand(ConfCommand.OB_CHECKSUM));
+	}
+	
+	/**
+	 * Get the websocket endpoint of the primary connection
 	 * @return
 	 */
 	public WebsocketClientEndpoint getWebsocketEndpoint() {
-		return websocketEndpoint;
+		return getPrimaryConnection().getWebsocketEndpoint();
+	}
+	
+	/**
+	 * Get the primary connection
+	 * @return
+	 */
+	public ConnectionShard getPrimaryConnection() {
+		return connections.get(0);
+	}
+	
+	/**
+	 * Get all connections
+	 * @return
+	 */
+	public List<ConnectionShard> getConnections() {
+		return Collections.unmodifiableList(connections);
+	}
+	
+	/**
+	 * Get all connections including the standby connections
+	 * @return
+	 */
+	private List<ConnectionShard> getAllConnections() {
+		final List<ConnectionShard> allConnections = new ArrayList<>(connections);
+		
+		connections.stream()
+			.map(ConnectionShard::getStandby)
+			.filter(Objects::nonNull)
+			.forEach(allConnections::add);
+		
+		return allConnections;
+	}
+	
+	/**
+	 * Get the connection of the frame that is processed by the current thread, 
+	 * the primary connection otherwise
+	 * @return
+	 */
+	private ConnectionShard getCurrentConnection() {
+		final ConnectionShard connection = currentConnection.get();
+		
+		if(connection == null) {
+			return getPrimaryConnection();
+		}
+		
+		return connection;
+	}
+	
+	/**
+	 * Get the connection of the symbol, the primary connection for unknown symbols
+	 * @param symbol
+	 * @return
+	 */
+	private ConnectionShard getConnection(final BitfinexStreamSymbol symbol) {
+		return symbolConnections.getOrDefault(symbol, getPrimaryConnection());
+	}
+	
+	/**
+	 * Shard the subscriptions over multiple connections. A new connection is 
+	 * opened when all connections have reached the channel limit.
+	 * @param maxConnections
+	 * @param maxChannelsPerConnection
+	 */
+	public void setConnectionSharding(final int maxConnections, final int maxChannelsPerConnection) {
+		
+		if(maxConnections < 1 || maxChannelsPerConnection < 1) {
+			throw new IllegalArgumentException("Invalid sharding: " + maxConnections 
+					+ " / " + maxChannelsPerConnection);
+		}
+		
+		this.maxConnections = maxConnections;
+		this.maxChannelsPerConnection = maxChannelsPerConnection;
 	}
 	
 	/**
 	 * We received a websocket callback
+	 * @param connection
 	 * @param message
 	 */
-	private void websocketCallback(final String message) {
+	private void websocketCallback(final ConnectionShard connection, final String message) {
 		logger.debug("Got message: {}", message);
 		
-		if(message.startsWith("{")) {
-			handleCommandCallback(message);
-		} else if(message.startsWith("[")) {
+		currentConnection.set(connection);
+		
+		try {
+			if(message.startsWith("{")) {
+				handleCommandCallback(message);
+			} else if(message.startsWith("[")) {
+				final FramePipeline pipeline = connection.getFramePipeline();
+				
+				if(pipeline != null) {
+					updateConnectionHeartbeat();
+					pipeline.offer(FrameClassifier.getChannelId(message), message);
+				} else {
+					handleChannelCallback(message);
+				}
+			} else {
+				logger.error("Got unknown callback: {}", message);
+			}
+		} finally {
+			currentConnection.remove();
+		}
+	}
+	
+	/**
+	 * Handle a channel callback of the given connection (frame pipeline)
+	 * @param connection
+	 * @param message
+	 */
+	private void handleChannelCallback(final ConnectionShard connection, final String message) {
+		currentConnection.set(connection);
+		
+		try {
 			handleChannelCallback(message);
-		} else {
-			logger.error("Got unknown callback: {}", message);
+		} finally {
+			currentConnection.remove();
 		}
 	}
 
@@ -417,11 +722,45 @@ public class BitfinexApiBroker implements Closeable {
 	 * @param channelId
 	 */
 	public void removeChannel(final int channelId) {
-		synchronized (channelIdSymbolMap) {
-			channelIdSymbolMap.remove(channelId);
-			channelIdSymbolMap.notifyAll();
+		final ConnectionShard connection = getCurrentConnection();
+		final BitfinexStreamSymbol symbol = connection.getChannelRegistry().remove(channelId);
+		
+		if(symbol != null && (connection.isStandby() || symbolConnections.remove(symbol, connection))) {
+			getChannelTimeouts(connection).remove(symbol);
+		}
+		
+		connection.completePendingUnsubscription(channelId);
+	}
+	
+	/**
+	 * The subscription of the symbol is rejected by the server
+	 * @param symbol
+	 * @param exception
+	 */
+	public void failSubscription(final BitfinexStreamSymbol symbol, final APIException exception) {
+		final ConnectionShard connection = currentConnection.get() != null 
+				? currentConnection.get() : getConnection(symbol);
+		
+		connection.failPendingSymbol(symbol, exception);
+		connection.completeCancelledSymbol(symbol);
+		
+		// Keep the connection of an already subscribed channel (e.g. duplicate subscription)
+		if(connection.getChannelRegistry().getChannel(symbol) == ChannelRegistry.UNKNOWN_CHANNEL) {
+			
+			if(connection.isStandby() || symbolConnections.remove(symbol, connection)) {
+				getChannelTimeouts(connection).remove(symbol);
+			}
 		}
 	}
+	
+	/**
+	 * The unsubscription of the channel is rejected by the server
+	 * @param channelId
+	 * @param exception
+	 */
+	public void failUnsubscription(final int channelId, final APIException exception) {
+		getCurrentConnection().failPendingUnsubscription(channelId, exception);
+	}
 
 	/**
 	 * Update the connection heartbeat
@@ -436,10 +775,81 @@ public class BitfinexApiBroker implements Closeable {
 	 * @param symbol
 	 */
 	public void addToChannelSymbolMap(final int channelId, final BitfinexStreamSymbol symbol) {
-		synchronized (channelIdSymbolMap) {
-			channelIdSymbolMap.put(channelId, symbol);
-			channelIdSymbolMap.notifyAll();
+		
+		// The subscribed event is processed by the thread of the connection
+		final ConnectionShard connection = currentConnection.get() != null 
+				? currentConnection.get() : getConnection(symbol);
+		
+		final CompletableFuture<Void> cancelled = connection.removeCancelledSymbol(symbol);
+		
+		if(cancelled != null) {
+			
+			// Subscribed again in the meantime, the channel is kept
+			if(connection.isPendingSymbol(symbol)) {
+				cancelled.complete(null);
+			} else {
+				unsubscribeCancelledChannel(connection, channelId, cancelled);
+				return;
+			}
+		}
+		
+		final StreamingChannelCallbackHandler handler = createChannelHandler(symbol);
+		
+		if(handler == null) {
+			logger.error("Unknown stream type: {}", symbol);
+		}
+		
+		if(! connection.isStandby()) {
+			symbolConnections.put(symbol, connection);
 		}
+		
+		connection.getChannelRegistry().register(channelId, new BoundChannelHandler(symbol, handler));
+		connection.completePendingSymbol(symbol, channelId);
+		
+		// Watch the channel also if it never delivers a frame
+		getChannelTimeouts(connection).touch(symbol, System.currentTimeMillis());
+	}
+	
+	/**
+	 * The subscription was cancelled while pending, the confirmed channel is 
+	 * unsubscribed and the future of the cancellation follows the unsubscription
+	 * @param connection
+	 * @param channelId
+	 * @param cancelled
+	 */
+	private void unsubscribeCancelledChannel(final ConnectionShard connection, final int channelId, 
+			final CompletableFuture<Void> cancelled) {
+		
+		connection.addPendingUnsubscription(channelId).whenComplete((r, e) -> {
+			if(e != null) {
+				cancelled.completeExceptionally(e);
+			} else {
+				cancelled.complete(null);
+			}
+		});
+		
+		sendCommand(connection, new UnsubscribeChannelCommand(channelId));
+	}
+	
+	/**
+	 * Create the handler for the given symbol
+	 * @param symbol
+	 * @return the handler or null
+	 */
+	private StreamingChannelCallbackHandler createChannelHandler(final BitfinexStreamSymbol symbol) {
+		if(symbol instanceof BitfinexCandlestickSymbol) {
+			return new CandlestickHandler();
+		} else if(symbol instanceof RawOrderbookConfiguration) {
+			return new RawOrderbookHandler();
+		} else if(symbol instanceof OrderbookConfiguration) {
+			return new OrderbookHandler();
+		} else if(symbol instanceof BitfinexTickerSymbol) {
+			return new TickHandler();
+		} else if(symbol instanceof BitfinexExecutedTradeSymbol) {
+			return new ExecutedTradeHandler();
+		} 
+		
+		return null;
 	}
 
 	/**
@@ -450,32 +860,75 @@ public class BitfinexApiBroker implements Closeable {
 		// Channel callback
 		logger.debug("Channel callback");
 		updateConnectionHeartbeat();
+		
+		final ChannelRegistry channelRegistry = getCurrentConnection().getChannelRegistry();
+		
+		// Fast path: classify the frame before it is parsed
+		final int channelId = FrameClassifier.getChannelId(message);
+		final FrameMarker marker = FrameClassifier.getMarker(message);
+		
+		if(marker == FrameMarker.HEARTBEAT) {
+			handleHeartbeat(channelRegistry, channelId);
+			return;
+		}
+		
+		if(marker == FrameMarker.TRADE_UPDATE && channelId > 0) {
+			// Ignore tu messages on public channels (see issue #13)
+			return;
+		}
 
-		// JSON callback
-		final JSONTokener tokener = new JSONTokener(message);
-		final JSONArray jsonArray = new JSONArray(tokener);
-				
-		final int channel = jsonArray.getInt(0);
+		// Read the frame without building a JSON object tree
+		final JSONFrameReader reader = frameReader.get().reset(message);
+		
+		try {
+			reader.beginArray();
+			final int channel = reader.nextInt();
+			
+			if(channel == 0) {
+				handleSignalingChannelData(message, reader);
+			} else {
+				handleChannelData(channelRegistry, channel, reader);
+			}
+		} catch (JSONException e) {
+			logger.error("Unable to parse channel callback: {}", message, e);
+		}
+	}
+
+	/**
+	 * Handle a heartbeat frame
+	 * @param channelRegistry
+	 * @param channel
+	 */
+	private void handleHeartbeat(final ChannelRegistry channelRegistry, final int channel) {
 		
 		if(channel == 0) {
-			handleSignalingChannelData(message, jsonArray);
-		} else {
-			handleChannelData(jsonArray);
+			logger.debug("Got connection heartbeat");
+			return;
 		}
+		
+		final BoundChannelHandler boundHandler = channelRegistry.getHandler(channel);
+
+		if(boundHandler == null) {
+			logger.error("Unable to determine symbol for heartbeat on channel {}", channel);
+			return;
+		}
+		
+		getChannelTimeouts(getCurrentConnection()).touch(boundHandler.getSymbol(), System.currentTimeMillis());
+		quoteManager.updateChannelHeartbeat(boundHandler.getSymbol());
 	}
 
 	/**
 	 * Handle signaling channel data
 	 * @param message
-	 * @param jsonArray
+	 * @param reader
 	 */
-	private void handleSignalingChannelData(final String message, final JSONArray jsonArray) {
+	private void handleSignalingChannelData(final String message, final JSONFrameReader reader) {
 		
 		if(message.contains("ERROR")) {
 			logger.error("Got Error message: {}", message);
 		}
 		
-		final String subchannel = jsonArray.getString(1);
+		final String subchannel = reader.nextString();
 
 		if(! channelHandler.containsKey(subchannel)) {
 			logger.error("No match found for message {}", message);
@@ -483,7 +936,14 @@ public class BitfinexApiBroker implements Closeable {
 			final APICallbackHandler channelHandlerCallback = channelHandler.get(subchannel);
 			
 			try {
-				channelHandlerCallback.handleChannelData(this, jsonArray);
+				if(channelHandlerCallback instanceof StreamingAPICallbackHandler) {
+					final StreamingAPICallbackHandler streamingHandler 
+						= (StreamingAPICallbackHandler) channelHandlerCallback;
+					streamingHandler.handleChannelFrame(this, reader);
+				} else {
+					final JSONArray jsonArray = new JSONArray(new JSONTokener(message));
+					channelHandlerCallback.handleChannelData(this, jsonArray);
+				}
 			} catch (APIException e) {
 				logger.error("Got exception while handling callback", e);
 			}
@@ -492,25 +952,50 @@ public class BitfinexApiBroker implements Closeable {
 
 	/**
 	 * Handle normal channel data
-	 * @param jsonArray
+	 * @param channelRegistry
 	 * @param channel
-	 * @throws APIException 
+	 * @param reader
 	 */
-	private void handleChannelData(final JSONArray jsonArray) {
-		final int channel = jsonArray.getInt(0);
-		final BitfinexStreamSymbol channelSymbol = getFromChannelSymbolMap(channel);
+	private void handleChannelData(final ChannelRegistry channelRegistry, final int channel, 
+			final JSONFrameReader reader) {
+		final BoundChannelHandler boundHandler = channelRegistry.getHandler(channel);
 
-		if(channelSymbol == null) {
+		if(boundHandler == null) {
 			logger.error("Unable to determine symbol for channel {}", channel);
-			logger.error("Data is {}", jsonArray);
+			logger.error("Data is {}", reader.getFrame());
+			return;
+		}
+		
+		// Every line refreshes only its own deadline, also for the frames that are dropped by the arbiter
+		getChannelTimeouts(getCurrentConnection()).touch(boundHandler.getSymbol(), System.currentTimeMillis());
+		
+		final FeedArbiter arbiter = feedArbiter;
+		
+		if(arbiter == null) {
+			deliverChannelData(boundHandler, reader);
 			return;
 		}
 		
+		// The channel ids of the connections are different. The frame is 
+		// handled under the lock of the symbol, to keep the order of the lines
+		final String frame = reader.getFrame();
+		
+		arbiter.accept(boundHandler.getSymbol(), getCurrentConnection().getLine(), frame,
+				frame.indexOf(',') + 1, () -> deliverChannelData(boundHandler, reader));
+	}
+	
+	/**
+	 * Deliver the channel data to the handler
+	 * @param boundHandler
+	 * @param reader
+	 */
+	private void deliverChannelData(final BoundChannelHandler boundHandler, final JSONFrameReader reader) {
+		
 		try {
-			if(jsonArray.get(1) instanceof String) {
-				handleChannelDataString(jsonArray, channelSymbol);
+			if(reader.peek() == JSONFrameReader.Token.STRING) {
+				handleChannelDataString(reader, boundHandler);
 			} else {	
-				handleChannelDataArray(jsonArray, channelSymbol);
+				boundHandler.handleChannelFrame(this, reader);
 			}
 		} catch (APIException e) {
 			logger.error("Got exception while handling callback", e);
@@ -519,55 +1004,46 @@ public class BitfinexApiBroker implements Closeable {
 
 	/**
 	 * Handle the channel data with has a string at first position
-	 * @param jsonArray
-	 * @param channelSymbol
+	 * @param reader
+	 * @param boundHandler
 	 * @throws APIException
 	 */
-	private void handleChannelDataString(final JSONArray jsonArray, 
-			final BitfinexStreamSymbol channelSymbol) throws APIException {
+	private void handleChannelDataString(final JSONFrameReader reader, 
+			final BoundChannelHandler boundHandler) throws APIException {
 		
-		final String value = jsonArray.getString(1);
-		
-		if("hb".equals(value)) {
-			quoteManager.updateChannelHeartbeat(channelSymbol);		
-		} else if("te".equals(value)) {
-			final JSONArray subarray = jsonArray.getJSONArray(2);			
-			final ChannelCallbackHandler handler = new ExecutedTradeHandler();
-			handler.handleChannelData(this, channelSymbol, subarray);
-		} else if("tu".equals(value)) {
+		if(reader.nextStringEquals("hb")) {
+			quoteManager.updateChannelHeartbeat(boundHandler.getSymbol());		
+		} else if(reader.nextStringEquals("te")) {
+			boundHandler.handleChannelFrame(this, reader);
+		} else if(reader.nextStringEquals("tu")) {
 			// Ignore tu messages (see issue #13)
+		} else if(reader.nextStringEquals("cs")) {
+			handleChecksum(boundHandler.getSymbol(), reader.nextInt());
 		} else {
-			logger.error("Unable to process: {}", jsonArray);
+			logger.error("Unable to process: {}", reader.getFrame());
 		}
 	}
 
 	/**
-	 * Handle the channel data with has an array at first position
-	 * @param jsonArray
-	 * @param channelSymbol
-	 * @throws APIException
+	 * Verify the checksum of a orderbook, resubscribe the channel on mismatch
+	 * @param symbol
+	 * @param checksum
 	 */
-	private void handleChannelDataArray(final JSONArray jsonArray, final BitfinexStreamSymbol channelSymbol)
-			throws APIException {
-		final JSONArray subarray = jsonArray.getJSONArray(1);			
-		
-		if(channelSymbol instanceof BitfinexCandlestickSymbol) {
-			final ChannelCallbackHandler handler = new CandlestickHandler();
-			handler.handleChannelData(this, channelSymbol, subarray);
-		} else if(channelSymbol instanceof RawOrderbookConfiguration) {
-			final RawOrderbookHandler handler = new RawOrderbookHandler();
-			handler.handleChannelData(this, channelSymbol, subarray);
-		} else if(channelSymbol instanceof OrderbookConfiguration) {
-			final OrderbookHandler handler = new OrderbookHandler();
-			handler.handleChannelData(this, channelSymbol, subarray);
-		} else if(channelSymbol instanceof BitfinexTickerSymbol) {
-			final ChannelCallbackHandler handler = new TickHandler();
-			handler.handleChannelData(this, channelSymbol, subarray);
-		} else if(channelSymbol instanceof BitfinexExecutedTradeSymbol) {
-			final ChannelCallbackHandler handler = new ExecutedTradeHandler();
-			handler.handleChannelData(this, channelSymbol, subarray);
+	private void handleChecksum(final BitfinexStreamSymbol symbol, final int checksum) {
+		
+		final boolean valid;
+		
+		if(symbol instanceof OrderbookConfiguration) {
+			valid = orderbookManager.verifyChecksum((OrderbookConfiguration) symbol, checksum);
+		} else if(symbol instanceof RawOrderbookConfiguration) {
+			valid = rawOrderbookManager.verifyChecksum((RawOrderbookConfiguration) symbol, checksum);
 		} else {
-			logger.error("Unknown stream type: {}", channelSymbol);
+			logger.error("Got checksum for non orderbook symbol: {}", symbol);
+			return;
+		}
+		
+		if(! valid) {
+			resubscribeChannel(symbol);
 		}
 	}
 
@@ -577,9 +1053,7 @@ public class BitfinexApiBroker implements Closeable {
 	 * @return
 	 */
 	public BitfinexStreamSymbol getFromChannelSymbolMap(final int channel) {
-		synchronized (channelIdSymbolMap) {
-			return channelIdSymbolMap.get(channel);
-		}
+		return getCurrentConnection().getChannelRegistry().getSymbol(channel);
 	}
 	
 	/**
@@ -597,13 +1071,7 @@ public class BitfinexApiBroker implements Closeable {
 	 * @return
 	 */
 	public int getChannelForSymbol(final BitfinexStreamSymbol symbol) {
-		synchronized (channelIdSymbolMap) {
-			return channelIdSymbolMap.entrySet()
-					.stream()
-					.filter((v) -> v.getValue().equals(symbol))
-					.map((v) -> v.getKey())
-					.findAny().orElse(-1);
-		}
+		return getConnection(symbol).getChannelRegistry().getChannel(symbol);
 	}
 	
 	/**
@@ -612,17 +1080,180 @@ public class BitfinexApiBroker implements Closeable {
 	 * @return
 	 */
 	public boolean removeChannelForSymbol(final BitfinexStreamSymbol symbol) {
-		final int channel = getChannelForSymbol(symbol);
+		final ConnectionShard connection = getConnection(symbol);
+		final int channel = connection.getChannelRegistry().removeSymbol(symbol);
+		
+		connection.removePendingSymbol(symbol);
+		symbolConnections.remove(symbol, connection);
+		
+		return channel != ChannelRegistry.UNKNOWN_CHANNEL;
+	}
+	
+	/**
+	 * Get the channel registry of the primary connection
+	 * @return
+	 */
+	public ChannelRegistry getChannelRegistry() {
+		return getPrimaryConnection().getChannelRegistry();
+	}
+	
+	/**
+	 * Subscribe the channel of the symbol, on the first connection 
+	 * with a free channel
+	 * @param symbol
+	 * @return the future of the subscription, completed with the channel id or 
+	 * failed if the symbol is unknown or all connections are full
+	 */
+	public CompletableFuture<Integer> subscribeChannel(final BitfinexStreamSymbol symbol) {
+		final AbstractAPICommand subscribeCommand = getSubscribeCommand(symbol);
+		
+		if(subscribeCommand == null) {
+			final CompletableFuture<Integer> future = new CompletableFuture<>();
+			future.completeExceptionally(new APIException("Unknown stream symbol: " + symbol));
+			return future;
+		}
+		
+		final ConnectionShard connection = selectConnection(symbol);
+		
+		if(connection == null) {
+			final CompletableFuture<Integer> future = new CompletableFuture<>();
+			future.completeExceptionally(new APIException("All " + connections.size() 
+					+ " connections are full, unable to subscribe: " + symbol));
+			return future;
+		}
+		
+		final CompletableFuture<Integer> future = subscribeOnConnection(connection, symbol);
+		final ConnectionShard standby = connection.getStandby();
+		
+		if(standby != null) {
+			subscribeOnConnection(standby, symbol);
+		}
+		
+		return future;
+	}
+	
+	/**
+	 * Unsubscribe the channel of the symbol. A pending subscription is cancelled, 
+	 * the channel is unsubscribed as soon as the subscription is confirmed.
+	 * @param symbol
+	 * @return the future of the unsubscription, completed by the unsubscribed event 
+	 * or failed for an unknown symbol
+	 */
+	public CompletableFuture<Void> unsubscribeChannel(final BitfinexStreamSymbol symbol) {
+		final ConnectionShard connection = getConnection(symbol);
+		final int channel = connection.getChannelRegistry().getChannel(symbol);
+		final CompletableFuture<Void> future;
+		
+		if(channel != ChannelRegistry.UNKNOWN_CHANNEL) {
+			future = connection.addPendingUnsubscription(channel);
+			sendCommand(connection, new UnsubscribeChannelCommand(channel));
+			removeChannelForSymbol(symbol);
+		} else if(connection.isPendingSymbol(symbol)) {
+			future = connection.cancelPendingSymbol(symbol);
+			symbolConnections.remove(symbol, connection);
+		} else {
+			future = new CompletableFuture<>();
+			future.completeExceptionally(new IllegalArgumentException("Unknown symbol: " + symbol));
+			return future;
+		}
+		
+		getChannelTimeouts(connection).remove(symbol);
+		
+		final ConnectionShard standby = connection.getStandby();
 		
-		if(channel != -1) {
-			synchronized (channelIdSymbolMap) {
-				channelIdSymbolMap.remove(channel);
+		if(standby != null) {
+			final int standbyChannel = standby.getChannelRegistry().removeSymbol(symbol);
+			getChannelTimeouts(standby).remove(symbol);
+			
+			if(standbyChannel != ChannelRegistry.UNKNOWN_CHANNEL) {
+				sendCommand(standby, new UnsubscribeChannelCommand(standbyChannel));
+			} else if(standby.isPendingSymbol(symbol)) {
+				standby.cancelPendingSymbol(symbol);
 			}
 			
-			return true;
+			feedArbiter.reset(symbol);
+		}
+		
+		return future;
+	}
+	
+	/**
+	 * Select the connection for a new subscription: the first connection with 
+	 * a free channel or a new connection. The channel limit is enforced by the 
+	 * server, so the subscription is rejected if all connections are full.
+	 * @param symbol
+	 * @return the connection or null
+	 */
+	private synchronized ConnectionShard selectConnection(final BitfinexStreamSymbol symbol) {
+		
+		final ConnectionShard assignedConnection = symbolConnections.get(symbol);
+		
+		if(assignedConnection != null) {
+			return assignedConnection;
+		}
+		
+		ConnectionShard selectedConnection = connections.stream()
+				.filter(c -> c.getChannelCount() < maxChannelsPerConnection)
+				.findFirst()
+				.orElse(null);
+		
+		if(selectedConnection == null && connections.size() < maxConnections) {
+			selectedConnection = addConnection();
+		}
+		
+		if(selectedConnection == null) {
+			logger.error("All {} connections are full, rejecting subscription of {}", 
+					connections.size(), symbol);
+			return null;
+		}
+		
+		selectedConnection.addPendingSymbol(symbol);
+		symbolConnections.put(symbol, selectedConnection);
+		
+		return selectedConnection;
+	}
+	
+	/**
+	 * Add a new connection, the websocket is opened if the broker is connected
+	 * @return the connection or null
+	 */
+	private ConnectionShard addConnection() {
+		final ConnectionShard connection = new ConnectionShard(connections.size(), this::websocketCallback);
+		
+		synchronized (this) {
+			if(framePipelineWorkers > 0) {
+				connection.enableFramePipeline(framePipelineWorkers, framePipelineCapacity, 
+						this::handleChannelCallback);
+			}
+			
+			if(feedArbiter != null) {
+				connection.setStandby(createStandbyConnection(connection));
+			}
+		}
+		
+		if(getPrimaryConnection().isConnected()) {
+			try {
+				logger.info("Opening connection {}", connection.getId());
+				openConnection(connection);
+				
+				if(connection.getStandby() != null) {
+					openConnection(connection.getStandby());
+				}
+			} catch (Exception e) {
+				logger.error("Unable to open connection {}", connection.getId(), e);
+				connection.close();
+				
+				if(connection.getStandby() != null) {
+					connection.getStandby().close();
+				}
+				
+				return null;
+			}
 		}
 		
-		return false;
+		connections.add(connection);
+		
+		return connection;
 	}
 	
 	/**
@@ -637,89 +1268,392 @@ public class BitfinexApiBroker implements Closeable {
 			
 			// Invalidate old data
 			quoteManager.invalidateTickerHeartbeat();
+			channelTimeouts.forEach(TimerWheel::clear);
 			orderManager.clear();
 			positionManager.clear();
 			
-			websocketEndpoint.close();
-			websocketEndpoint.connect();
+			if(feedArbiter != null) {
+				feedArbiter.clear();
+			}
+			
+			final List<ConnectionShard> allConnections = getAllConnections();
+			
+			for(final ConnectionShard connection : allConnections) {
+				openConnection(connection);
+			}
 			
 			executeAuthentification();
-			resubscribeChannels();
+			resubscribeChannels(allConnections);
 
 			updateConnectionHeartbeat();
 			
 			return true;
 		} catch (Exception e) {
 			logger.error("Got exception while reconnect", e);
-			websocketEndpoint.close();
+			getAllConnections().forEach(ConnectionShard::disconnect);
 			return false;
 		}
 	}
-
+	
 	/**
-	 * Resubscribe the old ticker
-	 * @throws InterruptedException
-	 * @throws APIException
+	 * Reconnect a single connection of a redundant pair, the other 
+	 * connection delivers the data in the meantime
+	 * @param connection
+	 * @return
 	 */
-	private void resubscribeChannels() throws InterruptedException, APIException {
-		final Map<Integer, BitfinexStreamSymbol> oldChannelIdSymbolMap = new HashMap<>();
-
-		synchronized (channelIdSymbolMap) {
-			oldChannelIdSymbolMap.putAll(channelIdSymbolMap);
-			channelIdSymbolMap.clear();
-			channelIdSymbolMap.notifyAll();
-		}
-		
-		// Resubscribe channels
-		for(BitfinexStreamSymbol symbol : oldChannelIdSymbolMap.values()) {
-			if(symbol instanceof BitfinexTickerSymbol) {
-				sendCommand(new SubscribeTickerCommand((BitfinexTickerSymbol) symbol));
-			} else if(symbol instanceof BitfinexExecutedTradeSymbol) {
-				sendCommand(new SubscribeTradesCommand((BitfinexExecutedTradeSymbol) symbol));
-			} else if(symbol instanceof BitfinexCandlestickSymbol) {
-				sendCommand(new SubscribeCandlesCommand((BitfinexCandlestickSymbol) symbol));
-			} else if(symbol instanceof OrderbookConfiguration) {
-				sendCommand(new SubscribeOrderbookCommand((OrderbookConfiguration) symbol));
-			} else if(symbol instanceof RawOrderbookConfiguration) {
-				sendCommand(new SubscribeRawOrderbookCommand((RawOrderbookConfiguration) symbol));
-			} else {
-				logger.error("Unknown stream symbol: {}", symbol);
+	public synchronized boolean reconnectConnection(final ConnectionShard connection) {
+		try {
+			logger.info("Performing reconnect of {}", connection);
+			openConnection(connection);
+			
+			if(connection == getPrimaryConnection()) {
+				capabilities = ConnectionCapabilities.NO_CAPABILITIES;
+				authenticated = false;
+				orderManager.clear();
+				positionManager.clear();
+				executeAuthentification();
 			}
+			
+			resetFeedArbiterLine(connection);
+			resubscribeChannels(Arrays.asList(connection));
+			
+			return true;
+		} catch (Exception e) {
+			logger.error("Got exception while reconnect of {}", connection, e);
+			connection.disconnect();
+			return false;
 		}
-		
-		waitForChannelResubscription(oldChannelIdSymbolMap);
 	}
 
 	/**
-	 * Wait for the successfull channel resubscription
-	 * @param oldChannelIdSymbolMap
-	 * @throws APIException
+	 * Reset the line of the connection in the feed arbiter, the resubscribed
+	 * channels are aligned again while the other line keeps delivering
+	 * @param connection
+	 */
+	private void resetFeedArbiterLine(final ConnectionShard connection) {
+		final FeedArbiter arbiter = feedArbiter;
+		
+		if(arbiter == null) {
+			return;
+		}
+		
+		final Set<BitfinexStreamSymbol> symbols = new HashSet<>(connection.getChannelRegistry().getChannels().values());
+		symbols.addAll(connection.getPendingSymbols());
+		symbols.forEach(s -> arbiter.resetLine(s, connection.getLine()));
+	}
+	
+	/**
+	 * Resubscribe the old channels and the pending subscriptions. The subscribe 
+	 * commands for all connections are sent at once, only the channels that 
+	 * are not confirmed are retried. Channels that are still not confirmed do 
+	 * not fail the reconnect, only their futures are failed.
+	 * @param resubscribeConnections
 	 * @throws InterruptedException
 	 */
-	private void waitForChannelResubscription(final Map<Integer, BitfinexStreamSymbol> oldChannelIdSymbolMap)
-			throws APIException, InterruptedException {
+	private void resubscribeChannels(final Collection<ConnectionShard> resubscribeConnections) 
+			throws InterruptedException {
 		
-		logger.info("Waiting for streams to resubscribe");
-		int execution = 0;
+		Map<ConnectionShard, Set<BitfinexStreamSymbol>> pendingSymbols = new HashMap<>();
 		
-		synchronized (channelIdSymbolMap) {		
-			while(channelIdSymbolMap.size() != oldChannelIdSymbolMap.size()) {
+		for(final ConnectionShard connection : resubscribeConnections) {
+			final Map<Integer, BitfinexStreamSymbol> oldChannelIdSymbolMap 
+				= connection.getChannelRegistry().clear();
+			
+			// Resubscribe channels on the same connection
+			final Set<BitfinexStreamSymbol> symbols = new HashSet<>(oldChannelIdSymbolMap.values());
+			symbols.addAll(connection.getPendingSymbols());
+			pendingSymbols.put(connection, symbols);
+		}
+		
+		for(int retry = 0; ; retry++) {
+			final Map<ConnectionShard, Map<BitfinexStreamSymbol, CompletableFuture<Integer>>> subscriptions 
+				= new HashMap<>();
+			
+			pendingSymbols.forEach((c, symbols) -> subscriptions.put(c, symbols.stream()
+					.collect(Collectors.toMap(s -> s, s -> subscribeOnConnection(c, s)))));
+			
+			pendingSymbols = waitForChannelResubscription(subscriptions);
+			
+			if(pendingSymbols.isEmpty()) {
+				return;
+			}
+			
+			// The failed subscriptions stay pending for the next reconnect
+			if(retry >= RESUBSCRIPTION_RETRIES) {
+				logger.error("Subscription of channels failed: {}", pendingSymbols);
 				
-				if(execution > 10) {
-					
-					// Restore old map for reconnect
-					synchronized (channelIdSymbolMap) {
-						channelIdSymbolMap.clear();
-						channelIdSymbolMap.putAll(oldChannelIdSymbolMap);
-					}
-					
-					throw new APIException("Subscription of ticker failed");
-				}
+				pendingSymbols.forEach((c, symbols) -> symbols.forEach(symbol -> 
+					c.expirePendingSymbol(symbol, new APIException("Subscription of channel failed: " + symbol))));
 				
-				channelIdSymbolMap.wait(500);
-				execution++;	
+				return;
 			}
+			
+			logger.warn("Retrying the subscription of {}", pendingSymbols);
+		}
+	}
+	
+	/**
+	 * Send the subscribe command for the symbol on the given connection. The 
+	 * channel is watched from now on, so a subscription that is never confirmed 
+	 * or a channel that stays silent is detected by the channel timeout.
+	 * @param connection
+	 * @param symbol
+	 * @return the future of the subscription
+	 */
+	private CompletableFuture<Integer> subscribeOnConnection(final ConnectionShard connection, 
+			final BitfinexStreamSymbol symbol) {
+		
+		final CompletableFuture<Integer> future = connection.addPendingSymbol(symbol);
+		final AbstractAPICommand subscribeCommand = getSubscribeCommand(symbol);
+		
+		if(subscribeCommand != null) {
+			getChannelTimeouts(connection).touch(symbol, System.currentTimeMillis());
+			sendCommand(connection, subscribeCommand);
+		}
+		
+		return future;
+	}
+	
+	/**
+	 * Resubscribe a single channel (e.g. after a orderbook checksum mismatch), 
+	 * all other channels are not affected
+	 * @param symbol
+	 */
+	public void resubscribeChannel(final BitfinexStreamSymbol symbol) {
+		final ConnectionShard connection = getConnection(symbol);
+		resubscribeChannel(connection, symbol);
+		
+		final ConnectionShard standby = connection.getStandby();
+		
+		if(standby != null) {
+			resubscribeChannel(standby, symbol);
+			
+			// Deliver the next snapshot
+			feedArbiter.reset(symbol);
+		}
+	}
+	
+	/**
+	 * The channel got no data or heartbeat on the line within the timeout, 
+	 * only this channel is resubscribed on this line. The other line keeps 
+	 * delivering, the resubscribed line is aligned again by the feed arbiter.
+	 * @param line
+	 * @param symbol
+	 */
+	private void handleChannelTimeout(final int line, final BitfinexStreamSymbol symbol) {
+		final ConnectionShard primary = getConnection(symbol);
+		final ConnectionShard connection = (line == FeedArbiter.LINE_A) ? primary : primary.getStandby();
+		
+		if(connection == null) {
+			return;
 		}
+		
+		logger.error("Got no update for channel {} on {} within {} ms, resubscribing", 
+				symbol, connection, CHANNEL_TIMEOUT_MS);
+		
+		resubscribeChannel(connection, symbol);
+		
+		final FeedArbiter arbiter = feedArbiter;
+		
+		if(arbiter != null) {
+			arbiter.resetLine(symbol, line);
+		}
+	}
+	
+	/**
+	 * Get the deadlines of the channels, per line (FeedArbiter.LINE_A and LINE_B)
+	 * @return
+	 */
+	public List<TimerWheel<BitfinexStreamSymbol>> getChannelTimeouts() {
+		return channelTimeouts;
+	}
+	
+	/**
+	 * Get the deadlines of the channels on the line of the connection
+	 * @param connection
+	 * @return
+	 */
+	private TimerWheel<BitfinexStreamSymbol> getChannelTimeouts(final ConnectionShard connection) {
+		return channelTimeouts.get(connection.getLine());
+	}
+	
+	/**
+	 * Resubscribe a single channel on the given connection. The channels of a 
+	 * closed connection are resubscribed by the reconnect of the connection.
+	 * @param connection
+	 * @param symbol
+	 */
+	private void resubscribeChannel(final ConnectionShard connection, final BitfinexStreamSymbol symbol) {
+		
+		if(! connection.isConnected()) {
+			logger.info("Connection {} is not connected, {} is resubscribed by the reconnect", 
+					connection, symbol);
+			return;
+		}
+		
+		final int channel = connection.getChannelRegistry().removeSymbol(symbol);
+		
+		if(channel == ChannelRegistry.UNKNOWN_CHANNEL) {
+			
+			// The (re)subscription is not confirmed, send the subscribe command again
+			if(connection.isPendingSymbol(symbol)) {
+				logger.info("Subscription of {} is not confirmed, subscribing again", symbol);
+				subscribeOnConnection(connection, symbol);
+				return;
+			}
+			
+			logger.error("Unable to resubscribe unknown symbol: {}", symbol);
+			return;
+		}
+		
+		logger.info("Resubscribing channel {} ({})", channel, symbol);
+		
+		sendCommand(connection, new UnsubscribeChannelCommand(channel));
+		subscribeOnConnection(connection, symbol);
+	}
+	
+	/**
+	 * Deliver the public channels of every connection also by a standby connection. 
+	 * The frames of both connections are arbitrated, the first arrival is delivered 
+	 * and the copy of the other connection is dropped. When one connection of a pair 
+	 * fails, the data is delivered by the other connection while the failed 
+	 * connection is reopened by the heartbeat thread.
+	 * @return the arbiter
+	 */
+	public synchronized FeedArbiter enableStandbyConnections() {
+		
+		if(feedArbiter != null) {
+			throw new IllegalStateException("The standby connections are already enabled");
+		}
+		
+		feedArbiter = new FeedArbiter();
+		
+		for(final ConnectionShard connection : connections) {
+			final ConnectionShard standby = createStandbyConnection(connection);
+			connection.setStandby(standby);
+			
+			if(! connection.isConnected()) {
+				continue;
+			}
+			
+			try {
+				openConnection(standby);
+				connection.getChannelRegistry().getChannels().values()
+					.forEach(s -> subscribeOnConnection(standby, s));
+			} catch (Exception e) {
+				logger.error("Unable to open standby connection {}", connection.getId(), e);
+			}
+		}
+		
+		return feedArbiter;
+	}
+	
+	/**
+	 * Create the standby connection for the given connection
+	 * @param connection
+	 * @return
+	 */
+	private ConnectionShard createStandbyConnection(final ConnectionShard connection) {
+		final ConnectionShard standby = new ConnectionShard(connection.getId(), 
+				FeedArbiter.LINE_B, this::websocketCallback);
+		
+		if(framePipelineWorkers > 0) {
+			standby.enableFramePipeline(framePipelineWorkers, framePipelineCapacity, 
+					this::handleChannelCallback);
+		}
+		
+		return standby;
+	}
+	
+	/**
+	 * Get the arbiter of the standby connections
+	 * @return the arbiter or null
+	 */
+	public FeedArbiter getFeedArbiter() {
+		return feedArbiter;
+	}
+	
+	/**
+	 * Set the rate limiter for the outbound commands
+	 * @param commandScheduler - the scheduler or null to disable the rate limit
+	 */
+	public void setCommandScheduler(final CommandScheduler commandScheduler) {
+		final CommandScheduler oldScheduler = this.commandScheduler;
+		this.commandScheduler = commandScheduler;
+		
+		if(oldScheduler != null && oldScheduler != commandScheduler) {
+			oldScheduler.close();
+		}
+	}
+	
+	/**
+	 * Get the rate limiter for the outbound commands
+	 * @return the scheduler or null
+	 */
+	public CommandScheduler getCommandScheduler() {
+		return commandScheduler;
+	}
+	
+	/**
+	 * Get the subscribe command for the symbol
+	 * @param symbol
+	 * @return the command or null
+	 */
+	private AbstractAPICommand getSubscribeCommand(final BitfinexStreamSymbol symbol) {
+		if(symbol instanceof BitfinexTickerSymbol) {
+			return new SubscribeTickerCommand((BitfinexTickerSymbol) symbol);
+		} else if(symbol instanceof BitfinexExecutedTradeSymbol) {
+			return new SubscribeTradesCommand((BitfinexExecutedTradeSymbol) symbol);
+		} else if(symbol instanceof BitfinexCandlestickSymbol) {
+			return new SubscribeCandlesCommand((BitfinexCandlestickSymbol) symbol);
+		} else if(symbol instanceof OrderbookConfiguration) {
+			return new SubscribeOrderbookCommand((OrderbookConfiguration) symbol);
+		} else if(symbol instanceof RawOrderbookConfiguration) {
+			return new SubscribeRawOrderbookCommand((RawOrderbookConfiguration) symbol);
+		}
+		
+		logger.error("Unknown stream symbol: {}", symbol);
+		return null;
+	}
+
+	/**
+	 * Wait for the channel resubscription, returns as soon as all 
+	 * subscriptions are confirmed
+	 * @param subscriptions
+	 * @return the symbols that are not subscribed, per connection
+	 * @throws InterruptedException
+	 */
+	private Map<ConnectionShard, Set<BitfinexStreamSymbol>> waitForChannelResubscription(
+			final Map<ConnectionShard, Map<BitfinexStreamSymbol, CompletableFuture<Integer>>> subscriptions)
+			throws InterruptedException {
+		
+		final CompletableFuture<?>[] futures = subscriptions.values().stream()
+				.flatMap(m -> m.values().stream())
+				.toArray(CompletableFuture<?>[]::new);
+		
+		logger.info("Waiting for {} streams to resubscribe", futures.length);
+		
+		try {
+			CompletableFuture.allOf(futures).get(RESUBSCRIPTION_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException | ExecutionException | CancellationException e) {
+			// Handled below, unsubscribed channels are cancelled
+		}
+		
+		final Map<ConnectionShard, Set<BitfinexStreamSymbol>> failedSymbols = new HashMap<>();
+		
+		subscriptions.forEach((connection, futureMap) -> {
+			final Set<BitfinexStreamSymbol> symbols = futureMap.entrySet().stream()
+				.filter(e -> ! e.getValue().isDone() 
+						|| (e.getValue().isCompletedExceptionally() && ! e.getValue().isCancelled()))
+				.map(e -> e.getKey())
+				.collect(Collectors.toSet());
+			
+			if(! symbols.isEmpty()) {
+				failedSymbols.put(connection, symbols);
+			}
+		});
+		
+		return failedSymbols;
 	}
 	
 	/**
@@ -778,6 +1712,22 @@ public class BitfinexApiBroker implements Closeable {
 		return executorService;
 	}
 	
+	/**
+	 * Is the executor service shut down on close
+	 * @return
+	 */
+	public boolean isShutdownExecutorService() {
+		return shutdownExecutorService;
+	}
+	
+	/**
+	 * Is every symbol and callback pair executed in its own lane
+	 * @return
+	 */
+	public boolean isDedicatedCallbackLanes() {
+		return dedicatedCallbackLanes;
+	}
+	
 	/**
 	 * Get the order manager
 	 * @return
@@ -849,4 +1799,104 @@ public class BitfinexApiBroker implements Closeable {
 	public void setAuthenticated(final boolean authenticated) {
 		this.authenticated = authenticated;
 	}
+	
+	/**
+	 * Are the market data parsed into fixed-point values
+	 * @return
+	 */
+	public boolean isFixedPointEnabled() {
+		return fixedPointEnabled;
+	}
+	
+	/**
+	 * Parse the market data into fixed-point values. The scale is taken from 
+	 * the currency pair (see BitfinexCurrencyPair.setPriceScale() and 
+	 * BitfinexCurrencyPair.setAmountScale())
+	 * @param fixedPointEnabled
+	 */
+	public void setFixedPointEnabled(final boolean fixedPointEnabled) {
+		this.fixedPointEnabled = fixedPointEnabled;
+	}
+	
+	/**
+	 * Get the market data ring buffer
+	 * @return the ring buffer or null, if not enabled
+	 */
+	public MarketDataRingBuffer getMarketDataRingBuffer() {
+		return marketDataRingBuffer;
+	}
+	
+	/**
+	 * Publish the market data to the ring buffer, if enabled. Nothing is 
+	 * published to a closed ring buffer.
+	 * @param type
+	 * @param symbol
+	 * @param payload
+	 */
+	public void publishMarketData(final EventType type, final BitfinexStreamSymbol symbol, 
+			final Object payload) {
+		
+		final MarketDataRingBuffer ringBuffer = marketDataRingBuffer;
+		
+		if(ringBuffer != null && ! ringBuffer.isClosed()) {
+			ringBuffer.publish(type, symbol, payload);
+		}
+	}
+	
+	/**
+	 * Transport the market data (ticks, candles, trades and book levels) 
+	 * additionally through a ring buffer to a dedicated consumer thread. 
+	 * The handlers are registered on the returned ring buffer. 
+	 * A closed ring buffer can be replaced by a new one.
+	 * @param capacity - the number of event slots (power of two)
+	 * @param waitStrategy
+	 * @return the started ring buffer
+	 */
+	public synchronized MarketDataRingBuffer enableMarketDataRingBuffer(final int capacity, 
+			final WaitStrategy waitStrategy) {
+		
+		if(marketDataRingBuffer != null && ! marketDataRingBuffer.isClosed()) {
+			throw new IllegalStateException("The market data ring buffer is already enabled");
+		}
+		
+		final MarketDataRingBuffer ringBuffer = new MarketDataRingBuffer(capacity, waitStrategy);
+		ringBuffer.start();
+		marketDataRingBuffer = ringBuffer;
+		
+		return ringBuffer;
+	}
+	
+	/**
+	 * Get the frame pipeline
+	 * @return the pipeline or null, if the frames are parsed by the websocket thread
+	 */
+	public FramePipeline getFramePipeline() {
+		return getPrimaryConnection().getFramePipeline();
+	}
+	
+	/**
+	 * Parse the channel frames in worker threads instead of the websocket read 
+	 * thread. The frames are partitioned by the channel id, the frames of one 
+	 * channel are processed in order. Command frames are still processed by 
+	 * the read thread, so a channel is registered before its first frame is parsed. 
+	 * Every connection gets its own pipeline.
+	 * @param workers - the number of parse workers per connection
+	 * @param capacity - the number of queued frames per worker (power of two)
+	 * @return the started pipeline of the primary connection
+	 */
+	public synchronized FramePipeline enableFramePipeline(final int workers, final int capacity) {
+		
+		if(framePipelineWorkers > 0) {
+			throw new IllegalStateException("The frame pipeline is already enabled");
+		}
+		
+		for(final ConnectionShard connection : getAllConnections()) {
+			connection.enableFramePipeline(workers, capacity, this::handleChannelCallback);
+		}
+		
+		framePipelineWorkers = workers;
+		framePipelineCapacity = capacity;
+		
+		return getFramePipeline();
+	}
 }
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.jnidzwetzki.bitfinex.v2.util.CommandScheduler;
+
+public class BitfinexApiBrokerBuilder {
+
+	private String apiKey;
+	private String apiSecret;
+	private ExecutorService executorService;
+	private boolean shutdownExecutorService = true;
+	private int callbackThreads = BitfinexApiBroker.DEFAULT_CALLBACK_THREADS;
+	private boolean virtualThreads = false;
+	private int maxConnections = 1;
+	private int maxChannelsPerConnection = BitfinexApiBroker.DEFAULT_MAX_CHANNELS_PER_CONNECTION;
+	private boolean standbyConnections = false;
+	private double commandsPerSecond = 0;
+	private int commandBurst = 1;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(BitfinexApiBrokerBuilder.class);
+
+	private BitfinexApiBrokerBuilder() {
+		// Use create()
+	}
+	
+	public static BitfinexApiBrokerBuilder create() {
+		return new BitfinexApiBrokerBuilder();
+	}
+	
+	public BitfinexApiBrokerBuilder withApiKey(final String apiKey, final String apiSecret) {
+		this.apiKey = apiKey;
+		this.apiSecret = apiSecret;
+		return this;
+	}
+	
+	/**
+	 * Use an external executor for the callbacks. The executor can be shared 
+	 * between several brokers, it is not shut down when a broker is closed.
+	 * @param executorService
+	 * @return
+	 */
+	public BitfinexApiBrokerBuilder withExecutorService(final ExecutorService executorService) {
+		this.executorService = executorService;
+		this.shutdownExecutorService = false;
+		return this;
+	}
+	
+	/**
+	 * Use an own fixed thread pool with the given size for the callbacks
+	 * @param callbackThreads
+	 * @return
+	 */
+	public BitfinexApiBrokerBuilder withCallbackThreads(final int callbackThreads) {
+		
+		if(callbackThreads < 1) {
+			throw new IllegalArgumentException("Invalid number of callback threads: " + callbackThreads);
+		}
+		
+		this.callbackThreads = callbackThreads;
+		return this;
+	}
+	
+	/**
+	 * Execute the callbacks on virtual threads (Java 21+). Every symbol and 
+	 * callback pair gets its own lane, its events are delivered in order and 
+	 * a blocking callback only delays its own events. On older runtimes a 
+	 * cached thread pool is used for the lanes.
+	 * @return
+	 */
+	public BitfinexApiBrokerBuilder withVirtualThreads() {
+		this.virtualThreads = true;
+		return this;
+	}
+	
+	/**
+	 * Shard the subscriptions over up to maxConnections websockets, a new 
+	 * connection is opened when all connections have reached the channel limit
+	 * @param maxConnections
+	 * @param maxChannelsPerConnection
+	 * @return
+	 */
+	public BitfinexApiBrokerBuilder withConnectionSharding(final int maxConnections, 
+			final int maxChannelsPerConnection) {
+		
+		this.maxConnections = maxConnections;
+		this.maxChannelsPerConnection = maxChannelsPerConnection;
+		return this;
+	}
+	
+	/**
+	 * Deliver the public channels over two redundant connections, 
+	 * the first arrival of a frame is delivered
+	 * @return
+	 */
+	public BitfinexApiBrokerBuilder withStandbyConnections() {
+		this.standbyConnections = true;
+		return this;
+	}
+	
+	/**
+	 * Limit the rate of the outbound commands, orders and cancels 
+	 * are sent ahead of the queued subscriptions
+	 * @param commandsPerSecond
+	 * @param burst
+	 * @return
+	 */
+	public BitfinexApiBrokerBuilder withCommandRateLimit(final double commandsPerSecond, 
+			final int burst) {
+		
+		this.commandsPerSecond = commandsPerSecond;
+		this.commandBurst = burst;
+		return this;
+	}
+	
+	public BitfinexApiBroker build() {
+		
+		final BitfinexApiBroker bitfinexApiBroker;
+		
+		if(executorService != null) {
+			bitfinexApiBroker = new BitfinexApiBroker(apiKey, apiSecret, executorService, shutdownExecutorService);
+		} else {
+			final ExecutorService ownExecutorService = virtualThreads 
+					? newVirtualThreadExecutor() : Executors.newFixedThreadPool(callbackThreads);
+			
+			bitfinexApiBroker = new BitfinexApiBroker(apiKey, apiSecret, ownExecutorService, true, virtualThreads);
+		}
+		
+		bitfinexApiBroker.setConnectionSharding(maxConnections, maxChannelsPerConnection);
+		
+		if(standbyConnections) {
+			bitfinexApiBroker.enableStandbyConnections();
+		}
+		
+		if(commandsPerSecond > 0) {
+			bitfinexApiBroker.setCommandScheduler(new CommandScheduler(commandsPerSecond, commandBurst));
+		}
+		
+		return bitfinexApiBroker;
+	}
+	
+	/**
+	 * Create a virtual thread per task executor, the library is compiled for 
+	 * Java 8 so the factory method is looked up at runtime
+	 * @return
+	 */
+	public static ExecutorService newVirtualThreadExecutor() {
+		try {
+			final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			logger.warn("Virtual threads are not supported by this runtime, using a cached thread pool");
+			return Executors.newCachedThreadPool();
+		}
+	}
+}
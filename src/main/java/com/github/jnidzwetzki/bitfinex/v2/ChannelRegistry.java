@@ -0,0 +1,180 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.BoundChannelHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelDispatchTable;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+
+/**
+ * The registry of the subscribed channels. 
+ * 
+ * The forward direction (channel -> handler / symbol) is an open addressing 
+ * table keyed by the primitive channel id, the reverse direction (symbol -> channel) 
+ * is a concurrent hash map. Lookups don't take a lock, modifications are 
+ * serialized. 
+ */
+public class ChannelRegistry {
+
+	/**
+	 * The value for an unknown channel
+	 */
+	public final static int UNKNOWN_CHANNEL = -1;
+	
+	/**
+	 * The forward direction: channel -> bound handler
+	 */
+	private final ChannelDispatchTable dispatchTable;
+	
+	/**
+	 * The reverse direction: symbol -> channel
+	 */
+	private final Map<BitfinexStreamSymbol, Integer> symbolChannels;
+	
+	public ChannelRegistry() {
+		this.dispatchTable = new ChannelDispatchTable();
+		this.symbolChannels = new ConcurrentHashMap<>();
+	}
+	
+	/**
+	 * Register the bound handler for the channel
+	 * @param channel
+	 * @param handler
+	 */
+	public synchronized void register(final int channel, final BoundChannelHandler handler) {
+		final BoundChannelHandler oldHandler = dispatchTable.get(channel);
+		
+		if(oldHandler != null) {
+			symbolChannels.remove(oldHandler.getSymbol(), channel);
+		}
+		
+		dispatchTable.register(channel, handler);
+		symbolChannels.put(handler.getSymbol(), channel);
+	}
+	
+	/**
+	 * Get the bound handler for the channel
+	 * @param channel
+	 * @return the handler or null
+	 */
+	public BoundChannelHandler getHandler(final int channel) {
+		return dispatchTable.get(channel);
+	}
+	
+	/**
+	 * Get the symbol for the channel
+	 * @param channel
+	 * @return the symbol or null
+	 */
+	public BitfinexStreamSymbol getSymbol(final int channel) {
+		final BoundChannelHandler handler = dispatchTable.get(channel);
+		
+		if(handler == null) {
+			return null;
+		}
+		
+		return handler.getSymbol();
+	}
+	
+	/**
+	 * Get the channel for the symbol
+	 * @param symbol
+	 * @return the channel or UNKNOWN_CHANNEL
+	 */
+	public int getChannel(final BitfinexStreamSymbol symbol) {
+		final Integer channel = symbolChannels.get(symbol);
+		
+		if(channel == null) {
+			return UNKNOWN_CHANNEL;
+		}
+		
+		return channel;
+	}
+	
+	/**
+	 * Remove the channel
+	 * @param channel
+	 * @return the symbol of the removed channel or null
+	 */
+	public synchronized BitfinexStreamSymbol remove(final int channel) {
+		final BoundChannelHandler handler = dispatchTable.remove(channel);
+		
+		if(handler == null) {
+			return null;
+		}
+		
+		symbolChannels.remove(handler.getSymbol(), channel);
+		
+		return handler.getSymbol();
+	}
+	
+	/**
+	 * Remove the channel of the symbol
+	 * @param symbol
+	 * @return the removed channel or UNKNOWN_CHANNEL
+	 */
+	public synchronized int removeSymbol(final BitfinexStreamSymbol symbol) {
+		final int channel = getChannel(symbol);
+		
+		if(channel != UNKNOWN_CHANNEL) {
+			remove(channel);
+		}
+		
+		return channel;
+	}
+	
+	/**
+	 * Remove all channels
+	 * @return the removed channels
+	 */
+	public synchronized Map<Integer, BitfinexStreamSymbol> clear() {
+		final Map<Integer, BitfinexStreamSymbol> removedChannels = getChannels();
+		symbolChannels.clear();
+		dispatchTable.clear();
+		
+		return removedChannels;
+	}
+	
+	/**
+	 * Get a snapshot of the registered channels
+	 * @return
+	 */
+	public synchronized Map<Integer, BitfinexStreamSymbol> getChannels() {
+		final Map<Integer, BitfinexStreamSymbol> channels = new HashMap<>();
+		dispatchTable.getHandlers().forEach((c, h) -> channels.put(c, h.getSymbol()));
+		return channels;
+	}
+	
+	/**
+	 * Get the number of registered channels
+	 * @return
+	 */
+	public int size() {
+		return dispatchTable.size();
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "ChannelRegistry [channels=" + getChannels() + "]";
+	}
+	
+}
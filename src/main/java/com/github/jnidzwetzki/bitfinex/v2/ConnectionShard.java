@@ -0,0 +1,431 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import javax.websocket.DeploymentException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.FeedArbiter;
+import com.github.jnidzwetzki.bitfinex.v2.util.FramePipeline;
+
+/**
+ * One websocket connection of the broker. Every connection has its own 
+ * channel registry, because the channel ids are only unique per connection.
+ */
+public class ConnectionShard implements Closeable {
+
+	/**
+	 * The id of the connection
+	 */
+	private final int id;
+	
+	/**
+	 * The line of the connection (FeedArbiter.LINE_A or FeedArbiter.LINE_B)
+	 */
+	private final int line;
+	
+	/**
+	 * The channel registry
+	 */
+	private final ChannelRegistry channelRegistry;
+	
+	/**
+	 * The pending subscriptions, completed with the channel id
+	 */
+	private final Map<BitfinexStreamSymbol, CompletableFuture<Integer>> pendingSymbols;
+	
+	/**
+	 * The pending unsubscriptions, per channel id
+	 */
+	private final Map<Integer, CompletableFuture<Void>> pendingUnsubscriptions;
+	
+	/**
+	 * The subscriptions cancelled while pending, the channel is 
+	 * unsubscribed when the subscription is confirmed
+	 */
+	private final Map<BitfinexStreamSymbol, CompletableFuture<Void>> cancelledSymbols;
+	
+	/**
+	 * The consumer for the websocket messages
+	 */
+	private final Consumer<String> messageConsumer;
+	
+	/**
+	 * The websocket endpoint
+	 */
+	private volatile WebsocketClientEndpoint websocketEndpoint;
+	
+	/**
+	 * The optional pipeline for the channel frames
+	 */
+	private volatile FramePipeline framePipeline;
+	
+	/**
+	 * The optional standby connection with the same public channels
+	 */
+	private volatile ConnectionShard standby;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(ConnectionShard.class);
+
+	public ConnectionShard(final int id, final BiConsumer<ConnectionShard, String> messageHandler) {
+		this(id, FeedArbiter.LINE_A, messageHandler);
+	}
+	
+	public ConnectionShard(final int id, final int line, 
+			final BiConsumer<ConnectionShard, String> messageHandler) {
+		
+		this.id = id;
+		this.line = line;
+		this.channelRegistry = new ChannelRegistry();
+		this.pendingSymbols = new ConcurrentHashMap<>();
+		this.pendingUnsubscriptions = new ConcurrentHashMap<>();
+		this.cancelledSymbols = new ConcurrentHashMap<>();
+		this.messageConsumer = (m) -> messageHandler.accept(this, m);
+	}
+	
+	/**
+	 * Open the websocket, an existing websocket is reconnected
+	 * @param endpointURI
+	 * @throws DeploymentException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public synchronized void connect(final URI endpointURI) 
+			throws DeploymentException, IOException, InterruptedException {
+		
+		if(websocketEndpoint == null) {
+			websocketEndpoint = new WebsocketClientEndpoint(endpointURI);
+			websocketEndpoint.addConsumer(messageConsumer);
+		} else {
+			websocketEndpoint.close();
+			
+			// The channels of the old session are gone
+			pendingUnsubscriptions.keySet().forEach(this::completePendingUnsubscription);
+			cancelledSymbols.keySet().forEach(this::completeCancelledSymbol);
+		}
+		
+		websocketEndpoint.connect();
+	}
+	
+	/**
+	 * Close the websocket, the endpoint is kept for a reconnect
+	 */
+	public void disconnect() {
+		final WebsocketClientEndpoint endpoint = websocketEndpoint;
+		
+		if(endpoint != null) {
+			endpoint.close();
+		}
+	}
+	
+	/**
+	 * Close the websocket and the frame pipeline
+	 */
+	@Override
+	public synchronized void close() {
+		if(websocketEndpoint != null) {
+			websocketEndpoint.removeConsumer(messageConsumer);
+			websocketEndpoint.close();
+			websocketEndpoint = null;
+		}
+		
+		if(framePipeline != null) {
+			framePipeline.close();
+		}
+	}
+	
+	/**
+	 * Send a message to the server
+	 * @param message
+	 */
+	public void sendMessage(final String message) {
+		final WebsocketClientEndpoint endpoint = websocketEndpoint;
+		
+		if(endpoint == null) {
+			logger.error("Unable to send message, connection {} is not open", id);
+			return;
+		}
+		
+		endpoint.sendMessage(message);
+	}
+	
+	/**
+	 * Parse the channel frames of this connection in worker threads
+	 * @param workers
+	 * @param capacity
+	 * @param frameHandler
+	 */
+	public synchronized void enableFramePipeline(final int workers, final int capacity, 
+			final BiConsumer<ConnectionShard, String> frameHandler) {
+		
+		final FramePipeline pipeline = new FramePipeline(workers, capacity, 
+				(f) -> frameHandler.accept(this, f));
+		
+		pipeline.start();
+		framePipeline = pipeline;
+	}
+	
+	/**
+	 * Mark the subscription of the symbol as pending
+	 * @param symbol
+	 * @return the future of the subscription, an already pending future is reused
+	 */
+	public CompletableFuture<Integer> addPendingSymbol(final BitfinexStreamSymbol symbol) {
+		return pendingSymbols.computeIfAbsent(symbol, (s) -> new CompletableFuture<>());
+	}
+	
+	/**
+	 * The subscription of the symbol is confirmed
+	 * @param symbol
+	 * @param channelId
+	 */
+	public void completePendingSymbol(final BitfinexStreamSymbol symbol, final int channelId) {
+		final CompletableFuture<Integer> future = pendingSymbols.remove(symbol);
+		
+		if(future != null) {
+			future.complete(channelId);
+		}
+	}
+	
+	/**
+	 * The subscription of the symbol is rejected by the server
+	 * @param symbol
+	 * @param exception
+	 */
+	public void failPendingSymbol(final BitfinexStreamSymbol symbol, final Throwable exception) {
+		final CompletableFuture<Integer> future = pendingSymbols.remove(symbol);
+		
+		if(future != null) {
+			future.completeExceptionally(exception);
+		}
+	}
+	
+	/**
+	 * The subscription of the symbol is not confirmed in time, the future is 
+	 * failed and the symbol stays pending with a new future (e.g., for the 
+	 * next reconnect or a late confirmation)
+	 * @param symbol
+	 * @param exception
+	 */
+	public void expirePendingSymbol(final BitfinexStreamSymbol symbol, final Throwable exception) {
+		final CompletableFuture<Integer> future = pendingSymbols.get(symbol);
+		
+		if(future != null && pendingSymbols.replace(symbol, future, new CompletableFuture<>())) {
+			future.completeExceptionally(exception);
+		}
+	}
+	
+	/**
+	 * The subscription of the symbol is removed, the pending future is cancelled
+	 * @param symbol
+	 */
+	public void removePendingSymbol(final BitfinexStreamSymbol symbol) {
+		final CompletableFuture<Integer> future = pendingSymbols.remove(symbol);
+		
+		if(future != null) {
+			future.cancel(false);
+		}
+	}
+	
+	/**
+	 * Cancel the pending subscription of the symbol, the pending future is 
+	 * cancelled and the confirmed channel has to be unsubscribed
+	 * @param symbol
+	 * @return the future of the unsubscription
+	 */
+	public CompletableFuture<Void> cancelPendingSymbol(final BitfinexStreamSymbol symbol) {
+		removePendingSymbol(symbol);
+		return cancelledSymbols.computeIfAbsent(symbol, (s) -> new CompletableFuture<>());
+	}
+	
+	/**
+	 * Remove the cancelled subscription of the symbol
+	 * @param symbol
+	 * @return the future of the unsubscription or null
+	 */
+	public CompletableFuture<Void> removeCancelledSymbol(final BitfinexStreamSymbol symbol) {
+		return cancelledSymbols.remove(symbol);
+	}
+	
+	/**
+	 * The cancelled subscription of the symbol got no channel (e.g. it is 
+	 * rejected or the connection is reopened)
+	 * @param symbol
+	 */
+	public void completeCancelledSymbol(final BitfinexStreamSymbol symbol) {
+		final CompletableFuture<Void> future = cancelledSymbols.remove(symbol);
+		
+		if(future != null) {
+			future.complete(null);
+		}
+	}
+	
+	/**
+	 * Mark the unsubscription of the channel as pending
+	 * @param channelId
+	 * @return the future of the unsubscription
+	 */
+	public CompletableFuture<Void> addPendingUnsubscription(final int channelId) {
+		return pendingUnsubscriptions.computeIfAbsent(channelId, (c) -> new CompletableFuture<>());
+	}
+	
+	/**
+	 * The unsubscription of the channel is confirmed
+	 * @param channelId
+	 */
+	public void completePendingUnsubscription(final int channelId) {
+		final CompletableFuture<Void> future = pendingUnsubscriptions.remove(channelId);
+		
+		if(future != null) {
+			future.complete(null);
+		}
+	}
+	
+	/**
+	 * The unsubscription of the channel is rejected by the server
+	 * @param channelId
+	 * @param exception
+	 */
+	public void failPendingUnsubscription(final int channelId, final Throwable exception) {
+		final CompletableFuture<Void> future = pendingUnsubscriptions.remove(channelId);
+		
+		if(future != null) {
+			future.completeExceptionally(exception);
+		}
+	}
+	
+	/**
+	 * Get the symbols with a pending subscription
+	 * @return
+	 */
+	public Set<BitfinexStreamSymbol> getPendingSymbols() {
+		return new HashSet<>(pendingSymbols.keySet());
+	}
+	
+	/**
+	 * Is the subscription of the symbol pending
+	 * @param symbol
+	 * @return
+	 */
+	public boolean isPendingSymbol(final BitfinexStreamSymbol symbol) {
+		return pendingSymbols.containsKey(symbol);
+	}
+	
+	/**
+	 * Get the number of used channels (registered and pending)
+	 * @return
+	 */
+	public int getChannelCount() {
+		return channelRegistry.size() + pendingSymbols.size();
+	}
+	
+	/**
+	 * Is the websocket connected
+	 * @return
+	 */
+	public boolean isConnected() {
+		final WebsocketClientEndpoint endpoint = websocketEndpoint;
+		return endpoint != null && endpoint.isConnected();
+	}
+	
+	/**
+	 * Get the id of the connection
+	 * @return
+	 */
+	public int getId() {
+		return id;
+	}
+	
+	/**
+	 * Get the line of the connection
+	 * @return
+	 */
+	public int getLine() {
+		return line;
+	}
+	
+	/**
+	 * Is this the standby connection of a redundant pair
+	 * @return
+	 */
+	public boolean isStandby() {
+		return line == FeedArbiter.LINE_B;
+	}
+	
+	/**
+	 * Get the standby connection
+	 * @return the connection or null
+	 */
+	public ConnectionShard getStandby() {
+		return standby;
+	}
+	
+	/**
+	 * Set the standby connection
+	 * @param standby
+	 */
+	public void setStandby(final ConnectionShard standby) {
+		this.standby = standby;
+	}
+	
+	/**
+	 * Get the channel registry
+	 * @return
+	 */
+	public ChannelRegistry getChannelRegistry() {
+		return channelRegistry;
+	}
+	
+	/**
+	 * Get the websocket endpoint
+	 * @return
+	 */
+	public WebsocketClientEndpoint getWebsocketEndpoint() {
+		return websocketEndpoint;
+	}
+	
+	/**
+	 * Get the frame pipeline
+	 * @return the pipeline or null
+	 */
+	public FramePipeline getFramePipeline() {
+		return framePipeline;
+	}
+	
+	@Override
+	public String toString() {
+		return "ConnectionShard [id=" + id + ", line=" + line + ", channels=" + getChannelCount() + "]";
+	}
+}
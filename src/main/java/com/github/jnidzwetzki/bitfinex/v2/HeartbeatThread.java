@@ -17,7 +17,7 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2;
 
-import java.util.Set;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.bboxdb.commons.concurrent.ExceptionSafeRunnable;
@@ -26,16 +26,11 @@ import org.slf4j.LoggerFactory;
 
 import com.github.jnidzwetzki.bitfinex.v2.commands.PingCommand;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
-import com.github.jnidzwetzki.bitfinex.v2.manager.QuoteManager;
 import com.github.jnidzwetzki.bitfinex.v2.util.EventsInTimeslotManager;
+import com.github.jnidzwetzki.bitfinex.v2.util.TimerWheel;
 
 public class HeartbeatThread extends ExceptionSafeRunnable {
 
-	/**
-	 * The ticker timeout
-	 */
-	private static final long TICKER_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
-	
 	/**
 	 * The API timeout
 	 */
@@ -93,21 +88,18 @@ public class HeartbeatThread extends ExceptionSafeRunnable {
 					continue;
 				}
 					
-				if(! websocketEndpoint.isConnected()) {
+				if(! websocketEndpoint.isConnected() && ! isStandbyConnected()) {
 					logger.error("We are not connected, reconnecting");
 					executeReconnect();
 					continue;
 				}
 				
+				checkConnections();
+				
 				sendHeartbeatIfNeeded();
 
-				final boolean tickerUpToDate = checkTickerFreshness();
-				
-				if(! tickerUpToDate) {
-					logger.error("Ticker are outdated, reconnecting");
-					executeReconnect();
-					continue;
-				}
+				// Outdated channels are resubscribed by the expiry handler
+				advanceChannelTimeouts();
 				
 				final boolean reconnectNeeded = checkConnectionTimeout();
 				
@@ -125,30 +117,62 @@ public class HeartbeatThread extends ExceptionSafeRunnable {
 	}
 
 	/**
-	 * Are all ticker uptodate
+	 * Is the standby connection of the primary connection connected
 	 * @return
 	 */
-	private boolean checkTickerFreshness() {
+	private boolean isStandbyConnected() {
+		final ConnectionShard primary = bitfinexApiBroker.getPrimaryConnection();
 		
-		final long currentTime = System.currentTimeMillis();
-		final QuoteManager tickerManager = bitfinexApiBroker.getQuoteManager();
-		final Set<BitfinexStreamSymbol> activeSymbols = tickerManager.getActiveSymbols();
+		if(primary == null || primary.getStandby() == null) {
+			return false;
+		}
 		
-		for(final BitfinexStreamSymbol symbol : activeSymbols) {
-			final long lastHeatbeat = tickerManager.getHeartbeatForSymbol(symbol);
+		return primary.getStandby().isConnected();
+	}
+	
+	/**
+	 * Reopen every failed connection (shards and standby connections). The 
+	 * global heartbeat is updated by all connections, so a failed shard is 
+	 * not detected by the heartbeat timeout. The data of a redundant pair 
+	 * is delivered by the other connection in the meantime.
+	 * @throws InterruptedException 
+	 */
+	private void checkConnections() throws InterruptedException {
+		for(final ConnectionShard connection : bitfinexApiBroker.getConnections()) {
+			checkConnection(connection);
 			
-			if(lastHeatbeat == -1) {
-				continue;
-			}
-						
-			if(lastHeatbeat + TICKER_TIMEOUT < currentTime) {
-				logger.error("Last update for symbol {} is {} current time is {}, the data is outdated",
-						symbol, lastHeatbeat, currentTime);
-				return false;
+			if(connection.getStandby() != null) {
+				checkConnection(connection.getStandby());
 			}
 		}
+	}
+	
+	/**
+	 * Reopen the connection if it has failed
+	 * @param connection
+	 * @throws InterruptedException
+	 */
+	private void checkConnection(final ConnectionShard connection) throws InterruptedException {
+		if(connection.isConnected()) {
+			return;
+		}
+		
+		logger.error("Connection {} failed, reconnecting", connection);
+		
+		waitForReconnectTimeslot();
+		bitfinexApiBroker.reconnectConnection(connection);
+	}
+
+	/**
+	 * Advance the channel timeout wheels of the lines, only the due slots are processed
+	 */
+	private void advanceChannelTimeouts() {
+		final List<TimerWheel<BitfinexStreamSymbol>> channelTimeouts = bitfinexApiBroker.getChannelTimeouts();
 		
-		return true;
+		if(channelTimeouts != null) {
+			final long now = System.currentTimeMillis();
+			channelTimeouts.forEach((t) -> t.advance(now));
+		}
 	}
 
 	/**
@@ -186,14 +210,21 @@ public class HeartbeatThread extends ExceptionSafeRunnable {
 		// Close connection
 		bitfinexApiBroker.getWebsocketEndpoint().close();
 		
-		// Store the reconnect time to prevent to much
-		// reconnects in a short timeframe. Otherwise the
-		// rate limit will apply and the reconnects are not successfully
+		waitForReconnectTimeslot();
+
+		bitfinexApiBroker.reconnect();
+	}
+	
+	/**
+	 * Store the reconnect time to prevent to much reconnects in a short 
+	 * timeframe. Otherwise the rate limit will apply and the reconnects 
+	 * are not successfully
+	 * @throws InterruptedException
+	 */
+	private void waitForReconnectTimeslot() throws InterruptedException {
 		logger.info("Wait for next reconnect timeslot");
 		eventsInTimeslotManager.recordNewEvent();
 		eventsInTimeslotManager.waitForNewTimeslot();
 		logger.info("Wait for next reconnect timeslot DONE");
-
-		bitfinexApiBroker.reconnect();
 	}
 }
\ No newline at end of file
@@ -23,8 +23,9 @@ import org.slf4j.LoggerFactory;
 
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.util.JSONFrameReader;
 
-public class HeartbeatHandler implements APICallbackHandler {
+public class HeartbeatHandler implements APICallbackHandler, StreamingAPICallbackHandler {
 	
 	/**
 	 * The Logger
@@ -38,5 +39,13 @@ public class HeartbeatHandler implements APICallbackHandler {
 		logger.debug("Got connection heartbeat");
 		bitfinexApiBroker.updateConnectionHeartbeat();
 	}
+	
+	@Override
+	public void handleChannelFrame(final BitfinexApiBroker bitfinexApiBroker, 
+			final JSONFrameReader reader) throws APIException {
+		
+		logger.debug("Got connection heartbeat");
+		bitfinexApiBroker.updateConnectionHeartbeat();
+	}
 
 }
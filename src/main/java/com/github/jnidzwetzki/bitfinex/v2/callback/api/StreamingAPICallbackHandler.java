@@ -0,0 +1,35 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.callback.api;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.util.JSONFrameReader;
+
+public interface StreamingAPICallbackHandler {
+	
+	/**
+	 * Handle data for the channel, the reader is positioned behind the subchannel name
+	 * @param bitfinexApiBroker
+	 * @param reader
+	 * @throws APIException 
+	 */
+	public void handleChannelFrame(final BitfinexApiBroker bitfinexApiBroker, final JSONFrameReader reader) 
+			throws APIException;
+
+}
@@ -84,6 +84,8 @@ public class WalletHandler implements APICallbackHandler {
 			walletTable.put(walletType, currency, wallet);
 			walletTable.notifyAll();
 		}
+		
+		walletManager.notifyCallbacks(wallet);
 	}
 
 }
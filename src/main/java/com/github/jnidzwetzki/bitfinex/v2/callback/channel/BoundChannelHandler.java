@@ -0,0 +1,84 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.callback.channel;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.JSONFrameReader;
+
+/**
+ * A channel handler that is bound to the symbol of a channel
+ */
+public final class BoundChannelHandler {
+
+	/**
+	 * The symbol of the channel
+	 */
+	private final BitfinexStreamSymbol symbol;
+	
+	/**
+	 * The handler for the channel data
+	 */
+	private final StreamingChannelCallbackHandler handler;
+
+	public BoundChannelHandler(final BitfinexStreamSymbol symbol, 
+			final StreamingChannelCallbackHandler handler) {
+		
+		this.symbol = symbol;
+		this.handler = handler;
+	}
+	
+	/**
+	 * Handle the data of the channel
+	 * @param bitfinexApiBroker
+	 * @param reader
+	 * @throws APIException
+	 */
+	public void handleChannelFrame(final BitfinexApiBroker bitfinexApiBroker, 
+			final JSONFrameReader reader) throws APIException {
+		
+		if(handler == null) {
+			throw new APIException("Unknown stream type: " + symbol);
+		}
+		
+		handler.handleChannelFrame(bitfinexApiBroker, symbol, reader);
+	}
+	
+	/**
+	 * Get the symbol
+	 * @return
+	 */
+	public BitfinexStreamSymbol getSymbol() {
+		return symbol;
+	}
+	
+	/**
+	 * Get the handler
+	 * @return
+	 */
+	public StreamingChannelCallbackHandler getHandler() {
+		return handler;
+	}
+
+	@Override
+	public String toString() {
+		return "BoundChannelHandler [symbol=" + symbol + ", handler=" + handler + "]";
+	}
+	
+}
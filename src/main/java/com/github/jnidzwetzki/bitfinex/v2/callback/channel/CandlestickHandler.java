@@ -22,14 +22,17 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexTick;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexCandlestickSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.JSONFrameReader;
 
-public class CandlestickHandler implements ChannelCallbackHandler {
+public class CandlestickHandler implements ChannelCallbackHandler, StreamingChannelCallbackHandler {
 
 	/**
 	 * Handle a candlestick callback
@@ -76,4 +79,74 @@ public class CandlestickHandler implements ChannelCallbackHandler {
 		final BitfinexTick tick = new BitfinexTick(timestamp, open, close, high, low, volume);
 		ticksBuffer.add(tick);
 	}
+	
+	/**
+	 * Handle a candlestick callback
+	 * @param channel
+	 * @param reader
+	 */
+	@Override
+	public void handleChannelFrame(final BitfinexApiBroker bitfinexApiBroker, 
+			final BitfinexStreamSymbol channelSymbol, final JSONFrameReader reader) throws APIException {
+
+		final BitfinexCandlestickSymbol candlestickSymbol = (BitfinexCandlestickSymbol) channelSymbol;
+		final boolean fixedPoint = bitfinexApiBroker.isFixedPointEnabled();
+		final List<BitfinexTick> ticksBuffer = new ArrayList<>();
+		
+		try {
+			reader.beginArray();
+			
+			// Snapshots contain multiple Bars, Updates only one
+			if(reader.peek() == JSONFrameReader.Token.BEGIN_ARRAY) {
+				while(reader.hasNext()) {
+					reader.beginArray();
+					parseCandlestick(ticksBuffer, reader, fixedPoint, candlestickSymbol.getSymbol());
+					reader.endArray();
+				}
+			} else if(reader.hasNext()) {
+				parseCandlestick(ticksBuffer, reader, fixedPoint, candlestickSymbol.getSymbol());
+			}
+			
+			reader.endArray();
+		} catch (JSONException | ArithmeticException e) {
+			throw new APIException(e);
+		}
+		
+		// Use natural ordering
+		ticksBuffer.sort(null);
+		
+		bitfinexApiBroker.getQuoteManager().handleCandlestickList(candlestickSymbol, ticksBuffer);
+	}
+
+	/**
+	 * Parse a candlestick from the frame reader
+	 */
+	private void parseCandlestick(final List<BitfinexTick> ticksBuffer, final JSONFrameReader reader, 
+			final boolean fixedPoint, final BitfinexCurrencyPair currencyPair) {
+		
+		// 0 = Timestamp, 1 = Open, 2 = Close, 3 = High, 4 = Low,  5 = Volume
+		final long timestamp = reader.nextLong();
+		
+		if(fixedPoint) {
+			final int priceScale = currencyPair.getPriceScale();
+			final int amountScale = currencyPair.getAmountScale();
+			final long open = reader.nextScaledLong(priceScale);
+			final long close = reader.nextScaledLong(priceScale);
+			final long high = reader.nextScaledLong(priceScale);
+			final long low = reader.nextScaledLong(priceScale);
+			final long volume = reader.nextScaledLong(amountScale);
+			
+			ticksBuffer.add(new BitfinexTick(timestamp, open, close, high, low, volume, priceScale, amountScale));
+			return;
+		}
+		
+		final BigDecimal open = reader.nextBigDecimal();
+		final BigDecimal close = reader.nextBigDecimal();
+		final BigDecimal high = reader.nextBigDecimal();
+		final BigDecimal low = reader.nextBigDecimal();
+		final BigDecimal volume = reader.nextBigDecimal();
+		
+		final BitfinexTick tick = new BitfinexTick(timestamp, open, close, high, low, volume);
+		ticksBuffer.add(tick);
+	}
 }
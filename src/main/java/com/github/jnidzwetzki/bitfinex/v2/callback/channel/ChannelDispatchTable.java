@@ -0,0 +1,207 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.callback.channel;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A table with the bound handlers of the channels, keyed by the primitive
+ * channel id.
+ *
+ * The table is an open addressing hash table with linear probing, so the
+ * lookup neither boxes the channel id nor requires a lock. Registrations
+ * are rare, so the table is rebuilt on every modification and published
+ * by a volatile write.
+ */
+public class ChannelDispatchTable {
+
+	/**
+	 * The initial capacity of the table
+	 */
+	private final static int INITIAL_CAPACITY = 64;
+
+	/**
+	 * The current table
+	 */
+	private volatile Table table;
+
+	public ChannelDispatchTable() {
+		this.table = new Table(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Get the handler for the channel
+	 * @param channel
+	 * @return the handler or null
+	 */
+	public BoundChannelHandler get(final int channel) {
+		final Table currentTable = table;
+		final int mask = currentTable.channels.length - 1;
+		int pos = hash(channel) & mask;
+
+		// The load factor is at most 0.5, so the probing always reaches an empty slot
+		while(currentTable.handlers[pos] != null) {
+			if(currentTable.channels[pos] == channel) {
+				return currentTable.handlers[pos];
+			}
+
+			pos = (pos + 1) & mask;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Register a handler for the channel
+	 * @param channel
+	 * @param handler
+	 */
+	public synchronized void register(final int channel, final BoundChannelHandler handler) {
+
+		if(channel < 0) {
+			throw new IllegalArgumentException("Invalid channel: " + channel);
+		}
+
+		final Table currentTable = table;
+		final int newSize = currentTable.size + (get(channel) == null ? 1 : 0);
+		final Table newTable = copy(currentTable, channel, capacityFor(newSize));
+		newTable.insert(channel, handler);
+		table = newTable;
+	}
+
+	/**
+	 * Remove the handler of the channel
+	 * @param channel
+	 * @return the removed handler or null
+	 */
+	public synchronized BoundChannelHandler remove(final int channel) {
+		final BoundChannelHandler removedHandler = get(channel);
+
+		if(removedHandler == null) {
+			return null;
+		}
+
+		final Table currentTable = table;
+		table = copy(currentTable, channel, currentTable.channels.length);
+
+		return removedHandler;
+	}
+
+	/**
+	 * Remove all handlers
+	 */
+	public synchronized void clear() {
+		table = new Table(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Get a snapshot of the registered handlers
+	 * @return
+	 */
+	public Map<Integer, BoundChannelHandler> getHandlers() {
+		final Table currentTable = table;
+		final Map<Integer, BoundChannelHandler> result = new HashMap<>();
+
+		for(int pos = 0; pos < currentTable.channels.length; pos++) {
+			if(currentTable.handlers[pos] != null) {
+				result.put(currentTable.channels[pos], currentTable.handlers[pos]);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Get the number of registered handlers
+	 * @return
+	 */
+	public int size() {
+		return table.size;
+	}
+
+	/**
+	 * Copy the table without the given channel
+	 * @param oldTable
+	 * @param skipChannel
+	 * @param capacity
+	 * @return
+	 */
+	private static Table copy(final Table oldTable, final int skipChannel, final int capacity) {
+		final Table newTable = new Table(capacity);
+
+		for(int pos = 0; pos < oldTable.channels.length; pos++) {
+			if(oldTable.handlers[pos] != null && oldTable.channels[pos] != skipChannel) {
+				newTable.insert(oldTable.channels[pos], oldTable.handlers[pos]);
+			}
+		}
+
+		return newTable;
+	}
+
+	/**
+	 * Get the capacity for the number of handlers (load factor 0.5)
+	 * @param size
+	 * @return
+	 */
+	private static int capacityFor(final int size) {
+		return Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, size * 2 - 1)) << 1);
+	}
+
+	/**
+	 * Hash the channel (fibonacci hashing)
+	 * @param channel
+	 * @return
+	 */
+	private static int hash(final int channel) {
+		final int hash = channel * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * The table of the dispatcher. A published table is never modified.
+	 */
+	private final static class Table {
+		private final int[] channels;
+		private final BoundChannelHandler[] handlers;
+		private int size;
+
+		public Table(final int capacity) {
+			this.channels = new int[capacity];
+			this.handlers = new BoundChannelHandler[capacity];
+		}
+
+		/**
+		 * Insert the handler, only called before the table is published
+		 * @param channel
+		 * @param handler
+		 */
+		private void insert(final int channel, final BoundChannelHandler handler) {
+			final int mask = channels.length - 1;
+			int pos = hash(channel) & mask;
+
+			while(handlers[pos] != null) {
+				pos = (pos + 1) & mask;
+			}
+
+			channels[pos] = channel;
+			handlers[pos] = handler;
+			size++;
+		}
+	}
+}
@@ -18,17 +18,21 @@
 package com.github.jnidzwetzki.bitfinex.v2.callback.channel;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ExecutedTrade;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexExecutedTradeSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.JSONFrameReader;
 
-public class ExecutedTradeHandler implements ChannelCallbackHandler {
+public class ExecutedTradeHandler implements ChannelCallbackHandler, StreamingChannelCallbackHandler {
 
 	@Override
 	public void handleChannelData(final BitfinexApiBroker bitfinexApiBroker, 
@@ -39,12 +43,17 @@ public class ExecutedTradeHandler implements ChannelCallbackHandler {
 		try {
 			// Snapshots contain multiple executes entries, updates only one
 			if(jsonArray.get(0) instanceof JSONArray) {
+				final List<ExecutedTrade> executedTrades = new ArrayList<>(jsonArray.length());
+				
 				for (int pos = 0; pos < jsonArray.length(); pos++) {
 					final JSONArray parts = jsonArray.getJSONArray(pos);	
-					handleEntry(bitfinexApiBroker, configuration, parts);
+					executedTrades.add(parseEntry(parts));
 				}
+				
+				bitfinexApiBroker.getQuoteManager().handleExecutedTradeList(configuration, executedTrades);
 			} else {
-				handleEntry(bitfinexApiBroker, configuration, jsonArray);
+				final ExecutedTrade executedTrade = parseEntry(jsonArray);
+				bitfinexApiBroker.getQuoteManager().handleExecutedTradeEntry(configuration, executedTrade);
 			}
 			
 		} catch (JSONException e) {
@@ -53,14 +62,11 @@ public class ExecutedTradeHandler implements ChannelCallbackHandler {
 	}
 
 	/**
-	 * Handle a new executed trade entry
-	 * @param bitfinexApiBroker
-	 * @param symbol
+	 * Parse a executed trade entry
 	 * @param jsonArray
+	 * @return
 	 */
-	private void handleEntry(final BitfinexApiBroker bitfinexApiBroker, 
-			final BitfinexExecutedTradeSymbol symbol,
-			final JSONArray jsonArray) {
+	private ExecutedTrade parseEntry(final JSONArray jsonArray) {
 		
 		final ExecutedTrade executedTrade = new ExecutedTrade();
 		
@@ -85,6 +91,95 @@ public class ExecutedTradeHandler implements ChannelCallbackHandler {
 			executedTrade.setPrice(price);
 		}
 				
-		bitfinexApiBroker.getQuoteManager().handleExecutedTradeEntry(symbol, executedTrade);
+		return executedTrade;
+	}
+	
+	@Override
+	public void handleChannelFrame(final BitfinexApiBroker bitfinexApiBroker, 
+			final BitfinexStreamSymbol channelSymbol, final JSONFrameReader reader) throws APIException {
+		
+		final BitfinexExecutedTradeSymbol configuration = (BitfinexExecutedTradeSymbol) channelSymbol;
+		
+		try {
+			reader.beginArray();
+			
+			// Snapshots contain multiple executes entries, updates only one
+			if(reader.peek() == JSONFrameReader.Token.BEGIN_ARRAY) {
+				final List<ExecutedTrade> executedTrades = new ArrayList<>();
+				
+				while(reader.hasNext()) {
+					reader.beginArray();
+					executedTrades.add(parseEntry(bitfinexApiBroker, configuration, reader));
+					reader.endArray();
+				}
+				
+				bitfinexApiBroker.getQuoteManager().handleExecutedTradeList(configuration, executedTrades);
+			} else if(reader.hasNext()) {
+				final ExecutedTrade executedTrade = parseEntry(bitfinexApiBroker, configuration, reader);
+				bitfinexApiBroker.getQuoteManager().handleExecutedTradeEntry(configuration, executedTrade);
+			}
+			
+			reader.endArray();
+		} catch (JSONException | ArithmeticException e) {
+			throw new APIException(e);
+		} 
+	}
+	
+	/**
+	 * Parse a executed trade entry
+	 * @param bitfinexApiBroker
+	 * @param symbol
+	 * @param reader
+	 * @return
+	 */
+	private ExecutedTrade parseEntry(final BitfinexApiBroker bitfinexApiBroker, 
+			final BitfinexExecutedTradeSymbol symbol,
+			final JSONFrameReader reader) {
+		
+		final ExecutedTrade executedTrade = new ExecutedTrade();
+		
+		final long id = reader.nextLong();
+		executedTrade.setId(id);
+		
+		final long timestamp = reader.nextLong();
+		executedTrade.setTimestamp(timestamp);
+		
+		if(bitfinexApiBroker.isFixedPointEnabled()) {
+			final BitfinexCurrencyPair currencyPair = symbol.getBitfinexCurrencyPair();
+			final int priceScale = currencyPair.getPriceScale();
+			
+			final long amount = reader.nextScaledLong(currencyPair.getAmountScale());
+			executedTrade.setAmount(amount, currencyPair.getAmountScale());
+			
+			final long priceOrRate = reader.nextScaledLong(priceScale);
+			
+			// Funding or Currency
+			if(reader.hasNext()) {
+				executedTrade.setRate(priceOrRate, priceScale);
+				
+				final int period = reader.nextInt();
+				executedTrade.setPeriod(period);
+			} else {
+				executedTrade.setPrice(priceOrRate, priceScale);
+			}
+		} else {
+			final BigDecimal amount = reader.nextBigDecimal();
+			executedTrade.setAmount(amount);
+			
+			final BigDecimal priceOrRate = reader.nextBigDecimal();
+			
+			// Funding or Currency
+			if(reader.hasNext()) {
+				executedTrade.setRate(priceOrRate);
+				
+				final int period = reader.nextInt();
+				executedTrade.setPeriod(period);
+			} else {
+				executedTrade.setPrice(priceOrRate);
+			}
+		}
+				
+		return executedTrade;
 	}
+
 }
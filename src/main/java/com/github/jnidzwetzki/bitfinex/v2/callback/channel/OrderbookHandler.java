@@ -18,17 +18,21 @@
 package com.github.jnidzwetzki.bitfinex.v2.callback.channel;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
 import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
 import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookEntry;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.JSONFrameReader;
 
-public class OrderbookHandler implements ChannelCallbackHandler {
+public class OrderbookHandler implements ChannelCallbackHandler, StreamingChannelCallbackHandler {
 
 	@Override
 	public void handleChannelData(final BitfinexApiBroker bitfinexApiBroker, 
@@ -40,12 +44,17 @@ public class OrderbookHandler implements ChannelCallbackHandler {
 		try {
 			// Snapshots contain multiple Orderbook entries, updates only one
 			if(jsonArray.get(0) instanceof JSONArray) {
+				final List<OrderbookEntry> entries = new ArrayList<>(jsonArray.length());
+				
 				for (int pos = 0; pos < jsonArray.length(); pos++) {
 					final JSONArray parts = jsonArray.getJSONArray(pos);	
-					handleEntry(bitfinexApiBroker, configuration, parts);
+					entries.add(parseEntry(parts));
 				}
+				
+				bitfinexApiBroker.getOrderbookManager().handleOrderbookSnapshot(configuration, entries);
 			} else {
-				handleEntry(bitfinexApiBroker, configuration, jsonArray);
+				final OrderbookEntry orderbookEntry = parseEntry(jsonArray);
+				bitfinexApiBroker.getOrderbookManager().handleNewOrderbookEntry(configuration, orderbookEntry);
 			}
 			
 		} catch (JSONException e) {
@@ -54,22 +63,78 @@ public class OrderbookHandler implements ChannelCallbackHandler {
 	}
 
 	/**
-	 * Handle a new orderbook entry
-	 * @param bitfinexApiBroker
-	 * @param configuration
+	 * Parse a orderbook entry
 	 * @param jsonArray
+	 * @return
 	 */
-	private void handleEntry(final BitfinexApiBroker bitfinexApiBroker, 
-			final OrderbookConfiguration configuration,
-			final JSONArray jsonArray) {
+	private OrderbookEntry parseEntry(final JSONArray jsonArray) {
 		
 		final BigDecimal price = jsonArray.getBigDecimal(0);
 		final BigDecimal count = jsonArray.getBigDecimal(1);
 		final BigDecimal amount = jsonArray.getBigDecimal(2);
 		
-		final OrderbookEntry orderbookEntry = new OrderbookEntry(price, count, amount);
+		return new OrderbookEntry(price, count, amount);
+	}
+	
+	@Override
+	public void handleChannelFrame(final BitfinexApiBroker bitfinexApiBroker, 
+			final BitfinexStreamSymbol channelSymbol, final JSONFrameReader reader) throws APIException {
+		
+		final OrderbookConfiguration configuration = (OrderbookConfiguration) channelSymbol;
+		final boolean fixedPoint = bitfinexApiBroker.isFixedPointEnabled();
+		
+		try {
+			reader.beginArray();
+			
+			// Snapshots contain multiple Orderbook entries, updates only one
+			if(reader.peek() == JSONFrameReader.Token.BEGIN_ARRAY) {
+				final List<OrderbookEntry> entries = new ArrayList<>();
+				
+				while(reader.hasNext()) {
+					reader.beginArray();
+					entries.add(parseEntry(configuration, reader, fixedPoint));
+					reader.endArray();
+				}
+				
+				reader.endArray();
+				bitfinexApiBroker.getOrderbookManager().handleOrderbookSnapshot(configuration, entries);
+			} else if(reader.hasNext()) {
+				final OrderbookEntry orderbookEntry = parseEntry(configuration, reader, fixedPoint);
+				reader.endArray();
+				bitfinexApiBroker.getOrderbookManager().handleNewOrderbookEntry(configuration, orderbookEntry);
+			} else {
+				reader.endArray();
+			}
+		} catch (JSONException | ArithmeticException e) {
+			throw new APIException(e);
+		} 
+	}
+	
+	/**
+	 * Parse a orderbook entry
+	 * @param configuration
+	 * @param reader
+	 * @param fixedPoint
+	 * @return
+	 */
+	private OrderbookEntry parseEntry(final OrderbookConfiguration configuration,
+			final JSONFrameReader reader, final boolean fixedPoint) {
+		
+		if(fixedPoint) {
+			final BitfinexCurrencyPair currencyPair = configuration.getCurrencyPair();
+			final long price = reader.nextScaledLong(currencyPair.getPriceScale());
+			final long count = reader.nextLong();
+			final long amount = reader.nextScaledLong(currencyPair.getAmountScale());
+			
+			return new OrderbookEntry(price, count, amount, 
+					currencyPair.getPriceScale(), currencyPair.getAmountScale());
+		} 
+		
+		final BigDecimal price = reader.nextBigDecimal();
+		final BigDecimal count = reader.nextBigDecimal();
+		final BigDecimal amount = reader.nextBigDecimal();
 		
-		bitfinexApiBroker.getOrderbookManager().handleNewOrderbookEntry(configuration, orderbookEntry);
+		return new OrderbookEntry(price, count, amount);
 	}
 
 }
@@ -20,14 +20,17 @@ package com.github.jnidzwetzki.bitfinex.v2.callback.channel;
 import java.math.BigDecimal;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexTick;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.JSONFrameReader;
 
-public class TickHandler implements ChannelCallbackHandler {
+public class TickHandler implements ChannelCallbackHandler, StreamingChannelCallbackHandler {
 
 	/**
 	 * Handle a tick callback
@@ -51,4 +54,47 @@ public class TickHandler implements ChannelCallbackHandler {
 		
 		bitfinexApiBroker.getQuoteManager().handleNewTick(currencyPair, tick);
 	}
+	
+	/**
+	 * Handle a tick callback
+	 * @param channel
+	 * @param reader
+	 */
+	@Override
+	public void handleChannelFrame(final BitfinexApiBroker bitfinexApiBroker, 
+			final BitfinexStreamSymbol channelSymbol, final JSONFrameReader reader) throws APIException {
+
+		final BitfinexTickerSymbol currencyPair = (BitfinexTickerSymbol) channelSymbol;
+		
+		try {
+			reader.beginArray();
+			
+			// 0 = BID
+			// 2 = ASK
+			// 6 = Price
+			reader.skipValues(6);
+			
+			final BitfinexTick tick;
+			
+			// Volume is set to 0, because the ticker contains only the daily volume
+			if(bitfinexApiBroker.isFixedPointEnabled()) {
+				final BitfinexCurrencyPair bitfinexCurrencyPair = currencyPair.getBitfinexCurrencyPair();
+				final long price = reader.nextScaledLong(bitfinexCurrencyPair.getPriceScale());
+				
+				tick = new BitfinexTick(System.currentTimeMillis(), price, price, price, price, 
+						bitfinexCurrencyPair.getPriceScale(), bitfinexCurrencyPair.getAmountScale());
+			} else {
+				final BigDecimal price = reader.nextBigDecimal();
+				
+				tick = new BitfinexTick(System.currentTimeMillis(), price, price, price, price);
+			}
+			
+			reader.skipRemaining();
+			reader.endArray();
+			
+			bitfinexApiBroker.getQuoteManager().handleNewTick(currencyPair, tick);
+		} catch (JSONException | ArithmeticException e) {
+			throw new APIException(e);
+		}
+	}
 }
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.callback.command;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+
+public class ErrorCallback implements CommandCallbackHandler {
+
+	/**
+	 * The Logger
+	 */
+	final static Logger logger = LoggerFactory.getLogger(ErrorCallback.class);
+	
+	@Override
+	public void handleChannelData(final BitfinexApiBroker bitfinexApiBroker, 
+			final JSONObject jsonObject) throws APIException {
+		
+		logger.error("Got error event {}", jsonObject);
+		
+		final String message = jsonObject.optString("msg", "unknown error") 
+				+ " (code " + jsonObject.optInt("code", -1) + ")";
+		
+		// Unsubscribe error
+		if(jsonObject.has("chanId")) {
+			final int channelId = jsonObject.getInt("chanId");
+			bitfinexApiBroker.failUnsubscription(channelId, new APIException(message));
+			return;
+		}
+		
+		// Subscribe error, the event contains the fields of the subscription
+		if(jsonObject.has("channel")) {
+			try {
+				final BitfinexStreamSymbol symbol = SubscribedCallback.parseSymbol(jsonObject);
+				
+				if(symbol != null) {
+					bitfinexApiBroker.failSubscription(symbol, new APIException(message));
+				}
+			} catch (JSONException e) {
+				logger.error("Unable to determine the symbol of the error event", e);
+			}
+		}
+	}
+}
@@ -27,6 +27,7 @@ import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
 import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookConfiguration;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexCandlestickSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexExecutedTradeSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
 
 public class SubscribedCallback implements CommandCallbackHandler {
@@ -40,95 +41,54 @@ public class SubscribedCallback implements CommandCallbackHandler {
 	public void handleChannelData(final BitfinexApiBroker bitfinexApiBroker, 
 			final JSONObject jsonObject) throws APIException {
 		
-		final String channel = jsonObject.getString("channel");
 		final int channelId = jsonObject.getInt("chanId");
+		final BitfinexStreamSymbol symbol = parseSymbol(jsonObject);
+		
+		if(symbol == null) {
+			logger.error("Unknown subscribed callback {}", jsonObject.toString());
+			return;
+		}
+		
+		logger.info("Registering {} on channel {}", symbol, channelId);
+		bitfinexApiBroker.addToChannelSymbolMap(channelId, symbol);
+	}
+	
+	/**
+	 * Parse the symbol of a subscribed event (or of the error event of a subscription)
+	 * 
+	 * @param jsonObject
+	 * @return the symbol or null
+	 */
+	public static BitfinexStreamSymbol parseSymbol(final JSONObject jsonObject) {
+		
+		final String channel = jsonObject.getString("channel");
 
 		switch(channel) {
 		case "ticker":
-			handleTickerCallback(bitfinexApiBroker, jsonObject, channelId);
-			break;
+			return BitfinexTickerSymbol.fromBitfinexString(jsonObject.getString("symbol"));
 		case "trades":
-			handleTradesCallback(bitfinexApiBroker, jsonObject, channelId);
-			break;
+			return BitfinexExecutedTradeSymbol.fromBitfinexString(jsonObject.getString("symbol"));
 		case "candles":
-			handleCandlesCallback(bitfinexApiBroker, jsonObject, channelId);
-			break;
+			return BitfinexCandlestickSymbol.fromBitfinexString(jsonObject.getString("key"));
 		case "book":
-			handleBookCallback(bitfinexApiBroker, jsonObject, channelId);
-			break;
+			return parseBookSymbol(jsonObject);
 		default:
-			logger.error("Unknown subscribed callback {}", jsonObject.toString());
+			return null;
 		}
 	}
 
 	/**
-	 * Handle the book callback
+	 * Parse the symbol of a book
 	 * 
-	 * @param bitfinexApiBroker
 	 * @param jsonObject
-	 * @param channelId
+	 * @return
 	 */
-	private void handleBookCallback(final BitfinexApiBroker bitfinexApiBroker, final JSONObject jsonObject,
-			final int channelId) {
+	private static BitfinexStreamSymbol parseBookSymbol(final JSONObject jsonObject) {
 		
 		if("R0".equals(jsonObject.getString("prec"))) {
-			final RawOrderbookConfiguration configuration 
-				= RawOrderbookConfiguration.fromJSON(jsonObject);
-			logger.info("Registering raw book {} on channel {}", jsonObject, channelId);
-			bitfinexApiBroker.addToChannelSymbolMap(channelId, configuration);
+			return RawOrderbookConfiguration.fromJSON(jsonObject);
 		} else {
-			final OrderbookConfiguration configuration 
-				= OrderbookConfiguration.fromJSON(jsonObject);
-			logger.info("Registering book {} on channel {}", jsonObject, channelId);
-			bitfinexApiBroker.addToChannelSymbolMap(channelId, configuration);
+			return OrderbookConfiguration.fromJSON(jsonObject);
 		}
 	}
-
-	/**
-	 * Handle the candles callback
-	 * 
-	 * @param bitfinexApiBroker
-	 * @param jsonObject
-	 * @param channelId
-	 */
-	private void handleCandlesCallback(final BitfinexApiBroker bitfinexApiBroker, final JSONObject jsonObject,
-			final int channelId) {
-		
-		final String key = jsonObject.getString("key");
-		logger.info("Registering key {} on channel {}", key, channelId);
-		final BitfinexCandlestickSymbol candleStickSymbol = BitfinexCandlestickSymbol.fromBitfinexString(key);
-		bitfinexApiBroker.addToChannelSymbolMap(channelId, candleStickSymbol);
-	}
-
-	/**
-	 * Handle the trades callback
-	 * 
-	 * @param bitfinexApiBroker
-	 * @param jsonObject
-	 * @param channelId
-	 */
-	private void handleTradesCallback(final BitfinexApiBroker bitfinexApiBroker, final JSONObject jsonObject,
-			final int channelId) {
-		
-		final String symbol2 = jsonObject.getString("symbol");
-		final BitfinexExecutedTradeSymbol currencyPair = BitfinexExecutedTradeSymbol.fromBitfinexString(symbol2);
-		logger.info("Registering symbol {} on channel {}", currencyPair, channelId);
-		bitfinexApiBroker.addToChannelSymbolMap(channelId, currencyPair);
-	}
-
-	/**
-	 * Handle the ticker callback 
-	 * 
-	 * @param bitfinexApiBroker
-	 * @param jsonObject
-	 * @param channelId
-	 */
-	private void handleTickerCallback(final BitfinexApiBroker bitfinexApiBroker, final JSONObject jsonObject,
-			final int channelId) {
-		
-		final String symbol = jsonObject.getString("symbol");
-		final BitfinexTickerSymbol tickerSymbol = BitfinexTickerSymbol.fromBitfinexString(symbol);
-		logger.info("Registering symbol {} on channel {}", tickerSymbol, channelId);
-		bitfinexApiBroker.addToChannelSymbolMap(channelId, tickerSymbol);
-	}
 }
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.commands;
+
+/**
+ * The priority classes of the outbound commands, the 
+ * classes are sent in the order of their declaration
+ */
+public enum CommandPriority {
+	
+	/**
+	 * Authentication, configuration and ping
+	 */
+	CONTROL,
+	
+	/**
+	 * New orders and cancels
+	 */
+	ORDER,
+	
+	/**
+	 * Subscribe and unsubscribe
+	 */
+	SUBSCRIPTION,
+	
+	/**
+	 * Calculation requests
+	 */
+	CALCULATION;
+	
+	/**
+	 * Get the priority class of the command
+	 * @param command
+	 * @return
+	 */
+	public static CommandPriority forCommand(final AbstractAPICommand command) {
+		if(command instanceof OrderCommand 
+				|| command instanceof CancelOrderCommand 
+				|| command instanceof CancelOrderGroupCommand) {
+			return ORDER;
+		} else if(command instanceof SubscribeTickerCommand
+				|| command instanceof SubscribeTradesCommand
+				|| command instanceof SubscribeCandlesCommand
+				|| command instanceof SubscribeOrderbookCommand
+				|| command instanceof SubscribeRawOrderbookCommand
+				|| command instanceof UnsubscribeChannelCommand) {
+			return SUBSCRIPTION;
+		} else if(command instanceof CalculateCommand) {
+			return CALCULATION;
+		}
+		
+		return CONTROL;
+	}
+}
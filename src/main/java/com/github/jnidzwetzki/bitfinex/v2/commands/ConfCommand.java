@@ -0,0 +1,49 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.commands;
+
+import org.json.JSONObject;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+
+public class ConfCommand extends AbstractAPICommand {
+
+	/**
+	 * Enable checksum ("cs") messages for every orderbook update
+	 */
+	public final static int OB_CHECKSUM = 131072;
+	
+	/**
+	 * The flags of the connection
+	 */
+	private final int flags;
+
+	public ConfCommand(final int flags) {
+		this.flags = flags;
+	}
+
+	@Override
+	public String getCommand(final BitfinexApiBroker bitfinexApiBroker) {
+		final JSONObject confJson = new JSONObject();
+		confJson.put("event", "conf");
+		confJson.put("flags", flags);
+		
+		return confJson.toString();
+	}
+
+}
@@ -17,6 +17,8 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.entity;
 
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+
 public enum BitfinexCurrencyPair {
 	
 	BTC_USD("BTC", "USD", 0.002),
@@ -139,11 +141,23 @@ public enum BitfinexCurrencyPair {
 	 * The minimum order size
 	 */
 	private double minimumOrderSize;
+	
+	/**
+	 * The scale of the prices in fixed-point mode
+	 */
+	private int priceScale;
+	
+	/**
+	 * The scale of the amounts in fixed-point mode
+	 */
+	private int amountScale;
 
 	private BitfinexCurrencyPair(final String pair1, final String pair2, final double minimumOrderSize) {
 		this.currency1 = pair1;
 		this.currency2 = pair2;
 		this.minimumOrderSize = minimumOrderSize;
+		this.priceScale = FixedPoint.DEFAULT_PRICE_SCALE;
+		this.amountScale = FixedPoint.DEFAULT_SCALE;
 	}
 
 	/**
@@ -162,6 +176,38 @@ public enum BitfinexCurrencyPair {
 		this.minimumOrderSize = minimumOrderSize;
 	}
 	
+	/**
+	 * Get the scale of the prices in fixed-point mode
+	 * @return
+	 */
+	public int getPriceScale() {
+		return priceScale;
+	}
+	
+	/**
+	 * Set the scale of the prices in fixed-point mode
+	 * @param priceScale
+	 */
+	public void setPriceScale(final int priceScale) {
+		this.priceScale = priceScale;
+	}
+	
+	/**
+	 * Get the scale of the amounts in fixed-point mode
+	 * @return
+	 */
+	public int getAmountScale() {
+		return amountScale;
+	}
+	
+	/**
+	 * Set the scale of the amounts in fixed-point mode
+	 * @param amountScale
+	 */
+	public void setAmountScale(final int amountScale) {
+		this.amountScale = amountScale;
+	}
+	
 	/**
 	 * Construct from string
 	 * @param symbolString
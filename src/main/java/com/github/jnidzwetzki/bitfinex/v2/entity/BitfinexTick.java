@@ -18,6 +18,9 @@
 package com.github.jnidzwetzki.bitfinex.v2.entity;
 
 import java.math.BigDecimal;
+import java.util.Objects;
+
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
 
 public class BitfinexTick implements Comparable<BitfinexTick>{
 	
@@ -27,34 +30,50 @@ public class BitfinexTick implements Comparable<BitfinexTick>{
 	private final long timestamp;
 	
 	/**
-	 * The open price
+	 * The open price (created lazy in fixed-point mode)
 	 */
-	private final BigDecimal open;
+	private BigDecimal open;
 	
 	/**
-	 * The close price
+	 * The close price (created lazy in fixed-point mode)
 	 */
-	private final BigDecimal close;
+	private BigDecimal close;
 	
 	/**
-	 * The high price
+	 * The high price (created lazy in fixed-point mode)
 	 */
-	private final BigDecimal high;
+	private BigDecimal high;
 	
 	/**
-	 * The low price
+	 * The low price (created lazy in fixed-point mode)
 	 */
-	private final BigDecimal low;
+	private BigDecimal low;
 	
 	/**
-	 * The volume
+	 * The volume (created lazy in fixed-point mode)
 	 */
-	private final BigDecimal volume;
+	private BigDecimal volume;
 	
 	/**
 	 * The invalid volume marker
 	 */
 	public final static BigDecimal INVALID_VOLUME = BigDecimal.valueOf(-1);
+	
+	/**
+	 * The fixed-point values
+	 */
+	private final long openMantissa;
+	private final long closeMantissa;
+	private final long highMantissa;
+	private final long lowMantissa;
+	private final long volumeMantissa;
+	private final int priceScale;
+	private final int amountScale;
+	
+	/**
+	 * Is the tick created in fixed-point mode
+	 */
+	private final boolean fixedPoint;
 
 	public BitfinexTick(final long timestamp, final BigDecimal open, final BigDecimal close, 
 			final BigDecimal high, final BigDecimal low, final BigDecimal volume) {
@@ -70,6 +89,14 @@ public class BitfinexTick implements Comparable<BitfinexTick>{
 		this.high = high;
 		this.low = low;
 		this.volume = volume;
+		this.openMantissa = 0;
+		this.closeMantissa = 0;
+		this.highMantissa = 0;
+		this.lowMantissa = 0;
+		this.volumeMantissa = 0;
+		this.priceScale = FixedPoint.DEFAULT_PRICE_SCALE;
+		this.amountScale = FixedPoint.DEFAULT_SCALE;
+		this.fixedPoint = false;
 	}
 	
 	public BitfinexTick(final long timestamp, final BigDecimal open, final BigDecimal close, 
@@ -85,40 +112,121 @@ public class BitfinexTick implements Comparable<BitfinexTick>{
 				new BigDecimal(low), new BigDecimal(volume));
 	}
 	
+	public BitfinexTick(final long timestamp, final long openMantissa, final long closeMantissa, 
+			final long highMantissa, final long lowMantissa, final long volumeMantissa, 
+			final int priceScale, final int amountScale) {
+		
+		assert (highMantissa >= openMantissa) : "High needs to be >= open";
+		assert (highMantissa >= closeMantissa) : "High needs to be => close";
+		assert (lowMantissa <= openMantissa) : "Low needs to be <= open";
+		assert (lowMantissa <= closeMantissa) : "Low needs to be <= close";
+		
+		this.timestamp = timestamp;
+		this.openMantissa = openMantissa;
+		this.closeMantissa = closeMantissa;
+		this.highMantissa = highMantissa;
+		this.lowMantissa = lowMantissa;
+		this.volumeMantissa = volumeMantissa;
+		this.priceScale = priceScale;
+		this.amountScale = amountScale;
+		this.fixedPoint = true;
+	}
+	
+	public BitfinexTick(final long timestamp, final long openMantissa, final long closeMantissa, 
+			final long highMantissa, final long lowMantissa, final int priceScale, final int amountScale) {
+		
+		this(timestamp, openMantissa, closeMantissa, highMantissa, lowMantissa, 
+				FixedPoint.toMantissa(INVALID_VOLUME, amountScale), priceScale, amountScale);
+		
+		this.volume = INVALID_VOLUME;
+	}
+	
 	public long getTimestamp() {
 		return timestamp;
 	}
 
 	public BigDecimal getOpen() {
+		if(fixedPoint && open == null) {
+			open = FixedPoint.toBigDecimal(openMantissa, priceScale);
+		}
+		
 		return open;
 	}
-
+	
 	public BigDecimal getClose() {
+		if(fixedPoint && close == null) {
+			close = FixedPoint.toBigDecimal(closeMantissa, priceScale);
+		}
+		
 		return close;
 	}
-
+	
 	public BigDecimal getHigh() {
+		if(fixedPoint && high == null) {
+			high = FixedPoint.toBigDecimal(highMantissa, priceScale);
+		}
+		
 		return high;
 	}
 	
 	public BigDecimal getLow() {
+		if(fixedPoint && low == null) {
+			low = FixedPoint.toBigDecimal(lowMantissa, priceScale);
+		}
+		
 		return low;
 	}
-
+	
 	public BigDecimal getVolume() {
+		if(fixedPoint && volume == null) {
+			volume = FixedPoint.toBigDecimal(volumeMantissa, amountScale);
+		}
+		
 		return volume;
 	}
+	
+	public long getOpenMantissa() {
+		return fixedPoint ? openMantissa : FixedPoint.toMantissa(open, priceScale);
+	}
+	
+	public long getCloseMantissa() {
+		return fixedPoint ? closeMantissa : FixedPoint.toMantissa(close, priceScale);
+	}
+	
+	public long getHighMantissa() {
+		return fixedPoint ? highMantissa : FixedPoint.toMantissa(high, priceScale);
+	}
+	
+	public long getLowMantissa() {
+		return fixedPoint ? lowMantissa : FixedPoint.toMantissa(low, priceScale);
+	}
+	
+	public long getVolumeMantissa() {
+		return fixedPoint ? volumeMantissa : FixedPoint.toMantissa(volume, amountScale);
+	}
+	
+	public int getPriceScale() {
+		return priceScale;
+	}
+	
+	public int getAmountScale() {
+		return amountScale;
+	}
+	
+	public boolean isFixedPoint() {
+		return fixedPoint;
+	}
 
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + ((close == null) ? 0 : close.hashCode());
-		result = prime * result + ((high == null) ? 0 : high.hashCode());
-		result = prime * result + ((low == null) ? 0 : low.hashCode());
-		result = prime * result + ((open == null) ? 0 : open.hashCode());
+		result = prime * result + Objects.hashCode(getClose());
+		result = prime * result + Objects.hashCode(getHigh());
+		result = prime * result + Objects.hashCode(getLow());
+		result = prime * result + Objects.hashCode(getOpen());
 		result = prime * result + (int) (timestamp ^ (timestamp >>> 32));
-		result = prime * result + ((volume == null) ? 0 : volume.hashCode());
+		result = prime * result + Objects.hashCode(getVolume());
 		return result;
 	}
 
@@ -131,40 +239,25 @@ public class BitfinexTick implements Comparable<BitfinexTick>{
 		if (getClass() != obj.getClass())
 			return false;
 		BitfinexTick other = (BitfinexTick) obj;
-		if (close == null) {
-			if (other.close != null)
-				return false;
-		} else if (!close.equals(other.close))
+		if (!Objects.equals(getClose(), other.getClose()))
 			return false;
-		if (high == null) {
-			if (other.high != null)
-				return false;
-		} else if (!high.equals(other.high))
+		if (!Objects.equals(getHigh(), other.getHigh()))
 			return false;
-		if (low == null) {
-			if (other.low != null)
-				return false;
-		} else if (!low.equals(other.low))
+		if (!Objects.equals(getLow(), other.getLow()))
 			return false;
-		if (open == null) {
-			if (other.open != null)
-				return false;
-		} else if (!open.equals(other.open))
+		if (!Objects.equals(getOpen(), other.getOpen()))
 			return false;
 		if (timestamp != other.timestamp)
 			return false;
-		if (volume == null) {
-			if (other.volume != null)
-				return false;
-		} else if (!volume.equals(other.volume))
+		if (!Objects.equals(getVolume(), other.getVolume()))
 			return false;
 		return true;
 	}
 
 	@Override
 	public String toString() {
-		return "Bar [timestamp=" + timestamp + ", open=" + open + ", close=" + close + ", high=" + high + ", low=" + low
-				+ ", volume=" + volume + "]";
+		return "Bar [timestamp=" + timestamp + ", open=" + getOpen() + ", close=" + getClose() + ", high=" + getHigh() 
+				+ ", low=" + getLow() + ", volume=" + getVolume() + "]";
 	}
 
 	@Override
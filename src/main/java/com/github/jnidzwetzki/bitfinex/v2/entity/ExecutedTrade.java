@@ -19,6 +19,8 @@ package com.github.jnidzwetzki.bitfinex.v2.entity;
 
 import java.math.BigDecimal;
 
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+
 public class ExecutedTrade {
 	
 	private long id;
@@ -28,6 +30,19 @@ public class ExecutedTrade {
 	private BigDecimal rate;
 	private int period;
 	
+	/**
+	 * The fixed-point values
+	 */
+	private long amountMantissa;
+	private long priceMantissa;
+	private long rateMantissa;
+	private int amountScale = FixedPoint.DEFAULT_SCALE;
+	private int priceScale = FixedPoint.DEFAULT_PRICE_SCALE;
+	private int rateScale = FixedPoint.DEFAULT_SCALE;
+	private boolean amountFixedPoint;
+	private boolean priceFixedPoint;
+	private boolean rateFixedPoint;
+	
 	public ExecutedTrade() {
 	}
 	
@@ -40,27 +55,87 @@ public class ExecutedTrade {
 	}
 	
 	public BigDecimal getAmount() {
+		if(amountFixedPoint && amount == null) {
+			amount = FixedPoint.toBigDecimal(amountMantissa, amountScale);
+		}
+		
 		return amount;
 	}
 
 	public void setAmount(final BigDecimal amount) {
 		this.amount = amount;
+		this.amountFixedPoint = false;
+	}
+	
+	public void setAmount(final long amountMantissa, final int amountScale) {
+		this.amount = null;
+		this.amountMantissa = amountMantissa;
+		this.amountScale = amountScale;
+		this.amountFixedPoint = true;
+	}
+	
+	public long getAmountMantissa() {
+		return amountFixedPoint ? amountMantissa : FixedPoint.toMantissa(amount, amountScale);
+	}
+	
+	public int getAmountScale() {
+		return amountScale;
 	}
 	
 	public BigDecimal getPrice() {
+		if(priceFixedPoint && price == null) {
+			price = FixedPoint.toBigDecimal(priceMantissa, priceScale);
+		}
+		
 		return price;
 	}
 
 	public void setPrice(final BigDecimal price) {
 		this.price = price;
+		this.priceFixedPoint = false;
+	}
+	
+	public void setPrice(final long priceMantissa, final int priceScale) {
+		this.price = null;
+		this.priceMantissa = priceMantissa;
+		this.priceScale = priceScale;
+		this.priceFixedPoint = true;
+	}
+	
+	public long getPriceMantissa() {
+		return priceFixedPoint ? priceMantissa : FixedPoint.toMantissa(price, priceScale);
+	}
+	
+	public int getPriceScale() {
+		return priceScale;
 	}
 
 	public BigDecimal getRate() {
+		if(rateFixedPoint && rate == null) {
+			rate = FixedPoint.toBigDecimal(rateMantissa, rateScale);
+		}
+		
 		return rate;
 	}
 
 	public void setRate(final BigDecimal rate) {
 		this.rate = rate;
+		this.rateFixedPoint = false;
+	}
+	
+	public void setRate(final long rateMantissa, final int rateScale) {
+		this.rate = null;
+		this.rateMantissa = rateMantissa;
+		this.rateScale = rateScale;
+		this.rateFixedPoint = true;
+	}
+	
+	public long getRateMantissa() {
+		return rateFixedPoint ? rateMantissa : FixedPoint.toMantissa(rate, rateScale);
+	}
+	
+	public int getRateScale() {
+		return rateScale;
 	}
 
 	public int getPeriod() {
@@ -81,8 +156,8 @@ public class ExecutedTrade {
 
 	@Override
 	public String toString() {
-		return "ExecutedTrade [id=" + id + ", timestamp=" + timestamp + ", amount=" + amount + ", price=" + price
-				+ ", rate=" + rate + ", period=" + period + "]";
+		return "ExecutedTrade [id=" + id + ", timestamp=" + timestamp + ", amount=" + getAmount() + ", price=" + getPrice()
+				+ ", rate=" + getRate() + ", period=" + period + "]";
 	}
 
 }
@@ -21,5 +21,6 @@ public enum OrderBookPrecision {
 	P0,
 	P1,
 	P2,
-	P3;
+	P3,
+	P4;
 }
@@ -19,34 +19,113 @@ package com.github.jnidzwetzki.bitfinex.v2.entity;
 
 import java.math.BigDecimal;
 
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+
 public class OrderbookEntry {
 	
-
-	private final BigDecimal price;
-	private final BigDecimal amount;
-	private final BigDecimal count;
+	/**
+	 * The price (created lazy in fixed-point mode)
+	 */
+	private BigDecimal price;
+	
+	/**
+	 * The amount (created lazy in fixed-point mode)
+	 */
+	private BigDecimal amount;
+	
+	/**
+	 * The count (created lazy in fixed-point mode)
+	 */
+	private BigDecimal count;
+	
+	/**
+	 * The fixed-point values
+	 */
+	private final long priceMantissa;
+	private final long amountMantissa;
+	private final long countValue;
+	private final int priceScale;
+	private final int amountScale;
+	
+	/**
+	 * Is the entry created in fixed-point mode
+	 */
+	private final boolean fixedPoint;
 	
 	public OrderbookEntry(BigDecimal price, BigDecimal count, BigDecimal amount) {
 		this.price = price;
 		this.count = count;
 		this.amount = amount;
+		this.priceMantissa = 0;
+		this.amountMantissa = 0;
+		this.countValue = 0;
+		this.priceScale = FixedPoint.DEFAULT_PRICE_SCALE;
+		this.amountScale = FixedPoint.DEFAULT_SCALE;
+		this.fixedPoint = false;
+	}
+	
+	public OrderbookEntry(final long priceMantissa, final long count, final long amountMantissa, 
+			final int priceScale, final int amountScale) {
+		
+		this.priceMantissa = priceMantissa;
+		this.countValue = count;
+		this.amountMantissa = amountMantissa;
+		this.priceScale = priceScale;
+		this.amountScale = amountScale;
+		this.fixedPoint = true;
 	}
 
 	public BigDecimal getPrice() {
+		if(fixedPoint && price == null) {
+			price = FixedPoint.toBigDecimal(priceMantissa, priceScale);
+		}
+		
 		return price;
 	}
 
 	public BigDecimal getAmount() {
+		if(fixedPoint && amount == null) {
+			amount = FixedPoint.toBigDecimal(amountMantissa, amountScale);
+		}
+		
 		return amount;
 	}
 
 	public BigDecimal getCount() {
+		if(fixedPoint && count == null) {
+			count = BigDecimal.valueOf(countValue);
+		}
+		
 		return count;
 	}
+	
+	public long getPriceMantissa() {
+		return fixedPoint ? priceMantissa : FixedPoint.toMantissa(price, priceScale);
+	}
+	
+	public long getAmountMantissa() {
+		return fixedPoint ? amountMantissa : FixedPoint.toMantissa(amount, amountScale);
+	}
+	
+	public long getCountValue() {
+		return fixedPoint ? countValue : count.longValue();
+	}
+	
+	public int getPriceScale() {
+		return priceScale;
+	}
+	
+	public int getAmountScale() {
+		return amountScale;
+	}
+	
+	public boolean isFixedPoint() {
+		return fixedPoint;
+	}
 
 	@Override
 	public String toString() {
-		return "OrderbookEntry [price=" + price + ", count=" + count + ", amount=" + amount + "]";
+		return "OrderbookEntry [price=" + getPrice() + ", count=" + getCount() + ", amount=" + getAmount() + "]";
 	}
 
 }
@@ -19,16 +19,55 @@ package com.github.jnidzwetzki.bitfinex.v2.entity;
 
 import java.math.BigDecimal;
 
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+
 public class RawOrderbookEntry {
 
 	private final long orderId;
-	private final BigDecimal price;
-	private final BigDecimal amount;
+	
+	/**
+	 * The price (created lazy in fixed-point mode)
+	 */
+	private BigDecimal price;
+	
+	/**
+	 * The amount (created lazy in fixed-point mode)
+	 */
+	private BigDecimal amount;
+	
+	/**
+	 * The fixed-point values
+	 */
+	private final long priceMantissa;
+	private final long amountMantissa;
+	private final int priceScale;
+	private final int amountScale;
+	
+	/**
+	 * Is the entry created in fixed-point mode
+	 */
+	private final boolean fixedPoint;
 
 	public RawOrderbookEntry(final long orderId, BigDecimal price, BigDecimal amount) {
 		this.orderId = orderId;
 		this.price = price;
 		this.amount = amount;
+		this.priceMantissa = 0;
+		this.amountMantissa = 0;
+		this.priceScale = FixedPoint.DEFAULT_PRICE_SCALE;
+		this.amountScale = FixedPoint.DEFAULT_SCALE;
+		this.fixedPoint = false;
+	}
+	
+	public RawOrderbookEntry(final long orderId, final long priceMantissa, final long amountMantissa, 
+			final int priceScale, final int amountScale) {
+		
+		this.orderId = orderId;
+		this.priceMantissa = priceMantissa;
+		this.amountMantissa = amountMantissa;
+		this.priceScale = priceScale;
+		this.amountScale = amountScale;
+		this.fixedPoint = true;
 	}
 
 	public long getOrderId() {
@@ -36,16 +75,44 @@ public class RawOrderbookEntry {
 	}
 
 	public BigDecimal getPrice() {
+		if(fixedPoint && price == null) {
+			price = FixedPoint.toBigDecimal(priceMantissa, priceScale);
+		}
+		
 		return price;
 	}
 
 	public BigDecimal getAmount() {
+		if(fixedPoint && amount == null) {
+			amount = FixedPoint.toBigDecimal(amountMantissa, amountScale);
+		}
+		
 		return amount;
 	}
+	
+	public long getPriceMantissa() {
+		return fixedPoint ? priceMantissa : FixedPoint.toMantissa(price, priceScale);
+	}
+	
+	public long getAmountMantissa() {
+		return fixedPoint ? amountMantissa : FixedPoint.toMantissa(amount, amountScale);
+	}
+	
+	public int getPriceScale() {
+		return priceScale;
+	}
+	
+	public int getAmountScale() {
+		return amountScale;
+	}
+	
+	public boolean isFixedPoint() {
+		return fixedPoint;
+	}
 
 	@Override
 	public String toString() {
-		return "RawOrderbookEntry [orderId=" + orderId + ", price=" + price + ", amount=" + amount + "]";
+		return "RawOrderbookEntry [orderId=" + orderId + ", price=" + getPrice() + ", amount=" + getAmount() + "]";
 	}
 
 }
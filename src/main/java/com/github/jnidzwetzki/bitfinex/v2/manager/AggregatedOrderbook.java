@@ -0,0 +1,669 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+import com.github.jnidzwetzki.bitfinex.v2.util.OrderbookChecksum;
+
+/**
+ * A locally maintained aggregated (P0 - P4) orderbook.
+ * 
+ * The price levels are stored as fixed-point values in sorted primitive 
+ * arrays (bids descending, asks ascending). The book is written by the 
+ * feed thread only. Readers use optimistic reads and retry when the book 
+ * was modified concurrently, so they never block the writer.
+ */
+public class AggregatedOrderbook implements TopOfBookCallbackManager.TopOfBookSource {
+	
+	/**
+	 * The value for a missing price level
+	 */
+	public final static long NO_VALUE = Long.MIN_VALUE;
+
+	/**
+	 * The configuration of the book
+	 */
+	private final OrderbookConfiguration configuration;
+	
+	/**
+	 * The scale of the prices
+	 */
+	private final int priceScale;
+	
+	/**
+	 * The scale of the amounts
+	 */
+	private final int amountScale;
+	
+	/**
+	 * The bids (best = highest price first)
+	 */
+	private final BookSide bids;
+	
+	/**
+	 * The asks (best = lowest price first)
+	 */
+	private final BookSide asks;
+	
+	/**
+	 * The lock for the book
+	 */
+	private final StampedLock lock;
+	
+	/**
+	 * The number of applied updates
+	 */
+	private long version;
+	
+	public AggregatedOrderbook(final OrderbookConfiguration configuration) {
+		this.configuration = configuration;
+		this.priceScale = configuration.getCurrencyPair().getPriceScale();
+		this.amountScale = configuration.getCurrencyPair().getAmountScale();
+		this.bids = new BookSide(true, configuration.getPricePoints());
+		this.asks = new BookSide(false, configuration.getPricePoints());
+		this.lock = new StampedLock();
+	}
+	
+	/**
+	 * Replace the content of the book with the snapshot
+	 * @param entries
+	 */
+	public void applySnapshot(final List<OrderbookEntry> entries) {
+		final long stamp = lock.writeLock();
+		
+		try {
+			bids.clear();
+			asks.clear();
+			
+			for(final OrderbookEntry entry : entries) {
+				applyUpdate(getPriceMantissa(entry), entry.getCountValue(), getAmountMantissa(entry));
+			}
+			
+			version++;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * Apply a update to the book
+	 * @param entry
+	 */
+	public void applyEntry(final OrderbookEntry entry) {
+		update(getPriceMantissa(entry), entry.getCountValue(), getAmountMantissa(entry));
+	}
+	
+	/**
+	 * Apply a update to the book. A count of 0 removes the price level 
+	 * (amount 1 = bid, amount -1 = ask).
+	 * 
+	 * @param price - the price mantissa
+	 * @param count - the number of orders
+	 * @param amount - the amount mantissa (> 0 = bid, < 0 = ask)
+	 */
+	public void update(final long price, final long count, final long amount) {
+		final long stamp = lock.writeLock();
+		
+		try {
+			applyUpdate(price, count, amount);
+			version++;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * Remove all price levels
+	 */
+	public void clear() {
+		final long stamp = lock.writeLock();
+		
+		try {
+			bids.clear();
+			asks.clear();
+			version++;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * Apply the update, the write lock has to be held by the caller
+	 * @param price
+	 * @param count
+	 * @param amount
+	 */
+	private void applyUpdate(final long price, final long count, final long amount) {
+		final BookSide side = amount > 0 ? bids : asks;
+		
+		if(count == 0) {
+			side.remove(price);
+		} else {
+			side.put(price, count, amount);
+		}
+	}
+	
+	/**
+	 * Get the best bid price (mantissa)
+	 * @return the price or NO_VALUE
+	 */
+	public long getBestBidPrice() {
+		return getPrice(bids, 0);
+	}
+	
+	/**
+	 * Get the best ask price (mantissa)
+	 * @return the price or NO_VALUE
+	 */
+	public long getBestAskPrice() {
+		return getPrice(asks, 0);
+	}
+	
+	/**
+	 * Get the bid price (mantissa) on the given level
+	 * @param level
+	 * @return the price or NO_VALUE
+	 */
+	public long getBidPrice(final int level) {
+		return getPrice(bids, level);
+	}
+	
+	/**
+	 * Get the ask price (mantissa) on the given level
+	 * @param level
+	 * @return the price or NO_VALUE
+	 */
+	public long getAskPrice(final int level) {
+		return getPrice(asks, level);
+	}
+	
+	/**
+	 * Get the best bid
+	 * @return the entry or null
+	 */
+	public OrderbookEntry getBestBid() {
+		final List<OrderbookEntry> entries = getEntries(bids, 1);
+		return entries.isEmpty() ? null : entries.get(0);
+	}
+	
+	/**
+	 * Get the best ask
+	 * @return the entry or null
+	 */
+	public OrderbookEntry getBestAsk() {
+		final List<OrderbookEntry> entries = getEntries(asks, 1);
+		return entries.isEmpty() ? null : entries.get(0);
+	}
+	
+	/**
+	 * Get the top n bids 
+	 * @param depth
+	 * @return
+	 */
+	public List<OrderbookEntry> getBids(final int depth) {
+		return getEntries(bids, depth);
+	}
+	
+	/**
+	 * Get the top n asks
+	 * @param depth
+	 * @return
+	 */
+	public List<OrderbookEntry> getAsks(final int depth) {
+		return getEntries(asks, depth);
+	}
+	
+	/**
+	 * Copy the top n bids into the given arrays
+	 * @param prices
+	 * @param counts
+	 * @param amounts
+	 * @return the number of copied price levels
+	 */
+	public int getBids(final long[] prices, final long[] counts, final long[] amounts) {
+		return copyLevels(bids, prices, counts, amounts);
+	}
+	
+	/**
+	 * Copy the top n asks into the given arrays
+	 * @param prices
+	 * @param counts
+	 * @param amounts
+	 * @return the number of copied price levels
+	 */
+	public int getAsks(final long[] prices, final long[] counts, final long[] amounts) {
+		return copyLevels(asks, prices, counts, amounts);
+	}
+	
+	/**
+	 * Read the best prices and the aggregated amounts of the top n price levels
+	 * (see {@link TopOfBookCallbackManager})
+	 * @param depth
+	 * @param target
+	 */
+	@Override
+	public void getTopOfBook(final int depth, final long[] target) {
+		while(true) {
+			final long stamp = lock.tryOptimisticRead();
+			bids.copyTop(depth, target, TopOfBookCallbackManager.BID_PRICE, TopOfBookCallbackManager.BID_AMOUNT);
+			asks.copyTop(depth, target, TopOfBookCallbackManager.ASK_PRICE, TopOfBookCallbackManager.ASK_AMOUNT);
+			
+			if(lock.validate(stamp)) {
+				return;
+			}
+			
+			Thread.yield();
+		}
+	}
+	
+	/**
+	 * Get the number of bid price levels
+	 * @return
+	 */
+	public int getBidLevels() {
+		return getLevels(bids);
+	}
+	
+	/**
+	 * Get the number of ask price levels
+	 * @return
+	 */
+	public int getAskLevels() {
+		return getLevels(asks);
+	}
+	
+	/**
+	 * Get the number of applied updates
+	 * @return
+	 */
+	public long getVersion() {
+		while(true) {
+			final long stamp = lock.tryOptimisticRead();
+			final long result = version;
+			
+			if(lock.validate(stamp)) {
+				return result;
+			}
+			
+			Thread.yield();
+		}
+	}
+	
+	/**
+	 * Calculate the checksum of the book (see {@link OrderbookChecksum})
+	 * @return
+	 */
+	public int getChecksum() {
+		final OrderbookChecksum checksum = new OrderbookChecksum();
+		final long stamp = lock.readLock();
+		
+		try {
+			for(int i = 0; i < OrderbookChecksum.DEPTH; i++) {
+				if(i < bids.size) {
+					checksum.addEntry(bids.prices[i], priceScale, bids.amounts[i], amountScale);
+				}
+				
+				if(i < asks.size) {
+					checksum.addEntry(asks.prices[i], priceScale, asks.amounts[i], amountScale);
+				}
+			}
+		} finally {
+			lock.unlockRead(stamp);
+		}
+		
+		return checksum.getChecksum();
+	}
+	
+	/**
+	 * Get the configuration of the book
+	 * @return
+	 */
+	public OrderbookConfiguration getConfiguration() {
+		return configuration;
+	}
+	
+	/**
+	 * Get the scale of the prices
+	 * @return
+	 */
+	public int getPriceScale() {
+		return priceScale;
+	}
+	
+	/**
+	 * Get the scale of the amounts
+	 * @return
+	 */
+	public int getAmountScale() {
+		return amountScale;
+	}
+	
+	/**
+	 * Read the price of the level
+	 * @param side
+	 * @param level
+	 * @return
+	 */
+	private long getPrice(final BookSide side, final int level) {
+		while(true) {
+			final long stamp = lock.tryOptimisticRead();
+			final long result = side.getPrice(level);
+			
+			if(lock.validate(stamp)) {
+				return result;
+			}
+			
+			Thread.yield();
+		}
+	}
+	
+	/**
+	 * Read the number of levels
+	 * @param side
+	 * @return
+	 */
+	private int getLevels(final BookSide side) {
+		while(true) {
+			final long stamp = lock.tryOptimisticRead();
+			final int result = side.size;
+			
+			if(lock.validate(stamp)) {
+				return result;
+			}
+			
+			Thread.yield();
+		}
+	}
+	
+	/**
+	 * Copy the levels of the side into the arrays
+	 * @param side
+	 * @param prices
+	 * @param counts
+	 * @param amounts
+	 * @return
+	 */
+	private int copyLevels(final BookSide side, final long[] prices, 
+			final long[] counts, final long[] amounts) {
+		
+		final int depth = Math.min(prices.length, Math.min(counts.length, amounts.length));
+		
+		while(true) {
+			final long stamp = lock.tryOptimisticRead();
+			final int copied = side.copy(prices, counts, amounts, depth);
+			
+			if(lock.validate(stamp)) {
+				return copied;
+			}
+			
+			Thread.yield();
+		}
+	}
+	
+	/**
+	 * Read the top n entries of the side
+	 * @param side
+	 * @param depth
+	 * @return
+	 */
+	private List<OrderbookEntry> getEntries(final BookSide side, final int depth) {
+		final long[] prices = new long[depth];
+		final long[] counts = new long[depth];
+		final long[] amounts = new long[depth];
+		
+		final int copied = copyLevels(side, prices, counts, amounts);
+		final List<OrderbookEntry> result = new ArrayList<>(copied);
+		
+		for(int i = 0; i < copied; i++) {
+			result.add(new OrderbookEntry(prices[i], counts[i], amounts[i], priceScale, amountScale));
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Get the price of the entry in the scale of the book
+	 * @param entry
+	 * @return
+	 */
+	private long getPriceMantissa(final OrderbookEntry entry) {
+		if(entry.isFixedPoint() && entry.getPriceScale() == priceScale) {
+			return entry.getPriceMantissa();
+		}
+		
+		return FixedPoint.toExactMantissa(entry.getPrice(), priceScale);
+	}
+	
+	/**
+	 * Get the amount of the entry in the scale of the book
+	 * @param entry
+	 * @return
+	 */
+	private long getAmountMantissa(final OrderbookEntry entry) {
+		if(entry.isFixedPoint() && entry.getAmountScale() == amountScale) {
+			return entry.getAmountMantissa();
+		}
+		
+		return FixedPoint.toExactMantissa(entry.getAmount(), amountScale);
+	}
+
+	@Override
+	public String toString() {
+		return "AggregatedOrderbook [configuration=" + configuration + ", bids=" + getBids(getBidLevels()) 
+			+ ", asks=" + getAsks(getAskLevels()) + "]";
+	}
+	
+	/**
+	 * One side of the book
+	 */
+	private final static class BookSide {
+		
+		/**
+		 * Is the side sorted descending (bids)
+		 */
+		private final boolean descending;
+		
+		/**
+		 * The price levels
+		 */
+		private long[] prices;
+		private long[] counts;
+		private long[] amounts;
+		
+		/**
+		 * The number of price levels
+		 */
+		private int size;
+		
+		public BookSide(final boolean descending, final int capacity) {
+			this.descending = descending;
+			this.prices = new long[capacity];
+			this.counts = new long[capacity];
+			this.amounts = new long[capacity];
+		}
+		
+		/**
+		 * Add or update the price level
+		 * @param price
+		 * @param count
+		 * @param amount
+		 */
+		public void put(final long price, final long count, final long amount) {
+			final int pos = search(price);
+			
+			if(pos >= 0) {
+				counts[pos] = count;
+				amounts[pos] = amount;
+				return;
+			}
+			
+			final int insertPos = -(pos + 1);
+			
+			if(size == prices.length) {
+				final int newCapacity = Math.max(16, size * 2);
+				prices = Arrays.copyOf(prices, newCapacity);
+				counts = Arrays.copyOf(counts, newCapacity);
+				amounts = Arrays.copyOf(amounts, newCapacity);
+			}
+			
+			final int elementsToMove = size - insertPos;
+			System.arraycopy(prices, insertPos, prices, insertPos + 1, elementsToMove);
+			System.arraycopy(counts, insertPos, counts, insertPos + 1, elementsToMove);
+			System.arraycopy(amounts, insertPos, amounts, insertPos + 1, elementsToMove);
+			
+			prices[insertPos] = price;
+			counts[insertPos] = count;
+			amounts[insertPos] = amount;
+			size++;
+		}
+		
+		/**
+		 * Remove the price level
+		 * @param price
+		 */
+		public void remove(final long price) {
+			final int pos = search(price);
+			
+			if(pos < 0) {
+				return;
+			}
+			
+			final int elementsToMove = size - pos - 1;
+			System.arraycopy(prices, pos + 1, prices, pos, elementsToMove);
+			System.arraycopy(counts, pos + 1, counts, pos, elementsToMove);
+			System.arraycopy(amounts, pos + 1, amounts, pos, elementsToMove);
+			size--;
+		}
+		
+		/**
+		 * Remove all price levels
+		 */
+		public void clear() {
+			size = 0;
+		}
+		
+		/**
+		 * Get the price of the level (also called during optimistic reads)
+		 * @param level
+		 * @return
+		 */
+		public long getPrice(final int level) {
+			final long[] currentPrices = prices;
+			
+			if(level < 0 || level >= size || level >= currentPrices.length) {
+				return NO_VALUE;
+			}
+			
+			return currentPrices[level];
+		}
+		
+		/**
+		 * Copy the top levels (also called during optimistic reads)
+		 * @param targetPrices
+		 * @param targetCounts
+		 * @param targetAmounts
+		 * @param depth
+		 * @return
+		 */
+		public int copy(final long[] targetPrices, final long[] targetCounts, 
+				final long[] targetAmounts, final int depth) {
+			
+			final long[] currentPrices = prices;
+			final long[] currentCounts = counts;
+			final long[] currentAmounts = amounts;
+			
+			final int levels = Math.min(depth, Math.min(size, Math.min(currentPrices.length, 
+					Math.min(currentCounts.length, currentAmounts.length))));
+			
+			if(levels <= 0) {
+				return 0;
+			}
+			
+			System.arraycopy(currentPrices, 0, targetPrices, 0, levels);
+			System.arraycopy(currentCounts, 0, targetCounts, 0, levels);
+			System.arraycopy(currentAmounts, 0, targetAmounts, 0, levels);
+			
+			return levels;
+		}
+		
+		/**
+		 * Copy the best price and the aggregated amount of the top levels 
+		 * (also called during optimistic reads)
+		 * @param depth
+		 * @param target
+		 * @param pricePos
+		 * @param amountPos
+		 */
+		public void copyTop(final int depth, final long[] target, final int pricePos, final int amountPos) {
+			final long[] currentPrices = prices;
+			final long[] currentAmounts = amounts;
+			
+			final int levels = Math.min(depth, Math.min(size, 
+					Math.min(currentPrices.length, currentAmounts.length)));
+			
+			if(levels <= 0) {
+				target[pricePos] = NO_VALUE;
+				target[amountPos] = NO_VALUE;
+				return;
+			}
+			
+			long amount = 0;
+			
+			for(int i = 0; i < levels; i++) {
+				amount += currentAmounts[i];
+			}
+			
+			target[pricePos] = currentPrices[0];
+			target[amountPos] = amount;
+		}
+		
+		/**
+		 * Binary search for the price
+		 * @param price
+		 * @return the position or (-(insertion point) - 1)
+		 */
+		private int search(final long price) {
+			int low = 0;
+			int high = size - 1;
+			
+			while(low <= high) {
+				final int mid = (low + high) >>> 1;
+				final long midPrice = prices[mid];
+				
+				final int cmp = descending ? Long.compare(price, midPrice) : Long.compare(midPrice, price);
+				
+				if(cmp < 0) {
+					low = mid + 1;
+				} else if(cmp > 0) {
+					high = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+			
+			return -(low + 1);
+		}
+	}
+}
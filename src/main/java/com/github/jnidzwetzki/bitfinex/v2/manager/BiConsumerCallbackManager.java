@@ -18,29 +18,63 @@
 package com.github.jnidzwetzki.bitfinex.v2.manager;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.manager.BoundedCallback.OverflowPolicy;
+import com.github.jnidzwetzki.bitfinex.v2.util.StripedExecutor;
 
 public class BiConsumerCallbackManager<S, T> {
 
 	/**
-	 * The callbacks
+	 * The callbacks (copy on write lists, events are processed without locking)
 	 */
 	private final Map<S, List<BiConsumer<S, T>>> callbacks;
 	
+	/**
+	 * The list callbacks, invoked once per snapshot or update
+	 */
+	private final Map<S, List<BiConsumer<S, List<T>>>> listCallbacks;
+	
+	/**
+	 * The publishers, they queue the events for their subscribers on their own
+	 */
+	private final Map<S, List<EventPublisher<T>>> publishers;
+	
 	/**
 	 * The executor service
 	 */
 	private final ExecutorService executorService;
+	
+	/**
+	 * The executor for the events, one lane per symbol (or per symbol 
+	 * and callback) preserves the order of the events
+	 */
+	private final StripedExecutor stripedExecutor;
 
 	public BiConsumerCallbackManager(final ExecutorService executorService) {
+		this(executorService, false);
+	}
+	
+	/**
+	 * Create a callback manager, with dedicated lanes every symbol and callback 
+	 * pair is executed in its own lane (e.g. on virtual threads)
+	 * @param executorService
+	 * @param dedicatedLanes
+	 */
+	public BiConsumerCallbackManager(final ExecutorService executorService, final boolean dedicatedLanes) {
 		this.executorService = executorService;
-		this.callbacks = new HashMap<>();
+		this.stripedExecutor = new StripedExecutor(executorService, dedicatedLanes);
+		this.callbacks = new ConcurrentHashMap<>();
+		this.listCallbacks = new ConcurrentHashMap<>();
+		this.publishers = new ConcurrentHashMap<>();
 	}
 	
 	/**
@@ -51,13 +85,96 @@ public class BiConsumerCallbackManager<S, T> {
 	 */
 	public void registerCallback(final S symbol, final BiConsumer<S, T> callback) throws APIException {
 		
-		callbacks.putIfAbsent(symbol, new ArrayList<>());
-				
-		final List<BiConsumer<S, T>> callbackList = callbacks.get(symbol);
+		callbacks.computeIfAbsent(symbol, (s) -> new CopyOnWriteArrayList<>()).add(callback);
+	}
+	
+	/**
+	 * Register a new conflating callback. Only the latest event per key 
+	 * is kept until the callback is ready (see {@link ConflatingCallback}).
+	 * @param symbol
+	 * @param callback
+	 * @param keyFunction
+	 * @throws APIException
+	 */
+	public void registerConflatingCallback(final S symbol, final BiConsumer<S, T> callback, 
+			final Function<T, ?> keyFunction) throws APIException {
+		
+		registerCallback(symbol, new ConflatingCallback<>(callback, keyFunction, executorService));
+	}
+	
+	/**
+	 * Register a new callback with a bounded queue (see {@link BoundedCallback})
+	 * @param symbol
+	 * @param callback
+	 * @param capacity - the maximal number of queued events
+	 * @param overflowPolicy - the policy for a full queue
+	 * @param keyFunction - the key for the conflate policy
+	 * @return the bounded callback, which provides the event counters
+	 * @throws APIException
+	 */
+	public BoundedCallback<S, T> registerBoundedCallback(final S symbol, final BiConsumer<S, T> callback, 
+			final int capacity, final OverflowPolicy overflowPolicy, final Function<T, ?> keyFunction) 
+					throws APIException {
+		
+		final BoundedCallback<S, T> boundedCallback 
+			= new BoundedCallback<>(callback, capacity, overflowPolicy, keyFunction, executorService);
+		
+		registerCallback(symbol, boundedCallback);
+		
+		return boundedCallback;
+	}
+	
+	/**
+	 * Register a new list callback. The callback receives a whole snapshot in one 
+	 * call, updates are delivered as a list with one element.
+	 * @param symbol
+	 * @param callback
+	 * @throws APIException
+	 */
+	public void registerListCallback(final S symbol, final BiConsumer<S, List<T>> callback) throws APIException {
+		
+		listCallbacks.computeIfAbsent(symbol, (s) -> new CopyOnWriteArrayList<>()).add(callback);
+	}
+	
+	/**
+	 * Remove a list callback
+	 * @param symbol
+	 * @param callback
+	 * @return
+	 * @throws APIException
+	 */
+	public boolean removeListCallback(final S symbol, final BiConsumer<S, List<T>> callback) throws APIException {
 		
-		synchronized (callbackList) {
-			callbackList.add(callback);	
+		final List<BiConsumer<S, List<T>>> callbackList = listCallbacks.get(symbol);
+		
+		if(callbackList == null) {
+			throw new APIException("Unknown ticker string: " + symbol);
 		}
+		
+		stripedExecutor.removeCallback(callback);
+		return callbackList.remove(callback);
+	}
+	
+	/**
+	 * Create a new publisher for the events of the symbol (see {@link EventPublisher})
+	 * @param symbol
+	 * @param capacity - the maximal number of queued events per subscriber
+	 * @param overflowPolicy - the policy for a full queue
+	 * @param keyFunction - the key for the conflate policy
+	 * @return the publisher, close it to unregister the publisher
+	 */
+	public EventPublisher<T> createPublisher(final S symbol, final int capacity, 
+			final OverflowPolicy overflowPolicy, final Function<T, ?> keyFunction) {
+		
+		final List<EventPublisher<T>> publisherList 
+			= publishers.computeIfAbsent(symbol, (s) -> new CopyOnWriteArrayList<>());
+		
+		final EventPublisher<T> publisher = new EventPublisher<>(executorService, capacity, 
+				overflowPolicy, keyFunction, publisherList::remove);
+		
+		publisherList.add(publisher);
+		
+		return publisher;
 	}
 	
 	/**
@@ -75,9 +192,14 @@ public class BiConsumerCallbackManager<S, T> {
 			
 		final List<BiConsumer<S, T>> callbackList = callbacks.get(symbol);
 		
-		synchronized (callbackList) {
-			return callbackList.remove(callback);
+		for(final BiConsumer<S, T> registeredCallback : callbackList) {
+			if(isRegistrationOf(registeredCallback, callback)) {
+				stripedExecutor.removeCallback(registeredCallback);
+				return callbackList.remove(registeredCallback);
+			}
 		}
+		
+		return false;
 	}
 	
 	/**
@@ -87,24 +209,41 @@ public class BiConsumerCallbackManager<S, T> {
 	 */
 	public void handleEventsList(final S symbol, final List<T> elements) {
 		
+		notifyListCallbacks(symbol, Collections.unmodifiableList(elements));
+		notifyPublishers(symbol, elements);
+		
 		final List<BiConsumer<S, T>> callbackList = callbacks.get(symbol);
 		
-		if(callbackList == null) {
+		if(callbackList == null || callbackList.isEmpty()) {
 			return;
 		}
-				
-		synchronized(callbackList) {
-			if(callbackList.isEmpty()) {
-				return;
+		
+		final List<BiConsumer<S, T>> laneCallbacks = new ArrayList<>(callbackList.size());
+		
+		for(final BiConsumer<S, T> c : callbackList) {
+			if(! deliverDirectly(callbackList, c, symbol, elements)) {
+				laneCallbacks.add(c);
 			}
-			
-			// Notify callbacks synchronously, to preserve the order of events
+		}
+		
+		if(laneCallbacks.isEmpty()) {
+			return;
+		}
+		
+		if(stripedExecutor.isDedicatedLanes()) {
+			laneCallbacks.forEach((c) -> stripedExecutor.execute(symbol, c, 
+					() -> elements.forEach((e) -> c.accept(symbol, e))));
+			return;
+		}
+		
+		// The whole list is one task, so it keeps its position relative to the queued updates
+		final Runnable runnable = () -> {
 			for (final T element : elements) {
-				callbackList.forEach((c) -> {
-					c.accept(symbol, element);
-				});
+				laneCallbacks.forEach((c) -> c.accept(symbol, element));
 			}
-		}
+		};
+		
+		stripedExecutor.execute(symbol, runnable);
 	}
 	
 	/**
@@ -114,22 +253,110 @@ public class BiConsumerCallbackManager<S, T> {
 	 */
 	public void handleEvent(final S symbol, final T element) {
 		
+		final List<T> elements = Collections.singletonList(element);
+		notifyListCallbacks(symbol, elements);
+		notifyPublishers(symbol, elements);
+		
 		final List<BiConsumer<S, T>> callbackList = callbacks.get(symbol);
 		
 		if(callbackList == null) {
 			return;
 		}
 
-		synchronized(callbackList) {
-			if(callbackList.isEmpty()) {
+		callbackList.forEach((c) -> {
+			if(deliverDirectly(callbackList, c, symbol, elements)) {
 				return;
 			}
-
-			callbackList.forEach((c) -> {
-				final Runnable runnable = () -> c.accept(symbol, element);
-				executorService.submit(runnable);
-			});
+			
+			final Runnable runnable = () -> c.accept(symbol, element);
+			stripedExecutor.execute(symbol, c, runnable);
+		});
+	}
+	
+	/**
+	 * Deliver the elements to a conflating or bounded callback, these callbacks 
+	 * schedule their delivery on their own. Disconnected bounded callbacks are removed.
+	 * @param callbackList
+	 * @param callback
+	 * @param symbol
+	 * @param elements
+	 * @return true if the callback is a conflating or bounded callback
+	 */
+	private boolean deliverDirectly(final List<BiConsumer<S, T>> callbackList, 
+			final BiConsumer<S, T> callback, final S symbol, final List<T> elements) {
+		
+		if(callback instanceof ConflatingCallback) {
+			elements.forEach((e) -> callback.accept(symbol, e));
+			return true;
+		}
+		
+		if(callback instanceof BoundedCallback) {
+			elements.forEach((e) -> callback.accept(symbol, e));
+			
+			if(((BoundedCallback<S, T>) callback).isDisconnected()) {
+				callbackList.remove(callback);
+			}
+			
+			return true;
 		}
+		
+		return false;
+	}
+	
+	/**
+	 * Notify the list callbacks, in the lane of the symbol
+	 * @param symbol
+	 * @param elements
+	 */
+	private void notifyListCallbacks(final S symbol, final List<T> elements) {
+		
+		final List<BiConsumer<S, List<T>>> callbackList = listCallbacks.get(symbol);
+		
+		if(callbackList == null || elements.isEmpty()) {
+			return;
+		}
+		
+		callbackList.forEach((c) -> {
+			final Runnable runnable = () -> c.accept(symbol, elements);
+			stripedExecutor.execute(symbol, c, runnable);
+		});
+	}
+	
+	/**
+	 * Pass the events to the publishers
+	 * @param symbol
+	 * @param elements
+	 */
+	private void notifyPublishers(final S symbol, final List<T> elements) {
+		
+		final List<EventPublisher<T>> publisherList = publishers.get(symbol);
+		
+		if(publisherList == null) {
+			return;
+		}
+		
+		publisherList.forEach((p) -> elements.forEach(p));
+	}
+	
+	/**
+	 * Is the registered callback (or wrapper) a registration of the callback
+	 * @param registeredCallback
+	 * @param callback
+	 * @return
+	 */
+	private boolean isRegistrationOf(final BiConsumer<S, T> registeredCallback, final BiConsumer<S, T> callback) {
+		if(registeredCallback.equals(callback)) {
+			return true;
+		}
+		
+		if(registeredCallback instanceof ConflatingCallback) {
+			return ((ConflatingCallback<S, T>) registeredCallback).getCallback().equals(callback);
+		}
+		
+		if(registeredCallback instanceof BoundedCallback) {
+			return ((BoundedCallback<S, T>) registeredCallback).getCallback().equals(callback);
+		}
+		
+		return false;
 	}
-
 }
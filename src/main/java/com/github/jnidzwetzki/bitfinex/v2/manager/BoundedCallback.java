@@ -0,0 +1,385 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A callback with a bounded queue. The events are delivered by at most 
+ * one task on the executor, in the order of arrival. When the queue is 
+ * full, the overflow policy decides what happens with the new event.
+ * 
+ * The number of queued, delivered and dropped events is counted per 
+ * callback.
+ */
+public class BoundedCallback<S, T> implements BiConsumer<S, T>, Consumer<T> {
+	
+	public enum OverflowPolicy {
+		
+		/**
+		 * Wait until the callback has processed an event (blocks the feed)
+		 */
+		BLOCK,
+		
+		/**
+		 * Drop the oldest queued event
+		 */
+		DROP_OLDEST,
+		
+		/**
+		 * Drop the new event
+		 */
+		DROP_NEWEST,
+		
+		/**
+		 * Replace the queued event with the same key, or drop the oldest event
+		 */
+		CONFLATE,
+		
+		/**
+		 * Drop all queued events and remove the callback
+		 */
+		DISCONNECT;
+	}
+
+	/**
+	 * The registered callback
+	 */
+	private final Object registeredCallback;
+	
+	/**
+	 * The callback
+	 */
+	private final BiConsumer<S, T> callback;
+	
+	/**
+	 * The maximal number of queued events
+	 */
+	private final int capacity;
+	
+	/**
+	 * The overflow policy
+	 */
+	private final OverflowPolicy overflowPolicy;
+	
+	/**
+	 * The key of the event (conflate policy)
+	 */
+	private final Function<T, ?> keyFunction;
+	
+	/**
+	 * The executor service
+	 */
+	private final ExecutorService executorService;
+	
+	/**
+	 * The queued events (guarded by this)
+	 */
+	private final ArrayDeque<QueuedEvent<S, T>> queue;
+	
+	/**
+	 * Is a delivery task submitted (guarded by this)
+	 */
+	private boolean deliveryScheduled;
+	
+	/**
+	 * Is the callback disconnected
+	 */
+	private volatile boolean disconnected;
+	
+	/**
+	 * The counters
+	 */
+	private final AtomicLong queuedEvents;
+	private final AtomicLong deliveredEvents;
+	private final AtomicLong droppedEvents;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(BoundedCallback.class);
+	
+	public BoundedCallback(final BiConsumer<S, T> callback, final int capacity, 
+			final OverflowPolicy overflowPolicy, final Function<T, ?> keyFunction, 
+			final ExecutorService executorService) {
+		
+		this(callback, callback, capacity, overflowPolicy, keyFunction, executorService);
+	}
+	
+	public BoundedCallback(final Consumer<T> callback, final int capacity, 
+			final OverflowPolicy overflowPolicy, final Function<T, ?> keyFunction, 
+			final ExecutorService executorService) {
+		
+		this(callback, (s, e) -> callback.accept(e), capacity, overflowPolicy, keyFunction, executorService);
+	}
+	
+	private BoundedCallback(final Object registeredCallback, final BiConsumer<S, T> callback, 
+			final int capacity, final OverflowPolicy overflowPolicy, final Function<T, ?> keyFunction, 
+			final ExecutorService executorService) {
+		
+		if(capacity < 1) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		
+		this.registeredCallback = registeredCallback;
+		this.callback = callback;
+		this.capacity = capacity;
+		this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+		this.keyFunction = keyFunction;
+		this.executorService = executorService;
+		this.queue = new ArrayDeque<>(Math.min(capacity, 1024));
+		this.queuedEvents = new AtomicLong();
+		this.deliveredEvents = new AtomicLong();
+		this.droppedEvents = new AtomicLong();
+	}
+	
+	@Override
+	public void accept(final T element) {
+		accept(null, element);
+	}
+	
+	/**
+	 * Queue the event
+	 */
+	@Override
+	public void accept(final S symbol, final T element) {
+		synchronized (this) {
+			if(disconnected) {
+				droppedEvents.incrementAndGet();
+				return;
+			}
+			
+			if(queue.size() >= capacity && ! handleOverflow(symbol, element)) {
+				return;
+			}
+			
+			queue.add(new QueuedEvent<>(symbol, element));
+			queuedEvents.incrementAndGet();
+			
+			if(deliveryScheduled) {
+				return;
+			}
+			
+			deliveryScheduled = true;
+		}
+		
+		executorService.submit(this::deliverQueuedEvents);
+	}
+	
+	/**
+	 * Handle a full queue, the monitor has to be held by the caller
+	 * @param symbol
+	 * @param element
+	 * @return true if the element should be added to the queue
+	 */
+	private boolean handleOverflow(final S symbol, final T element) {
+		switch(overflowPolicy) {
+			case BLOCK:
+				while(queue.size() >= capacity && ! disconnected) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						droppedEvents.incrementAndGet();
+						return false;
+					}
+				}
+				return true;
+				
+			case DROP_OLDEST:
+				queue.poll();
+				droppedEvents.incrementAndGet();
+				return true;
+				
+			case DROP_NEWEST:
+				droppedEvents.incrementAndGet();
+				return false;
+				
+			case CONFLATE:
+				droppedEvents.incrementAndGet();
+				
+				if(! replaceQueuedEvent(symbol, element)) {
+					queue.poll();
+					return true;
+				}
+				
+				queuedEvents.incrementAndGet();
+				return false;
+				
+			case DISCONNECT:
+				logger.error("Queue of callback {} is full ({} events), disconnecting", 
+						registeredCallback, capacity);
+				droppedEvents.addAndGet(queue.size() + 1);
+				queue.clear();
+				disconnected = true;
+				return false;
+				
+			default:
+				throw new IllegalArgumentException("Unknown policy: " + overflowPolicy);
+		}
+	}
+	
+	/**
+	 * Replace the queued event with the same key
+	 * @param symbol
+	 * @param element
+	 * @return true if an event was replaced
+	 */
+	private boolean replaceQueuedEvent(final S symbol, final T element) {
+		final Object key = keyFunction == null ? element : keyFunction.apply(element);
+		
+		for(final Iterator<QueuedEvent<S, T>> iterator = queue.iterator(); iterator.hasNext(); ) {
+			final QueuedEvent<S, T> queuedEvent = iterator.next();
+			
+			if(Objects.equals(queuedEvent.symbol, symbol) && Objects.equals(key, 
+					keyFunction == null ? queuedEvent.element : keyFunction.apply(queuedEvent.element))) {
+				
+				queuedEvent.element = element;
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Deliver the queued events, until the queue is empty
+	 */
+	private void deliverQueuedEvents() {
+		while(true) {
+			final QueuedEvent<S, T> event;
+			
+			synchronized (this) {
+				event = queue.poll();
+				
+				if(event == null) {
+					deliveryScheduled = false;
+					return;
+				}
+				
+				if(overflowPolicy == OverflowPolicy.BLOCK) {
+					notifyAll();
+				}
+			}
+			
+			try {
+				callback.accept(event.symbol, event.element);
+				deliveredEvents.incrementAndGet();
+			} catch(Exception e) {
+				logger.error("Got exception while delivering {}", event.element, e);
+			}
+		}
+	}
+	
+	/**
+	 * Get the registered callback
+	 * @return
+	 */
+	public Object getCallback() {
+		return registeredCallback;
+	}
+	
+	/**
+	 * Get the overflow policy
+	 * @return
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+	
+	/**
+	 * Get the capacity of the queue
+	 * @return
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Get the number of currently queued events
+	 * @return
+	 */
+	public synchronized int getPendingEvents() {
+		return queue.size();
+	}
+	
+	/**
+	 * Get the total number of queued events (including conflated events)
+	 * @return
+	 */
+	public long getQueuedEvents() {
+		return queuedEvents.get();
+	}
+	
+	/**
+	 * Get the total number of delivered events
+	 * @return
+	 */
+	public long getDeliveredEvents() {
+		return deliveredEvents.get();
+	}
+	
+	/**
+	 * Get the total number of dropped events (including replaced events)
+	 * @return
+	 */
+	public long getDroppedEvents() {
+		return droppedEvents.get();
+	}
+	
+	/**
+	 * Is the callback disconnected (policy DISCONNECT)
+	 * @return
+	 */
+	public boolean isDisconnected() {
+		return disconnected;
+	}
+	
+	@Override
+	public String toString() {
+		return "BoundedCallback [callback=" + registeredCallback + ", capacity=" + capacity 
+				+ ", overflowPolicy=" + overflowPolicy + ", queuedEvents=" + queuedEvents 
+				+ ", deliveredEvents=" + deliveredEvents + ", droppedEvents=" + droppedEvents 
+				+ ", disconnected=" + disconnected + "]";
+	}
+	
+	/**
+	 * A queued event
+	 */
+	private final static class QueuedEvent<S, T> {
+		
+		private final S symbol;
+		
+		private T element;
+		
+		public QueuedEvent(final S symbol, final T element) {
+			this.symbol = symbol;
+			this.element = element;
+		}
+	}
+}
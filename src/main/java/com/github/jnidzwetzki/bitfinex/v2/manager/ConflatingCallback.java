@@ -0,0 +1,149 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A callback that conflates the events by key. Only the latest event per 
+ * key is kept until the consumer is ready, so a slow consumer gets the 
+ * coalesced state instead of a growing backlog of outdated events. The 
+ * number of pending events is bounded by the number of distinct keys.
+ * 
+ * At most one delivery task per callback is submitted to the executor,
+ * the events are delivered in the order the keys were first seen.
+ */
+public class ConflatingCallback<S, T> implements BiConsumer<S, T> {
+
+	/**
+	 * The wrapped callback
+	 */
+	private final BiConsumer<S, T> callback;
+	
+	/**
+	 * The key of the event (e.g. the price level)
+	 */
+	private final Function<T, ?> keyFunction;
+	
+	/**
+	 * The executor service
+	 */
+	private final ExecutorService executorService;
+	
+	/**
+	 * The pending events (guarded by this)
+	 */
+	private Map<Object, T> pendingEvents;
+	
+	/**
+	 * The symbol of the pending events (guarded by this)
+	 */
+	private S pendingSymbol;
+	
+	/**
+	 * Is a delivery task submitted (guarded by this)
+	 */
+	private boolean deliveryScheduled;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(ConflatingCallback.class);
+	
+	public ConflatingCallback(final BiConsumer<S, T> callback, final Function<T, ?> keyFunction, 
+			final ExecutorService executorService) {
+		
+		this.callback = callback;
+		this.keyFunction = keyFunction;
+		this.executorService = executorService;
+		this.pendingEvents = new LinkedHashMap<>();
+	}
+	
+	/**
+	 * Add the event, replacing a pending event with the same key
+	 */
+	@Override
+	public void accept(final S symbol, final T element) {
+		final Object key = keyFunction.apply(element);
+		
+		synchronized (this) {
+			pendingSymbol = symbol;
+			pendingEvents.put(key, element);
+			
+			if(deliveryScheduled) {
+				return;
+			}
+			
+			deliveryScheduled = true;
+		}
+		
+		executorService.submit(this::deliverPendingEvents);
+	}
+	
+	/**
+	 * Deliver the pending events, until no more events are pending
+	 */
+	private void deliverPendingEvents() {
+		while(true) {
+			final Map<Object, T> events;
+			final S symbol;
+			
+			synchronized (this) {
+				if(pendingEvents.isEmpty()) {
+					deliveryScheduled = false;
+					return;
+				}
+				
+				events = pendingEvents;
+				symbol = pendingSymbol;
+				pendingEvents = new LinkedHashMap<>();
+			}
+			
+			for(final T event : events.values()) {
+				try {
+					callback.accept(symbol, event);
+				} catch(Exception e) {
+					logger.error("Got exception while delivering {}", event, e);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Get the number of pending events
+	 * @return
+	 */
+	public synchronized int getPendingEvents() {
+		return pendingEvents.size();
+	}
+	
+	/**
+	 * Get the wrapped callback
+	 * @return
+	 */
+	public BiConsumer<S, T> getCallback() {
+		return callback;
+	}
+}
@@ -0,0 +1,441 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.manager.BoundedCallback.OverflowPolicy;
+
+/**
+ * A reactive streams publisher for the events of a manager. Every subscriber 
+ * has a bounded queue, events are only delivered if they are requested. If a 
+ * subscriber has no demand and the queue is full, the overflow policy is applied 
+ * (see {@link OverflowPolicy}, DISCONNECT terminates the subscription 
+ * with an error). On Java 9+, FlowAdapters bridges the publisher to 
+ * java.util.concurrent.Flow.
+ * 
+ * The events are offered by the websocket thread, so the BLOCK policy 
+ * is not supported.
+ */
+public class EventPublisher<T> implements Publisher<T>, Consumer<T>, Closeable {
+
+	/**
+	 * The subscriptions
+	 */
+	private final List<EventSubscription> subscriptions;
+	
+	/**
+	 * The executor for the signals
+	 */
+	private final Executor executor;
+	
+	/**
+	 * The capacity of the queue per subscriber
+	 */
+	private final int capacity;
+	
+	/**
+	 * The overflow policy
+	 */
+	private final OverflowPolicy overflowPolicy;
+	
+	/**
+	 * The key of a event for the conflate overflow policy, null for the event itself
+	 */
+	private final Function<T, ?> keyFunction;
+	
+	/**
+	 * Unregister the publisher from the manager
+	 */
+	private final Consumer<EventPublisher<T>> closeAction;
+	
+	/**
+	 * Is the publisher closed
+	 */
+	private volatile boolean closed;
+	
+	/**
+	 * The delivered events
+	 */
+	private final AtomicLong deliveredEvents;
+	
+	/**
+	 * The dropped events
+	 */
+	private final AtomicLong droppedEvents;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(EventPublisher.class);
+
+	public EventPublisher(final Executor executor, final int capacity, final OverflowPolicy overflowPolicy, 
+			final Function<T, ?> keyFunction, final Consumer<EventPublisher<T>> closeAction) {
+		
+		if(capacity < 1) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		
+		if(overflowPolicy == OverflowPolicy.BLOCK) {
+			throw new IllegalArgumentException("Unsupported policy for a publisher: " + overflowPolicy);
+		}
+		
+		this.executor = executor;
+		this.capacity = capacity;
+		this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+		this.keyFunction = keyFunction;
+		this.closeAction = closeAction;
+		this.subscriptions = new CopyOnWriteArrayList<>();
+		this.deliveredEvents = new AtomicLong();
+		this.droppedEvents = new AtomicLong();
+	}
+	
+	@Override
+	public void subscribe(final Subscriber<? super T> subscriber) {
+		Objects.requireNonNull(subscriber);
+		
+		final EventSubscription subscription = new EventSubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+		
+		if(closed) {
+			subscription.terminate(null);
+			return;
+		}
+		
+		subscriptions.add(subscription);
+	}
+	
+	/**
+	 * Publish a new event to all subscribers
+	 */
+	@Override
+	public void accept(final T element) {
+		subscriptions.forEach((s) -> s.offer(element));
+	}
+	
+	/**
+	 * Complete all subscriptions and unregister the publisher
+	 */
+	@Override
+	public void close() {
+		
+		if(closed) {
+			return;
+		}
+		
+		closed = true;
+		
+		if(closeAction != null) {
+			closeAction.accept(this);
+		}
+		
+		subscriptions.forEach((s) -> s.terminate(null));
+	}
+	
+	/**
+	 * Is the publisher closed
+	 * @return
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+	
+	/**
+	 * Get the number of subscribers
+	 * @return
+	 */
+	public int getSubscriberCount() {
+		return subscriptions.size();
+	}
+	
+	/**
+	 * Get the number of delivered events (all subscribers)
+	 * @return
+	 */
+	public long getDeliveredEvents() {
+		return deliveredEvents.get();
+	}
+	
+	/**
+	 * Get the number of dropped events (all subscribers)
+	 * @return
+	 */
+	public long getDroppedEvents() {
+		return droppedEvents.get();
+	}
+	
+	/**
+	 * The subscription of a subscriber, the signals are delivered one after 
+	 * another by a task on the executor
+	 */
+	private final class EventSubscription implements Subscription {
+		
+		/**
+		 * The subscriber
+		 */
+		private final Subscriber<? super T> subscriber;
+		
+		/**
+		 * The queued events, guarded by this
+		 */
+		private final ArrayDeque<T> queue;
+		
+		/**
+		 * The requested events, guarded by this
+		 */
+		private long demand;
+		
+		/**
+		 * Is a drain task scheduled, guarded by this
+		 */
+		private boolean draining;
+		
+		/**
+		 * Is a terminal signal pending, guarded by this
+		 */
+		private boolean terminated;
+		
+		/**
+		 * The error of the terminal signal, null for onComplete
+		 */
+		private Throwable error;
+		
+		/**
+		 * Is the subscription cancelled
+		 */
+		private volatile boolean cancelled;
+		
+		public EventSubscription(final Subscriber<? super T> subscriber) {
+			this.subscriber = subscriber;
+			this.queue = new ArrayDeque<>();
+		}
+
+		@Override
+		public void request(final long n) {
+			
+			if(n <= 0) {
+				terminate(new IllegalArgumentException("Non-positive request: " + n));
+				return;
+			}
+			
+			synchronized (this) {
+				demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+			}
+			
+			scheduleDrain();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			subscriptions.remove(this);
+			
+			synchronized (this) {
+				queue.clear();
+			}
+		}
+		
+		/**
+		 * Queue a new event
+		 * @param element
+		 */
+		public void offer(final T element) {
+			
+			synchronized (this) {
+				if(cancelled || terminated) {
+					return;
+				}
+				
+				if(queue.size() < capacity || handleOverflow(element)) {
+					queue.add(element);
+				}
+			}
+			
+			// Also delivers the error of the disconnect policy
+			scheduleDrain();
+		}
+		
+		/**
+		 * Terminate the subscription, the already requested events are delivered first
+		 * @param throwable - the error or null for onComplete
+		 */
+		public void terminate(final Throwable throwable) {
+			
+			synchronized (this) {
+				if(terminated) {
+					return;
+				}
+				
+				terminated = true;
+				error = throwable;
+			}
+			
+			subscriptions.remove(this);
+			scheduleDrain();
+		}
+		
+		/**
+		 * Handle a full queue, the monitor has to be held by the caller
+		 * @param element
+		 * @return true if the element should be added to the queue
+		 */
+		private boolean handleOverflow(final T element) {
+			switch(overflowPolicy) {
+				case DROP_OLDEST:
+					queue.poll();
+					droppedEvents.incrementAndGet();
+					return true;
+					
+				case DROP_NEWEST:
+					droppedEvents.incrementAndGet();
+					return false;
+					
+				case CONFLATE:
+					droppedEvents.incrementAndGet();
+					
+					if(! replaceQueuedEvent(element)) {
+						queue.poll();
+						return true;
+					}
+					
+					return false;
+					
+				case DISCONNECT:
+					logger.error("Queue of subscriber {} is full ({} events), disconnecting", 
+							subscriber, capacity);
+					droppedEvents.addAndGet(queue.size() + 1);
+					queue.clear();
+					terminated = true;
+					error = new APIException("Subscriber is too slow, queue is full: " + capacity);
+					subscriptions.remove(this);
+					return false;
+					
+				default:
+					throw new IllegalArgumentException("Unknown policy: " + overflowPolicy);
+			}
+		}
+		
+		/**
+		 * Replace the queued event with the same key
+		 * @param element
+		 * @return true if an event was replaced
+		 */
+		private boolean replaceQueuedEvent(final T element) {
+			final Object key = keyFunction == null ? element : keyFunction.apply(element);
+			
+			for(final Iterator<T> iterator = queue.iterator(); iterator.hasNext(); ) {
+				final T queuedElement = iterator.next();
+				
+				if(Objects.equals(key, keyFunction == null ? queuedElement : keyFunction.apply(queuedElement))) {
+					iterator.remove();
+					queue.add(element);
+					return true;
+				}
+			}
+			
+			return false;
+		}
+		
+		/**
+		 * Schedule the drain task, if there is something to deliver
+		 */
+		private void scheduleDrain() {
+			synchronized (this) {
+				if(draining || cancelled) {
+					return;
+				}
+				
+				if(! terminated && (demand == 0 || queue.isEmpty())) {
+					return;
+				}
+				
+				draining = true;
+			}
+			
+			executor.execute(this::drain);
+		}
+		
+		/**
+		 * Deliver the requested events and the terminal signal
+		 */
+		private void drain() {
+			final Throwable terminalError;
+			
+			while(true) {
+				final T element;
+				
+				synchronized (this) {
+					if(cancelled) {
+						return;
+					}
+					
+					if(demand == 0 || queue.isEmpty()) {
+						if(! terminated) {
+							draining = false;
+							return;
+						}
+						
+						droppedEvents.addAndGet(queue.size());
+						queue.clear();
+						cancelled = true;
+						terminalError = error;
+						break;
+					}
+					
+					element = queue.poll();
+					demand--;
+				}
+				
+				try {
+					subscriber.onNext(element);
+					deliveredEvents.incrementAndGet();
+				} catch(Throwable e) {
+					logger.error("Got exception in subscriber {}, cancelling", subscriber, e);
+					cancel();
+					return;
+				}
+			}
+			
+			try {
+				if(terminalError == null) {
+					subscriber.onComplete();
+				} else {
+					subscriber.onError(terminalError);
+				}
+			} catch(Throwable e) {
+				logger.error("Got exception in subscriber {}", subscriber, e);
+			}
+		}
+	}
+}
@@ -71,7 +71,8 @@ public class OrderManager extends SimpleCallbackManager<ExchangeOrder> {
 	private static final int RETRY_DELAY_IN_MS = 1000;
 
 	public OrderManager(final BitfinexApiBroker bitfinexApiBroker) {
-		super(bitfinexApiBroker.getExecutorService());
+		super(bitfinexApiBroker.getExecutorService(), ExchangeOrder::getSymbol, ExchangeOrder::getOrderId, 
+				bitfinexApiBroker.isDedicatedCallbackLanes());
 		this.bitfinexApiBroker = bitfinexApiBroker;
 		this.orders = new ArrayList<>();
 	}
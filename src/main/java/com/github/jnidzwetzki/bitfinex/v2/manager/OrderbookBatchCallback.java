@@ -0,0 +1,36 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.util.List;
+
+@FunctionalInterface
+public interface OrderbookBatchCallback<S, T> {
+
+	/**
+	 * Handle a batch of orderbook entries. A snapshot contains the complete 
+	 * book and replaces all previously received entries (e.g. after a 
+	 * reconnect). Otherwise the entries are updates of the book.
+	 * 
+	 * @param symbol
+	 * @param entries
+	 * @param snapshot
+	 */
+	public void handleBatch(final S symbol, final List<T> entries, final boolean snapshot);
+	
+}
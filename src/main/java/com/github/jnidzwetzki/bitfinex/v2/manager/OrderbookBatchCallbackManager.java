@@ -0,0 +1,207 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Manages the orderbook batch callbacks. A snapshot is delivered as one 
+ * batch, each update as a batch with a single entry. 
+ * 
+ * The batches of a callback are delivered one after another in the order 
+ * of arrival, at most one delivery task per callback is submitted to 
+ * the executor.
+ */
+public class OrderbookBatchCallbackManager<S, T> {
+	
+	/**
+	 * The registered callbacks
+	 */
+	private final Map<S, List<Registration<S, T>>> callbacks;
+
+	/**
+	 * The executor service
+	 */
+	private final ExecutorService executorService;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(OrderbookBatchCallbackManager.class);
+	
+	public OrderbookBatchCallbackManager(final ExecutorService executorService) {
+		this.executorService = executorService;
+		this.callbacks = new ConcurrentHashMap<>();
+	}
+	
+	/**
+	 * Register a new callback
+	 * @param symbol
+	 * @param callback
+	 */
+	public void registerCallback(final S symbol, final OrderbookBatchCallback<S, T> callback) {
+		callbacks.computeIfAbsent(symbol, (s) -> new CopyOnWriteArrayList<>())
+			.add(new Registration<>(callback));
+	}
+	
+	/**
+	 * Remove the callback
+	 * @param symbol
+	 * @param callback
+	 * @return
+	 */
+	public boolean removeCallback(final S symbol, final OrderbookBatchCallback<S, T> callback) {
+		final List<Registration<S, T>> registrations = callbacks.get(symbol);
+		
+		if(registrations == null) {
+			return false;
+		}
+		
+		for(final Registration<S, T> registration : registrations) {
+			if(registration.callback.equals(callback)) {
+				return registrations.remove(registration);
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Handle a new snapshot
+	 * @param symbol
+	 * @param entries
+	 */
+	public void handleSnapshot(final S symbol, final List<T> entries) {
+		handleBatch(symbol, Collections.unmodifiableList(entries), true);
+	}
+	
+	/**
+	 * Handle a new update
+	 * @param symbol
+	 * @param entry
+	 */
+	public void handleUpdate(final S symbol, final T entry) {
+		handleBatch(symbol, Collections.singletonList(entry), false);
+	}
+	
+	/**
+	 * Queue the batch for all callbacks of the symbol
+	 * @param symbol
+	 * @param entries
+	 * @param snapshot
+	 */
+	private void handleBatch(final S symbol, final List<T> entries, final boolean snapshot) {
+		final List<Registration<S, T>> registrations = callbacks.get(symbol);
+		
+		if(registrations == null || registrations.isEmpty()) {
+			return;
+		}
+		
+		final Batch<S, T> batch = new Batch<>(symbol, entries, snapshot);
+		
+		for(final Registration<S, T> registration : registrations) {
+			registration.pendingBatches.add(batch);
+			
+			if(registration.deliveryScheduled.compareAndSet(false, true)) {
+				executorService.submit(() -> deliverPendingBatches(registration));
+			}
+		}
+	}
+	
+	/**
+	 * Deliver the pending batches of the registration
+	 * @param registration
+	 */
+	private void deliverPendingBatches(final Registration<S, T> registration) {
+		while(true) {
+			Batch<S, T> batch;
+			
+			while((batch = registration.pendingBatches.poll()) != null) {
+				try {
+					registration.callback.handleBatch(batch.symbol, batch.entries, batch.snapshot);
+				} catch(Exception e) {
+					logger.error("Got exception while delivering batch for {}", batch.symbol, e);
+				}
+			}
+			
+			registration.deliveryScheduled.set(false);
+			
+			// Batches added after the last poll and before the reset of the flag
+			if(registration.pendingBatches.isEmpty() 
+					|| ! registration.deliveryScheduled.compareAndSet(false, true)) {
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * A registered callback with the pending batches
+	 */
+	private final static class Registration<S, T> {
+		
+		/**
+		 * The callback
+		 */
+		private final OrderbookBatchCallback<S, T> callback;
+		
+		/**
+		 * The pending batches
+		 */
+		private final Queue<Batch<S, T>> pendingBatches;
+		
+		/**
+		 * Is a delivery task submitted
+		 */
+		private final AtomicBoolean deliveryScheduled;
+		
+		public Registration(final OrderbookBatchCallback<S, T> callback) {
+			this.callback = callback;
+			this.pendingBatches = new ConcurrentLinkedQueue<>();
+			this.deliveryScheduled = new AtomicBoolean(false);
+		}
+	}
+	
+	/**
+	 * A snapshot or update batch
+	 */
+	private final static class Batch<S, T> {
+		
+		private final S symbol;
+		
+		private final List<T> entries;
+		
+		private final boolean snapshot;
+		
+		public Batch(final S symbol, final List<T> entries, final boolean snapshot) {
+			this.symbol = symbol;
+			this.entries = entries;
+			this.snapshot = snapshot;
+		}
+	}
+}
@@ -17,15 +17,24 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.manager;
 
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
-import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeOrderbookCommand;
-import com.github.jnidzwetzki.bitfinex.v2.commands.UnsubscribeChannelCommand;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
 import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
 import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.manager.BoundedCallback.OverflowPolicy;
+import com.github.jnidzwetzki.bitfinex.v2.util.MarketDataRingBuffer.EventType;
 
 public class OrderbookManager {
 
@@ -43,11 +52,62 @@ public class OrderbookManager {
 	 * The bitfinex API broker
 	 */
 	private final BitfinexApiBroker bitfinexApiBroker;
+	
+	/**
+	 * The maintained orderbooks
+	 */
+	private final Map<OrderbookConfiguration, AggregatedOrderbook> orderbooks;
+	
+	/**
+	 * The batch callbacks
+	 */
+	private final OrderbookBatchCallbackManager<OrderbookConfiguration, OrderbookEntry> batchCallbacks;
+	
+	/**
+	 * The top of book listeners
+	 */
+	private final TopOfBookCallbackManager<OrderbookConfiguration> topOfBookCallbacks;
+	
+	/**
+	 * The number of verified checksums
+	 */
+	private final AtomicLong verifiedChecksums;
+	
+	/**
+	 * The number of checksum mismatches
+	 */
+	private final AtomicLong checksumMismatches;
+	
+	/**
+	 * The number of snapshots and entries that can't be applied to the orderbook
+	 */
+	private final AtomicLong invalidUpdates;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(OrderbookManager.class);
 
 	public OrderbookManager(final BitfinexApiBroker bitfinexApiBroker) {
 		this.bitfinexApiBroker = bitfinexApiBroker;
 		this.executorService = bitfinexApiBroker.getExecutorService();
-		this.channelCallbacks = new BiConsumerCallbackManager<>(executorService);
+		this.channelCallbacks = new BiConsumerCallbackManager<>(executorService, 
+				bitfinexApiBroker.isDedicatedCallbackLanes());
+		this.orderbooks = new ConcurrentHashMap<>();
+		this.topOfBookCallbacks = new TopOfBookCallbackManager<>();
+		this.verifiedChecksums = new AtomicLong();
+		this.checksumMismatches = new AtomicLong();
+		this.invalidUpdates = new AtomicLong();
+		this.batchCallbacks = new OrderbookBatchCallbackManager<>(executorService);
+	}
+	
+	/**
+	 * Get the locally maintained orderbook
+	 * @param orderbookConfiguration
+	 * @return the orderbook or null
+	 */
+	public AggregatedOrderbook getOrderbook(final OrderbookConfiguration orderbookConfiguration) {
+		return orderbooks.get(orderbookConfiguration);
 	}
 	
 	/**
@@ -62,6 +122,115 @@ public class OrderbookManager {
 		channelCallbacks.registerCallback(orderbookConfiguration, callback);
 	}
 	
+	/**
+	 * Register a new trading orderbook callback with a bounded queue (see {@link BoundedCallback}). 
+	 * The conflate policy replaces the queued event of the same price level.
+	 * @param orderbookConfiguration
+	 * @param callback
+	 * @param capacity - the maximal number of queued events
+	 * @param overflowPolicy - the policy for a full queue
+	 * @return the bounded callback, which provides the event counters
+	 * @throws APIException
+	 */
+	public BoundedCallback<OrderbookConfiguration, OrderbookEntry> registerOrderbookCallback(final OrderbookConfiguration orderbookConfiguration, 
+			final BiConsumer<OrderbookConfiguration, OrderbookEntry> callback, final int capacity, 
+			final OverflowPolicy overflowPolicy) throws APIException {
+		
+		return channelCallbacks.registerBoundedCallback(orderbookConfiguration, callback, capacity, overflowPolicy, 
+				OrderbookManager::getPriceLevelKey);
+	}
+	
+	/**
+	 * Create a new trading orderbook publisher (see {@link EventPublisher}). 
+	 * The conflate policy replaces the queued event of the same price level.
+	 * @param orderbookConfiguration
+	 * @param capacity - the maximal number of queued events per subscriber
+	 * @param overflowPolicy - the policy for a full queue
+	 * @return the publisher, close it to unregister the publisher
+	 */
+	public EventPublisher<OrderbookEntry> createOrderbookPublisher(final OrderbookConfiguration orderbookConfiguration, 
+			final int capacity, final OverflowPolicy overflowPolicy) {
+		
+		return channelCallbacks.createPublisher(orderbookConfiguration, capacity, overflowPolicy, OrderbookManager::getPriceLevelKey);
+	}
+	
+	/**
+	 * Register a new conflating trading orderbook callback. Only the latest 
+	 * entry per price level is delivered when the callback is slower than 
+	 * the feed.
+	 * @param orderbookConfiguration
+	 * @param callback
+	 * @throws APIException
+	 */
+	public void registerConflatingOrderbookCallback(final OrderbookConfiguration orderbookConfiguration, 
+			final BiConsumer<OrderbookConfiguration, OrderbookEntry> callback) throws APIException {
+		
+		channelCallbacks.registerConflatingCallback(orderbookConfiguration, callback, 
+				OrderbookManager::getPriceLevelKey);
+	}
+	
+	/**
+	 * Register a new trading orderbook batch callback. The callback receives a snapshot 
+	 * as one batch and the updates tagged as deltas, in the order of arrival.
+	 * @param orderbookConfiguration
+	 * @param callback
+	 */
+	public void registerOrderbookBatchCallback(final OrderbookConfiguration orderbookConfiguration, 
+			final OrderbookBatchCallback<OrderbookConfiguration, OrderbookEntry> callback) {
+		
+		batchCallbacks.registerCallback(orderbookConfiguration, callback);
+	}
+	
+	/**
+	 * Remove the trading orderbook batch callback
+	 * @param orderbookConfiguration
+	 * @param callback
+	 * @return
+	 */
+	public boolean removeOrderbookBatchCallback(final OrderbookConfiguration orderbookConfiguration, 
+			final OrderbookBatchCallback<OrderbookConfiguration, OrderbookEntry> callback) {
+		
+		return batchCallbacks.removeCallback(orderbookConfiguration, callback);
+	}
+	
+	/**
+	 * Register a new top of book listener, the listener is only called when 
+	 * the best bid / ask or their amounts have changed
+	 * @param orderbookConfiguration
+	 * @param listener
+	 */
+	public void registerTopOfBookListener(final OrderbookConfiguration orderbookConfiguration, 
+			final TopOfBookListener<OrderbookConfiguration> listener) {
+		
+		registerTopOfBookListener(orderbookConfiguration, 1, listener);
+	}
+	
+	/**
+	 * Register a new top of book listener, the listener is only called when 
+	 * the best bid / ask or the aggregated amounts of the top n price levels 
+	 * have changed
+	 * @param orderbookConfiguration
+	 * @param depth
+	 * @param listener
+	 */
+	public void registerTopOfBookListener(final OrderbookConfiguration orderbookConfiguration, 
+			final int depth, final TopOfBookListener<OrderbookConfiguration> listener) {
+		
+		topOfBookCallbacks.registerListener(orderbookConfiguration, depth, listener);
+	}
+	
+	/**
+	 * Remove the top of book listener
+	 * @param orderbookConfiguration
+	 * @param listener
+	 * @return
+	 */
+	public boolean removeTopOfBookListener(final OrderbookConfiguration orderbookConfiguration, 
+			final TopOfBookListener<OrderbookConfiguration> listener) {
+		
+		return topOfBookCallbacks.removeListener(orderbookConfiguration, listener);
+	}
+	
 	/**
 	 * Remove the a trading orderbook callback
 	 * @param symbol
@@ -81,13 +250,11 @@ public class OrderbookManager {
 	 * @param orderBookPrecision
 	 * @param orderBookFrequency
 	 * @param pricePoints
+	 * @return the future of the subscription, completed with the channel id
 	 */
-	public void subscribeOrderbook(final OrderbookConfiguration orderbookConfiguration) {
-		
-		final SubscribeOrderbookCommand subscribeOrderbookCommand 
-			= new SubscribeOrderbookCommand(orderbookConfiguration);
+	public CompletableFuture<Integer> subscribeOrderbook(final OrderbookConfiguration orderbookConfiguration) {
 		
-		bitfinexApiBroker.sendCommand(subscribeOrderbookCommand);
+		return bitfinexApiBroker.subscribeChannel(orderbookConfiguration);
 	}
 	
 	/**
@@ -96,18 +263,41 @@ public class OrderbookManager {
 	 * @param orderBookPrecision
 	 * @param orderBookFrequency
 	 * @param pricePoints
+	 * @return the future of the unsubscription
 	 */
-	public void unsubscribeOrderbook(final OrderbookConfiguration orderbookConfiguration) {
+	public CompletableFuture<Void> unsubscribeOrderbook(final OrderbookConfiguration orderbookConfiguration) {
 		
-		final int channel = bitfinexApiBroker.getChannelForSymbol(orderbookConfiguration);
+		final CompletableFuture<Void> future = bitfinexApiBroker.unsubscribeChannel(orderbookConfiguration);
+		orderbooks.remove(orderbookConfiguration);
 		
-		if(channel == -1) {
-			throw new IllegalArgumentException("Unknown symbol: " + orderbookConfiguration);
+		return future;
+	}
+	
+	/**
+	 * Handle a new orderbook snapshot
+	 * @param configuration
+	 * @param entries
+	 */
+	public void handleOrderbookSnapshot(final OrderbookConfiguration configuration, 
+			final List<OrderbookEntry> entries) {
+		
+		final AggregatedOrderbook orderbook = getOrCreateOrderbook(configuration);
+		
+		try {
+			orderbook.applySnapshot(entries);
+		} catch (ArithmeticException e) {
+			logger.error("Unable to apply snapshot to orderbook {}", configuration, e);
+			resyncOrderbook(configuration, orderbook);
+			return;
 		}
 		
-		final UnsubscribeChannelCommand command = new UnsubscribeChannelCommand(channel);
-		bitfinexApiBroker.sendCommand(command);
-		bitfinexApiBroker.removeChannelForSymbol(orderbookConfiguration);
+		topOfBookCallbacks.handleUpdate(configuration, orderbook);
+		batchCallbacks.handleSnapshot(configuration, entries);
+		
+		for(final OrderbookEntry entry : entries) {
+			bitfinexApiBroker.publishMarketData(EventType.BOOK_LEVEL, configuration, entry);
+			channelCallbacks.handleEvent(configuration, entry);
+		}
 	}
 	
 	/**
@@ -118,6 +308,120 @@ public class OrderbookManager {
 	public void handleNewOrderbookEntry(final OrderbookConfiguration configuration, 
 			final OrderbookEntry entry) {
 		
+		final AggregatedOrderbook orderbook = getOrCreateOrderbook(configuration);
+		
+		try {
+			orderbook.applyEntry(entry);
+		} catch (ArithmeticException e) {
+			logger.error("Unable to apply {} to orderbook {}", entry, configuration, e);
+			resyncOrderbook(configuration, orderbook);
+			return;
+		}
+		
+		topOfBookCallbacks.handleUpdate(configuration, orderbook);
+		batchCallbacks.handleUpdate(configuration, entry);
+		bitfinexApiBroker.publishMarketData(EventType.BOOK_LEVEL, configuration, entry);
+		
 		channelCallbacks.handleEvent(configuration, entry);
 	}
+	
+	/**
+	 * Verify the checksum sent by Bitfinex against the local orderbook. 
+	 * On a mismatch, the local orderbook is cleared and has to be 
+	 * rebuilt from a new snapshot.
+	 * @param configuration
+	 * @param checksum
+	 * @return true if the checksum matches or no orderbook is maintained
+	 */
+	public boolean verifyChecksum(final OrderbookConfiguration configuration, final int checksum) {
+		final AggregatedOrderbook orderbook = orderbooks.get(configuration);
+		
+		if(orderbook == null) {
+			return true;
+		}
+		
+		final int localChecksum = orderbook.getChecksum();
+		verifiedChecksums.incrementAndGet();
+		
+		if(localChecksum == checksum) {
+			return true;
+		}
+		
+		checksumMismatches.incrementAndGet();
+		
+		logger.warn("Checksum mismatch for orderbook {} (expected {}, local {})", 
+				configuration, checksum, localChecksum);
+		
+		orderbook.clear();
+		topOfBookCallbacks.handleUpdate(configuration, orderbook);
+		return false;
+	}
+	
+	/**
+	 * The snapshot or entry can't be applied, the orderbook is out of sync. Like 
+	 * on a checksum mismatch, the orderbook is cleared and the channel is 
+	 * resubscribed. No callbacks are executed for the failed snapshot or entry.
+	 * @param configuration
+	 * @param orderbook
+	 */
+	private void resyncOrderbook(final OrderbookConfiguration configuration, final AggregatedOrderbook orderbook) {
+		invalidUpdates.incrementAndGet();
+		orderbook.clear();
+		topOfBookCallbacks.handleUpdate(configuration, orderbook);
+		bitfinexApiBroker.resubscribeChannel(configuration);
+	}
+	
+	/**
+	 * Get the conflation key of the entry: the price level (the price, negated for asks)
+	 * @param entry
+	 * @return
+	 */
+	private static Object getPriceLevelKey(final OrderbookEntry entry) {
+		if(entry.isFixedPoint()) {
+			final long price = entry.getPriceMantissa();
+			return entry.getAmountMantissa() > 0 ? price : -price;
+		}
+		
+		final BigDecimal price = entry.getPrice().stripTrailingZeros();
+		return entry.getAmount().signum() > 0 ? price : price.negate();
+	}
+	
+	/**
+	 * Get the number of checksums compared with a local orderbook
+	 * @return
+	 */
+	public long getVerifiedChecksums() {
+		return verifiedChecksums.get();
+	}
+	
+	/**
+	 * Get the number of checksum mismatches
+	 * @return
+	 */
+	public long getChecksumMismatches() {
+		return checksumMismatches.get();
+	}
+	
+	/**
+	 * Get the number of snapshots and entries that can't be applied to the orderbook
+	 * @return
+	 */
+	public long getInvalidUpdates() {
+		return invalidUpdates.get();
+	}
+	
+	/**
+	 * Get or create the orderbook for the configuration
+	 * @param configuration
+	 * @return
+	 */
+	private AggregatedOrderbook getOrCreateOrderbook(final OrderbookConfiguration configuration) {
+		final AggregatedOrderbook orderbook = orderbooks.get(configuration);
+		
+		if(orderbook != null) {
+			return orderbook;
+		}
+		
+		return orderbooks.computeIfAbsent(configuration, (c) -> new AggregatedOrderbook(c));
+	}
 }
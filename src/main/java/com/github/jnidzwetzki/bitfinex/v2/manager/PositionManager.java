@@ -31,7 +31,11 @@ public class PositionManager extends SimpleCallbackManager<Position> {
 	private final List<Position> positions;
 
 	public PositionManager(final ExecutorService executorService) {
-		super(executorService);
+		this(executorService, false);
+	}
+	
+	public PositionManager(final ExecutorService executorService, final boolean dedicatedLanes) {
+		super(executorService, Position::getCurreny, Position::getCurreny, dedicatedLanes);
 		this.positions = new ArrayList<>();
 	}
 
@@ -21,14 +21,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.function.BiConsumer;
 
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
-import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeCandlesCommand;
-import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeTickerCommand;
-import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeTradesCommand;
-import com.github.jnidzwetzki.bitfinex.v2.commands.UnsubscribeChannelCommand;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexTick;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ExecutedTrade;
@@ -36,6 +33,8 @@ import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexCandlestickSymbo
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexExecutedTradeSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.manager.BoundedCallback.OverflowPolicy;
+import com.github.jnidzwetzki.bitfinex.v2.util.MarketDataRingBuffer.EventType;
 
 public class QuoteManager {
 	
@@ -77,11 +76,12 @@ public class QuoteManager {
 	public QuoteManager(final BitfinexApiBroker bitfinexApiBroker) {
 		this.bitfinexApiBroker = bitfinexApiBroker;
 		this.executorService = bitfinexApiBroker.getExecutorService();
+		final boolean dedicatedLanes = bitfinexApiBroker.isDedicatedCallbackLanes();
 		this.lastTick = new HashMap<>();
 		this.lastTickTimestamp = new HashMap<>();
-		this.tickerCallbacks = new BiConsumerCallbackManager<>(executorService);
-		this.candleCallbacks = new BiConsumerCallbackManager<>(executorService);
-		this.tradesCallbacks = new BiConsumerCallbackManager<>(executorService);
+		this.tickerCallbacks = new BiConsumerCallbackManager<>(executorService, dedicatedLanes);
+		this.candleCallbacks = new BiConsumerCallbackManager<>(executorService, dedicatedLanes);
+		this.tradesCallbacks = new BiConsumerCallbackManager<>(executorService, dedicatedLanes);
 	}
 	
 	/**
@@ -154,6 +154,51 @@ public class QuoteManager {
 		tickerCallbacks.registerCallback(symbol, callback);
 	}
 	
+	/**
+	 * Register a new tick callback with a bounded queue (see {@link BoundedCallback}). 
+	 * The conflate policy replaces the queued event of the same symbol.
+	 * @param symbol
+	 * @param callback
+	 * @param capacity - the maximal number of queued events
+	 * @param overflowPolicy - the policy for a full queue
+	 * @return the bounded callback, which provides the event counters
+	 * @throws APIException
+	 */
+	public BoundedCallback<BitfinexTickerSymbol, BitfinexTick> registerTickCallback(final BitfinexTickerSymbol symbol, 
+			final BiConsumer<BitfinexTickerSymbol, BitfinexTick> callback, final int capacity, 
+			final OverflowPolicy overflowPolicy) throws APIException {
+		
+		return tickerCallbacks.registerBoundedCallback(symbol, callback, capacity, overflowPolicy, 
+				(tick) -> symbol);
+	}
+	
+	/**
+	 * Create a new tick publisher (see {@link EventPublisher}). 
+	 * The conflate policy replaces the queued event of the same symbol.
+	 * @param symbol
+	 * @param capacity - the maximal number of queued events per subscriber
+	 * @param overflowPolicy - the policy for a full queue
+	 * @return the publisher, close it to unregister the publisher
+	 */
+	public EventPublisher<BitfinexTick> createTickPublisher(final BitfinexTickerSymbol symbol, 
+			final int capacity, final OverflowPolicy overflowPolicy) {
+		
+		return tickerCallbacks.createPublisher(symbol, capacity, overflowPolicy, (tick) -> symbol);
+	}
+	
+	/**
+	 * Register a new conflating tick callback. Only the latest tick is 
+	 * delivered when the callback is slower than the feed.
+	 * @param symbol
+	 * @param callback
+	 * @throws APIException
+	 */
+	public void registerConflatingTickCallback(final BitfinexTickerSymbol symbol, 
+			final BiConsumer<BitfinexTickerSymbol, BitfinexTick> callback) throws APIException {
+		
+		tickerCallbacks.registerConflatingCallback(symbol, callback, (tick) -> symbol);
+	}
+	
 	/**
 	 * Remove the a tick callback
 	 * @param symbol
@@ -173,6 +218,7 @@ public class QuoteManager {
 	 * @param ticksArray
 	 */
 	public void handleTicksList(final BitfinexTickerSymbol symbol, final List<BitfinexTick> ticksBuffer) {
+		ticksBuffer.forEach((t) -> bitfinexApiBroker.publishMarketData(EventType.TICK, symbol, t));
 		tickerCallbacks.handleEventsList(symbol, ticksBuffer);
 	}
 	
@@ -188,32 +234,26 @@ public class QuoteManager {
 			lastTickTimestamp.put(currencyPair, System.currentTimeMillis());
 		}
 		
+		bitfinexApiBroker.publishMarketData(EventType.TICK, currencyPair, tick);
 		tickerCallbacks.handleEvent(currencyPair, tick);
 	}
 	
 	/**
 	 * Subscribe a ticker
 	 * @param tickerSymbol
+	 * @return the future of the subscription, completed with the channel id
 	 */
-	public void subscribeTicker(final BitfinexTickerSymbol tickerSymbol) {
-		final SubscribeTickerCommand command = new SubscribeTickerCommand(tickerSymbol);
-		bitfinexApiBroker.sendCommand(command);
+	public CompletableFuture<Integer> subscribeTicker(final BitfinexTickerSymbol tickerSymbol) {
+		return bitfinexApiBroker.subscribeChannel(tickerSymbol);
 	}
 	
 	/**
 	 * Unsubscribe a ticker
 	 * @param tickerSymbol
+	 * @return the future of the unsubscription
 	 */
-	public void unsubscribeTicker(final BitfinexTickerSymbol tickerSymbol) {		
-		final int channel = bitfinexApiBroker.getChannelForSymbol(tickerSymbol);
-		
-		if(channel == -1) {
-			throw new IllegalArgumentException("Unknown symbol: " + tickerSymbol);
-		}
-		
-		final UnsubscribeChannelCommand command = new UnsubscribeChannelCommand(channel);
-		bitfinexApiBroker.sendCommand(command);
-		bitfinexApiBroker.removeChannelForSymbol(tickerSymbol);
+	public CompletableFuture<Void> unsubscribeTicker(final BitfinexTickerSymbol tickerSymbol) {
+		return bitfinexApiBroker.unsubscribeChannel(tickerSymbol);
 	}
 	
 	/**
@@ -228,6 +268,38 @@ public class QuoteManager {
 		candleCallbacks.registerCallback(symbol, callback);
 	}
 	
+	/**
+	 * Register a new candlestick callback with a bounded queue (see {@link BoundedCallback}). 
+	 * The conflate policy replaces the queued event with the same timestamp.
+	 * @param symbol
+	 * @param callback
+	 * @param capacity - the maximal number of queued events
+	 * @param overflowPolicy - the policy for a full queue
+	 * @return the bounded callback, which provides the event counters
+	 * @throws APIException
+	 */
+	public BoundedCallback<BitfinexCandlestickSymbol, BitfinexTick> registerCandlestickCallback(final BitfinexCandlestickSymbol symbol, 
+			final BiConsumer<BitfinexCandlestickSymbol, BitfinexTick> callback, final int capacity, 
+			final OverflowPolicy overflowPolicy) throws APIException {
+		
+		return candleCallbacks.registerBoundedCallback(symbol, callback, capacity, overflowPolicy, 
+				BitfinexTick::getTimestamp);
+	}
+	
+	/**
+	 * Create a new candlestick publisher (see {@link EventPublisher}). 
+	 * The conflate policy replaces the queued event with the same timestamp.
+	 * @param symbol
+	 * @param capacity - the maximal number of queued events per subscriber
+	 * @param overflowPolicy - the policy for a full queue
+	 * @return the publisher, close it to unregister the publisher
+	 */
+	public EventPublisher<BitfinexTick> createCandlestickPublisher(final BitfinexCandlestickSymbol symbol, 
+			final int capacity, final OverflowPolicy overflowPolicy) {
+		
+		return candleCallbacks.createPublisher(symbol, capacity, overflowPolicy, BitfinexTick::getTimestamp);
+	}
+	
 	/**
 	 * Remove the a candlestick callback
 	 * @param symbol
@@ -242,12 +314,38 @@ public class QuoteManager {
 	}
 	
 
+	/**
+	 * Register a new candlestick list callback, snapshots are delivered in one call
+	 * @param symbol
+	 * @param callback
+	 * @throws APIException
+	 */
+	public void registerCandlestickListCallback(final BitfinexCandlestickSymbol symbol, 
+			final BiConsumer<BitfinexCandlestickSymbol, List<BitfinexTick>> callback) throws APIException {
+		
+		candleCallbacks.registerListCallback(symbol, callback);
+	}
+	
+	/**
+	 * Remove a candlestick list callback
+	 * @param symbol
+	 * @param callback
+	 * @return
+	 * @throws APIException
+	 */
+	public boolean removeCandlestickListCallback(final BitfinexCandlestickSymbol symbol, 
+			final BiConsumer<BitfinexCandlestickSymbol, List<BitfinexTick>> callback) throws APIException {
+		
+		return candleCallbacks.removeListCallback(symbol, callback);
+	}
+
 	/**
 	 * Process a list with candlesticks
 	 * @param symbol
 	 * @param ticksArray
 	 */
 	public void handleCandlestickList(final BitfinexCandlestickSymbol symbol, final List<BitfinexTick> ticksBuffer) {
+		ticksBuffer.forEach((t) -> bitfinexApiBroker.publishMarketData(EventType.CANDLE, symbol, t));
 		candleCallbacks.handleEventsList(symbol, ticksBuffer);
 	}
 	
@@ -263,6 +361,7 @@ public class QuoteManager {
 			lastTickTimestamp.put(currencyPair, System.currentTimeMillis());
 		}
 		
+		bitfinexApiBroker.publishMarketData(EventType.CANDLE, currencyPair, tick);
 		candleCallbacks.handleEvent(currencyPair, tick);
 	}
 	
@@ -270,28 +369,21 @@ public class QuoteManager {
 	 * Subscribe candles for a symbol
 	 * @param currencyPair
 	 * @param timeframe
+	 * @return the future of the subscription, completed with the channel id
 	 */
-	public void subscribeCandles(final BitfinexCandlestickSymbol symbol) {
-		final SubscribeCandlesCommand command = new SubscribeCandlesCommand(symbol);
-		bitfinexApiBroker.sendCommand(command);
+	public CompletableFuture<Integer> subscribeCandles(final BitfinexCandlestickSymbol symbol) {
+		return bitfinexApiBroker.subscribeChannel(symbol);
 	}
 	
 	/**
 	 * Unsubscribe the candles
 	 * @param currencyPair
 	 * @param timeframe
+	 * @return the future of the unsubscription
 	 */
-	public void unsubscribeCandles(final BitfinexCandlestickSymbol symbol) {
-		
-		final int channel = bitfinexApiBroker.getChannelForSymbol(symbol);
-		
-		if(channel == -1) {
-			throw new IllegalArgumentException("Unknown symbol: " + symbol);
-		}
+	public CompletableFuture<Void> unsubscribeCandles(final BitfinexCandlestickSymbol symbol) {
 		
-		final UnsubscribeChannelCommand command = new UnsubscribeChannelCommand(channel);
-		bitfinexApiBroker.sendCommand(command);
-		bitfinexApiBroker.removeChannelForSymbol(symbol);
+		return bitfinexApiBroker.unsubscribeChannel(symbol);
 	}
 
 	
@@ -307,6 +399,38 @@ public class QuoteManager {
 		tradesCallbacks.registerCallback(orderbookConfiguration, callback);
 	}
 	
+	/**
+	 * Register a new executed trade callback with a bounded queue (see {@link BoundedCallback}). 
+	 * The conflate policy replaces the queued event with the same trade id.
+	 * @param tradeSymbol
+	 * @param callback
+	 * @param capacity - the maximal number of queued events
+	 * @param overflowPolicy - the policy for a full queue
+	 * @return the bounded callback, which provides the event counters
+	 * @throws APIException
+	 */
+	public BoundedCallback<BitfinexExecutedTradeSymbol, ExecutedTrade> registerExecutedTradeCallback(final BitfinexExecutedTradeSymbol tradeSymbol, 
+			final BiConsumer<BitfinexExecutedTradeSymbol, ExecutedTrade> callback, final int capacity, 
+			final OverflowPolicy overflowPolicy) throws APIException {
+		
+		return tradesCallbacks.registerBoundedCallback(tradeSymbol, callback, capacity, overflowPolicy, 
+				ExecutedTrade::getId);
+	}
+	
+	/**
+	 * Create a new executed trade publisher (see {@link EventPublisher}). 
+	 * The conflate policy replaces the queued event with the same trade id.
+	 * @param tradeSymbol
+	 * @param capacity - the maximal number of queued events per subscriber
+	 * @param overflowPolicy - the policy for a full queue
+	 * @return the publisher, close it to unregister the publisher
+	 */
+	public EventPublisher<ExecutedTrade> createExecutedTradePublisher(final BitfinexExecutedTradeSymbol tradeSymbol, 
+			final int capacity, final OverflowPolicy overflowPolicy) {
+		
+		return tradesCallbacks.createPublisher(tradeSymbol, capacity, overflowPolicy, ExecutedTrade::getId);
+	}
+	
 	/**
 	 * Remove a executed trade callback
 	 * @param symbol
@@ -320,19 +444,42 @@ public class QuoteManager {
 		return tradesCallbacks.removeCallback(tradeSymbol, callback);
 	}
 	
+	/**
+	 * Register a new executed trade list callback, snapshots are delivered in one call
+	 * @param tradeSymbol
+	 * @param callback
+	 * @throws APIException
+	 */
+	public void registerExecutedTradeListCallback(final BitfinexExecutedTradeSymbol tradeSymbol, 
+			final BiConsumer<BitfinexExecutedTradeSymbol, List<ExecutedTrade>> callback) throws APIException {
+		
+		tradesCallbacks.registerListCallback(tradeSymbol, callback);
+	}
+	
+	/**
+	 * Remove a executed trade list callback
+	 * @param tradeSymbol
+	 * @param callback
+	 * @return
+	 * @throws APIException
+	 */
+	public boolean removeExecutedTradeListCallback(final BitfinexExecutedTradeSymbol tradeSymbol, 
+			final BiConsumer<BitfinexExecutedTradeSymbol, List<ExecutedTrade>> callback) throws APIException {
+		
+		return tradesCallbacks.removeListCallback(tradeSymbol, callback);
+	}
+	
 	/**
 	 * Subscribe a executed trade channel
 	 * @param currencyPair
 	 * @param orderBookPrecision
 	 * @param orderBookFrequency
 	 * @param pricePoints
+	 * @return the future of the subscription, completed with the channel id
 	 */
-	public void subscribeExecutedTrades(final BitfinexExecutedTradeSymbol tradeSymbol) {
+	public CompletableFuture<Integer> subscribeExecutedTrades(final BitfinexExecutedTradeSymbol tradeSymbol) {
 		
-		final SubscribeTradesCommand subscribeOrderbookCommand 
-			= new SubscribeTradesCommand(tradeSymbol);
-		
-		bitfinexApiBroker.sendCommand(subscribeOrderbookCommand);
+		return bitfinexApiBroker.subscribeChannel(tradeSymbol);
 	}
 	
 	/**
@@ -341,18 +488,11 @@ public class QuoteManager {
 	 * @param orderBookPrecision
 	 * @param orderBookFrequency
 	 * @param pricePoints
+	 * @return the future of the unsubscription
 	 */
-	public void unsubscribeExecutedTrades(final BitfinexExecutedTradeSymbol tradeSymbol) {
-		
-		final int channel = bitfinexApiBroker.getChannelForSymbol(tradeSymbol);
+	public CompletableFuture<Void> unsubscribeExecutedTrades(final BitfinexExecutedTradeSymbol tradeSymbol) {
 		
-		if(channel == -1) {
-			throw new IllegalArgumentException("Unknown symbol: " + tradeSymbol);
-		}
-		
-		final UnsubscribeChannelCommand command = new UnsubscribeChannelCommand(channel);
-		bitfinexApiBroker.sendCommand(command);
-		bitfinexApiBroker.removeChannelForSymbol(tradeSymbol);
+		return bitfinexApiBroker.unsubscribeChannel(tradeSymbol);
 	}
 	
 	/**
@@ -363,7 +503,19 @@ public class QuoteManager {
 	public void handleExecutedTradeEntry(final BitfinexExecutedTradeSymbol tradeSymbol, 
 			final ExecutedTrade entry) {
 		
+		bitfinexApiBroker.publishMarketData(EventType.TRADE, tradeSymbol, entry);
 		tradesCallbacks.handleEvent(tradeSymbol, entry);
 	}
 	
+	/**
+	 * Process a list with executed trades
+	 * @param tradeSymbol
+	 * @param entries
+	 */
+	public void handleExecutedTradeList(final BitfinexExecutedTradeSymbol tradeSymbol, 
+			final List<ExecutedTrade> entries) {
+		
+		entries.forEach((e) -> bitfinexApiBroker.publishMarketData(EventType.TRADE, tradeSymbol, e));
+		tradesCallbacks.handleEventsList(tradeSymbol, entries);
+	}
 }
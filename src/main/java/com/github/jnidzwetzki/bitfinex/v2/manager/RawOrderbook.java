@@ -0,0 +1,924 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+import com.github.jnidzwetzki.bitfinex.v2.util.LongIntHashMap;
+import com.github.jnidzwetzki.bitfinex.v2.util.OrderbookChecksum;
+
+/**
+ * A locally maintained raw (R0) orderbook, indexed by order id.
+ * 
+ * The orders are stored in primitive slot arrays and indexed by an open 
+ * addressing long -> int map. Orders with the same price are collected in 
+ * a price level, which holds the aggregated amount, the number of orders 
+ * and the orders in queue (arrival) order. The price levels of each side
+ * are kept sorted (bids descending, asks ascending). 
+ * 
+ * The book is written by the feed thread only. Readers use optimistic 
+ * reads and fall back to a read lock on contention.
+ */
+public class RawOrderbook implements TopOfBookCallbackManager.TopOfBookSource {
+	
+	public enum Side {
+		BID,
+		ASK;
+	}
+	
+	/**
+	 * The value for a missing price or amount
+	 */
+	public final static long NO_VALUE = Long.MIN_VALUE;
+	
+	/**
+	 * The marker for a missing slot
+	 */
+	private final static int NO_SLOT = -1;
+	
+	/**
+	 * The initial capacity
+	 */
+	private final static int INITIAL_CAPACITY = 256;
+
+	/**
+	 * The configuration of the book
+	 */
+	private final RawOrderbookConfiguration configuration;
+	
+	/**
+	 * The scale of the prices
+	 */
+	private final int priceScale;
+	
+	/**
+	 * The scale of the amounts
+	 */
+	private final int amountScale;
+	
+	/**
+	 * The order id -> order slot index
+	 */
+	private final LongIntHashMap orderIndex;
+	
+	/**
+	 * The orders (slot arrays, linked into the queue of the price level)
+	 */
+	private long[] orderIds;
+	private long[] orderPrices;
+	private long[] orderAmounts;
+	private int[] orderLevels;
+	private int[] orderNext;
+	private int[] orderPrev;
+	
+	/**
+	 * The first free order slot
+	 */
+	private int freeOrderSlot;
+	
+	/**
+	 * The price levels (slot arrays)
+	 */
+	private long[] levelPrices;
+	private long[] levelAmounts;
+	private int[] levelOrderCounts;
+	private int[] levelHeads;
+	private int[] levelTails;
+	
+	/**
+	 * The first free level slot (linked via levelHeads)
+	 */
+	private int freeLevelSlot;
+	
+	/**
+	 * The sides of the book
+	 */
+	private final BookSide bids;
+	private final BookSide asks;
+	
+	/**
+	 * The lock for the book
+	 */
+	private final StampedLock lock;
+	
+	public RawOrderbook(final RawOrderbookConfiguration configuration) {
+		this.configuration = configuration;
+		this.priceScale = configuration.getCurrencyPair().getPriceScale();
+		this.amountScale = configuration.getCurrencyPair().getAmountScale();
+		this.orderIndex = new LongIntHashMap(INITIAL_CAPACITY);
+		this.bids = new BookSide(true);
+		this.asks = new BookSide(false);
+		this.lock = new StampedLock();
+		
+		allocateOrders(INITIAL_CAPACITY);
+		allocateLevels(INITIAL_CAPACITY);
+	}
+	
+	/**
+	 * Replace the content of the book with the snapshot
+	 * @param entries
+	 */
+	public void applySnapshot(final List<RawOrderbookEntry> entries) {
+		final long stamp = lock.writeLock();
+		
+		try {
+			clearBook();
+			
+			for(final RawOrderbookEntry entry : entries) {
+				applyUpdate(entry.getOrderId(), getPriceMantissa(entry), getAmountMantissa(entry));
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * Apply a update to the book
+	 * @param entry
+	 */
+	public void applyEntry(final RawOrderbookEntry entry) {
+		update(entry.getOrderId(), getPriceMantissa(entry), getAmountMantissa(entry));
+	}
+	
+	/**
+	 * Apply a update to the book. A price of 0 removes the order.
+	 * 
+	 * @param orderId
+	 * @param price - the price mantissa
+	 * @param amount - the amount mantissa (> 0 = bid, < 0 = ask)
+	 */
+	public void update(final long orderId, final long price, final long amount) {
+		final long stamp = lock.writeLock();
+		
+		try {
+			applyUpdate(orderId, price, amount);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * Remove all orders
+	 */
+	public void clear() {
+		final long stamp = lock.writeLock();
+		
+		try {
+			clearBook();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * Get the number of orders in the book
+	 * @return
+	 */
+	public int getOrderCount() {
+		return readInt(() -> orderIndex.size());
+	}
+	
+	/**
+	 * Get the order
+	 * @param orderId
+	 * @return the order or null
+	 */
+	public RawOrderbookEntry getOrder(final long orderId) {
+		return read(() -> {
+			final int slot = orderIndex.get(orderId);
+			
+			if(slot == LongIntHashMap.NO_VALUE) {
+				return null;
+			}
+			
+			return new RawOrderbookEntry(orderIds[slot], orderPrices[slot], orderAmounts[slot], 
+					priceScale, amountScale);
+		});
+	}
+	
+	/**
+	 * Get the number of price levels
+	 * @param side
+	 * @return
+	 */
+	public int getLevels(final Side side) {
+		final BookSide bookSide = getSide(side);
+		return readInt(() -> bookSide.size);
+	}
+	
+	/**
+	 * Get the best bid price (mantissa)
+	 * @return the price or NO_VALUE
+	 */
+	public long getBestBidPrice() {
+		return getPrice(Side.BID, 0);
+	}
+	
+	/**
+	 * Get the best ask price (mantissa)
+	 * @return the price or NO_VALUE
+	 */
+	public long getBestAskPrice() {
+		return getPrice(Side.ASK, 0);
+	}
+	
+	/**
+	 * Get the price (mantissa) of the level
+	 * @param side
+	 * @param level - 0 = best price
+	 * @return the price or NO_VALUE
+	 */
+	public long getPrice(final Side side, final int level) {
+		final BookSide bookSide = getSide(side);
+		
+		return readLong(() -> {
+			final int levelSlot = bookSide.getLevelSlot(level);
+			return levelSlot == NO_SLOT ? NO_VALUE : levelPrices[levelSlot];
+		});
+	}
+	
+	/**
+	 * Get the aggregated amount (mantissa) of the level
+	 * @param side
+	 * @param level - 0 = best price
+	 * @return the amount or NO_VALUE
+	 */
+	public long getAmount(final Side side, final int level) {
+		final BookSide bookSide = getSide(side);
+		
+		return readLong(() -> {
+			final int levelSlot = bookSide.getLevelSlot(level);
+			return levelSlot == NO_SLOT ? NO_VALUE : levelAmounts[levelSlot];
+		});
+	}
+	
+	/**
+	 * Get the number of orders of the level
+	 * @param side
+	 * @param level - 0 = best price
+	 * @return the number of orders
+	 */
+	public int getOrderCount(final Side side, final int level) {
+		final BookSide bookSide = getSide(side);
+		
+		return readInt(() -> {
+			final int levelSlot = bookSide.getLevelSlot(level);
+			return levelSlot == NO_SLOT ? 0 : levelOrderCounts[levelSlot];
+		});
+	}
+	
+	/**
+	 * Get the aggregated amount (mantissa) for the price
+	 * @param side
+	 * @param price
+	 * @return the amount or 0
+	 */
+	public long getAmountForPrice(final Side side, final long price) {
+		final BookSide bookSide = getSide(side);
+		
+		return readLong(() -> {
+			final int levelSlot = bookSide.priceIndex.get(price);
+			return levelSlot == LongIntHashMap.NO_VALUE ? 0 : levelAmounts[levelSlot];
+		});
+	}
+	
+	/**
+	 * Get the orders of the level in queue order
+	 * @param side
+	 * @param level - 0 = best price
+	 * @return
+	 */
+	public List<RawOrderbookEntry> getOrders(final Side side, final int level) {
+		final BookSide bookSide = getSide(side);
+		
+		return read(() -> {
+			final int levelSlot = bookSide.getLevelSlot(level);
+			
+			if(levelSlot == NO_SLOT) {
+				return new ArrayList<>();
+			}
+			
+			final int orders = levelOrderCounts[levelSlot];
+			final List<RawOrderbookEntry> result = new ArrayList<>(orders);
+			int slot = levelHeads[levelSlot];
+			
+			for(int i = 0; i < orders && slot != NO_SLOT; i++) {
+				result.add(new RawOrderbookEntry(orderIds[slot], orderPrices[slot], orderAmounts[slot], 
+						priceScale, amountScale));
+				slot = orderNext[slot];
+			}
+			
+			return result;
+		});
+	}
+	
+	/**
+	 * Copy the order ids of the level in queue order
+	 * @param side
+	 * @param level - 0 = best price
+	 * @param target
+	 * @return the number of copied order ids
+	 */
+	public int getOrderIds(final Side side, final int level, final long[] target) {
+		final BookSide bookSide = getSide(side);
+		
+		return readInt(() -> {
+			final int levelSlot = bookSide.getLevelSlot(level);
+			
+			if(levelSlot == NO_SLOT) {
+				return 0;
+			}
+			
+			final int orders = Math.min(levelOrderCounts[levelSlot], target.length);
+			int slot = levelHeads[levelSlot];
+			int copied = 0;
+			
+			while(copied < orders && slot != NO_SLOT) {
+				target[copied++] = orderIds[slot];
+				slot = orderNext[slot];
+			}
+			
+			return copied;
+		});
+	}
+	
+	/**
+	 * Calculate the checksum of the book (see {@link OrderbookChecksum}). 
+	 * The orders of a price level are covered in queue order.
+	 * @return
+	 */
+	public int getChecksum() {
+		final int[] bidOrders = new int[OrderbookChecksum.DEPTH];
+		final int[] askOrders = new int[OrderbookChecksum.DEPTH];
+		final OrderbookChecksum checksum = new OrderbookChecksum();
+		final long stamp = lock.readLock();
+		
+		try {
+			final int bidCount = bids.copyOrderSlots(bidOrders);
+			final int askCount = asks.copyOrderSlots(askOrders);
+			
+			for(int i = 0; i < OrderbookChecksum.DEPTH; i++) {
+				if(i < bidCount) {
+					final int slot = bidOrders[i];
+					checksum.addEntry(orderIds[slot], 0, orderAmounts[slot], amountScale);
+				}
+				
+				if(i < askCount) {
+					final int slot = askOrders[i];
+					checksum.addEntry(orderIds[slot], 0, orderAmounts[slot], amountScale);
+				}
+			}
+		} finally {
+			lock.unlockRead(stamp);
+		}
+		
+		return checksum.getChecksum();
+	}
+	
+	/**
+	 * Read the best prices and the aggregated amounts of the top n price levels
+	 * (see {@link TopOfBookCallbackManager})
+	 * @param depth
+	 * @param target
+	 */
+	@Override
+	public void getTopOfBook(final int depth, final long[] target) {
+		readInt(() -> {
+			bids.copyTop(depth, target, TopOfBookCallbackManager.BID_PRICE, TopOfBookCallbackManager.BID_AMOUNT);
+			asks.copyTop(depth, target, TopOfBookCallbackManager.ASK_PRICE, TopOfBookCallbackManager.ASK_AMOUNT);
+			return 0;
+		});
+	}
+	
+	/**
+	 * Get the configuration of the book
+	 * @return
+	 */
+	public RawOrderbookConfiguration getConfiguration() {
+		return configuration;
+	}
+	
+	/**
+	 * Get the scale of the prices
+	 * @return
+	 */
+	public int getPriceScale() {
+		return priceScale;
+	}
+	
+	/**
+	 * Get the scale of the amounts
+	 * @return
+	 */
+	public int getAmountScale() {
+		return amountScale;
+	}
+	
+	/**
+	 * Apply the update, the write lock has to be held by the caller
+	 * @param orderId
+	 * @param price
+	 * @param amount
+	 */
+	private void applyUpdate(final long orderId, final long price, final long amount) {
+		final int slot = orderIndex.get(orderId);
+		
+		if(price == 0) {
+			if(slot != LongIntHashMap.NO_VALUE) {
+				removeOrder(slot);
+			}
+			return;
+		}
+		
+		final BookSide side = amount > 0 ? bids : asks;
+		
+		if(slot != LongIntHashMap.NO_VALUE) {
+			final BookSide oldSide = orderAmounts[slot] > 0 ? bids : asks;
+			
+			// Same price level, the order keeps its queue position
+			if(orderPrices[slot] == price && oldSide == side) {
+				levelAmounts[orderLevels[slot]] += amount - orderAmounts[slot];
+				orderAmounts[slot] = amount;
+				return;
+			}
+			
+			removeOrder(slot);
+		}
+		
+		addOrder(orderId, price, amount, side);
+	}
+	
+	/**
+	 * Add a new order at the end of the queue of the price level
+	 * @param orderId
+	 * @param price
+	 * @param amount
+	 * @param side
+	 */
+	private void addOrder(final long orderId, final long price, final long amount, final BookSide side) {
+		int levelSlot = side.priceIndex.get(price);
+		
+		if(levelSlot == LongIntHashMap.NO_VALUE) {
+			levelSlot = allocateLevel(price);
+			side.insert(levelSlot, price);
+		}
+		
+		final int slot = allocateOrder();
+		orderIds[slot] = orderId;
+		orderPrices[slot] = price;
+		orderAmounts[slot] = amount;
+		orderLevels[slot] = levelSlot;
+		orderNext[slot] = NO_SLOT;
+		orderPrev[slot] = levelTails[levelSlot];
+		
+		if(levelTails[levelSlot] == NO_SLOT) {
+			levelHeads[levelSlot] = slot;
+		} else {
+			orderNext[levelTails[levelSlot]] = slot;
+		}
+		
+		levelTails[levelSlot] = slot;
+		levelAmounts[levelSlot] += amount;
+		levelOrderCounts[levelSlot]++;
+		
+		orderIndex.put(orderId, slot);
+	}
+	
+	/**
+	 * Remove the order
+	 * @param slot
+	 */
+	private void removeOrder(final int slot) {
+		final int levelSlot = orderLevels[slot];
+		final int prev = orderPrev[slot];
+		final int next = orderNext[slot];
+		
+		if(prev == NO_SLOT) {
+			levelHeads[levelSlot] = next;
+		} else {
+			orderNext[prev] = next;
+		}
+		
+		if(next == NO_SLOT) {
+			levelTails[levelSlot] = prev;
+		} else {
+			orderPrev[next] = prev;
+		}
+		
+		levelAmounts[levelSlot] -= orderAmounts[slot];
+		levelOrderCounts[levelSlot]--;
+		
+		if(levelOrderCounts[levelSlot] == 0) {
+			final BookSide side = orderAmounts[slot] > 0 ? bids : asks;
+			side.remove(levelSlot, levelPrices[levelSlot]);
+			freeLevel(levelSlot);
+		}
+		
+		orderIndex.remove(orderIds[slot]);
+		
+		// Add slot to free list
+		orderNext[slot] = freeOrderSlot;
+		freeOrderSlot = slot;
+	}
+	
+	/**
+	 * Remove all orders and levels
+	 */
+	private void clearBook() {
+		orderIndex.clear();
+		bids.clear();
+		asks.clear();
+		allocateOrders(orderIds.length);
+		allocateLevels(levelPrices.length);
+	}
+	
+	/**
+	 * Get a free order slot
+	 * @return
+	 */
+	private int allocateOrder() {
+		if(freeOrderSlot == NO_SLOT) {
+			allocateOrders(orderIds.length * 2);
+		}
+		
+		final int slot = freeOrderSlot;
+		freeOrderSlot = orderNext[slot];
+		return slot;
+	}
+	
+	/**
+	 * Get a free level slot
+	 * @param price
+	 * @return
+	 */
+	private int allocateLevel(final long price) {
+		if(freeLevelSlot == NO_SLOT) {
+			allocateLevels(levelPrices.length * 2);
+		}
+		
+		final int levelSlot = freeLevelSlot;
+		freeLevelSlot = levelHeads[levelSlot];
+		
+		levelPrices[levelSlot] = price;
+		levelAmounts[levelSlot] = 0;
+		levelOrderCounts[levelSlot] = 0;
+		levelHeads[levelSlot] = NO_SLOT;
+		levelTails[levelSlot] = NO_SLOT;
+		
+		return levelSlot;
+	}
+	
+	/**
+	 * Return the level slot to the free list
+	 * @param levelSlot
+	 */
+	private void freeLevel(final int levelSlot) {
+		levelHeads[levelSlot] = freeLevelSlot;
+		freeLevelSlot = levelSlot;
+	}
+	
+	/**
+	 * Allocate the order arrays. Existing orders are kept if the capacity grows, 
+	 * the new slots are added to the free list.
+	 * @param capacity
+	 */
+	private void allocateOrders(final int capacity) {
+		final int oldCapacity = (orderIds == null || orderIndex.isEmpty()) ? 0 : orderIds.length;
+		
+		orderIds = oldCapacity == 0 ? new long[capacity] : Arrays.copyOf(orderIds, capacity);
+		orderPrices = oldCapacity == 0 ? new long[capacity] : Arrays.copyOf(orderPrices, capacity);
+		orderAmounts = oldCapacity == 0 ? new long[capacity] : Arrays.copyOf(orderAmounts, capacity);
+		orderLevels = oldCapacity == 0 ? new int[capacity] : Arrays.copyOf(orderLevels, capacity);
+		orderNext = oldCapacity == 0 ? new int[capacity] : Arrays.copyOf(orderNext, capacity);
+		orderPrev = oldCapacity == 0 ? new int[capacity] : Arrays.copyOf(orderPrev, capacity);
+		
+		for(int i = capacity - 1; i >= oldCapacity; i--) {
+			orderNext[i] = (i == capacity - 1) ? NO_SLOT : i + 1;
+		}
+		
+		freeOrderSlot = oldCapacity == 0 ? 0 : oldCapacity;
+	}
+	
+	/**
+	 * Allocate the level arrays. Existing levels are kept if the capacity grows, 
+	 * the new slots are added to the free list.
+	 * @param capacity
+	 */
+	private void allocateLevels(final int capacity) {
+		final int oldCapacity = (levelPrices == null || (bids.size == 0 && asks.size == 0)) 
+				? 0 : levelPrices.length;
+		
+		levelPrices = oldCapacity == 0 ? new long[capacity] : Arrays.copyOf(levelPrices, capacity);
+		levelAmounts = oldCapacity == 0 ? new long[capacity] : Arrays.copyOf(levelAmounts, capacity);
+		levelOrderCounts = oldCapacity == 0 ? new int[capacity] : Arrays.copyOf(levelOrderCounts, capacity);
+		levelHeads = oldCapacity == 0 ? new int[capacity] : Arrays.copyOf(levelHeads, capacity);
+		levelTails = oldCapacity == 0 ? new int[capacity] : Arrays.copyOf(levelTails, capacity);
+		
+		for(int i = capacity - 1; i >= oldCapacity; i--) {
+			levelHeads[i] = (i == capacity - 1) ? NO_SLOT : i + 1;
+		}
+		
+		freeLevelSlot = oldCapacity == 0 ? 0 : oldCapacity;
+	}
+	
+	/**
+	 * Get the side of the book
+	 * @param side
+	 * @return
+	 */
+	private BookSide getSide(final Side side) {
+		return side == Side.BID ? bids : asks;
+	}
+	
+	/**
+	 * Execute the reader with a optimistic read, fall back to a read lock
+	 * @param reader
+	 * @return
+	 */
+	private <T> T read(final Supplier<T> reader) {
+		final long optimisticStamp = lock.tryOptimisticRead();
+		
+		if(optimisticStamp != 0) {
+			try {
+				final T result = reader.get();
+				
+				if(lock.validate(optimisticStamp)) {
+					return result;
+				}
+			} catch (RuntimeException e) {
+				// Inconsistent state read, retry with read lock
+				if(lock.validate(optimisticStamp)) {
+					throw e;
+				}
+			}
+		}
+		
+		final long stamp = lock.readLock();
+		
+		try {
+			return reader.get();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	 * Execute the reader with a optimistic read, fall back to a read lock
+	 * @param reader
+	 * @return
+	 */
+	private long readLong(final LongSupplier reader) {
+		final long optimisticStamp = lock.tryOptimisticRead();
+		
+		if(optimisticStamp != 0) {
+			try {
+				final long result = reader.getAsLong();
+				
+				if(lock.validate(optimisticStamp)) {
+					return result;
+				}
+			} catch (RuntimeException e) {
+				// Inconsistent state read, retry with read lock
+				if(lock.validate(optimisticStamp)) {
+					throw e;
+				}
+			}
+		}
+		
+		final long stamp = lock.readLock();
+		
+		try {
+			return reader.getAsLong();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	 * Execute the reader with a optimistic read, fall back to a read lock
+	 * @param reader
+	 * @return
+	 */
+	private int readInt(final IntSupplier reader) {
+		return (int) readLong(() -> reader.getAsInt());
+	}
+	
+	/**
+	 * Get the price of the entry in the scale of the book
+	 * @param entry
+	 * @return
+	 */
+	private long getPriceMantissa(final RawOrderbookEntry entry) {
+		if(entry.isFixedPoint() && entry.getPriceScale() == priceScale) {
+			return entry.getPriceMantissa();
+		}
+		
+		return FixedPoint.toExactMantissa(entry.getPrice(), priceScale);
+	}
+	
+	/**
+	 * Get the amount of the entry in the scale of the book
+	 * @param entry
+	 * @return
+	 */
+	private long getAmountMantissa(final RawOrderbookEntry entry) {
+		if(entry.isFixedPoint() && entry.getAmountScale() == amountScale) {
+			return entry.getAmountMantissa();
+		}
+		
+		return FixedPoint.toExactMantissa(entry.getAmount(), amountScale);
+	}
+	
+	@Override
+	public String toString() {
+		return "RawOrderbook [configuration=" + configuration + ", orders=" + getOrderCount() 
+			+ ", bidLevels=" + getLevels(Side.BID) + ", askLevels=" + getLevels(Side.ASK) + "]";
+	}
+	
+	/**
+	 * The sorted price levels of one side
+	 */
+	private final class BookSide {
+		
+		/**
+		 * Is the side sorted descending (bids)
+		 */
+		private final boolean descending;
+		
+		/**
+		 * The price -> level slot index
+		 */
+		private final LongIntHashMap priceIndex;
+		
+		/**
+		 * The level slots sorted by price
+		 */
+		private int[] sortedLevels;
+		
+		/**
+		 * The number of levels
+		 */
+		private int size;
+		
+		public BookSide(final boolean descending) {
+			this.descending = descending;
+			this.priceIndex = new LongIntHashMap();
+			this.sortedLevels = new int[64];
+		}
+		
+		/**
+		 * Get the level slot of the n-th level
+		 * @param level
+		 * @return
+		 */
+		public int getLevelSlot(final int level) {
+			final int[] levels = sortedLevels;
+			
+			if(level < 0 || level >= size || level >= levels.length) {
+				return NO_SLOT;
+			}
+			
+			return levels[level];
+		}
+		
+		/**
+		 * Insert the level
+		 * @param levelSlot
+		 * @param price
+		 */
+		public void insert(final int levelSlot, final long price) {
+			final int insertPos = -(search(price) + 1);
+			
+			if(size == sortedLevels.length) {
+				sortedLevels = Arrays.copyOf(sortedLevels, size * 2);
+			}
+			
+			System.arraycopy(sortedLevels, insertPos, sortedLevels, insertPos + 1, size - insertPos);
+			sortedLevels[insertPos] = levelSlot;
+			priceIndex.put(price, levelSlot);
+			size++;
+		}
+		
+		/**
+		 * Remove the level
+		 * @param levelSlot
+		 * @param price
+		 */
+		public void remove(final int levelSlot, final long price) {
+			final int pos = search(price);
+			
+			if(pos < 0) {
+				return;
+			}
+			
+			System.arraycopy(sortedLevels, pos + 1, sortedLevels, pos, size - pos - 1);
+			priceIndex.remove(price);
+			size--;
+		}
+		
+		/**
+		 * Copy the best price and the aggregated amount of the top levels
+		 * @param depth
+		 * @param target
+		 * @param pricePos
+		 * @param amountPos
+		 */
+		public void copyTop(final int depth, final long[] target, final int pricePos, final int amountPos) {
+			final int levels = Math.min(depth, size);
+			
+			if(levels <= 0) {
+				target[pricePos] = NO_VALUE;
+				target[amountPos] = NO_VALUE;
+				return;
+			}
+			
+			long amount = 0;
+			
+			for(int level = 0; level < levels; level++) {
+				amount += levelAmounts[sortedLevels[level]];
+			}
+			
+			target[pricePos] = levelPrices[sortedLevels[0]];
+			target[amountPos] = amount;
+		}
+		
+		/**
+		 * Copy the order slots of the best orders (price and queue order)
+		 * @param target
+		 * @return the number of copied slots
+		 */
+		public int copyOrderSlots(final int[] target) {
+			int copied = 0;
+			
+			for(int level = 0; level < size && copied < target.length; level++) {
+				int slot = levelHeads[sortedLevels[level]];
+				
+				while(slot != NO_SLOT && copied < target.length) {
+					target[copied++] = slot;
+					slot = orderNext[slot];
+				}
+			}
+			
+			return copied;
+		}
+		
+		/**
+		 * Remove all levels
+		 */
+		public void clear() {
+			priceIndex.clear();
+			size = 0;
+		}
+		
+		/**
+		 * Binary search for the price
+		 * @param price
+		 * @return the position or (-(insertion point) - 1)
+		 */
+		private int search(final long price) {
+			int low = 0;
+			int high = size - 1;
+			
+			while(low <= high) {
+				final int mid = (low + high) >>> 1;
+				final long midPrice = levelPrices[sortedLevels[mid]];
+				
+				final int cmp = descending ? Long.compare(price, midPrice) : Long.compare(midPrice, price);
+				
+				if(cmp < 0) {
+					low = mid + 1;
+				} else if(cmp > 0) {
+					high = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+			
+			return -(low + 1);
+		}
+	}
+}
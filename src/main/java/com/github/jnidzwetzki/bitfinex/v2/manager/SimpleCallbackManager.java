@@ -17,26 +17,75 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.manager;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.github.jnidzwetzki.bitfinex.v2.manager.BoundedCallback.OverflowPolicy;
+import com.github.jnidzwetzki.bitfinex.v2.util.StripedExecutor;
 
 public class SimpleCallbackManager<T> {
 	
 	/**
-	 * The order callbacks
+	 * The order callbacks (copy on write, events are processed without locking)
 	 */
 	private final List<Consumer<T>> callbacks;
 	
+	/**
+	 * The publishers, they queue the events for their subscribers on their own
+	 */
+	private final List<EventPublisher<T>> publishers;
+	
+	/**
+	 * The executor for the events
+	 */
+	private final StripedExecutor stripedExecutor;
+	
+	/**
+	 * The stripe of a event (e.g. the symbol), events with the same stripe 
+	 * are delivered in order
+	 */
+	private final Function<T, ?> stripeFunction;
+	
+	/**
+	 * The key of a event for the conflate overflow policy (e.g. the order id)
+	 */
+	private final Function<T, ?> keyFunction;
+	
 	/**
 	 * The executor service
 	 */
 	private final ExecutorService executorService;
 	
-	public SimpleCallbackManager(ExecutorService executorService) {
-		this.callbacks = new ArrayList<>();
+	public SimpleCallbackManager(final ExecutorService executorService) {
+		this(executorService, (e) -> null, null);
+	}
+	
+	public SimpleCallbackManager(final ExecutorService executorService, final Function<T, ?> stripeFunction, 
+			final Function<T, ?> keyFunction) {
+		
+		this(executorService, stripeFunction, keyFunction, false);
+	}
+	
+	/**
+	 * Create a callback manager, with dedicated lanes every stripe and callback 
+	 * pair is executed in its own lane (e.g. on virtual threads)
+	 * @param executorService
+	 * @param stripeFunction
+	 * @param keyFunction
+	 * @param dedicatedLanes
+	 */
+	public SimpleCallbackManager(final ExecutorService executorService, final Function<T, ?> stripeFunction, 
+			final Function<T, ?> keyFunction, final boolean dedicatedLanes) {
+		
+		this.callbacks = new CopyOnWriteArrayList<>();
+		this.publishers = new CopyOnWriteArrayList<>();
 		this.executorService = executorService;
+		this.stripedExecutor = new StripedExecutor(executorService, dedicatedLanes);
+		this.stripeFunction = stripeFunction;
+		this.keyFunction = keyFunction;
 	}
 	
 	/**
@@ -44,9 +93,41 @@ public class SimpleCallbackManager<T> {
 	 * @param callback
 	 */
 	public void registerCallback(final Consumer<T> callback) {
-		synchronized (callbacks) {
-			callbacks.add(callback);
-		}
+		callbacks.add(callback);
+	}
+	
+	/**
+	 * Add a order callback with a bounded queue (see {@link BoundedCallback})
+	 * @param callback
+	 * @param capacity - the maximal number of queued events
+	 * @param overflowPolicy - the policy for a full queue
+	 * @return the bounded callback, which provides the event counters
+	 */
+	public BoundedCallback<Object, T> registerCallback(final Consumer<T> callback, final int capacity, 
+			final OverflowPolicy overflowPolicy) {
+		
+		final BoundedCallback<Object, T> boundedCallback 
+			= new BoundedCallback<>(callback, capacity, overflowPolicy, keyFunction, executorService);
+		
+		callbacks.add(boundedCallback);
+		
+		return boundedCallback;
+	}
+	
+	/**
+	 * Create a new publisher for the events (see {@link EventPublisher})
+	 * @param capacity - the maximal number of queued events per subscriber
+	 * @param overflowPolicy - the policy for a full queue
+	 * @return the publisher, close it to unregister the publisher
+	 */
+	public EventPublisher<T> createPublisher(final int capacity, final OverflowPolicy overflowPolicy) {
+		
+		final EventPublisher<T> publisher = new EventPublisher<>(executorService, capacity, 
+				overflowPolicy, keyFunction, publishers::remove);
+		
+		publishers.add(publisher);
+		
+		return publisher;
 	}
 	
 	/**
@@ -55,9 +136,15 @@ public class SimpleCallbackManager<T> {
 	 * @return
 	 */
 	public boolean removeCallback(final Consumer<T> callback) {
-		synchronized (callbacks) {
-			return callbacks.remove(callback);
+		for(final Consumer<T> registeredCallback : callbacks) {
+			if(registeredCallback.equals(callback) || (registeredCallback instanceof BoundedCallback 
+					&& ((BoundedCallback<?, ?>) registeredCallback).getCallback().equals(callback))) {
+				stripedExecutor.removeCallback(registeredCallback);
+				return callbacks.remove(registeredCallback);
+			}
 		}
+		
+		return false;
 	}
 	
 	/**
@@ -66,20 +153,29 @@ public class SimpleCallbackManager<T> {
 	 */
 	public void notifyCallbacks(final T exchangeOrder) {
 
+		publishers.forEach((p) -> p.accept(exchangeOrder));
+		
 		// Notify callbacks async		
-		if(callbacks == null) {
+		if(callbacks.isEmpty()) {
 			return;
 		}
+		
+		final Object stripe = stripeFunction.apply(exchangeOrder);
+		
+		callbacks.forEach((c) -> {
+			// Bounded callbacks schedule their delivery on their own
+			if(c instanceof BoundedCallback) {
+				c.accept(exchangeOrder);
+				
+				if(((BoundedCallback<?, ?>) c).isDisconnected()) {
+					callbacks.remove(c);
+				}
 				
-		synchronized(callbacks) {
-			if(callbacks.isEmpty()) {
 				return;
 			}
 			
-			callbacks.forEach((c) -> {
-				final Runnable runnable = () -> c.accept(exchangeOrder);
-				executorService.submit(runnable);
-			});
-		}
+			final Runnable runnable = () -> c.accept(exchangeOrder);
+			stripedExecutor.execute(stripe, c, runnable);
+		});
 	}
 }
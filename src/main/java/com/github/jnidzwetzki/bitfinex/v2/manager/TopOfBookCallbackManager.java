@@ -0,0 +1,213 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Manages the top of book listeners. After each update of a book, the 
+ * top n price levels are read from the book and the listeners are only 
+ * called when the best prices or the aggregated amounts have changed.
+ * 
+ * The listeners are notified synchronously, to preserve the order of 
+ * the changes. The updates of different symbols can be handled 
+ * concurrently (e.g., by the workers of the frame pipeline or by 
+ * multiple connections), the updates of one symbol are handled by 
+ * one thread at a time.
+ */
+public class TopOfBookCallbackManager<S> {
+	
+	/**
+	 * The positions of the values in the top of book array
+	 */
+	public final static int BID_PRICE = 0;
+	public final static int BID_AMOUNT = 1;
+	public final static int ASK_PRICE = 2;
+	public final static int ASK_AMOUNT = 3;
+	public final static int VALUES = 4;
+	
+	@FunctionalInterface
+	public interface TopOfBookSource {
+		
+		/**
+		 * Read the top n price levels of the book into the target array
+		 * (BID_PRICE, BID_AMOUNT, ASK_PRICE, ASK_AMOUNT)
+		 * @param depth
+		 * @param target
+		 */
+		public void getTopOfBook(final int depth, final long[] target);
+	}
+
+	/**
+	 * The registered listeners
+	 */
+	private final Map<S, SymbolListeners<S>> listeners;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(TopOfBookCallbackManager.class);
+	
+	public TopOfBookCallbackManager() {
+		this.listeners = new ConcurrentHashMap<>();
+	}
+	
+	/**
+	 * Register a new listener
+	 * @param symbol
+	 * @param depth - the number of price levels to aggregate (1 = best bid / ask)
+	 * @param listener
+	 */
+	public void registerListener(final S symbol, final int depth, final TopOfBookListener<S> listener) {
+		if(depth < 1) {
+			throw new IllegalArgumentException("Invalid depth: " + depth);
+		}
+		
+		listeners.computeIfAbsent(symbol, (s) -> new SymbolListeners<>())
+			.registrations.add(new Registration<>(depth, listener));
+	}
+	
+	/**
+	 * Remove the listener
+	 * @param symbol
+	 * @param listener
+	 * @return
+	 */
+	public boolean removeListener(final S symbol, final TopOfBookListener<S> listener) {
+		final SymbolListeners<S> symbolListeners = listeners.get(symbol);
+		
+		if(symbolListeners == null) {
+			return false;
+		}
+		
+		for(final Registration<S> registration : symbolListeners.registrations) {
+			if(registration.listener.equals(listener)) {
+				return symbolListeners.registrations.remove(registration);
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Notify the listeners whose top of book has changed
+	 * @param symbol
+	 * @param source
+	 */
+	public void handleUpdate(final S symbol, final TopOfBookSource source) {
+		final SymbolListeners<S> symbolListeners = listeners.get(symbol);
+		
+		if(symbolListeners == null || symbolListeners.registrations.isEmpty()) {
+			return;
+		}
+		
+		final long[] currentValues = symbolListeners.currentValues;
+		int currentDepth = -1;
+		
+		for(final Registration<S> registration : symbolListeners.registrations) {
+			if(registration.depth != currentDepth) {
+				source.getTopOfBook(registration.depth, currentValues);
+				currentDepth = registration.depth;
+			}
+			
+			if(! registration.update(currentValues)) {
+				continue;
+			}
+			
+			try {
+				registration.listener.onTopOfBookChanged(symbol, 
+						currentValues[BID_PRICE], currentValues[BID_AMOUNT], 
+						currentValues[ASK_PRICE], currentValues[ASK_AMOUNT]);
+			} catch(Exception e) {
+				logger.error("Got exception while calling top of book listener", e);
+			}
+		}
+	}
+	
+	/**
+	 * The listeners of a symbol
+	 */
+	private final static class SymbolListeners<S> {
+		
+		/**
+		 * The registered listeners
+		 */
+		private final List<Registration<S>> registrations = new CopyOnWriteArrayList<>();
+		
+		/**
+		 * The buffer for the current values (only used by the thread 
+		 * that handles the updates of the symbol)
+		 */
+		private final long[] currentValues = new long[VALUES];
+	}
+	
+	/**
+	 * A registered listener with the last delivered values
+	 */
+	private final static class Registration<S> {
+		
+		/**
+		 * The number of aggregated price levels
+		 */
+		private final int depth;
+		
+		/**
+		 * The listener
+		 */
+		private final TopOfBookListener<S> listener;
+		
+		/**
+		 * The last delivered values (only used by the feed thread)
+		 */
+		private final long[] lastValues;
+		
+		public Registration(final int depth, final TopOfBookListener<S> listener) {
+			this.depth = depth;
+			this.listener = listener;
+			this.lastValues = new long[VALUES];
+			
+			for(int i = 0; i < VALUES; i++) {
+				lastValues[i] = AggregatedOrderbook.NO_VALUE;
+			}
+		}
+		
+		/**
+		 * Update the last values
+		 * @param values
+		 * @return true if the values have changed
+		 */
+		public boolean update(final long[] values) {
+			boolean changed = false;
+			
+			for(int i = 0; i < VALUES; i++) {
+				if(lastValues[i] != values[i]) {
+					lastValues[i] = values[i];
+					changed = true;
+				}
+			}
+			
+			return changed;
+		}
+	}
+}
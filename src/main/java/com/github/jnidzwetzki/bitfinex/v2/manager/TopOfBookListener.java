@@ -0,0 +1,41 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+@FunctionalInterface
+public interface TopOfBookListener<S> {
+
+	/**
+	 * The top of the book has changed. The prices and amounts are fixed-point 
+	 * mantissas in the scales of the currency pair, a missing side is 
+	 * reported as NO_VALUE. The amount is the aggregated amount of the 
+	 * top n price levels (negative for asks).
+	 * 
+	 * The listener is called on the thread that processes the market 
+	 * data, so it should return quickly.
+	 * 
+	 * @param symbol
+	 * @param bidPrice
+	 * @param bidAmount
+	 * @param askPrice
+	 * @param askAmount
+	 */
+	public void onTopOfBookChanged(final S symbol, final long bidPrice, final long bidAmount, 
+			final long askPrice, final long askAmount);
+	
+}
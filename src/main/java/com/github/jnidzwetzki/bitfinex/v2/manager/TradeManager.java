@@ -28,7 +28,8 @@ public class TradeManager extends SimpleCallbackManager<Trade>{
 	private final BitfinexApiBroker bitfinexApiBroker;
 
 	public TradeManager(final BitfinexApiBroker bitfinexApiBroker) {
-		super(bitfinexApiBroker.getExecutorService());
+		super(bitfinexApiBroker.getExecutorService(), Trade::getCurrency, Trade::getId, 
+				bitfinexApiBroker.isDedicatedCallbackLanes());
 		this.bitfinexApiBroker = bitfinexApiBroker;
 	}
 	
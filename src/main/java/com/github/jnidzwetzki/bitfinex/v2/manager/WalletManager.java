@@ -27,7 +27,7 @@ import com.github.jnidzwetzki.bitfinex.v2.entity.Wallet;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 
-public class WalletManager {
+public class WalletManager extends SimpleCallbackManager<Wallet> {
 	
 	/**
 	 * Wallets
@@ -42,6 +42,8 @@ public class WalletManager {
 	private final BitfinexApiBroker bitfinexApiBroker;
 	
 	public WalletManager(final BitfinexApiBroker bitfinexApiBroker) {
+		super(bitfinexApiBroker.getExecutorService(), Wallet::getCurreny, 
+				(w) -> w.getWalletType() + ":" + w.getCurreny(), bitfinexApiBroker.isDedicatedCallbackLanes());
 		this.bitfinexApiBroker = bitfinexApiBroker;
 		this.walletTable = HashBasedTable.create();
 	}
@@ -0,0 +1,349 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.jnidzwetzki.bitfinex.v2.commands.CommandPriority;
+
+/**
+ * Rate limiter for the outbound commands. A command is sent directly, if no 
+ * command is queued and a token is available. Otherwise the command is queued 
+ * in the queue of its priority class and sent by the scheduler thread, when 
+ * the next token is available. The queues are drained in the order of the 
+ * priority classes, so orders and cancels overtake queued subscriptions. 
+ * 
+ * The token bucket is implemented lock free as a virtual scheduling 
+ * algorithm (GCRA): one CAS on the theoretical arrival time per command. 
+ * An optional sliding window limits the commands per time window; under 
+ * contention of the direct path, the window can be exceeded by the number 
+ * of concurrent senders.
+ */
+public class CommandScheduler implements Closeable {
+	
+	/**
+	 * The interval between two tokens
+	 */
+	private final long intervalNanos;
+	
+	/**
+	 * The burst tolerance
+	 */
+	private final long burstNanos;
+	
+	/**
+	 * The theoretical arrival time of the next command
+	 */
+	private final AtomicLong theoreticalArrivalTime;
+	
+	/**
+	 * The optional window counter
+	 */
+	private final SlidingWindowCounter windowCounter;
+	
+	/**
+	 * The maximal number of commands per window
+	 */
+	private final int maxCommandsPerWindow;
+	
+	/**
+	 * The queues per priority class
+	 */
+	private final List<Queue<QueuedCommand>> queues;
+	
+	/**
+	 * The number of queued commands
+	 */
+	private final AtomicInteger queuedCommands;
+	
+	/**
+	 * Is a drain of the queues scheduled
+	 */
+	private final AtomicBoolean drainScheduled;
+	
+	/**
+	 * The scheduler thread
+	 */
+	private final ScheduledExecutorService scheduler;
+	
+	/**
+	 * The number of sent commands
+	 */
+	private final AtomicLong sentCommands;
+	
+	/**
+	 * The number of deferred commands
+	 */
+	private final AtomicLong deferredCommands;
+	
+	/**
+	 * The total deferral time of the commands
+	 */
+	private final AtomicLong totalDeferralNanos;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(CommandScheduler.class);
+
+	public CommandScheduler(final double commandsPerSecond, final int burst) {
+		this(commandsPerSecond, burst, 0, 1, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * @param commandsPerSecond - the rate of the token bucket
+	 * @param burst - the size of the token bucket
+	 * @param maxCommandsPerWindow - the limit of the sliding window (0 = disabled)
+	 * @param window
+	 * @param timeUnit
+	 */
+	public CommandScheduler(final double commandsPerSecond, final int burst, 
+			final int maxCommandsPerWindow, final int window, final TimeUnit timeUnit) {
+		
+		if(commandsPerSecond <= 0 || burst < 1 || maxCommandsPerWindow < 0) {
+			throw new IllegalArgumentException("Invalid rate limit: " + commandsPerSecond 
+					+ " / " + burst + " / " + maxCommandsPerWindow);
+		}
+		
+		this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / commandsPerSecond);
+		this.burstNanos = intervalNanos * burst;
+		this.theoreticalArrivalTime = new AtomicLong(System.nanoTime() - burstNanos);
+		this.maxCommandsPerWindow = maxCommandsPerWindow;
+		this.windowCounter = (maxCommandsPerWindow > 0) 
+				? new SlidingWindowCounter(window, timeUnit, 10) : null;
+		
+		this.queues = new ArrayList<>();
+		
+		for(int i = 0; i < CommandPriority.values().length; i++) {
+			queues.add(new ConcurrentLinkedQueue<>());
+		}
+		
+		this.queuedCommands = new AtomicInteger();
+		this.drainScheduled = new AtomicBoolean();
+		this.sentCommands = new AtomicLong();
+		this.deferredCommands = new AtomicLong();
+		this.totalDeferralNanos = new AtomicLong();
+		
+		this.scheduler = Executors.newSingleThreadScheduledExecutor((r) -> {
+			final Thread thread = new Thread(r, "CommandScheduler");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	/**
+	 * Send the command now or queue it in the queue of the priority class
+	 * @param priority
+	 * @param command - the send action
+	 */
+	public void submit(final CommandPriority priority, final Runnable command) {
+		
+		if(queuedCommands.get() == 0 && tryAcquire() == 0) {
+			send(command);
+			return;
+		}
+		
+		queues.get(priority.ordinal()).add(new QueuedCommand(command, System.nanoTime()));
+		queuedCommands.incrementAndGet();
+		deferredCommands.incrementAndGet();
+		scheduleDrain(0);
+	}
+	
+	/**
+	 * Acquire a token
+	 * @return 0 if the token is acquired, the nanoseconds to wait otherwise
+	 */
+	private long tryAcquire() {
+		
+		if(windowCounter != null) {
+			final long now = System.currentTimeMillis();
+			
+			if(windowCounter.getNumberOfEvents(now) >= maxCommandsPerWindow) {
+				return TimeUnit.MILLISECONDS.toNanos(windowCounter.getMillisToNextBucket(now));
+			}
+		}
+		
+		while(true) {
+			final long now = System.nanoTime();
+			final long arrivalTime = theoreticalArrivalTime.get();
+			final long newArrivalTime = Math.max(arrivalTime, now) + intervalNanos;
+			final long waitNanos = newArrivalTime - now - burstNanos;
+			
+			if(waitNanos > 0) {
+				return waitNanos;
+			}
+			
+			if(theoreticalArrivalTime.compareAndSet(arrivalTime, newArrivalTime)) {
+				
+				if(windowCounter != null) {
+					windowCounter.recordEvent(System.currentTimeMillis());
+				}
+				
+				return 0;
+			}
+		}
+	}
+	
+	/**
+	 * Schedule the drain of the queues
+	 * @param delayNanos
+	 */
+	private void scheduleDrain(final long delayNanos) {
+		
+		if(! drainScheduled.compareAndSet(false, true)) {
+			return;
+		}
+		
+		try {
+			scheduler.schedule(this::drain, delayNanos, TimeUnit.NANOSECONDS);
+		} catch (Exception e) {
+			logger.error("Unable to schedule the queued commands", e);
+			drainScheduled.set(false);
+		}
+	}
+	
+	/**
+	 * Send the queued commands, the scheduler thread is the only consumer
+	 */
+	private void drain() {
+		drainScheduled.set(false);
+		
+		while(true) {
+			final Queue<QueuedCommand> queue = getFirstNonEmptyQueue();
+			
+			if(queue == null) {
+				return;
+			}
+			
+			final long waitNanos = tryAcquire();
+			
+			if(waitNanos > 0) {
+				scheduleDrain(waitNanos);
+				return;
+			}
+			
+			final QueuedCommand queuedCommand = queue.poll();
+			queuedCommands.decrementAndGet();
+			totalDeferralNanos.addAndGet(System.nanoTime() - queuedCommand.queuedAt);
+			send(queuedCommand.command);
+		}
+	}
+	
+	/**
+	 * Get the queue with the highest priority and a queued command
+	 * @return the queue or null
+	 */
+	private Queue<QueuedCommand> getFirstNonEmptyQueue() {
+		for(final Queue<QueuedCommand> queue : queues) {
+			if(! queue.isEmpty()) {
+				return queue;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Send the command
+	 * @param command
+	 */
+	private void send(final Runnable command) {
+		sentCommands.incrementAndGet();
+		
+		try {
+			command.run();
+		} catch (Exception e) {
+			logger.error("Got exception while sending command", e);
+		}
+	}
+	
+	/**
+	 * Stop the scheduler, the queued commands are dropped
+	 */
+	@Override
+	public void close() {
+		scheduler.shutdownNow();
+		
+		if(queuedCommands.get() > 0) {
+			logger.warn("Dropping {} queued commands", queuedCommands.get());
+		}
+	}
+	
+	/**
+	 * Get the number of sent commands
+	 * @return
+	 */
+	public long getSentCommands() {
+		return sentCommands.get();
+	}
+	
+	/**
+	 * Get the number of commands, which were queued because of the rate limit
+	 * @return
+	 */
+	public long getDeferredCommands() {
+		return deferredCommands.get();
+	}
+	
+	/**
+	 * Get the number of queued commands
+	 * @return
+	 */
+	public int getQueuedCommands() {
+		return queuedCommands.get();
+	}
+	
+	/**
+	 * Get the total time the deferred commands were queued
+	 * @return
+	 */
+	public long getTotalDeferralMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(totalDeferralNanos.get());
+	}
+	
+	private static class QueuedCommand {
+		
+		/**
+		 * The send action
+		 */
+		private final Runnable command;
+		
+		/**
+		 * The queue time
+		 */
+		private final long queuedAt;
+		
+		public QueuedCommand(final Runnable command, final long queuedAt) {
+			this.command = command;
+			this.queuedAt = queuedAt;
+		}
+	}
+}
@@ -0,0 +1,632 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexCandlestickSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexExecutedTradeSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+
+/**
+ * Arbitrates the frames of two redundant connections (line A and line B) that 
+ * carry the same subscriptions. The first arrival of a frame is delivered, the 
+ * copy of the other line is dropped.
+ * 
+ * Executed trades are deduplicated by the trade id (including the trades of 
+ * the delivered snapshot), so the order of the lines does not matter.
+ * 
+ * The other channels are arbitrated by the position of the frame in the stream. 
+ * After the snapshot, the lines carry the same frames in the same order. The 
+ * line of the delivered snapshot is aligned, a frame of an aligned line is 
+ * delivered if its position is ahead of the delivered position. The other line 
+ * (e.g. a line that is resubscribed and got a snapshot with a different state) 
+ * is aligned by a marker frame that is also delivered: the orderbook checksums, 
+ * which cover the state of the book maintained by the managers, or every frame 
+ * of a ticker or candle stream. Until then, the frames of the line are dropped. 
+ * So a line that is behind never replays older values on top of a newer state.
+ * 
+ * The lines are read by different threads. The delivery of a frame is executed 
+ * under the lock of the symbol, together with the arbitration. So the frames of 
+ * a symbol are handled in the order of the arbitration and by one thread at a time.
+ */
+public class FeedArbiter {
+
+	/**
+	 * The line A
+	 */
+	public final static int LINE_A = 0;
+	
+	/**
+	 * The line B
+	 */
+	public final static int LINE_B = 1;
+	
+	/**
+	 * The default number of markers and trade ids per symbol
+	 */
+	public final static int DEFAULT_WINDOW = 1024;
+	
+	/**
+	 * The position of a unknown marker
+	 */
+	private final static long NO_POSITION = -1;
+	
+	/**
+	 * The number of markers and trade ids per symbol
+	 */
+	private final int window;
+	
+	/**
+	 * The state of the symbols
+	 */
+	private final Map<BitfinexStreamSymbol, SymbolState> states;
+	
+	/**
+	 * The delivered frames
+	 */
+	private final AtomicLong deliveredFrames;
+	
+	/**
+	 * The dropped frames
+	 */
+	private final AtomicLong droppedFrames;
+
+	public FeedArbiter() {
+		this(DEFAULT_WINDOW);
+	}
+	
+	public FeedArbiter(final int window) {
+		
+		if(window < 1) {
+			throw new IllegalArgumentException("Invalid window: " + window);
+		}
+		
+		this.window = window;
+		this.states = new ConcurrentHashMap<>();
+		this.deliveredFrames = new AtomicLong();
+		this.droppedFrames = new AtomicLong();
+	}
+	
+	/**
+	 * Arbitrate a frame of the given line
+	 * @param symbol
+	 * @param line - LINE_A or LINE_B
+	 * @param payload - the frame without the channel id
+	 * @return true if the frame is delivered, false if it is a duplicate
+	 */
+	public boolean accept(final BitfinexStreamSymbol symbol, final int line, final String payload) {
+		return accept(symbol, line, payload, 0, null);
+	}
+	
+	/**
+	 * Arbitrate a frame of the given line and deliver it
+	 * @param symbol
+	 * @param line - LINE_A or LINE_B
+	 * @param frame
+	 * @param payloadStart - the position of the payload (the data after the channel id) in the frame
+	 * @param delivery - executed under the lock of the symbol, if the frame is delivered
+	 * @return true if the frame is delivered, false if it is a duplicate
+	 */
+	public boolean accept(final BitfinexStreamSymbol symbol, final int line, final String frame, 
+			final int payloadStart, final Runnable delivery) {
+		
+		checkLine(line);
+		
+		final SymbolState state = states.computeIfAbsent(symbol, (s) -> new SymbolState(s));
+		final boolean deliver;
+		
+		synchronized (state) {
+			deliver = state.accept(line, frame, payloadStart);
+			
+			if(deliver && delivery != null) {
+				delivery.run();
+			}
+		}
+		
+		if(deliver) {
+			deliveredFrames.incrementAndGet();
+		} else {
+			droppedFrames.incrementAndGet();
+		}
+		
+		return deliver;
+	}
+	
+	/**
+	 * Reset the state of the symbol (e.g. after both lines are resubscribed), 
+	 * the next snapshot is delivered. The state object is kept, so the lock 
+	 * of the symbol stays the same.
+	 * @param symbol
+	 */
+	public void reset(final BitfinexStreamSymbol symbol) {
+		final SymbolState state = states.get(symbol);
+		
+		if(state != null) {
+			state.reset();
+		}
+	}
+	
+	/**
+	 * Reset the state of one line (e.g. after the line is resubscribed or 
+	 * reconnected), the line is aligned again by the next marker. If the other 
+	 * line is not aligned, the state of the symbol is reset.
+	 * @param symbol
+	 * @param line
+	 */
+	public void resetLine(final BitfinexStreamSymbol symbol, final int line) {
+		checkLine(line);
+		
+		final SymbolState state = states.get(symbol);
+		
+		if(state != null) {
+			state.resetLine(line);
+		}
+	}
+	
+	/**
+	 * Reset the state of all symbols
+	 */
+	public void clear() {
+		states.values().forEach(SymbolState::reset);
+	}
+	
+	/**
+	 * Get the number of delivered frames
+	 * @return
+	 */
+	public long getDeliveredFrames() {
+		return deliveredFrames.get();
+	}
+	
+	/**
+	 * Get the number of dropped frames
+	 * @return
+	 */
+	public long getDroppedFrames() {
+		return droppedFrames.get();
+	}
+	
+	/**
+	 * Check the line
+	 * @param line
+	 */
+	private static void checkLine(final int line) {
+		if(line != LINE_A && line != LINE_B) {
+			throw new IllegalArgumentException("Invalid line: " + line);
+		}
+	}
+	
+	/**
+	 * Is the payload a snapshot
+	 * @param frame
+	 * @param payloadStart
+	 * @return
+	 */
+	private static boolean isSnapshot(final String frame, final int payloadStart) {
+		return frame.startsWith("[[", payloadStart) || frame.startsWith("[]", payloadStart);
+	}
+	
+	/**
+	 * Is the payload a orderbook checksum
+	 * @param frame
+	 * @param payloadStart
+	 * @return
+	 */
+	private static boolean isChecksum(final String frame, final int payloadStart) {
+		return frame.startsWith("\"cs\"", payloadStart);
+	}
+	
+	/**
+	 * Get the fingerprint of the payload (64 bit FNV-1a), without copying the payload
+	 * @param frame
+	 * @param payloadStart
+	 * @return
+	 */
+	private static long fingerprint(final String frame, final int payloadStart) {
+		long hash = 0xcbf29ce484222325L;
+		
+		for(int pos = payloadStart; pos < frame.length(); pos++) {
+			hash ^= frame.charAt(pos);
+			hash *= 0x100000001b3L;
+		}
+		
+		return hash;
+	}
+	
+	/**
+	 * Parse the number at the given position
+	 * @param frame
+	 * @param pos
+	 * @return
+	 */
+	private static long parseLong(final String frame, int pos) {
+		final boolean negative = pos < frame.length() && frame.charAt(pos) == '-';
+		
+		if(negative) {
+			pos++;
+		}
+		
+		long value = 0;
+		
+		while(pos < frame.length()) {
+			final char c = frame.charAt(pos++);
+			
+			if(c < '0' || c > '9') {
+				break;
+			}
+			
+			value = value * 10 + (c - '0');
+		}
+		
+		return negative ? -value : value;
+	}
+	
+	private class SymbolState {
+		
+		/**
+		 * Are the frames executed trades (deduplicated by the trade id)
+		 */
+		private final boolean trades;
+		
+		/**
+		 * Is the stream started by a snapshot (otherwise by the first frame)
+		 */
+		private final boolean snapshotRequired;
+		
+		/**
+		 * Is every frame a marker (otherwise only snapshots and checksums)
+		 */
+		private final boolean markAll;
+		
+		/**
+		 * The delivered trade ids
+		 */
+		private final KeyWindow tradeIds;
+		
+		/**
+		 * The positions of the delivered markers
+		 */
+		private final KeyWindow deliveredMarkers;
+		
+		/**
+		 * The local positions of the markers of a line that is not aligned
+		 */
+		private final KeyWindow[] lineMarkers;
+		
+		/**
+		 * The position of the last frame per line
+		 */
+		private final long[] positions;
+		
+		/**
+		 * Is the position of the line aligned to the delivered stream
+		 */
+		private final boolean[] aligned;
+		
+		/**
+		 * The position of the last delivered frame
+		 */
+		private long deliveredPosition;
+		
+		/**
+		 * Is the stream started (e.g. the snapshot delivered)
+		 */
+		private boolean started;
+		
+		public SymbolState(final BitfinexStreamSymbol symbol) {
+			this.trades = symbol instanceof BitfinexExecutedTradeSymbol;
+			
+			final boolean orderbook = symbol instanceof OrderbookConfiguration 
+					|| symbol instanceof RawOrderbookConfiguration;
+			
+			this.snapshotRequired = orderbook || symbol instanceof BitfinexCandlestickSymbol;
+			this.markAll = ! orderbook;
+			this.positions = new long[2];
+			this.aligned = new boolean[2];
+			
+			if(trades) {
+				this.tradeIds = new KeyWindow(window);
+				this.deliveredMarkers = null;
+				this.lineMarkers = null;
+			} else {
+				this.tradeIds = null;
+				this.deliveredMarkers = new KeyWindow(window);
+				this.lineMarkers = new KeyWindow[] { new KeyWindow(window), new KeyWindow(window) };
+			}
+		}
+		
+		/**
+		 * Reset the state, the next snapshot is delivered. The delivered 
+		 * trade ids are kept, so trades in flight are not delivered twice.
+		 */
+		public synchronized void reset() {
+			started = false;
+			aligned[LINE_A] = false;
+			aligned[LINE_B] = false;
+		}
+		
+		/**
+		 * Reset the state of the line
+		 * @param line
+		 */
+		public synchronized void resetLine(final int line) {
+			
+			// The trades are deduplicated by the trade id
+			if(trades) {
+				return;
+			}
+			
+			aligned[line] = false;
+			lineMarkers[line].clear();
+			
+			if(! aligned[1 - line]) {
+				reset();
+			}
+		}
+		
+		/**
+		 * Arbitrate the frame
+		 * @param line
+		 * @param frame
+		 * @param payloadStart
+		 * @return
+		 */
+		public synchronized boolean accept(final int line, final String frame, final int payloadStart) {
+			
+			if(trades) {
+				return acceptTrades(frame, payloadStart);
+			}
+			
+			final boolean snapshot = isSnapshot(frame, payloadStart);
+			
+			if(! started) {
+				if(! snapshot && snapshotRequired) {
+					// A frame of the old subscription
+					return false;
+				}
+				
+				start(line, frame, payloadStart);
+				return true;
+			}
+			
+			if(snapshot) {
+				positions[line] = 0;
+				aligned[line] = false;
+				lineMarkers[line].clear();
+			} else {
+				positions[line]++;
+			}
+			
+			final boolean marker = snapshot || markAll || isChecksum(frame, payloadStart);
+			
+			if(! aligned[line]) {
+				if(marker) {
+					align(line, fingerprint(frame, payloadStart));
+				}
+				
+				return false;
+			}
+			
+			if(positions[line] <= deliveredPosition) {
+				return false;
+			}
+			
+			deliveredPosition = positions[line];
+			
+			if(marker) {
+				final long key = fingerprint(frame, payloadStart);
+				deliveredMarkers.put(key, deliveredPosition);
+				alignOtherLine(1 - line, key);
+			}
+			
+			return true;
+		}
+		
+		/**
+		 * Start the stream with the frame of the line
+		 * @param line
+		 * @param frame
+		 * @param payloadStart
+		 */
+		private void start(final int line, final String frame, final int payloadStart) {
+			started = true;
+			deliveredPosition = 0;
+			positions[line] = 0;
+			aligned[line] = true;
+			aligned[1 - line] = false;
+			lineMarkers[LINE_A].clear();
+			lineMarkers[LINE_B].clear();
+			deliveredMarkers.clear();
+			deliveredMarkers.put(fingerprint(frame, payloadStart), 0);
+		}
+		
+		/**
+		 * Align the line by a marker that is already delivered, otherwise 
+		 * keep the local position of the marker
+		 * @param line
+		 * @param key
+		 */
+		private void align(final int line, final long key) {
+			final long position = deliveredMarkers.get(key);
+			
+			if(position == NO_POSITION) {
+				lineMarkers[line].put(key, positions[line]);
+				return;
+			}
+			
+			positions[line] = position;
+			aligned[line] = true;
+			lineMarkers[line].clear();
+		}
+		
+		/**
+		 * Align the other line by a marker that is delivered now, if the 
+		 * other line got the marker before (the other line is ahead)
+		 * @param otherLine
+		 * @param key
+		 */
+		private void alignOtherLine(final int otherLine, final long key) {
+			
+			if(aligned[otherLine]) {
+				return;
+			}
+			
+			final long localPosition = lineMarkers[otherLine].get(key);
+			
+			if(localPosition == NO_POSITION) {
+				return;
+			}
+			
+			positions[otherLine] = deliveredPosition + (positions[otherLine] - localPosition);
+			aligned[otherLine] = true;
+			lineMarkers[otherLine].clear();
+		}
+		
+		/**
+		 * Arbitrate a frame of executed trades by the trade ids
+		 * @param frame
+		 * @param payloadStart
+		 * @return
+		 */
+		private boolean acceptTrades(final String frame, final int payloadStart) {
+			
+			if(isSnapshot(frame, payloadStart)) {
+				if(started) {
+					return false;
+				}
+				
+				started = true;
+				
+				// Every entry of the snapshot is a array, the trade id is the first value
+				int entryStart = frame.indexOf('[', payloadStart + 1);
+				
+				while(entryStart >= 0) {
+					tradeIds.put(parseLong(frame, entryStart + 1), 0);
+					
+					final int entryEnd = frame.indexOf(']', entryStart);
+					entryStart = (entryEnd < 0) ? -1 : frame.indexOf('[', entryEnd);
+				}
+				
+				return true;
+			}
+			
+			final int entryStart = frame.indexOf('[', payloadStart);
+			
+			// Not a trade, can't be deduplicated
+			if(entryStart < 0) {
+				return true;
+			}
+			
+			final long tradeId = parseLong(frame, entryStart + 1);
+			
+			if(tradeIds.get(tradeId) != NO_POSITION) {
+				return false;
+			}
+			
+			tradeIds.put(tradeId, 0);
+			return true;
+		}
+	}
+	
+	/**
+	 * A bounded window of keys with a position, the oldest key is evicted
+	 */
+	private final static class KeyWindow {
+		
+		/**
+		 * The slot of the keys
+		 */
+		private final LongIntHashMap index;
+		
+		/**
+		 * The keys in insertion order (ring)
+		 */
+		private final long[] keys;
+		
+		/**
+		 * The positions of the keys
+		 */
+		private final long[] positions;
+		
+		/**
+		 * The next slot
+		 */
+		private int nextSlot;
+		
+		/**
+		 * The number of used slots
+		 */
+		private int used;
+		
+		public KeyWindow(final int capacity) {
+			this.index = new LongIntHashMap(capacity);
+			this.keys = new long[capacity];
+			this.positions = new long[capacity];
+		}
+		
+		/**
+		 * Get the position of the key
+		 * @param key
+		 * @return the position or NO_POSITION
+		 */
+		public long get(final long key) {
+			final int slot = index.get(key);
+			return slot == LongIntHashMap.NO_VALUE ? NO_POSITION : positions[slot];
+		}
+		
+		/**
+		 * Put the key, a existing key gets the new position
+		 * @param key
+		 * @param position
+		 */
+		public void put(final long key, final long position) {
+			
+			if(used == keys.length) {
+				final long evictedKey = keys[nextSlot];
+				
+				// The evicted key may be stored again in a newer slot
+				if(index.get(evictedKey) == nextSlot) {
+					index.remove(evictedKey);
+				}
+			} else {
+				used++;
+			}
+			
+			keys[nextSlot] = key;
+			positions[nextSlot] = position;
+			index.put(key, nextSlot);
+			nextSlot = (nextSlot + 1) % keys.length;
+		}
+		
+		/**
+		 * Remove all keys
+		 */
+		public void clear() {
+			if(used > 0) {
+				index.clear();
+				used = 0;
+				nextSlot = 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Helper for fixed-point values. A fixed-point value is a long mantissa 
+ * and a scale, the value is mantissa * 10^-scale.
+ */
+public class FixedPoint {
+	
+	/**
+	 * The default scale (satoshi precision)
+	 */
+	public final static int DEFAULT_SCALE = 8;
+	
+	/**
+	 * The default scale of the prices. Bitfinex quotes prices with five 
+	 * significant digits, so prices down to 1e-8 are represented exactly.
+	 */
+	public final static int DEFAULT_PRICE_SCALE = 12;
+	
+	/**
+	 * The powers of ten that fit into a long
+	 */
+	private final static long[] POWERS_OF_TEN = new long[19];
+	
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for(int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+	
+	private FixedPoint() {
+		// Helper class
+	}
+
+	/**
+	 * Convert the BigDecimal into a mantissa with the given scale
+	 * @param value
+	 * @param scale
+	 * @return
+	 * @throws ArithmeticException if the value does not fit into a long 
+	 */
+	public static long toMantissa(final BigDecimal value, final int scale) {
+		return value.setScale(scale, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+	}
+	
+	/**
+	 * Convert the BigDecimal into a mantissa with the given scale without rounding
+	 * @param value
+	 * @param scale
+	 * @return
+	 * @throws ArithmeticException if the value needs rounding or does not fit into a long 
+	 */
+	public static long toExactMantissa(final BigDecimal value, final int scale) {
+		return value.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+	}
+	
+	/**
+	 * Convert the mantissa into a BigDecimal
+	 * @param mantissa
+	 * @param scale
+	 * @return
+	 */
+	public static BigDecimal toBigDecimal(final long mantissa, final int scale) {
+		return BigDecimal.valueOf(mantissa, scale);
+	}
+	
+	/**
+	 * Convert the mantissa into a double
+	 * @param mantissa
+	 * @param scale
+	 * @return
+	 */
+	public static double toDouble(final long mantissa, final int scale) {
+		if(scale >= 0 && scale < POWERS_OF_TEN.length) {
+			return (double) mantissa / POWERS_OF_TEN[scale];
+		}
+		
+		return toBigDecimal(mantissa, scale).doubleValue();
+	}
+	
+	/**
+	 * Get the power of ten
+	 * @param exponent
+	 * @return
+	 * @throws ArithmeticException if the power does not fit into a long
+	 */
+	public static long powerOfTen(final int exponent) {
+		if(exponent < 0 || exponent >= POWERS_OF_TEN.length) {
+			throw new ArithmeticException("Power of ten out of range: " + exponent);
+		}
+		
+		return POWERS_OF_TEN[exponent];
+	}
+	
+	/**
+	 * Change the scale of the mantissa. Digits are truncated if the new scale is smaller
+	 * @param mantissa
+	 * @param scale
+	 * @param newScale
+	 * @return
+	 * @throws ArithmeticException on overflow
+	 */
+	public static long rescale(final long mantissa, final int scale, final int newScale) {
+		if(newScale == scale) {
+			return mantissa;
+		}
+		
+		if(newScale > scale) {
+			return Math.multiplyExact(mantissa, powerOfTen(newScale - scale));
+		}
+		
+		return mantissa / powerOfTen(scale - newScale);
+	}
+	
+	/**
+	 * Compare two fixed-point values
+	 * @param mantissa1
+	 * @param scale1
+	 * @param mantissa2
+	 * @param scale2
+	 * @return
+	 */
+	public static int compare(final long mantissa1, final int scale1, 
+			final long mantissa2, final int scale2) {
+		
+		if(scale1 == scale2) {
+			return Long.compare(mantissa1, mantissa2);
+		}
+		
+		try {
+			if(scale1 < scale2) {
+				return Long.compare(rescale(mantissa1, scale1, scale2), mantissa2);
+			} else {
+				return Long.compare(mantissa1, rescale(mantissa2, scale2, scale1));
+			}
+		} catch (ArithmeticException e) {
+			return toBigDecimal(mantissa1, scale1).compareTo(toBigDecimal(mantissa2, scale2));
+		}
+	}
+}
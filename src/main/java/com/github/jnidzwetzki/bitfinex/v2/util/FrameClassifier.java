@@ -0,0 +1,187 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+/**
+ * Classify channel frames by looking at the raw characters. The channel id
+ * and the marker (e.g., "hb" for heartbeats) are determined without parsing
+ * the whole frame and without creating any objects.
+ *
+ * Example frames: [4711,"hb"], [4711,"te",[...]], [4711,[...]]
+ */
+public class FrameClassifier {
+	
+	public enum FrameMarker {
+		
+		/**
+		 * No marker, the payload is a array (e.g., [4711,[...]])
+		 */
+		NONE(null),
+		
+		/**
+		 * Heartbeat ("hb")
+		 */
+		HEARTBEAT("hb"),
+		
+		/**
+		 * Trade executed ("te")
+		 */
+		TRADE_EXECUTED("te"),
+		
+		/**
+		 * Trade updated ("tu")
+		 */
+		TRADE_UPDATE("tu"),
+		
+		/**
+		 * A marker string that is not classified (e.g., "ws" or "os")
+		 */
+		OTHER(null),
+		
+		/**
+		 * The frame could not be classified
+		 */
+		INVALID(null);
+		
+		/**
+		 * The marker string
+		 */
+		private final String marker;
+		
+		private FrameMarker(final String marker) {
+			this.marker = marker;
+		}
+		
+		/**
+		 * Get the marker string
+		 * @return
+		 */
+		public String getMarker() {
+			return marker;
+		}
+	}
+	
+	/**
+	 * The invalid channel id
+	 */
+	public final static int INVALID_CHANNEL = -1;
+
+	/**
+	 * Get the channel id of the frame
+	 * @param frame
+	 * @return the channel or INVALID_CHANNEL
+	 */
+	public static int getChannelId(final String frame) {
+		final int length = frame.length();
+		int position = skipWhitespaces(frame, 0);
+		
+		if(position >= length || frame.charAt(position) != '[') {
+			return INVALID_CHANNEL;
+		}
+		
+		position = skipWhitespaces(frame, position + 1);
+		
+		int channel = 0;
+		int digits = 0;
+		
+		while(position < length) {
+			final char c = frame.charAt(position);
+			
+			if(c < '0' || c > '9') {
+				break;
+			}
+			
+			// Overflow
+			if(digits == 9) {
+				return INVALID_CHANNEL;
+			}
+			
+			channel = channel * 10 + (c - '0');
+			digits++;
+			position++;
+		}
+		
+		if(digits == 0) {
+			return INVALID_CHANNEL;
+		}
+		
+		return channel;
+	}
+	
+	/**
+	 * Get the marker of the frame
+	 * @param frame
+	 * @return
+	 */
+	public static FrameMarker getMarker(final String frame) {
+		final int length = frame.length();
+		final int separator = frame.indexOf(',');
+		
+		if(separator == -1) {
+			return FrameMarker.INVALID;
+		}
+		
+		final int position = skipWhitespaces(frame, separator + 1);
+		
+		if(position >= length) {
+			return FrameMarker.INVALID;
+		}
+		
+		if(frame.charAt(position) != '"') {
+			return FrameMarker.NONE;
+		}
+		
+		// All classified markers have two chars
+		if(position + 3 >= length || frame.charAt(position + 3) != '"') {
+			return FrameMarker.OTHER;
+		}
+		
+		final char c1 = frame.charAt(position + 1);
+		final char c2 = frame.charAt(position + 2);
+		
+		if(c1 == 'h' && c2 == 'b') {
+			return FrameMarker.HEARTBEAT;
+		}
+		
+		if(c1 == 't' && c2 == 'e') {
+			return FrameMarker.TRADE_EXECUTED;
+		}
+		
+		if(c1 == 't' && c2 == 'u') {
+			return FrameMarker.TRADE_UPDATE;
+		}
+		
+		return FrameMarker.OTHER;
+	}
+
+	/**
+	 * Skip the whitespaces in the frame
+	 * @param frame
+	 * @param position
+	 * @return
+	 */
+	private static int skipWhitespaces(final String frame, final int position) {
+		int result = position;
+		
+		while(result < frame.length() && Character.isWhitespace(frame.charAt(result))) {
+			result++;
+		}
+		
+		return result;
+	}
+}
@@ -0,0 +1,291 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decouples the websocket read thread from the parsing of the frames. 
+ * The read thread only appends the raw frame to the queue of a partition, 
+ * the frames are parsed and dispatched by one worker thread per partition. 
+ * 
+ * Frames are partitioned by the channel id, so the frames of a channel are 
+ * processed in order by the same worker. Every partition queue has exactly 
+ * one producer (the read thread) and one consumer (the worker), so the 
+ * queues are lock free single producer / single consumer ring buffers.
+ */
+public class FramePipeline implements Closeable {
+
+	/**
+	 * The partitions
+	 */
+	private final Partition[] partitions;
+	
+	/**
+	 * The handler for the frames
+	 */
+	private final Consumer<String> frameHandler;
+	
+	/**
+	 * Is the pipeline running
+	 */
+	private volatile boolean running;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(FramePipeline.class);
+
+	public FramePipeline(final int workers, final int capacity, final Consumer<String> frameHandler) {
+		
+		if(workers < 1) {
+			throw new IllegalArgumentException("Invalid number of workers: " + workers);
+		}
+		
+		if(capacity < 1 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity has to be a power of two: " + capacity);
+		}
+		
+		this.frameHandler = frameHandler;
+		this.partitions = new Partition[workers];
+		
+		for(int i = 0; i < workers; i++) {
+			partitions[i] = new Partition(capacity);
+		}
+	}
+	
+	/**
+	 * Start the worker threads
+	 */
+	public synchronized void start() {
+		if(running) {
+			return;
+		}
+		
+		running = true;
+		
+		for(int i = 0; i < partitions.length; i++) {
+			final Partition partition = partitions[i];
+			partition.worker = new Thread(partition::processFrames, "FramePipeline-" + i);
+			partition.worker.setDaemon(true);
+			partition.worker.start();
+		}
+	}
+	
+	/**
+	 * Stop the worker threads, queued frames are discarded
+	 */
+	@Override
+	public synchronized void close() {
+		if(! running) {
+			return;
+		}
+		
+		running = false;
+		
+		for(final Partition partition : partitions) {
+			LockSupport.unpark(partition.worker);
+		}
+		
+		try {
+			for(final Partition partition : partitions) {
+				partition.worker.join(TimeUnit.SECONDS.toMillis(5));
+				partition.worker = null;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Queue a frame, waits while the queue of the partition is full. 
+	 * Must only be called by one thread (the websocket read thread).
+	 * @param channelId
+	 * @param frame
+	 */
+	public void offer(final int channelId, final String frame) {
+		final Partition partition = partitions[Math.floorMod(channelId, partitions.length)];
+		
+		while(! partition.offer(frame)) {
+			if(! running) {
+				logger.warn("Pipeline is closed, dropping frame {}", frame);
+				return;
+			}
+			
+			LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+		}
+		
+		if(partition.waiting) {
+			LockSupport.unpark(partition.worker);
+		}
+	}
+	
+	/**
+	 * Is the pipeline running
+	 * @return
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+	
+	/**
+	 * Get the number of workers
+	 * @return
+	 */
+	public int getWorkers() {
+		return partitions.length;
+	}
+	
+	/**
+	 * Get the number of queued frames
+	 * @return
+	 */
+	public long getPendingFrames() {
+		long pendingFrames = 0;
+		
+		for(final Partition partition : partitions) {
+			pendingFrames += partition.size();
+		}
+		
+		return pendingFrames;
+	}
+	
+	/**
+	 * A partition: a single producer / single consumer ring buffer and its worker
+	 */
+	private final class Partition {
+		
+		/**
+		 * The queued frames
+		 */
+		private final AtomicReferenceArray<String> buffer;
+		
+		/**
+		 * The mask for the buffer index
+		 */
+		private final int mask;
+		
+		/**
+		 * The next position to read, written by the worker
+		 */
+		private final AtomicLong head;
+		
+		/**
+		 * The next position to write, written by the producer
+		 */
+		private final AtomicLong tail;
+		
+		/**
+		 * Is the worker parked or about to park
+		 */
+		private volatile boolean waiting;
+		
+		/**
+		 * The worker thread
+		 */
+		private volatile Thread worker;
+		
+		public Partition(final int capacity) {
+			this.buffer = new AtomicReferenceArray<>(capacity);
+			this.mask = capacity - 1;
+			this.head = new AtomicLong();
+			this.tail = new AtomicLong();
+		}
+		
+		/**
+		 * Append a frame
+		 * @param frame
+		 * @return false if the queue is full
+		 */
+		public boolean offer(final String frame) {
+			final long position = tail.get();
+			
+			if(position - head.get() == buffer.length()) {
+				return false;
+			}
+			
+			buffer.lazySet((int) position & mask, frame);
+			
+			// Volatile write, ordered before the read of the waiting flag
+			tail.set(position + 1);
+			return true;
+		}
+		
+		/**
+		 * Take the next frame
+		 * @return the frame or null
+		 */
+		public String poll() {
+			final long position = head.get();
+			
+			if(position == tail.get()) {
+				return null;
+			}
+			
+			final int index = (int) position & mask;
+			final String frame = buffer.get(index);
+			buffer.lazySet(index, null);
+			head.lazySet(position + 1);
+			
+			return frame;
+		}
+		
+		/**
+		 * Get the number of queued frames
+		 * @return
+		 */
+		public long size() {
+			return tail.get() - head.get();
+		}
+		
+		/**
+		 * Process the frames until the pipeline is closed
+		 */
+		public void processFrames() {
+			while(running) {
+				final String frame = poll();
+				
+				if(frame == null) {
+					waiting = true;
+					
+					// Check again, the producer might not have seen the flag
+					if(size() == 0 && running) {
+						LockSupport.park(this);
+					}
+					
+					waiting = false;
+					continue;
+				}
+				
+				try {
+					frameHandler.accept(frame);
+				} catch(Throwable e) {
+					logger.error("Got exception while processing frame {}", frame, e);
+				}
+			}
+		}
+	}
+}
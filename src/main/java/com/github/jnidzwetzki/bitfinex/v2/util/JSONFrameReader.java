@@ -0,0 +1,673 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.math.BigDecimal;
+
+import org.json.JSONException;
+
+/**
+ * A pull style reader for the JSON frames received from the websocket.
+ *
+ * In contrast to the JSONArray / JSONTokener classes, no object tree is
+ * built. The values are read directly from the frame in the order they
+ * occur. Commas and colons are handled transparently. One reader instance
+ * can be reused for multiple frames by calling reset(). Instances are
+ * not thread safe.
+ *
+ */
+public class JSONFrameReader {
+
+	public enum Token {
+		BEGIN_ARRAY,
+		END_ARRAY,
+		BEGIN_OBJECT,
+		END_OBJECT,
+		STRING,
+		NUMBER,
+		BOOLEAN,
+		NULL,
+		END_DOCUMENT;
+	}
+
+	/**
+	 * The frame to read
+	 */
+	private String frame;
+
+	/**
+	 * The length of the frame
+	 */
+	private int length;
+
+	/**
+	 * The current read position
+	 */
+	private int position;
+
+	/**
+	 * The buffer for number conversions
+	 */
+	private char[] numberBuffer = new char[32];
+
+	public JSONFrameReader() {
+		reset("");
+	}
+
+	public JSONFrameReader(final String frame) {
+		reset(frame);
+	}
+
+	/**
+	 * Read a new frame
+	 * @param frame
+	 * @return
+	 */
+	public JSONFrameReader reset(final String frame) {
+		this.frame = frame;
+		this.length = frame.length();
+		this.position = 0;
+		return this;
+	}
+
+	/**
+	 * Get the frame that is read
+	 * @return
+	 */
+	public String getFrame() {
+		return frame;
+	}
+
+	/**
+	 * Get the current read position
+	 * @return
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * Get the type of the next token, without consuming it
+	 * @return
+	 */
+	public Token peek() {
+		skipSeparators();
+
+		if(position >= length) {
+			return Token.END_DOCUMENT;
+		}
+
+		final char c = frame.charAt(position);
+
+		switch(c) {
+		case '[':
+			return Token.BEGIN_ARRAY;
+		case ']':
+			return Token.END_ARRAY;
+		case '{':
+			return Token.BEGIN_OBJECT;
+		case '}':
+			return Token.END_OBJECT;
+		case '"':
+			return Token.STRING;
+		case 't':
+		case 'f':
+			return Token.BOOLEAN;
+		case 'n':
+			return Token.NULL;
+		default:
+			if(c == '-' || (c >= '0' && c <= '9')) {
+				return Token.NUMBER;
+			}
+			throw syntaxError("Unexpected character '" + c + "'");
+		}
+	}
+
+	/**
+	 * Is a further element in the current array or object available
+	 * @return
+	 */
+	public boolean hasNext() {
+		final Token token = peek();
+		return token != Token.END_ARRAY && token != Token.END_OBJECT && token != Token.END_DOCUMENT;
+	}
+
+	/**
+	 * Consume the begin of an array
+	 */
+	public void beginArray() {
+		expect('[');
+	}
+
+	/**
+	 * Consume the end of an array
+	 */
+	public void endArray() {
+		expect(']');
+	}
+
+	/**
+	 * Consume the begin of an object
+	 */
+	public void beginObject() {
+		expect('{');
+	}
+
+	/**
+	 * Consume the end of an object
+	 */
+	public void endObject() {
+		expect('}');
+	}
+
+	/**
+	 * Is the next value null
+	 * @return
+	 */
+	public boolean isNextNull() {
+		return peek() == Token.NULL;
+	}
+
+	/**
+	 * Consume a null value
+	 */
+	public void nextNull() {
+		expectLiteral("null");
+	}
+
+	/**
+	 * Read a boolean value
+	 * @return
+	 */
+	public boolean nextBoolean() {
+		if(peek() == Token.BOOLEAN && frame.charAt(position) == 't') {
+			expectLiteral("true");
+			return true;
+		}
+
+		expectLiteral("false");
+		return false;
+	}
+
+	/**
+	 * Read a long value
+	 * @return
+	 */
+	public long nextLong() {
+		if(peek() != Token.NUMBER) {
+			throw syntaxError("Expected number");
+		}
+
+		final int start = position;
+		boolean negative = false;
+
+		if(frame.charAt(position) == '-') {
+			negative = true;
+			position++;
+		}
+
+		long result = 0;
+		int digits = 0;
+
+		while(position < length) {
+			final char c = frame.charAt(position);
+
+			if(c < '0' || c > '9') {
+				break;
+			}
+
+			if(result > (Long.MAX_VALUE - (c - '0')) / 10) {
+				throw syntaxError("Number out of range");
+			}
+
+			result = result * 10 + (c - '0');
+			position++;
+			digits++;
+		}
+
+		if(digits == 0) {
+			throw syntaxError("Expected digits");
+		}
+
+		// Integral values with fraction or exponent (e.g., 1.0, 1e3)
+		if(position < length && isNumberPart(frame.charAt(position))) {
+			position = start;
+			return nextBigDecimal().longValueExact();
+		}
+
+		return negative ? -result : result;
+	}
+
+	/**
+	 * Read a int value
+	 * @return
+	 */
+	public int nextInt() {
+		final long value = nextLong();
+
+		if(value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) {
+			throw syntaxError("Number out of int range: " + value);
+		}
+
+		return (int) value;
+	}
+
+	/**
+	 * Read a double value
+	 * @return
+	 */
+	public double nextDouble() {
+		final int numberLength = readNumberIntoBuffer();
+		
+		try {
+			return Double.parseDouble(new String(numberBuffer, 0, numberLength));
+		} catch (NumberFormatException e) {
+			throw syntaxError("Invalid number", e);
+		}
+	}
+
+	/**
+	 * Read a BigDecimal value
+	 * @return
+	 */
+	public BigDecimal nextBigDecimal() {
+		final int numberLength = readNumberIntoBuffer();
+		
+		try {
+			return new BigDecimal(numberBuffer, 0, numberLength);
+		} catch (NumberFormatException e) {
+			throw syntaxError("Invalid number", e);
+		}
+	}
+
+	/**
+	 * Read a number as fixed-point value. The number is returned as
+	 * mantissa with the given scale (e.g., 1.5 with scale 2 is 150). Values 
+	 * with more fraction digits than the scale are rounded half even.
+	 * 
+	 * @param scale
+	 * @return
+	 * @throws ArithmeticException if the value does not fit into a long
+	 */
+	public long nextScaledLong(final int scale) {
+		if(peek() != Token.NUMBER) {
+			throw syntaxError("Expected number");
+		}
+
+		final int start = position;
+		
+		if(scale < 0) {
+			return nextScaledLongSlow(start, scale);
+		}
+		
+		boolean negative = false;
+
+		if(frame.charAt(position) == '-') {
+			negative = true;
+			position++;
+		}
+
+		long result = 0;
+		int digits = 0;
+		int fractionDigits = 0;
+		boolean fraction = false;
+
+		while(position < length) {
+			final char c = frame.charAt(position);
+
+			if(c >= '0' && c <= '9') {
+				if(fraction && fractionDigits == scale) {
+					return nextScaledLongSlow(start, scale);
+				}
+				
+				if(result > (Long.MAX_VALUE - (c - '0')) / 10) {
+					return nextScaledLongSlow(start, scale);
+				}
+				
+				result = result * 10 + (c - '0');
+				digits++;
+				
+				if(fraction) {
+					fractionDigits++;
+				}
+			} else if(c == '.' && ! fraction) {
+				fraction = true;
+			} else if(isNumberPart(c)) {
+				// Exponent
+				return nextScaledLongSlow(start, scale);
+			} else {
+				break;
+			}
+			
+			position++;
+		}
+
+		if(digits == 0) {
+			throw syntaxError("Expected digits");
+		}
+		
+		for(int i = fractionDigits; i < scale; i++) {
+			if(result > Long.MAX_VALUE / 10) {
+				return nextScaledLongSlow(start, scale);
+			}
+			
+			result = result * 10;
+		}
+
+		return negative ? -result : result;
+	}
+	
+	/**
+	 * Read a number as fixed-point value by using a BigDecimal
+	 * @param start
+	 * @param scale
+	 * @return
+	 */
+	private long nextScaledLongSlow(final int start, final int scale) {
+		position = start;
+		return FixedPoint.toMantissa(nextBigDecimal(), scale);
+	}
+
+	/**
+	 * Read a string value
+	 * @return
+	 */
+	public String nextString() {
+		final int start = readStringBounds();
+		final String value = frame.substring(start, position - 1);
+
+		if(value.indexOf('\\') != -1) {
+			return unescape(value);
+		}
+
+		return value;
+	}
+
+	/**
+	 * Compare the next string value with the given value. The string is
+	 * consumed only if it matches. No string object is created.
+	 *
+	 * @param expected
+	 * @return
+	 */
+	public boolean nextStringEquals(final String expected) {
+		if(peek() != Token.STRING) {
+			return false;
+		}
+
+		final int expectedLength = expected.length();
+		final int end = position + expectedLength + 1;
+
+		if(end >= length || frame.charAt(end) != '"') {
+			return false;
+		}
+
+		if(! frame.regionMatches(position + 1, expected, 0, expectedLength)) {
+			return false;
+		}
+
+		position = end + 1;
+		return true;
+	}
+
+	/**
+	 * Skip the next value (including nested arrays and objects)
+	 */
+	public void skipValue() {
+		int depth = 0;
+
+		do {
+			final Token token = peek();
+
+			switch(token) {
+			case BEGIN_ARRAY:
+			case BEGIN_OBJECT:
+				depth++;
+				position++;
+				break;
+			case END_ARRAY:
+			case END_OBJECT:
+				depth--;
+				position++;
+				break;
+			case STRING:
+				readStringBounds();
+				break;
+			case NUMBER:
+				readNumberBounds();
+				break;
+			case BOOLEAN:
+				nextBoolean();
+				break;
+			case NULL:
+				nextNull();
+				break;
+			default:
+				throw syntaxError("Unexpected end of frame");
+			}
+		} while(depth > 0);
+	}
+
+	/**
+	 * Skip the given number of values
+	 * @param values
+	 */
+	public void skipValues(final int values) {
+		for(int i = 0; i < values; i++) {
+			skipValue();
+		}
+	}
+
+	/**
+	 * Skip all remaining values of the current array or object
+	 */
+	public void skipRemaining() {
+		while(hasNext()) {
+			skipValue();
+		}
+	}
+
+	/**
+	 * Read the bounds of the next number into the number buffer
+	 * @return the length of the number
+	 */
+	private int readNumberIntoBuffer() {
+		final int start = readNumberBounds();
+		final int numberLength = position - start;
+
+		if(numberLength > numberBuffer.length) {
+			numberBuffer = new char[numberLength * 2];
+		}
+
+		frame.getChars(start, position, numberBuffer, 0);
+		return numberLength;
+	}
+
+	/**
+	 * Read the bounds of the next number
+	 * @return the start position
+	 */
+	private int readNumberBounds() {
+		if(peek() != Token.NUMBER) {
+			throw syntaxError("Expected number");
+		}
+
+		final int start = position;
+
+		while(position < length && isNumberPart(frame.charAt(position))) {
+			position++;
+		}
+
+		return start;
+	}
+
+	/**
+	 * Read the bounds of the next string
+	 * @return the start position of the string content
+	 */
+	private int readStringBounds() {
+		if(peek() != Token.STRING) {
+			throw syntaxError("Expected string");
+		}
+
+		position++;
+		final int start = position;
+
+		while(position < length) {
+			final char c = frame.charAt(position);
+
+			if(c == '\\') {
+				position += 2;
+				continue;
+			}
+
+			position++;
+
+			if(c == '"') {
+				return start;
+			}
+		}
+
+		throw syntaxError("Unterminated string");
+	}
+
+	/**
+	 * Is the char a part of a number
+	 * @param c
+	 * @return
+	 */
+	private static boolean isNumberPart(final char c) {
+		return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E';
+	}
+
+	/**
+	 * Skip whitespaces and separators
+	 */
+	private void skipSeparators() {
+		while(position < length) {
+			final char c = frame.charAt(position);
+
+			if(c == ',' || c == ':' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+				position++;
+			} else {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Consume the expected char
+	 * @param expected
+	 */
+	private void expect(final char expected) {
+		skipSeparators();
+
+		if(position >= length || frame.charAt(position) != expected) {
+			throw syntaxError("Expected '" + expected + "'");
+		}
+
+		position++;
+	}
+
+	/**
+	 * Consume the expected literal
+	 * @param literal
+	 */
+	private void expectLiteral(final String literal) {
+		skipSeparators();
+
+		if(! frame.startsWith(literal, position)) {
+			throw syntaxError("Expected '" + literal + "'");
+		}
+
+		position += literal.length();
+	}
+
+	/**
+	 * Unescape the given string
+	 * @param value
+	 * @return
+	 */
+	private String unescape(final String value) {
+		final StringBuilder sb = new StringBuilder(value.length());
+
+		for(int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+
+			if(c != '\\' || i + 1 >= value.length()) {
+				sb.append(c);
+				continue;
+			}
+
+			final char escaped = value.charAt(++i);
+
+			switch(escaped) {
+			case 'n':
+				sb.append('\n');
+				break;
+			case 't':
+				sb.append('\t');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			case 'b':
+				sb.append('\b');
+				break;
+			case 'f':
+				sb.append('\f');
+				break;
+			case 'u':
+				if(i + 4 >= value.length()) {
+					throw syntaxError("Invalid unicode escape");
+				}
+				try {
+					sb.append((char) Integer.parseInt(value.substring(i + 1, i + 5), 16));
+				} catch (NumberFormatException e) {
+					throw syntaxError("Invalid unicode escape", e);
+				}
+				i += 4;
+				break;
+			default:
+				sb.append(escaped);
+			}
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Create a new syntax error
+	 * @param message
+	 * @return
+	 */
+	private JSONException syntaxError(final String message) {
+		return new JSONException(message + " at position " + position + " in frame: " + frame);
+	}
+	
+	/**
+	 * Create a new syntax error
+	 * @param message
+	 * @param cause
+	 * @return
+	 */
+	private JSONException syntaxError(final String message, final Throwable cause) {
+		return new JSONException(message + " at position " + position + " in frame: " + frame, cause);
+	}
+
+}
@@ -0,0 +1,261 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+/**
+ * A open addressing hash map with primitive long keys and int values. 
+ * 
+ * Linear probing is used, removed entries are back-shifted so no 
+ * tombstones are needed. Instances are not thread safe.
+ */
+public class LongIntHashMap {
+	
+	/**
+	 * The value returned for missing keys
+	 */
+	public final static int NO_VALUE = -1;
+	
+	/**
+	 * The maximal load factor
+	 */
+	private final static double MAX_LOAD_FACTOR = 0.5;
+
+	/**
+	 * The table of the map
+	 */
+	private Table table;
+	
+	/**
+	 * The number of entries
+	 */
+	private int size;
+	
+	public LongIntHashMap() {
+		this(16);
+	}
+	
+	public LongIntHashMap(final int expectedSize) {
+		this.table = new Table(tableSizeFor(expectedSize));
+	}
+	
+	/**
+	 * Get the value for the key
+	 * @param key
+	 * @return the value or NO_VALUE
+	 */
+	public int get(final long key) {
+		final Table currentTable = table;
+		final int mask = currentTable.keys.length - 1;
+		int pos = hash(key) & mask;
+		
+		// The number of probes is bounded, so a concurrent (optimistic) reader can't loop forever
+		for(int probes = 0; probes <= mask; probes++) {
+			if(! currentTable.used[pos]) {
+				return NO_VALUE;
+			}
+			
+			if(currentTable.keys[pos] == key) {
+				return currentTable.values[pos];
+			}
+			
+			pos = (pos + 1) & mask;
+		}
+		
+		return NO_VALUE;
+	}
+	
+	/**
+	 * Is the key contained in the map
+	 * @param key
+	 * @return
+	 */
+	public boolean containsKey(final long key) {
+		return get(key) != NO_VALUE;
+	}
+	
+	/**
+	 * Put the value into the map. The value must not be NO_VALUE.
+	 * @param key
+	 * @param value
+	 * @return the old value or NO_VALUE
+	 */
+	public int put(final long key, final int value) {
+		
+		if(value == NO_VALUE) {
+			throw new IllegalArgumentException("Value is reserved: " + value);
+		}
+		
+		final int mask = table.keys.length - 1;
+		int pos = hash(key) & mask;
+		
+		while(table.used[pos]) {
+			if(table.keys[pos] == key) {
+				final int oldValue = table.values[pos];
+				table.values[pos] = value;
+				return oldValue;
+			}
+			
+			pos = (pos + 1) & mask;
+		}
+		
+		table.keys[pos] = key;
+		table.values[pos] = value;
+		table.used[pos] = true;
+		size++;
+		
+		if(size > table.keys.length * MAX_LOAD_FACTOR) {
+			resize(table.keys.length * 2);
+		}
+		
+		return NO_VALUE;
+	}
+	
+	/**
+	 * Remove the key from the map
+	 * @param key
+	 * @return the old value or NO_VALUE
+	 */
+	public int remove(final long key) {
+		final int mask = table.keys.length - 1;
+		int pos = hash(key) & mask;
+		
+		while(table.used[pos]) {
+			if(table.keys[pos] == key) {
+				final int oldValue = table.values[pos];
+				shiftBack(pos, mask);
+				size--;
+				return oldValue;
+			}
+			
+			pos = (pos + 1) & mask;
+		}
+		
+		return NO_VALUE;
+	}
+	
+	/**
+	 * Remove all entries
+	 */
+	public void clear() {
+		table = new Table(table.keys.length);
+		size = 0;
+	}
+	
+	/**
+	 * Get the number of entries
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Is the map empty
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * Close the gap of a removed entry by moving the following entries back
+	 * @param pos
+	 * @param mask
+	 */
+	private void shiftBack(int pos, final int mask) {
+		int next = (pos + 1) & mask;
+		
+		while(table.used[next]) {
+			final int ideal = hash(table.keys[next]) & mask;
+			
+			// Move the entry when the gap lies cyclically between its ideal position and its position
+			if(((next - ideal) & mask) >= ((next - pos) & mask)) {
+				table.keys[pos] = table.keys[next];
+				table.values[pos] = table.values[next];
+				pos = next;
+			}
+			
+			next = (next + 1) & mask;
+		}
+		
+		table.used[pos] = false;
+	}
+	
+	/**
+	 * Resize the table
+	 * @param newCapacity
+	 */
+	private void resize(final int newCapacity) {
+		final Table oldTable = table;
+		final Table newTable = new Table(newCapacity);
+		final int mask = newCapacity - 1;
+		
+		for(int i = 0; i < oldTable.keys.length; i++) {
+			if(! oldTable.used[i]) {
+				continue;
+			}
+			
+			int pos = hash(oldTable.keys[i]) & mask;
+			
+			while(newTable.used[pos]) {
+				pos = (pos + 1) & mask;
+			}
+			
+			newTable.keys[pos] = oldTable.keys[i];
+			newTable.values[pos] = oldTable.values[i];
+			newTable.used[pos] = true;
+		}
+		
+		table = newTable;
+	}
+	
+	/**
+	 * Get the table size for the expected number of entries
+	 * @param expectedSize
+	 * @return
+	 */
+	private static int tableSizeFor(final int expectedSize) {
+		final int minimalSize = (int) Math.min(1 << 30, Math.max(4, (long) (expectedSize / MAX_LOAD_FACTOR) + 1));
+		return Integer.highestOneBit(minimalSize - 1) << 1;
+	}
+	
+	/**
+	 * Hash the key (fibonacci hashing)
+	 * @param key
+	 * @return
+	 */
+	private static int hash(final long key) {
+		final long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+	
+	/**
+	 * The table of the map. The arrays are replaced together on resize. 
+	 */
+	private final static class Table {
+		private final long[] keys;
+		private final int[] values;
+		private final boolean[] used;
+		
+		public Table(final int capacity) {
+			this.keys = new long[capacity];
+			this.values = new int[capacity];
+			this.used = new boolean[capacity];
+		}
+	}
+}
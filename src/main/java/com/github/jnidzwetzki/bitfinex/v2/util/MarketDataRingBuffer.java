@@ -0,0 +1,532 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+
+/**
+ * A ring buffer with preallocated event slots, which transports the market 
+ * data (ticks, trades, candles and book levels) from the websocket thread 
+ * to a dedicated consumer thread. 
+ * 
+ * The producers claim a slot by incrementing the claim sequence, fill the 
+ * slot and publish it. The consumer thread processes all published events 
+ * in sequence order and calls the registered handlers. When the buffer is 
+ * full, the producer waits until the consumer has freed a slot. A closed 
+ * buffer can't be restarted, the events published after the close are 
+ * dropped (and counted), so a producer never waits for a stopped consumer.
+ * 
+ * The wait strategy determines how the threads wait: BLOCKING (lock and 
+ * condition, lowest CPU usage), YIELDING (spin, then Thread.yield) or 
+ * BUSY_SPIN (occupies a core, lowest latency).
+ */
+public class MarketDataRingBuffer implements Closeable {
+	
+	public enum WaitStrategy {
+		BLOCKING,
+		YIELDING,
+		BUSY_SPIN;
+	}
+	
+	public enum EventType {
+		TICK,
+		CANDLE,
+		TRADE,
+		BOOK_LEVEL,
+		RAW_BOOK_LEVEL;
+	}
+	
+	@FunctionalInterface
+	public interface EventHandler {
+		
+		/**
+		 * Handle the event. The event slot is reused after the 
+		 * method returns, so the event must not be stored.
+		 * @param event
+		 * @param endOfBatch - no more events are available at the moment
+		 */
+		public void onEvent(final Event event, final boolean endOfBatch);
+	}
+	
+	/**
+	 * A preallocated event slot
+	 */
+	public final static class Event {
+		
+		/**
+		 * The sequence of the event
+		 */
+		private long sequence;
+		
+		/**
+		 * The type of the event
+		 */
+		private EventType type;
+		
+		/**
+		 * The symbol
+		 */
+		private BitfinexStreamSymbol symbol;
+		
+		/**
+		 * The market data entity (e.g. BitfinexTick or OrderbookEntry)
+		 */
+		private Object payload;
+		
+		public long getSequence() {
+			return sequence;
+		}
+		
+		public EventType getType() {
+			return type;
+		}
+		
+		public BitfinexStreamSymbol getSymbol() {
+			return symbol;
+		}
+		
+		public Object getPayload() {
+			return payload;
+		}
+		
+		public <T> T getPayload(final Class<T> payloadClass) {
+			return payloadClass.cast(payload);
+		}
+		
+		@Override
+		public String toString() {
+			return "Event [sequence=" + sequence + ", type=" + type + ", symbol=" + symbol 
+					+ ", payload=" + payload + "]";
+		}
+	}
+	
+	/**
+	 * The sequence of a dropped event
+	 */
+	public final static long DROPPED = -1;
+	
+	/**
+	 * The number of spins before a yielding thread yields
+	 */
+	private final static int SPIN_TRIES = 100;
+
+	/**
+	 * The event slots
+	 */
+	private final Event[] events;
+	
+	/**
+	 * The sequence published in a slot
+	 */
+	private final AtomicLongArray publishedSequences;
+	
+	/**
+	 * The mask for the slot index
+	 */
+	private final int mask;
+	
+	/**
+	 * The last claimed sequence
+	 */
+	private final AtomicLong claimedSequence;
+	
+	/**
+	 * The last processed sequence
+	 */
+	private final AtomicLong processedSequence;
+	
+	/**
+	 * The wait strategy
+	 */
+	private final WaitStrategy waitStrategy;
+	
+	/**
+	 * The handlers
+	 */
+	private final List<EventHandler> handlers;
+	
+	/**
+	 * The lock and conditions for the blocking wait strategy
+	 */
+	private final ReentrantLock lock;
+	private final Condition eventsPublished;
+	private final Condition eventsProcessed;
+	
+	/**
+	 * Is the consumer or a producer waiting (blocking wait strategy)
+	 */
+	private volatile boolean consumerWaiting;
+	private volatile boolean producerWaiting;
+	
+	/**
+	 * Is the consumer running
+	 */
+	private volatile boolean running;
+	
+	/**
+	 * Is the buffer closed
+	 */
+	private volatile boolean closed;
+	
+	/**
+	 * The events that are dropped, because the buffer is closed
+	 */
+	private final AtomicLong droppedEvents;
+	
+	/**
+	 * The consumer thread
+	 */
+	private Thread consumerThread;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(MarketDataRingBuffer.class);
+	
+	public MarketDataRingBuffer(final int capacity, final WaitStrategy waitStrategy) {
+		
+		if(capacity < 1 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("The capacity has to be a power of two: " + capacity);
+		}
+		
+		this.events = new Event[capacity];
+		this.publishedSequences = new AtomicLongArray(capacity);
+		this.mask = capacity - 1;
+		this.claimedSequence = new AtomicLong(-1);
+		this.processedSequence = new AtomicLong(-1);
+		this.droppedEvents = new AtomicLong();
+		this.waitStrategy = waitStrategy;
+		this.handlers = new CopyOnWriteArrayList<>();
+		this.lock = new ReentrantLock();
+		this.eventsPublished = lock.newCondition();
+		this.eventsProcessed = lock.newCondition();
+		
+		for(int i = 0; i < capacity; i++) {
+			events[i] = new Event();
+			publishedSequences.set(i, -1);
+		}
+	}
+	
+	/**
+	 * Register a new handler
+	 * @param handler
+	 */
+	public void registerHandler(final EventHandler handler) {
+		handlers.add(handler);
+	}
+	
+	/**
+	 * Remove the handler
+	 * @param handler
+	 * @return
+	 */
+	public boolean removeHandler(final EventHandler handler) {
+		return handlers.remove(handler);
+	}
+	
+	/**
+	 * Start the consumer thread
+	 */
+	public synchronized void start() {
+		if(closed) {
+			throw new IllegalStateException("The ring buffer is closed");
+		}
+		
+		if(running) {
+			return;
+		}
+		
+		running = true;
+		consumerThread = new Thread(this::processEvents, "MarketDataRingBuffer");
+		consumerThread.setDaemon(true);
+		consumerThread.start();
+	}
+	
+	/**
+	 * Stop the consumer thread, the buffer can't be restarted
+	 */
+	@Override
+	public synchronized void close() {
+		closed = true;
+		
+		if(! running) {
+			return;
+		}
+		
+		running = false;
+		signal(eventsPublished);
+		signal(eventsProcessed);
+		consumerThread.interrupt();
+		
+		try {
+			consumerThread.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		consumerThread = null;
+	}
+	
+	/**
+	 * Publish a new event, waits while the buffer is full
+	 * @param type
+	 * @param symbol
+	 * @param payload
+	 * @return the sequence of the event or DROPPED, if the buffer is closed
+	 */
+	public long publish(final EventType type, final BitfinexStreamSymbol symbol, final Object payload) {
+		
+		if(closed) {
+			droppedEvents.incrementAndGet();
+			return DROPPED;
+		}
+		
+		final long sequence = claimedSequence.incrementAndGet();
+		
+		if(! waitForFreeSlot(sequence)) {
+			droppedEvents.incrementAndGet();
+			return DROPPED;
+		}
+		
+		final int index = (int) sequence & mask;
+		final Event event = events[index];
+		event.sequence = sequence;
+		event.type = type;
+		event.symbol = symbol;
+		event.payload = payload;
+		
+		// A volatile write (StoreLoad) is required, otherwise the read of consumerWaiting 
+		// can be reordered before the publication and the signal of a blocked consumer is lost
+		publishedSequences.set(index, sequence);
+		
+		if(consumerWaiting) {
+			signal(eventsPublished);
+		}
+		
+		return sequence;
+	}
+	
+	/**
+	 * Get the capacity of the buffer
+	 * @return
+	 */
+	public int getCapacity() {
+		return events.length;
+	}
+	
+	/**
+	 * Get the number of published but not processed events
+	 * @return
+	 */
+	public long getPendingEvents() {
+		return claimedSequence.get() - processedSequence.get();
+	}
+	
+	/**
+	 * Get the wait strategy
+	 * @return
+	 */
+	public WaitStrategy getWaitStrategy() {
+		return waitStrategy;
+	}
+	
+	/**
+	 * Is the consumer running
+	 * @return
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+	
+	/**
+	 * Is the buffer closed
+	 * @return
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+	
+	/**
+	 * Get the number of events that are dropped, because the buffer is closed
+	 * @return
+	 */
+	public long getDroppedEvents() {
+		return droppedEvents.get();
+	}
+	
+	/**
+	 * The consumer loop
+	 */
+	private void processEvents() {
+		long nextSequence = processedSequence.get() + 1;
+		
+		while(running) {
+			if(! waitForPublishedEvent(nextSequence)) {
+				continue;
+			}
+			
+			// Process all available events as one batch
+			while(isPublished(nextSequence)) {
+				final Event event = events[(int) nextSequence & mask];
+				final boolean endOfBatch = ! isPublished(nextSequence + 1);
+				
+				for(final EventHandler handler : handlers) {
+					try {
+						handler.onEvent(event, endOfBatch);
+					} catch(Exception e) {
+						logger.error("Got exception while handling {}", event, e);
+					}
+				}
+				
+				event.symbol = null;
+				event.payload = null;
+				processedSequence.lazySet(nextSequence);
+				nextSequence++;
+			}
+			
+			if(producerWaiting) {
+				signal(eventsProcessed);
+			}
+		}
+	}
+	
+	/**
+	 * Is the event with the sequence published
+	 * @param sequence
+	 * @return
+	 */
+	private boolean isPublished(final long sequence) {
+		return publishedSequences.get((int) sequence & mask) == sequence;
+	}
+	
+	/**
+	 * Wait until the event is published
+	 * @param sequence
+	 * @return true if the event is published
+	 */
+	private boolean waitForPublishedEvent(final long sequence) {
+		int tries = 0;
+		
+		while(running && ! isPublished(sequence)) {
+			if(waitStrategy == WaitStrategy.BLOCKING) {
+				lock.lock();
+				
+				try {
+					consumerWaiting = true;
+					
+					if(running && ! isPublished(sequence)) {
+						eventsPublished.await();
+					}
+				} catch (InterruptedException e) {
+					// Check running flag
+				} finally {
+					consumerWaiting = false;
+					lock.unlock();
+				}
+			} else {
+				tries = idle(tries);
+			}
+		}
+		
+		return isPublished(sequence);
+	}
+	
+	/**
+	 * Wait until the slot of the sequence is processed
+	 * @param sequence
+	 * @return false, if the buffer is closed while waiting
+	 */
+	private boolean waitForFreeSlot(final long sequence) {
+		final long wrapSequence = sequence - events.length;
+		int tries = 0;
+		
+		while(processedSequence.get() < wrapSequence) {
+			
+			// The consumer is stopped, the slot is never freed
+			if(closed) {
+				return false;
+			}
+			
+			if(waitStrategy == WaitStrategy.BLOCKING) {
+				lock.lock();
+				
+				try {
+					producerWaiting = true;
+					
+					if(processedSequence.get() < wrapSequence) {
+						eventsProcessed.await(1, TimeUnit.MILLISECONDS);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for a free slot", e);
+				} finally {
+					producerWaiting = false;
+					lock.unlock();
+				}
+			} else {
+				tries = idle(tries);
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Idle according to the (non blocking) wait strategy
+	 * @param tries
+	 * @return the new number of tries
+	 */
+	private int idle(final int tries) {
+		if(waitStrategy == WaitStrategy.BUSY_SPIN) {
+			return tries;
+		}
+		
+		if(tries < SPIN_TRIES) {
+			return tries + 1;
+		}
+		
+		Thread.yield();
+		return tries;
+	}
+	
+	/**
+	 * Signal the condition
+	 * @param condition
+	 */
+	private void signal(final Condition condition) {
+		lock.lock();
+		
+		try {
+			condition.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.util.zip.CRC32;
+
+/**
+ * Calculates the CRC32 checksum of an orderbook, as sent by Bitfinex 
+ * in the "cs" messages when the OB_CHECKSUM flag is enabled.
+ * 
+ * The checksum covers the top 25 entries of each side, interleaved 
+ * (bid 0, ask 0, bid 1, ask 1, ...). Each entry is written as 
+ * "price:amount" (aggregated books) or "orderId:amount" (raw books), 
+ * all values are joined with ":". The numbers are formatted like 
+ * JavaScript numbers, since the checksum is calculated by the server 
+ * on the JSON representation of the book.
+ */
+public class OrderbookChecksum {
+
+	/**
+	 * The number of entries per side covered by the checksum
+	 */
+	public final static int DEPTH = 25;
+	
+	/**
+	 * Numbers below 10^-6 are written in exponent notation
+	 */
+	private final static int MIN_PLAIN_EXPONENT = -6;
+	
+	/**
+	 * The checksum
+	 */
+	private final CRC32 crc;
+	
+	/**
+	 * The buffer for the formatted number
+	 */
+	private final StringBuilder buffer;
+	
+	/**
+	 * Is the next value the first value
+	 */
+	private boolean first;
+	
+	public OrderbookChecksum() {
+		this.crc = new CRC32();
+		this.buffer = new StringBuilder();
+		this.first = true;
+	}
+	
+	/**
+	 * Add an entry to the checksum
+	 * @param key - the price or the order id (mantissa)
+	 * @param keyScale
+	 * @param amount - the amount (mantissa)
+	 * @param amountScale
+	 */
+	public void addEntry(final long key, final int keyScale, final long amount, final int amountScale) {
+		addValue(key, keyScale);
+		addValue(amount, amountScale);
+	}
+	
+	/**
+	 * Get the checksum as signed 32 bit value (as sent by Bitfinex)
+	 * @return
+	 */
+	public int getChecksum() {
+		return (int) crc.getValue();
+	}
+	
+	/**
+	 * Add a value to the checksum
+	 * @param mantissa
+	 * @param scale
+	 */
+	private void addValue(final long mantissa, final int scale) {
+		buffer.setLength(0);
+		
+		if(! first) {
+			buffer.append(':');
+		}
+		
+		first = false;
+		appendNumber(buffer, mantissa, scale);
+		
+		for(int i = 0; i < buffer.length(); i++) {
+			crc.update(buffer.charAt(i));
+		}
+	}
+	
+	/**
+	 * Append the fixed-point number in JavaScript number notation 
+	 * (e.g. 0.5, -12.25, 1e-8)
+	 * @param target
+	 * @param mantissa
+	 * @param scale
+	 */
+	public static void appendNumber(final StringBuilder target, final long mantissa, final int scale) {
+		
+		if(mantissa == 0) {
+			target.append('0');
+			return;
+		}
+		
+		final String value = Long.toString(mantissa);
+		final int start = mantissa < 0 ? 1 : 0;
+		int end = value.length();
+		int fractionDigits = scale;
+		
+		// Remove trailing zeros of the fraction
+		while(fractionDigits > 0 && value.charAt(end - 1) == '0') {
+			end--;
+			fractionDigits--;
+		}
+		
+		if(mantissa < 0) {
+			target.append('-');
+		}
+		
+		final int digits = end - start;
+		final int integerDigits = digits - fractionDigits;
+		
+		if(integerDigits <= MIN_PLAIN_EXPONENT) {
+			target.append(value.charAt(start));
+			
+			if(digits > 1) {
+				target.append('.');
+				target.append(value, start + 1, end);
+			}
+			
+			target.append("e-");
+			target.append(1 - integerDigits);
+		} else if(fractionDigits <= 0) {
+			target.append(value, start, end);
+			
+			for(int i = fractionDigits; i < 0; i++) {
+				target.append('0');
+			}
+		} else if(integerDigits > 0) {
+			target.append(value, start, start + integerDigits);
+			target.append('.');
+			target.append(value, start + integerDigits, end);
+		} else {
+			target.append("0.");
+			
+			for(int i = integerDigits; i < 0; i++) {
+				target.append('0');
+			}
+			
+			target.append(value, start, end);
+		}
+	}
+}
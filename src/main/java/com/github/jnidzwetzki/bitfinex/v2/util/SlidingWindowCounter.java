@@ -0,0 +1,120 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free counter of the events in a sliding time window. The window 
+ * is divided into buckets, every bucket stores its epoch and its count 
+ * in one long value, so a bucket is reset and incremented by one CAS.
+ * 
+ * Unlike the EventsInTimeslotManager, no event list is kept and the 
+ * counter can be used by several threads without a lock. The window
+ * slides with the granularity of one bucket.
+ */
+public class SlidingWindowCounter {
+	
+	/**
+	 * The bits of the count in a bucket value
+	 */
+	private final static int COUNT_BITS = 20;
+	
+	/**
+	 * The mask of the count in a bucket value
+	 */
+	private final static long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+	/**
+	 * The duration of a bucket
+	 */
+	private final long bucketMs;
+	
+	/**
+	 * The buckets (epoch << COUNT_BITS | count)
+	 */
+	private final AtomicLongArray buckets;
+	
+	public SlidingWindowCounter(final int window, final TimeUnit timeUnit, final int numberOfBuckets) {
+		
+		if(numberOfBuckets <= 0) {
+			throw new IllegalArgumentException("Number of buckets must be >= 1");
+		}
+		
+		final long windowMs = timeUnit.toMillis(window);
+		
+		if(windowMs < numberOfBuckets) {
+			throw new IllegalArgumentException("Window must be >= 1 ms per bucket");
+		}
+		
+		this.bucketMs = windowMs / numberOfBuckets;
+		this.buckets = new AtomicLongArray(numberOfBuckets);
+	}
+	
+	/**
+	 * Record a new event
+	 * @param now - the time in milliseconds
+	 */
+	public void recordEvent(final long now) {
+		final long epoch = now / bucketMs;
+		final int index = (int) (epoch % buckets.length());
+		
+		while(true) {
+			final long value = buckets.get(index);
+			
+			final long newValue = ((value >>> COUNT_BITS) == epoch) 
+					? Math.min(value + 1, (epoch << COUNT_BITS) | COUNT_MASK)
+					: (epoch << COUNT_BITS) | 1;
+			
+			if(buckets.compareAndSet(index, value, newValue)) {
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Get the number of events in the window
+	 * @param now - the time in milliseconds
+	 * @return
+	 */
+	public long getNumberOfEvents(final long now) {
+		final long epoch = now / bucketMs;
+		long events = 0;
+		
+		for(int i = 0; i < buckets.length(); i++) {
+			final long value = buckets.get(i);
+			final long bucketEpoch = value >>> COUNT_BITS;
+			
+			if(bucketEpoch <= epoch && bucketEpoch > epoch - buckets.length()) {
+				events += value & COUNT_MASK;
+			}
+		}
+		
+		return events;
+	}
+	
+	/**
+	 * Get the time until the oldest bucket leaves the window
+	 * @param now - the time in milliseconds
+	 * @return
+	 */
+	public long getMillisToNextBucket(final long now) {
+		return bucketMs - (now % bucketMs);
+	}
+}
@@ -0,0 +1,262 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes tasks in lanes on top of a shared executor. Every stripe 
+ * (e.g. a symbol or an orderbook configuration) is pinned to one lane, 
+ * the tasks of a lane are executed one after another in submission order. 
+ * Different lanes are executed in parallel by the threads of the 
+ * shared executor.
+ * 
+ * A lane is scheduled with Executor.execute, so no future is created per 
+ * task. A lane executes at most MAX_TASKS_PER_RUN tasks before it yields 
+ * the thread to the other lanes.
+ * 
+ * The hashed lanes are shared, a blocking task stalls all stripes of its 
+ * lane. With dedicated lanes (e.g. on virtual threads) every stripe and 
+ * callback pair gets its own lane, so a blocking callback only delays 
+ * its own events.
+ */
+public class StripedExecutor {
+	
+	/**
+	 * The maximal number of tasks executed by a lane without rescheduling
+	 */
+	private final static int MAX_TASKS_PER_RUN = 256;
+
+	/**
+	 * The shared executor
+	 */
+	private final Executor executor;
+	
+	/**
+	 * The hashed lanes, null for dedicated lanes
+	 */
+	private final Lane[] lanes;
+	
+	/**
+	 * The dedicated lanes per stripe and callback, null for hashed lanes
+	 */
+	private final Map<Entry<Object, Object>, Lane> dedicatedLanes;
+	
+	/**
+	 * The mask for the lane index
+	 */
+	private final int laneMask;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(StripedExecutor.class);
+	
+	public StripedExecutor(final Executor executor) {
+		this(executor, false);
+	}
+	
+	public StripedExecutor(final Executor executor, final int lanes) {
+		this(executor, lanes, false);
+	}
+	
+	/**
+	 * Create a executor with hashed lanes or with a dedicated lane 
+	 * per stripe and callback pair
+	 * @param executor
+	 * @param dedicatedLanes
+	 */
+	public StripedExecutor(final Executor executor, final boolean dedicatedLanes) {
+		this(executor, Runtime.getRuntime().availableProcessors() * 2, dedicatedLanes);
+	}
+	
+	private StripedExecutor(final Executor executor, final int lanes, final boolean dedicatedLanes) {
+		
+		if(lanes < 1) {
+			throw new IllegalArgumentException("Invalid number of lanes: " + lanes);
+		}
+		
+		this.executor = executor;
+		
+		if(dedicatedLanes) {
+			this.lanes = null;
+			this.laneMask = 0;
+			this.dedicatedLanes = new ConcurrentHashMap<>();
+			return;
+		}
+		
+		// Round up to a power of two
+		final int laneCount = Integer.highestOneBit(lanes - 1) << 1;
+		
+		this.lanes = new Lane[Math.max(1, laneCount)];
+		this.laneMask = this.lanes.length - 1;
+		this.dedicatedLanes = null;
+		
+		for(int i = 0; i < this.lanes.length; i++) {
+			this.lanes[i] = new Lane();
+		}
+	}
+	
+	/**
+	 * Execute the task in the lane of the stripe
+	 * @param stripe
+	 * @param task
+	 */
+	public void execute(final Object stripe, final Runnable task) {
+		execute(stripe, null, task);
+	}
+	
+	/**
+	 * Execute the task of the callback in the lane of the stripe, or in the 
+	 * dedicated lane of the stripe and callback pair
+	 * @param stripe
+	 * @param callback
+	 * @param task
+	 */
+	public void execute(final Object stripe, final Object callback, final Runnable task) {
+		
+		if(dedicatedLanes == null) {
+			lanes[getLane(stripe)].add(task);
+			return;
+		}
+		
+		dedicatedLanes.computeIfAbsent(new SimpleImmutableEntry<>(stripe, callback), 
+				(k) -> new Lane()).add(task);
+	}
+	
+	/**
+	 * Remove the dedicated lanes of a removed callback, the queued tasks 
+	 * are still executed
+	 * @param callback
+	 */
+	public void removeCallback(final Object callback) {
+		
+		if(dedicatedLanes == null) {
+			return;
+		}
+		
+		dedicatedLanes.keySet().removeIf((k) -> callback.equals(k.getValue()));
+	}
+	
+	/**
+	 * Has every stripe and callback pair its own lane
+	 * @return
+	 */
+	public boolean isDedicatedLanes() {
+		return dedicatedLanes != null;
+	}
+	
+	/**
+	 * Get the hashed lane of the stripe
+	 * @param stripe
+	 * @return
+	 */
+	public int getLane(final Object stripe) {
+		final int hash = stripe == null ? 0 : stripe.hashCode();
+		return (hash ^ (hash >>> 16)) & laneMask;
+	}
+	
+	/**
+	 * Get the number of lanes
+	 * @return
+	 */
+	public int getLanes() {
+		
+		if(dedicatedLanes != null) {
+			return dedicatedLanes.size();
+		}
+		
+		return lanes.length;
+	}
+	
+	/**
+	 * A lane, the queued tasks are executed by at most one thread at a time
+	 */
+	private final class Lane implements Runnable {
+		
+		/**
+		 * The queued tasks
+		 */
+		private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+		
+		/**
+		 * Is the lane scheduled on the executor
+		 */
+		private final AtomicBoolean scheduled = new AtomicBoolean(false);
+		
+		/**
+		 * Add a task
+		 * @param task
+		 */
+		public void add(final Runnable task) {
+			tasks.add(task);
+			schedule();
+		}
+		
+		/**
+		 * Schedule the lane, if not already scheduled
+		 */
+		private void schedule() {
+			if(! scheduled.compareAndSet(false, true)) {
+				return;
+			}
+			
+			try {
+				executor.execute(this);
+			} catch(RejectedExecutionException e) {
+				scheduled.set(false);
+				throw e;
+			}
+		}
+		
+		@Override
+		public void run() {
+			for(int i = 0; i < MAX_TASKS_PER_RUN; i++) {
+				final Runnable task = tasks.poll();
+				
+				if(task == null) {
+					break;
+				}
+				
+				try {
+					task.run();
+				} catch(Exception e) {
+					logger.error("Got exception while executing task", e);
+				}
+			}
+			
+			scheduled.set(false);
+			
+			// Tasks added after the last poll or remaining tasks
+			if(! tasks.isEmpty()) {
+				schedule();
+			}
+		}
+	}
+}
@@ -0,0 +1,253 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * A hashed timer wheel that tracks a deadline per key. The deadline of a 
+ * key is refreshed in O(1) without touching the wheel (a volatile write), 
+ * a timeout is moved to the slot of its new deadline, when its old slot 
+ * is processed. Advancing the wheel only touches the slots that are due.
+ *
+ * @param <K> the type of the keys
+ */
+public class TimerWheel<K> {
+	
+	/**
+	 * The duration of a tick
+	 */
+	private final long tickMs;
+	
+	/**
+	 * The timeout of the keys
+	 */
+	private final long timeoutMs;
+	
+	/**
+	 * The slots, the size is a power of two
+	 */
+	private final List<ArrayDeque<Timeout<K>>> slots;
+	
+	/**
+	 * The mask for the slot index
+	 */
+	private final int mask;
+	
+	/**
+	 * The timeouts of the keys
+	 */
+	private final Map<K, Timeout<K>> timeouts;
+	
+	/**
+	 * The handler for the expired keys
+	 */
+	private final Consumer<K> expiryHandler;
+	
+	/**
+	 * The next tick to process (-1 = not started)
+	 */
+	private long currentTick = -1;
+
+	public TimerWheel(final long tickMs, final int wheelSize, final long timeoutMs, 
+			final Consumer<K> expiryHandler) {
+		
+		if(tickMs < 1 || timeoutMs < 1) {
+			throw new IllegalArgumentException("Invalid tick or timeout: " + tickMs + " / " + timeoutMs);
+		}
+		
+		if(wheelSize < 1 || Integer.bitCount(wheelSize) != 1) {
+			throw new IllegalArgumentException("Wheel size has to be a power of two: " + wheelSize);
+		}
+		
+		this.tickMs = tickMs;
+		this.timeoutMs = timeoutMs;
+		this.mask = wheelSize - 1;
+		this.expiryHandler = expiryHandler;
+		this.timeouts = new ConcurrentHashMap<>();
+		this.slots = new ArrayList<>(wheelSize);
+		
+		for(int i = 0; i < wheelSize; i++) {
+			slots.add(new ArrayDeque<>());
+		}
+	}
+	
+	/**
+	 * Refresh the deadline of the key, an unknown key is added
+	 * @param key
+	 * @param now
+	 */
+	public void touch(final K key, final long now) {
+		final Timeout<K> timeout = timeouts.get(key);
+		
+		if(timeout != null) {
+			timeout.deadline = now + timeoutMs;
+			return;
+		}
+		
+		synchronized (this) {
+			if(timeouts.containsKey(key)) {
+				timeouts.get(key).deadline = now + timeoutMs;
+				return;
+			}
+			
+			if(currentTick == -1) {
+				currentTick = now / tickMs;
+			}
+			
+			final Timeout<K> newTimeout = new Timeout<>(key, now + timeoutMs);
+			timeouts.put(key, newTimeout);
+			place(newTimeout);
+		}
+	}
+	
+	/**
+	 * Stop tracking the key
+	 * @param key
+	 */
+	public void remove(final K key) {
+		final Timeout<K> timeout = timeouts.remove(key);
+		
+		if(timeout != null) {
+			timeout.cancelled = true;
+		}
+	}
+	
+	/**
+	 * Stop tracking all keys
+	 */
+	public synchronized void clear() {
+		timeouts.values().forEach(t -> t.cancelled = true);
+		timeouts.clear();
+		
+		for(final ArrayDeque<Timeout<K>> slot : slots) {
+			slot.clear();
+		}
+	}
+	
+	/**
+	 * Process the slots up to the given time, the expiry handler 
+	 * is called for the expired keys
+	 * @param now
+	 */
+	public void advance(final long now) {
+		final List<K> expiredKeys = new ArrayList<>();
+		
+		synchronized (this) {
+			final long targetTick = now / tickMs;
+			
+			if(currentTick == -1) {
+				currentTick = targetTick;
+			}
+			
+			for(; currentTick <= targetTick; currentTick++) {
+				processSlot(expiredKeys);
+			}
+		}
+		
+		expiredKeys.forEach(expiryHandler);
+	}
+	
+	/**
+	 * Process the slot of the current tick
+	 * @param expiredKeys
+	 */
+	private void processSlot(final List<K> expiredKeys) {
+		final ArrayDeque<Timeout<K>> slot = slots.get((int) (currentTick & mask));
+		
+		for(int i = slot.size(); i > 0; i--) {
+			final Timeout<K> timeout = slot.poll();
+			
+			if(timeout.cancelled) {
+				continue;
+			}
+			
+			// The deadline was refreshed or is in a later round
+			if(timeout.deadline / tickMs > currentTick) {
+				place(timeout);
+				continue;
+			}
+			
+			if(timeouts.remove(timeout.key, timeout)) {
+				expiredKeys.add(timeout.key);
+			}
+		}
+	}
+	
+	/**
+	 * Place the timeout into the slot of its deadline
+	 * @param timeout
+	 */
+	private void place(final Timeout<K> timeout) {
+		final long deadlineTick = Math.max(timeout.deadline / tickMs, currentTick);
+		slots.get((int) (deadlineTick & mask)).add(timeout);
+	}
+	
+	/**
+	 * Get the number of tracked keys
+	 * @return
+	 */
+	public int size() {
+		return timeouts.size();
+	}
+	
+	/**
+	 * Is the key tracked
+	 * @param key
+	 * @return
+	 */
+	public boolean contains(final K key) {
+		return timeouts.containsKey(key);
+	}
+	
+	/**
+	 * Get the timeout of the keys
+	 * @return
+	 */
+	public long getTimeoutMs() {
+		return timeoutMs;
+	}
+	
+	private static class Timeout<K> {
+		
+		/**
+		 * The key
+		 */
+		private final K key;
+		
+		/**
+		 * The deadline, refreshed without a lock
+		 */
+		private volatile long deadline;
+		
+		/**
+		 * Is the timeout cancelled
+		 */
+		private volatile boolean cancelled;
+		
+		public Timeout(final K key, final long deadline) {
+			this.key = key;
+			this.deadline = deadline;
+		}
+	}
+}
@@ -0,0 +1,406 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.OrderbookHandler;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderBookFrequency;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderBookPrecision;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.manager.AggregatedOrderbook;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderbookManager;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+import com.github.jnidzwetzki.bitfinex.v2.util.JSONFrameReader;
+import com.github.jnidzwetzki.bitfinex.v2.util.OrderbookChecksum;
+
+public class AggregatedOrderbookTest {
+	
+	/**
+	 * The delta for double compares
+	 */
+	private static final double DELTA = 0.001;
+	
+	/**
+	 * The orderbook configuration
+	 */
+	private final static OrderbookConfiguration CONFIGURATION = new OrderbookConfiguration(
+			BitfinexCurrencyPair.BTC_USD, OrderBookPrecision.P0, OrderBookFrequency.F0, 25);
+
+	/**
+	 * Test that small prices are not rounded into one price level
+	 */
+	@Test
+	public void testSmallPrices() {
+		final OrderbookConfiguration configuration = new OrderbookConfiguration(
+				BitfinexCurrencyPair.TRX_BTC, OrderBookPrecision.P0, OrderBookFrequency.F0, 25);
+		
+		final AggregatedOrderbook orderbook = new AggregatedOrderbook(configuration);
+		orderbook.applyEntry(new OrderbookEntry(new BigDecimal("0.0000035123"), BigDecimal.ONE, new BigDecimal("25")));
+		orderbook.applyEntry(new OrderbookEntry(new BigDecimal("0.0000035099"), BigDecimal.ONE, new BigDecimal("25")));
+		
+		Assert.assertEquals(2, orderbook.getBidLevels());
+		Assert.assertEquals(0, new BigDecimal("0.0000035123").compareTo(orderbook.getBestBid().getPrice()));
+		Assert.assertEquals(0, new BigDecimal("0.0000035099").compareTo(orderbook.getBids(2).get(1).getPrice()));
+		
+		// A price that can't be represented in the scale of the book is not rounded
+		try {
+			orderbook.applyEntry(new OrderbookEntry(new BigDecimal("1e-20"), BigDecimal.ONE, BigDecimal.ONE));
+			Assert.fail("Exception expected");
+		} catch (ArithmeticException e) {
+			// Expected
+		}
+		
+		Assert.assertEquals(2, orderbook.getBidLevels());
+	}
+	
+	/**
+	 * Test a entry that can't be applied, the book is cleared and resubscribed
+	 */
+	@Test
+	public void testInvalidEntryResync() {
+		final ExecutorService executorService = Executors.newFixedThreadPool(10);
+		final BitfinexApiBroker bitfinexApiBroker = Mockito.mock(BitfinexApiBroker.class);
+		Mockito.when(bitfinexApiBroker.getExecutorService()).thenReturn(executorService);
+		final OrderbookManager orderbookManager = new OrderbookManager(bitfinexApiBroker);
+		
+		final OrderbookConfiguration configuration = new OrderbookConfiguration(
+				BitfinexCurrencyPair.TRX_BTC, OrderBookPrecision.P0, OrderBookFrequency.F0, 25);
+		
+		orderbookManager.handleOrderbookSnapshot(configuration, Arrays.asList(
+				new OrderbookEntry(new BigDecimal("0.0000035123"), BigDecimal.ONE, new BigDecimal("25"))));
+		
+		final AggregatedOrderbook orderbook = orderbookManager.getOrderbook(configuration);
+		Assert.assertEquals(1, orderbook.getBidLevels());
+		
+		final OrderbookEntry invalidEntry = new OrderbookEntry(new BigDecimal("1e-20"), BigDecimal.ONE, BigDecimal.ONE);
+		orderbookManager.handleNewOrderbookEntry(configuration, invalidEntry);
+		
+		Assert.assertEquals(0, orderbook.getBidLevels());
+		Assert.assertEquals(1, orderbookManager.getInvalidUpdates());
+		Mockito.verify(bitfinexApiBroker).resubscribeChannel(configuration);
+		Mockito.verify(bitfinexApiBroker, Mockito.never()).publishMarketData(Mockito.any(), 
+				Mockito.any(), Mockito.eq(invalidEntry));
+		
+		executorService.shutdown();
+	}
+	
+	/**
+	 * Test the update and delete semantics
+	 */
+	@Test
+	public void testUpdateAndDelete() {
+		final AggregatedOrderbook orderbook = new AggregatedOrderbook(CONFIGURATION);
+		Assert.assertEquals(AggregatedOrderbook.NO_VALUE, orderbook.getBestBidPrice());
+		Assert.assertNull(orderbook.getBestAsk());
+		
+		orderbook.update(100, 1, 5);
+		orderbook.update(102, 2, 7);
+		orderbook.update(101, 1, 3);
+		orderbook.update(105, 1, -2);
+		orderbook.update(103, 3, -1);
+		orderbook.update(104, 1, -4);
+		
+		Assert.assertEquals(3, orderbook.getBidLevels());
+		Assert.assertEquals(3, orderbook.getAskLevels());
+		Assert.assertEquals(102, orderbook.getBestBidPrice());
+		Assert.assertEquals(103, orderbook.getBestAskPrice());
+		Assert.assertEquals(101, orderbook.getBidPrice(1));
+		Assert.assertEquals(105, orderbook.getAskPrice(2));
+		Assert.assertEquals(AggregatedOrderbook.NO_VALUE, orderbook.getAskPrice(3));
+		
+		// Update level
+		orderbook.update(102, 4, 9);
+		Assert.assertEquals(9, orderbook.getBestBid().getAmountMantissa());
+		Assert.assertEquals(4, orderbook.getBestBid().getCountValue());
+		
+		// Delete levels
+		orderbook.update(102, 0, 1);
+		orderbook.update(103, 0, -1);
+		orderbook.update(999, 0, -1);
+		Assert.assertEquals(101, orderbook.getBestBidPrice());
+		Assert.assertEquals(104, orderbook.getBestAskPrice());
+		
+		final long[] prices = new long[5];
+		final long[] counts = new long[5];
+		final long[] amounts = new long[5];
+		Assert.assertEquals(2, orderbook.getAsks(prices, counts, amounts));
+		Assert.assertEquals(104, prices[0]);
+		Assert.assertEquals(105, prices[1]);
+		Assert.assertEquals(-2, amounts[1]);
+		
+		final List<OrderbookEntry> bids = orderbook.getBids(1);
+		Assert.assertEquals(1, bids.size());
+		Assert.assertEquals(101, bids.get(0).getPriceMantissa());
+		
+		orderbook.clear();
+		Assert.assertEquals(0, orderbook.getBidLevels());
+	}
+	
+	/**
+	 * Test the growing of the price levels
+	 */
+	@Test
+	public void testManyLevels() {
+		final AggregatedOrderbook orderbook = new AggregatedOrderbook(CONFIGURATION);
+		
+		for(int i = 0; i < 500; i++) {
+			orderbook.update(1000 - i, 1, 1);
+			orderbook.update(2000 + i, 1, -1);
+		}
+		
+		Assert.assertEquals(500, orderbook.getBidLevels());
+		Assert.assertEquals(1000, orderbook.getBestBidPrice());
+		Assert.assertEquals(501, orderbook.getBidPrice(499));
+		Assert.assertEquals(2000, orderbook.getBestAskPrice());
+		Assert.assertEquals(2499, orderbook.getAskPrice(499));
+	}
+	
+	/**
+	 * Test the maintenance by the orderbook manager
+	 * @throws APIException 
+	 */
+	@Test
+	public void testOrderbookManager() throws APIException {
+		final ExecutorService executorService = Executors.newFixedThreadPool(10);
+		final BitfinexApiBroker bitfinexApiBroker = Mockito.mock(BitfinexApiBroker.class);
+		Mockito.when(bitfinexApiBroker.getExecutorService()).thenReturn(executorService);
+		final OrderbookManager orderbookManager = new OrderbookManager(bitfinexApiBroker);
+		Mockito.when(bitfinexApiBroker.getOrderbookManager()).thenReturn(orderbookManager);
+
+		final OrderbookHandler handler = new OrderbookHandler();
+		Assert.assertNull(orderbookManager.getOrderbook(CONFIGURATION));
+		
+		handler.handleChannelFrame(bitfinexApiBroker, CONFIGURATION, 
+				new JSONFrameReader("[[8175.9,2,1.25],[8175.5,1,0.5],[8176,1,-0.5],[8177.1,3,-2]]"));
+		
+		final AggregatedOrderbook orderbook = orderbookManager.getOrderbook(CONFIGURATION);
+		Assert.assertEquals(8175.9, orderbook.getBestBid().getPrice().doubleValue(), DELTA);
+		Assert.assertEquals(8176, orderbook.getBestAsk().getPrice().doubleValue(), DELTA);
+		Assert.assertEquals(2, orderbook.getBidLevels());
+		
+		handler.handleChannelFrame(bitfinexApiBroker, CONFIGURATION, new JSONFrameReader("[8175.9,0,1]"));
+		handler.handleChannelFrame(bitfinexApiBroker, CONFIGURATION, new JSONFrameReader("[8175.95,1,-0.1]"));
+		Assert.assertEquals(8175.5, orderbook.getBestBid().getPrice().doubleValue(), DELTA);
+		Assert.assertEquals(8175.95, orderbook.getBestAsk().getPrice().doubleValue(), DELTA);
+		
+		// A new snapshot replaces the book
+		handler.handleChannelFrame(bitfinexApiBroker, CONFIGURATION, new JSONFrameReader("[[8000,1,1]]"));
+		Assert.assertEquals(1, orderbook.getBidLevels());
+		Assert.assertEquals(0, orderbook.getAskLevels());
+		
+		executorService.shutdown();
+	}
+	
+	/**
+	 * Test the number format of the checksum
+	 */
+	@Test
+	public void testChecksumNumberFormat() {
+		Assert.assertEquals("6500.5", formatNumber(650050000000L, 8));
+		Assert.assertEquals("-6501", formatNumber(-650100000000L, 8));
+		Assert.assertEquals("0", formatNumber(0, 8));
+		Assert.assertEquals("0.000001", formatNumber(100, 8));
+		Assert.assertEquals("-5e-8", formatNumber(-5, 8));
+		Assert.assertEquals("1.25e-7", formatNumber(125, 9));
+		Assert.assertEquals("120", formatNumber(12, -1));
+		Assert.assertEquals("123456789", formatNumber(123456789, 0));
+	}
+	
+	/**
+	 * Test the checksum verification
+	 */
+	@Test
+	public void testChecksum() {
+		final ExecutorService executorService = Executors.newFixedThreadPool(10);
+		final BitfinexApiBroker bitfinexApiBroker = Mockito.mock(BitfinexApiBroker.class);
+		Mockito.when(bitfinexApiBroker.getExecutorService()).thenReturn(executorService);
+		final OrderbookManager orderbookManager = new OrderbookManager(bitfinexApiBroker);
+		
+		// No book, nothing to verify
+		Assert.assertTrue(orderbookManager.verifyChecksum(CONFIGURATION, 1234));
+
+		orderbookManager.handleOrderbookSnapshot(CONFIGURATION, Arrays.asList(
+				new OrderbookEntry(650050000000L, 1, 125000000, 8, 8),
+				new OrderbookEntry(650000000000L, 2, 50000000, 8, 8),
+				new OrderbookEntry(650100000000L, 1, -5, 8, 8)));
+		
+		final int expected = crc32("6500.5:1.25:6501:-5e-8:6500:0.5");
+		final AggregatedOrderbook orderbook = orderbookManager.getOrderbook(CONFIGURATION);
+		Assert.assertEquals(expected, orderbook.getChecksum());
+		Assert.assertTrue(orderbookManager.verifyChecksum(CONFIGURATION, expected));
+		Assert.assertEquals(2, orderbook.getBidLevels());
+		
+		// Mismatch clears the book
+		Assert.assertFalse(orderbookManager.verifyChecksum(CONFIGURATION, expected + 1));
+		Assert.assertEquals(0, orderbook.getBidLevels());
+		Assert.assertEquals(0, orderbook.getAskLevels());
+		Assert.assertEquals(2, orderbookManager.getVerifiedChecksums());
+		Assert.assertEquals(1, orderbookManager.getChecksumMismatches());
+		
+		executorService.shutdown();
+	}
+	
+	/**
+	 * Test the top of book listener
+	 */
+	@Test
+	public void testTopOfBookListener() {
+		final ExecutorService executorService = Executors.newFixedThreadPool(10);
+		final BitfinexApiBroker bitfinexApiBroker = Mockito.mock(BitfinexApiBroker.class);
+		Mockito.when(bitfinexApiBroker.getExecutorService()).thenReturn(executorService);
+		final OrderbookManager orderbookManager = new OrderbookManager(bitfinexApiBroker);
+
+		final List<long[]> topOfBook = new ArrayList<>();
+		final List<long[]> topTwoLevels = new ArrayList<>();
+		
+		orderbookManager.registerTopOfBookListener(CONFIGURATION, 
+				(c, bp, ba, ap, aa) -> topOfBook.add(new long[] {bp, ba, ap, aa}));
+		orderbookManager.registerTopOfBookListener(CONFIGURATION, 2,
+				(c, bp, ba, ap, aa) -> topTwoLevels.add(new long[] {bp, ba, ap, aa}));
+		
+		orderbookManager.handleOrderbookSnapshot(CONFIGURATION, Arrays.asList(
+				new OrderbookEntry(100, 1, 5, FixedPoint.DEFAULT_PRICE_SCALE, FixedPoint.DEFAULT_SCALE), 
+				new OrderbookEntry(99, 1, 3, FixedPoint.DEFAULT_PRICE_SCALE, FixedPoint.DEFAULT_SCALE),
+				new OrderbookEntry(101, 1, -2, FixedPoint.DEFAULT_PRICE_SCALE, FixedPoint.DEFAULT_SCALE)));
+		
+		Assert.assertEquals(1, topOfBook.size());
+		Assert.assertArrayEquals(new long[] {100, 5, 101, -2}, topOfBook.get(0));
+		Assert.assertArrayEquals(new long[] {100, 8, 101, -2}, topTwoLevels.get(0));
+		
+		// Deep level update, only the top two levels listener is called
+		orderbookManager.handleNewOrderbookEntry(CONFIGURATION, new OrderbookEntry(99, 1, 4, FixedPoint.DEFAULT_PRICE_SCALE, FixedPoint.DEFAULT_SCALE));
+		Assert.assertEquals(1, topOfBook.size());
+		Assert.assertEquals(2, topTwoLevels.size());
+		Assert.assertArrayEquals(new long[] {100, 9, 101, -2}, topTwoLevels.get(1));
+		
+		// Level 3 is not covered by both listeners
+		orderbookManager.handleNewOrderbookEntry(CONFIGURATION, new OrderbookEntry(98, 1, 4, FixedPoint.DEFAULT_PRICE_SCALE, FixedPoint.DEFAULT_SCALE));
+		Assert.assertEquals(1, topOfBook.size());
+		Assert.assertEquals(2, topTwoLevels.size());
+		
+		// Remove the best ask
+		orderbookManager.handleNewOrderbookEntry(CONFIGURATION, new OrderbookEntry(101, 0, -1, FixedPoint.DEFAULT_PRICE_SCALE, FixedPoint.DEFAULT_SCALE));
+		Assert.assertEquals(2, topOfBook.size());
+		Assert.assertArrayEquals(new long[] {100, 5, AggregatedOrderbook.NO_VALUE, AggregatedOrderbook.NO_VALUE}, 
+				topOfBook.get(1));
+		
+		executorService.shutdown();
+	}
+	
+	/**
+	 * Test the top of book listeners of two books, updated by two threads
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=60000)
+	public void testTopOfBookListenerConcurrentBooks() throws InterruptedException {
+		final ExecutorService executorService = Executors.newFixedThreadPool(10);
+		final BitfinexApiBroker bitfinexApiBroker = Mockito.mock(BitfinexApiBroker.class);
+		Mockito.when(bitfinexApiBroker.getExecutorService()).thenReturn(executorService);
+		final OrderbookManager orderbookManager = new OrderbookManager(bitfinexApiBroker);
+		
+		final OrderbookConfiguration otherConfiguration = new OrderbookConfiguration(
+				BitfinexCurrencyPair.ETH_USD, OrderBookPrecision.P0, OrderBookFrequency.F0, 25);
+		
+		final AtomicInteger wrongValues = new AtomicInteger();
+		final AtomicInteger calls = new AtomicInteger();
+		
+		orderbookManager.registerTopOfBookListener(CONFIGURATION, (c, bp, ba, ap, aa) -> {
+			calls.incrementAndGet();
+			if(bp != 1000000 && bp != 1000001) {
+				wrongValues.incrementAndGet();
+			}
+		});
+		
+		orderbookManager.registerTopOfBookListener(otherConfiguration, (c, bp, ba, ap, aa) -> {
+			calls.incrementAndGet();
+			if(bp != 100 && bp != 101) {
+				wrongValues.incrementAndGet();
+			}
+		});
+		
+		final Thread thread1 = new Thread(() -> updateBestBid(orderbookManager, CONFIGURATION, 1000000));
+		final Thread thread2 = new Thread(() -> updateBestBid(orderbookManager, otherConfiguration, 100));
+		thread1.start();
+		thread2.start();
+		thread1.join();
+		thread2.join();
+		
+		Assert.assertEquals(2 * 20001, calls.get());
+		Assert.assertEquals(0, wrongValues.get());
+		
+		executorService.shutdown();
+	}
+	
+	/**
+	 * Toggle the best bid of the book between price and price + 1
+	 * @param orderbookManager
+	 * @param configuration
+	 * @param price
+	 */
+	private void updateBestBid(final OrderbookManager orderbookManager, 
+			final OrderbookConfiguration configuration, final long price) {
+		
+		orderbookManager.handleOrderbookSnapshot(configuration, Arrays.asList(
+				new OrderbookEntry(price, 1, 5, FixedPoint.DEFAULT_PRICE_SCALE, FixedPoint.DEFAULT_SCALE)));
+		
+		for(int i = 0; i < 10000; i++) {
+			orderbookManager.handleNewOrderbookEntry(configuration, new OrderbookEntry(price + 1, 1, 3, FixedPoint.DEFAULT_PRICE_SCALE, FixedPoint.DEFAULT_SCALE));
+			orderbookManager.handleNewOrderbookEntry(configuration, new OrderbookEntry(price + 1, 0, 1, FixedPoint.DEFAULT_PRICE_SCALE, FixedPoint.DEFAULT_SCALE));
+		}
+	}
+	
+	/**
+	 * Format the number like the checksum
+	 * @param mantissa
+	 * @param scale
+	 * @return
+	 */
+	private String formatNumber(final long mantissa, final int scale) {
+		final StringBuilder sb = new StringBuilder();
+		OrderbookChecksum.appendNumber(sb, mantissa, scale);
+		return sb.toString();
+	}
+	
+	/**
+	 * Calculate the signed CRC32 of the string
+	 * @param value
+	 * @return
+	 */
+	private int crc32(final String value) {
+		final CRC32 crc = new CRC32();
+		crc.update(value.getBytes(StandardCharsets.US_ASCII));
+		return (int) crc.getValue();
+	}
+}
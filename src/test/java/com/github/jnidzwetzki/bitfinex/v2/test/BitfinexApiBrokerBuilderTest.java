@@ -0,0 +1,93 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBrokerBuilder;
+
+public class BitfinexApiBrokerBuilderTest {
+
+	/**
+	 * Test a shared executor
+	 */
+	@Test
+	public void testSharedExecutor() {
+		final ExecutorService executorService = Executors.newFixedThreadPool(2);
+		
+		final BitfinexApiBroker broker1 = BitfinexApiBrokerBuilder.create()
+				.withExecutorService(executorService).build();
+		
+		final BitfinexApiBroker broker2 = BitfinexApiBrokerBuilder.create()
+				.withApiKey("key", "secret")
+				.withExecutorService(executorService).build();
+		
+		Assert.assertSame(executorService, broker1.getExecutorService());
+		Assert.assertSame(executorService, broker2.getExecutorService());
+		Assert.assertEquals("key", broker2.getApiKey());
+		Assert.assertEquals("secret", broker2.getApiSecret());
+		Assert.assertFalse(broker1.isShutdownExecutorService());
+		
+		// The shared executor survives the close of a broker
+		broker1.close();
+		Assert.assertFalse(executorService.isShutdown());
+		
+		broker2.close();
+		Assert.assertFalse(executorService.isShutdown());
+		executorService.shutdown();
+	}
+	
+	/**
+	 * Test the own executors of the broker
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=10000)
+	public void testOwnExecutor() throws InterruptedException {
+		final BitfinexApiBroker broker = BitfinexApiBrokerBuilder.create()
+				.withVirtualThreads().build();
+		
+		Assert.assertTrue(broker.isShutdownExecutorService());
+		Assert.assertTrue(broker.isDedicatedCallbackLanes());
+		
+		// Blocking tasks don't starve the other tasks
+		final CountDownLatch blockLatch = new CountDownLatch(1);
+		final CountDownLatch doneLatch = new CountDownLatch(1);
+		
+		for(int i = 0; i < BitfinexApiBroker.DEFAULT_CALLBACK_THREADS * 2; i++) {
+			broker.getExecutorService().submit(() -> {
+				blockLatch.await();
+				return null;
+			});
+		}
+		
+		broker.getExecutorService().submit(() -> doneLatch.countDown());
+		doneLatch.await();
+		blockLatch.countDown();
+		
+		broker.close();
+		Assert.assertTrue(broker.getExecutorService().isShutdown());
+		Assert.assertTrue(broker.getExecutorService().awaitTermination(10, TimeUnit.SECONDS));
+	}
+}
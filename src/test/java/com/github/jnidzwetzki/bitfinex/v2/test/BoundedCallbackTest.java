@@ -0,0 +1,153 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexTick;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.manager.BoundedCallback;
+import com.github.jnidzwetzki.bitfinex.v2.manager.BoundedCallback.OverflowPolicy;
+import com.github.jnidzwetzki.bitfinex.v2.manager.QuoteManager;
+
+public class BoundedCallbackTest {
+
+	/**
+	 * Test the drop and conflate policies
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=10000)
+	public void testDropPolicies() throws InterruptedException {
+		Assert.assertEquals("[1, 2, 3]", deliver(OverflowPolicy.DROP_NEWEST, 3, 1, 2, 3, 4, 5).toString());
+		Assert.assertEquals("[3, 4, 5]", deliver(OverflowPolicy.DROP_OLDEST, 3, 1, 2, 3, 4, 5).toString());
+		Assert.assertEquals("[1, 2, 5]", deliver(OverflowPolicy.CONFLATE, 3, 1, 2, 5, 2, 5).toString());
+		Assert.assertEquals("[2, 5, 6]", deliver(OverflowPolicy.CONFLATE, 3, 1, 2, 5, 2, 6).toString());
+		Assert.assertEquals("[1, 2, 3, 4, 5]", deliver(OverflowPolicy.BLOCK, 3, 1, 2, 3, 4, 5).toString());
+	}
+	
+	/**
+	 * Test the disconnect policy
+	 * @throws InterruptedException 
+	 * @throws APIException 
+	 */
+	@Test(timeout=10000)
+	public void testDisconnect() throws InterruptedException, APIException {
+		final ExecutorService executorService = Executors.newSingleThreadExecutor();
+		final BitfinexApiBroker bitfinexApiBroker = Mockito.mock(BitfinexApiBroker.class);
+		Mockito.when(bitfinexApiBroker.getExecutorService()).thenReturn(executorService);
+		final QuoteManager quoteManager = new QuoteManager(bitfinexApiBroker);
+		final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD);
+		
+		final CountDownLatch blockLatch = blockExecutor(executorService);
+		
+		final BoundedCallback<BitfinexTickerSymbol, BitfinexTick> callback = quoteManager.registerTickCallback(
+				symbol, (s, t) -> {}, 2, OverflowPolicy.DISCONNECT);
+		
+		for(int i = 0; i < 5; i++) {
+			quoteManager.handleNewTick(symbol, new BitfinexTick(i, 10, 12, 15, 8, 100));
+		}
+		
+		blockLatch.countDown();
+		
+		Assert.assertTrue(callback.isDisconnected());
+		Assert.assertEquals(2, callback.getQueuedEvents());
+		Assert.assertEquals(3, callback.getDroppedEvents());
+		Assert.assertEquals(0, callback.getPendingEvents());
+		
+		// The disconnected callback is removed
+		Assert.assertFalse(quoteManager.removeTickCallback(symbol, callback));
+		
+		executorService.shutdown();
+		executorService.awaitTermination(10, TimeUnit.SECONDS);
+		Assert.assertEquals(0, callback.getDeliveredEvents());
+	}
+	
+	/**
+	 * Deliver the values to a callback, while the executor is blocked
+	 * @param overflowPolicy
+	 * @param capacity
+	 * @param values
+	 * @return the delivered values
+	 * @throws InterruptedException
+	 */
+	private List<Integer> deliver(final OverflowPolicy overflowPolicy, final int capacity, 
+			final int... values) throws InterruptedException {
+		
+		final ExecutorService executorService = Executors.newSingleThreadExecutor();
+		final List<Integer> result = new CopyOnWriteArrayList<>();
+		final Consumer<Integer> consumer = (v) -> result.add(v);
+		
+		final BoundedCallback<Object, Integer> callback = new BoundedCallback<>(consumer, capacity, 
+				overflowPolicy, null, executorService);
+		
+		final CountDownLatch blockLatch = blockExecutor(executorService);
+		
+		// A blocked producer is released by the delivery
+		if(overflowPolicy == OverflowPolicy.BLOCK) {
+			new Thread(() -> {
+				while(callback.getPendingEvents() < capacity) {
+					Thread.yield();
+				}
+				
+				blockLatch.countDown();
+			}).start();
+		}
+		
+		for(final int value : values) {
+			callback.accept(value);
+		}
+		
+		blockLatch.countDown();
+		executorService.shutdown();
+		executorService.awaitTermination(10, TimeUnit.SECONDS);
+		
+		Assert.assertEquals(result.size(), callback.getDeliveredEvents());
+		Assert.assertEquals(values.length, callback.getDeliveredEvents() + callback.getDroppedEvents());
+		
+		return result;
+	}
+	
+	/**
+	 * Block the executor until the latch is released
+	 * @param executorService
+	 * @return
+	 */
+	private CountDownLatch blockExecutor(final ExecutorService executorService) {
+		final CountDownLatch blockLatch = new CountDownLatch(1);
+		
+		executorService.submit(() -> {
+			blockLatch.await();
+			return null;
+		});
+		
+		return blockLatch;
+	}
+}
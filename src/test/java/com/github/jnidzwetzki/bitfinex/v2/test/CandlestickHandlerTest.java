@@ -17,6 +17,7 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.test;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -46,8 +47,8 @@ public class CandlestickHandlerTest {
 	 * Test the parsing of one candlestick
 	 * @throws APIException
 	 */
-	@Test
-	public void testCandlestickUpdateAndNotify() throws APIException {
+	@Test(timeout=10000)
+	public void testCandlestickUpdateAndNotify() throws APIException, InterruptedException {
 		
 		final String callbackValue = "[15134900000,15996,15997,16000,15980,318.5139342]";
 		final JSONArray jsonArray = new JSONArray(callbackValue);
@@ -62,6 +63,7 @@ public class CandlestickHandlerTest {
 		Mockito.when(bitfinexApiBroker.getQuoteManager()).thenReturn(tickerManager);
 
 		final AtomicInteger counter = new AtomicInteger(0);
+		final CountDownLatch latch = new CountDownLatch(1);
 
 		tickerManager.registerCandlestickCallback(symbol, (s, c) -> {
 			counter.incrementAndGet();
@@ -71,11 +73,13 @@ public class CandlestickHandlerTest {
 			Assert.assertEquals(16000, c.getHigh().doubleValue(), DELTA);
 			Assert.assertEquals(15980, c.getLow().doubleValue(), DELTA);
 			Assert.assertEquals(318.5139342, c.getVolume().doubleValue(), DELTA);
+			latch.countDown();
 		});
 						
 		final CandlestickHandler candlestickHandler = new CandlestickHandler();
 		candlestickHandler.handleChannelData(bitfinexApiBroker, symbol, jsonArray);
 		
+		latch.await();
 		Assert.assertEquals(1, counter.get());
 	}
 	
@@ -84,8 +88,8 @@ public class CandlestickHandlerTest {
 	 * Test the parsing of a candlestick snapshot
 	 * @throws APIException
 	 */
-	@Test
-	public void testCandlestickSnapshotUpdateAndNotify() throws APIException {
+	@Test(timeout=10000)
+	public void testCandlestickSnapshotUpdateAndNotify() throws APIException, InterruptedException {
 		
 		final String callbackValue = "[[15134900000,15996,15997,16000,15980,318.5139342],[15135100000,15899,15996,16097,15890,1137.180342268]]";
 		final JSONArray jsonArray = new JSONArray(callbackValue);
@@ -100,6 +104,7 @@ public class CandlestickHandlerTest {
 		Mockito.when(bitfinexApiBroker.getQuoteManager()).thenReturn(tickerManager);
 
 		final AtomicInteger counter = new AtomicInteger(0);
+		final CountDownLatch latch = new CountDownLatch(2);
 		
 		tickerManager.registerCandlestickCallback(symbol, (s, c) -> {
 			Assert.assertEquals(symbol, s);
@@ -119,11 +124,13 @@ public class CandlestickHandlerTest {
 			} else {
 				throw new IllegalArgumentException("Illegal call, expected 2 candlesticks");
 			}
+			latch.countDown();
 		});
 						
 		final CandlestickHandler candlestickHandler = new CandlestickHandler();
 		candlestickHandler.handleChannelData(bitfinexApiBroker, symbol, jsonArray);
 		
+		latch.await();
 		Assert.assertEquals(2, counter.get());
 	}
 	
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.BoundChannelHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelDispatchTable;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.TickHandler;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
+
+public class ChannelDispatchTableTest {
+	
+	/**
+	 * Broker that exposes the channel callback
+	 */
+	private static class ChannelCallbackBroker extends BitfinexApiBroker {
+		public void receiveChannelCallback(final String message) {
+			handleChannelCallback(message);
+		}
+	}
+
+	/**
+	 * Test the register and remove operations
+	 */
+	@Test
+	public void testRegisterAndRemove() {
+		final ChannelDispatchTable table = new ChannelDispatchTable();
+		final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD);
+		final BoundChannelHandler handler = new BoundChannelHandler(symbol, new TickHandler());
+		
+		Assert.assertNull(table.get(5));
+		Assert.assertNull(table.get(-1));
+		Assert.assertNull(table.get(100000));
+		
+		table.register(5, handler);
+		table.register(100000, handler);
+		Assert.assertEquals(handler, table.get(5));
+		Assert.assertEquals(handler, table.get(100000));
+		Assert.assertEquals(symbol, table.get(5).getSymbol());
+		Assert.assertNull(table.get(6));
+		
+		Assert.assertEquals(handler, table.remove(5));
+		Assert.assertNull(table.remove(5));
+		Assert.assertNull(table.get(5));
+		Assert.assertEquals(handler, table.get(100000));
+		
+		table.clear();
+		Assert.assertNull(table.get(100000));
+	}
+	
+	/**
+	 * Test realistic (large) channel ids and the growth of the table
+	 */
+	@Test
+	public void testLargeChannelIds() {
+		final ChannelDispatchTable table = new ChannelDispatchTable();
+		final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD);
+		final BoundChannelHandler handler = new BoundChannelHandler(symbol, new TickHandler());
+		
+		table.register(Integer.MAX_VALUE, handler);
+		
+		for(int channel = 171000; channel < 171500; channel++) {
+			table.register(channel, handler);
+		}
+		
+		Assert.assertEquals(501, table.size());
+		Assert.assertEquals(handler, table.get(Integer.MAX_VALUE));
+		Assert.assertEquals(handler, table.get(171000));
+		Assert.assertEquals(handler, table.get(171499));
+		Assert.assertNull(table.get(171500));
+		Assert.assertNull(table.get(Integer.MAX_VALUE - 1));
+		
+		for(int channel = 171000; channel < 171500; channel += 2) {
+			Assert.assertEquals(handler, table.remove(channel));
+		}
+		
+		Assert.assertEquals(251, table.size());
+		Assert.assertNull(table.get(171000));
+		Assert.assertEquals(handler, table.get(171001));
+		Assert.assertEquals(251, table.getHandlers().size());
+		
+		table.clear();
+		Assert.assertNull(table.get(171001));
+		Assert.assertEquals(0, table.size());
+	}
+	
+	/**
+	 * Test the dispatching of the channel data
+	 */
+	@Test
+	public void testChannelDispatch() {
+		final ChannelCallbackBroker bitfinexApiBroker = new ChannelCallbackBroker();
+		final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD);
+		final String message = "[2,[26123,41.4645776,26129,33.68138507,2931,0.2231,26129,144327.10936387,26149,13139]]";
+		
+		bitfinexApiBroker.receiveChannelCallback(message);
+		Assert.assertNull(bitfinexApiBroker.getQuoteManager().getLastTick(symbol));
+		
+		bitfinexApiBroker.addToChannelSymbolMap(2, symbol);
+		bitfinexApiBroker.receiveChannelCallback(message);
+		Assert.assertEquals(26129.0, bitfinexApiBroker.getQuoteManager().getLastTick(symbol).getClose().doubleValue(), 0.001);
+		
+		bitfinexApiBroker.removeChannel(2);
+		Assert.assertEquals(-1, bitfinexApiBroker.getChannelForSymbol(symbol));
+		
+		bitfinexApiBroker.close();
+	}
+}
@@ -0,0 +1,67 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.ChannelRegistry;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.BoundChannelHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.TickHandler;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
+
+public class ChannelRegistryTest {
+
+	/**
+	 * Test the forward and the reverse direction
+	 */
+	@Test
+	public void testRegisterAndRemove() {
+		final ChannelRegistry registry = new ChannelRegistry();
+		final BitfinexTickerSymbol symbol1 = new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD);
+		final BitfinexTickerSymbol symbol2 = new BitfinexTickerSymbol(BitfinexCurrencyPair.ETH_USD);
+
+		Assert.assertEquals(ChannelRegistry.UNKNOWN_CHANNEL, registry.getChannel(symbol1));
+		Assert.assertNull(registry.getSymbol(12));
+		
+		registry.register(12, new BoundChannelHandler(symbol1, new TickHandler()));
+		registry.register(13, new BoundChannelHandler(symbol2, new TickHandler()));
+		Assert.assertEquals(12, registry.getChannel(symbol1));
+		Assert.assertEquals(13, registry.getChannel(symbol2));
+		Assert.assertEquals(symbol1, registry.getSymbol(12));
+		Assert.assertEquals(2, registry.size());
+		
+		// Channel is reused for another symbol
+		registry.register(12, new BoundChannelHandler(symbol2, new TickHandler()));
+		Assert.assertEquals(ChannelRegistry.UNKNOWN_CHANNEL, registry.getChannel(symbol1));
+		Assert.assertEquals(12, registry.getChannel(symbol2));
+		
+		Assert.assertEquals(12, registry.removeSymbol(symbol2));
+		Assert.assertNull(registry.getSymbol(12));
+		Assert.assertEquals(symbol2, registry.getSymbol(13));
+		
+		final Map<Integer, BitfinexStreamSymbol> removed = registry.clear();
+		Assert.assertEquals(1, removed.size());
+		Assert.assertEquals(0, registry.size());
+		Assert.assertNull(registry.remove(13));
+	}
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.commands.CancelOrderCommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.CommandPriority;
+import com.github.jnidzwetzki.bitfinex.v2.commands.PingCommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.UnsubscribeChannelCommand;
+import com.github.jnidzwetzki.bitfinex.v2.util.CommandScheduler;
+import com.github.jnidzwetzki.bitfinex.v2.util.SlidingWindowCounter;
+
+public class CommandSchedulerTest {
+
+	/**
+	 * Test the sliding window counter
+	 */
+	@Test
+	public void testSlidingWindowCounter() {
+		final SlidingWindowCounter counter = new SlidingWindowCounter(1, TimeUnit.SECONDS, 10);
+		
+		Assert.assertEquals(0, counter.getNumberOfEvents(10_000));
+		
+		counter.recordEvent(10_000);
+		counter.recordEvent(10_050);
+		counter.recordEvent(10_500);
+		Assert.assertEquals(3, counter.getNumberOfEvents(10_500));
+		Assert.assertEquals(50, counter.getMillisToNextBucket(10_550));
+		
+		// The first bucket leaves the window
+		Assert.assertEquals(3, counter.getNumberOfEvents(10_999));
+		Assert.assertEquals(1, counter.getNumberOfEvents(11_000));
+		Assert.assertEquals(0, counter.getNumberOfEvents(11_500));
+		
+		// The bucket is reused in the next round
+		counter.recordEvent(12_000);
+		Assert.assertEquals(1, counter.getNumberOfEvents(12_000));
+	}
+	
+	/**
+	 * Test the priority classes of the commands
+	 */
+	@Test
+	public void testCommandPriority() {
+		Assert.assertEquals(CommandPriority.CONTROL, CommandPriority.forCommand(new PingCommand()));
+		Assert.assertEquals(CommandPriority.ORDER, CommandPriority.forCommand(new CancelOrderCommand(1)));
+		Assert.assertEquals(CommandPriority.SUBSCRIPTION, 
+				CommandPriority.forCommand(new UnsubscribeChannelCommand(1)));
+	}
+	
+	/**
+	 * Test the order of the deferred commands
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=10000)
+	public void testDeferredCommands() throws InterruptedException {
+		final List<CommandPriority> sentCommands = new CopyOnWriteArrayList<>();
+		final CountDownLatch latch = new CountDownLatch(4);
+		
+		try(final CommandScheduler scheduler = new CommandScheduler(4, 1)) {
+			
+			for(final CommandPriority priority : new CommandPriority[] {CommandPriority.CALCULATION, 
+					CommandPriority.CALCULATION, CommandPriority.SUBSCRIPTION, CommandPriority.ORDER}) {
+				
+				scheduler.submit(priority, () -> {
+					sentCommands.add(priority);
+					latch.countDown();
+				});
+			}
+			
+			// The first command is sent directly
+			Assert.assertEquals(1, scheduler.getSentCommands());
+			Assert.assertEquals(3, scheduler.getDeferredCommands());
+			
+			latch.await();
+			
+			Assert.assertEquals(0, scheduler.getQueuedCommands());
+			Assert.assertEquals(4, scheduler.getSentCommands());
+			Assert.assertTrue(scheduler.getTotalDeferralMillis() > 0);
+		}
+		
+		Assert.assertEquals(CommandPriority.CALCULATION, sentCommands.get(0));
+		Assert.assertEquals(CommandPriority.ORDER, sentCommands.get(1));
+		Assert.assertEquals(CommandPriority.SUBSCRIPTION, sentCommands.get(2));
+		Assert.assertEquals(CommandPriority.CALCULATION, sentCommands.get(3));
+	}
+}
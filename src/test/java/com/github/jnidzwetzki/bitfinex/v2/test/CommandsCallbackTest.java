@@ -17,6 +17,9 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.test;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
 import org.json.JSONObject;
 import org.junit.Assert;
 import org.junit.Test;
@@ -25,9 +28,11 @@ import org.mockito.Mockito;
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.callback.command.AuthCallbackHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.command.ConnectionHeartbeatCallback;
+import com.github.jnidzwetzki.bitfinex.v2.callback.command.ErrorCallback;
 import com.github.jnidzwetzki.bitfinex.v2.callback.command.SubscribedCallback;
 import com.github.jnidzwetzki.bitfinex.v2.callback.command.UnsubscribedCallback;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ConnectionCapabilities;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
 
@@ -125,5 +130,57 @@ public class CommandsCallbackTest {
 		
 		Assert.assertTrue(bitfinexApiBroker.getFromChannelSymbolMap(30) == null);
 	}
-
+	
+	/**
+	 * Test the futures of the subscription and the unsubscription
+	 * @throws Exception 
+	 */
+	@Test(timeout=10000)
+	public void testSubscriptionFutures() throws Exception {
+		final BitfinexApiBroker bitfinexApiBroker = new BitfinexApiBroker();
+		final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.NEO_USD);
+		
+		final CompletableFuture<Integer> subscribeFuture 
+			= bitfinexApiBroker.getQuoteManager().subscribeTicker(symbol);
+		Assert.assertFalse(subscribeFuture.isDone());
+		
+		final String jsonString = "{\"event\":\"subscribed\",\"channel\":\"ticker\",\"chanId\":30,\"symbol\":\"tNEOUSD\",\"pair\":\"NEOUSD\"}";
+		new SubscribedCallback().handleChannelData(bitfinexApiBroker, new JSONObject(jsonString));
+		Assert.assertEquals(30, (int) subscribeFuture.get());
+		
+		final CompletableFuture<Void> unsubscribeFuture 
+			= bitfinexApiBroker.getQuoteManager().unsubscribeTicker(symbol);
+		Assert.assertFalse(unsubscribeFuture.isDone());
+		
+		final String unsubscribedJsonString = "{\"event\":\"unsubscribed\",\"status\":\"OK\",\"chanId\":30}";
+		new UnsubscribedCallback().handleChannelData(bitfinexApiBroker, new JSONObject(unsubscribedJsonString));
+		unsubscribeFuture.get();
+		
+		bitfinexApiBroker.close();
+	}
+	
+	/**
+	 * Test the error callback
+	 * @throws Exception 
+	 */
+	@Test(timeout=10000)
+	public void testErrorCallback() throws Exception {
+		final BitfinexApiBroker bitfinexApiBroker = new BitfinexApiBroker();
+		final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD);
+		final CompletableFuture<Integer> future = bitfinexApiBroker.subscribeChannel(symbol);
+		
+		final String jsonString = "{\"event\":\"error\",\"msg\":\"subscribe: dup\",\"code\":10301,\"channel\":\"ticker\",\"symbol\":\"tBTCUSD\",\"pair\":\"BTCUSD\"}";
+		new ErrorCallback().handleChannelData(bitfinexApiBroker, new JSONObject(jsonString));
+		Assert.assertTrue(future.isCompletedExceptionally());
+		Assert.assertTrue(bitfinexApiBroker.getPrimaryConnection().getPendingSymbols().isEmpty());
+		
+		try {
+			future.get();
+			Assert.fail("Exception expected");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof APIException);
+		}
+		
+		bitfinexApiBroker.close();
+	}
 }
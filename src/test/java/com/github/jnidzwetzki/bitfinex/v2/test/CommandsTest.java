@@ -14,6 +14,7 @@ import com.github.jnidzwetzki.bitfinex.v2.commands.AuthCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.CancelOrderCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.CancelOrderGroupCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.CommandException;
+import com.github.jnidzwetzki.bitfinex.v2.commands.ConfCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.OrderCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.PingCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeCandlesCommand;
@@ -61,6 +62,7 @@ public class CommandsTest {
 				new AuthCommand(), 
 				new CancelOrderCommand(123),
 				new CancelOrderGroupCommand(1),
+				new ConfCommand(ConfCommand.OB_CHECKSUM),
 				new OrderCommand(order),
 				new PingCommand(), 
 				new SubscribeCandlesCommand(candleSymbol),
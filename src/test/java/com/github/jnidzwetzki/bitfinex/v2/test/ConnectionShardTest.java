@@ -0,0 +1,231 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBrokerBuilder;
+import com.github.jnidzwetzki.bitfinex.v2.ChannelRegistry;
+import com.github.jnidzwetzki.bitfinex.v2.ConnectionShard;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.manager.QuoteManager;
+
+public class ConnectionShardTest {
+
+	/**
+	 * Test the sharding of the subscriptions
+	 */
+	@Test
+	public void testSharding() {
+		final BitfinexApiBroker bitfinexApiBroker = BitfinexApiBrokerBuilder.create()
+				.withConnectionSharding(3, 2).build();
+		
+		final QuoteManager quoteManager = bitfinexApiBroker.getQuoteManager();
+		
+		final BitfinexTickerSymbol[] symbols = {
+			new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD),
+			new BitfinexTickerSymbol(BitfinexCurrencyPair.ETH_USD),
+			new BitfinexTickerSymbol(BitfinexCurrencyPair.LTC_USD),
+			new BitfinexTickerSymbol(BitfinexCurrencyPair.XRP_USD),
+			new BitfinexTickerSymbol(BitfinexCurrencyPair.EOS_USD)
+		};
+		
+		for(final BitfinexTickerSymbol symbol : symbols) {
+			quoteManager.subscribeTicker(symbol);
+		}
+		
+		Assert.assertEquals(3, bitfinexApiBroker.getConnections().size());
+		Assert.assertEquals(2, bitfinexApiBroker.getConnections().get(0).getChannelCount());
+		Assert.assertEquals(2, bitfinexApiBroker.getConnections().get(1).getChannelCount());
+		Assert.assertEquals(1, bitfinexApiBroker.getConnections().get(2).getChannelCount());
+		
+		// Every connection has its own channel ids
+		for(int i = 0; i < symbols.length; i++) {
+			bitfinexApiBroker.addToChannelSymbolMap(i % 2 + 1, symbols[i]);
+		}
+		
+		for(int i = 0; i < symbols.length; i++) {
+			Assert.assertEquals(i % 2 + 1, bitfinexApiBroker.getChannelForSymbol(symbols[i]));
+			Assert.assertTrue(bitfinexApiBroker.isTickerActive(symbols[i]));
+		}
+		
+		final ConnectionShard secondConnection = bitfinexApiBroker.getConnections().get(1);
+		Assert.assertEquals(symbols[2], secondConnection.getChannelRegistry().getSymbol(1));
+		Assert.assertEquals(symbols[3], secondConnection.getChannelRegistry().getSymbol(2));
+		Assert.assertEquals(symbols[0], bitfinexApiBroker.getFromChannelSymbolMap(1));
+		Assert.assertEquals(2, secondConnection.getChannelCount());
+		
+		// The free channel is used by the next subscription
+		quoteManager.unsubscribeTicker(symbols[2]);
+		Assert.assertFalse(bitfinexApiBroker.isTickerActive(symbols[2]));
+		Assert.assertEquals(1, secondConnection.getChannelCount());
+		
+		final BitfinexTickerSymbol newSymbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.NEO_USD);
+		quoteManager.subscribeTicker(newSymbol);
+		Assert.assertEquals(2, secondConnection.getChannelCount());
+		Assert.assertEquals(1, bitfinexApiBroker.getConnections().get(2).getChannelCount());
+		
+		bitfinexApiBroker.close();
+	}
+	
+	/**
+	 * Test the subscription, if all connections are full
+	 */
+	@Test
+	public void testAllConnectionsFull() throws InterruptedException {
+		final BitfinexApiBroker bitfinexApiBroker = new BitfinexApiBroker();
+		bitfinexApiBroker.setConnectionSharding(2, 1);
+		
+		final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.LTC_USD);
+		
+		bitfinexApiBroker.subscribeChannel(new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD));
+		bitfinexApiBroker.subscribeChannel(new BitfinexTickerSymbol(BitfinexCurrencyPair.ETH_USD));
+		final CompletableFuture<Integer> future = bitfinexApiBroker.subscribeChannel(symbol);
+		
+		// The subscription is rejected
+		try {
+			future.get();
+			Assert.fail("Exception expected");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof APIException);
+		}
+		
+		Assert.assertEquals(2, bitfinexApiBroker.getConnections().size());
+		Assert.assertEquals(1, bitfinexApiBroker.getConnections().get(0).getChannelCount());
+		Assert.assertEquals(1, bitfinexApiBroker.getConnections().get(1).getChannelCount());
+		Assert.assertFalse(bitfinexApiBroker.isTickerActive(symbol));
+		
+		bitfinexApiBroker.close();
+	}
+	
+	/**
+	 * Test the future of the subscription
+	 * @throws Exception 
+	 */
+	@Test(timeout=10000)
+	public void testSubscriptionFuture() throws Exception {
+		final BitfinexApiBroker bitfinexApiBroker = new BitfinexApiBroker();
+		final BitfinexTickerSymbol symbol1 = new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD);
+		final BitfinexTickerSymbol symbol2 = new BitfinexTickerSymbol(BitfinexCurrencyPair.ETH_USD);
+		
+		final CompletableFuture<Integer> future1 = bitfinexApiBroker.subscribeChannel(symbol1);
+		final CompletableFuture<Integer> future2 = bitfinexApiBroker.subscribeChannel(symbol2);
+		
+		// A second subscribe reuses the pending future
+		Assert.assertSame(future1, bitfinexApiBroker.subscribeChannel(symbol1));
+		Assert.assertFalse(future1.isDone());
+		Assert.assertEquals(2, bitfinexApiBroker.getPrimaryConnection().getPendingSymbols().size());
+		
+		bitfinexApiBroker.addToChannelSymbolMap(7, symbol1);
+		Assert.assertEquals(7, (int) future1.get());
+		Assert.assertFalse(future2.isDone());
+		
+		// The expired subscription is failed, the symbol stays pending
+		final ConnectionShard connection = bitfinexApiBroker.getPrimaryConnection();
+		connection.expirePendingSymbol(symbol2, new APIException("Timeout"));
+		Assert.assertTrue(future2.isCompletedExceptionally());
+		Assert.assertTrue(connection.getPendingSymbols().contains(symbol2));
+		
+		final CompletableFuture<Integer> retryFuture = bitfinexApiBroker.subscribeChannel(symbol2);
+		Assert.assertNotSame(future2, retryFuture);
+		Assert.assertFalse(retryFuture.isDone());
+		
+		// The removed subscription is cancelled
+		bitfinexApiBroker.removeChannelForSymbol(symbol2);
+		Assert.assertTrue(retryFuture.isCancelled());
+		Assert.assertTrue(bitfinexApiBroker.getPrimaryConnection().getPendingSymbols().isEmpty());
+		
+		bitfinexApiBroker.close();
+	}
+	
+	/**
+	 * Test the unsubscription of a pending and of an unknown channel
+	 * @throws Exception 
+	 */
+	@Test(timeout=10000)
+	public void testUnsubscribePendingChannel() throws Exception {
+		final BitfinexApiBroker bitfinexApiBroker = new BitfinexApiBroker();
+		final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD);
+		final ConnectionShard connection = bitfinexApiBroker.getPrimaryConnection();
+		
+		final CompletableFuture<Integer> subscribeFuture = bitfinexApiBroker.subscribeChannel(symbol);
+		final CompletableFuture<Void> unsubscribeFuture = bitfinexApiBroker.unsubscribeChannel(symbol);
+		
+		// The pending subscription is cancelled
+		Assert.assertTrue(subscribeFuture.isCancelled());
+		Assert.assertFalse(unsubscribeFuture.isDone());
+		Assert.assertTrue(connection.getPendingSymbols().isEmpty());
+		
+		// The confirmed channel is unsubscribed again
+		bitfinexApiBroker.addToChannelSymbolMap(7, symbol);
+		Assert.assertEquals(ChannelRegistry.UNKNOWN_CHANNEL, bitfinexApiBroker.getChannelForSymbol(symbol));
+		Assert.assertFalse(unsubscribeFuture.isDone());
+		
+		bitfinexApiBroker.removeChannel(7);
+		unsubscribeFuture.get();
+		
+		// A unknown symbol fails the future
+		final CompletableFuture<Void> unknownFuture = bitfinexApiBroker.unsubscribeChannel(symbol);
+		
+		try {
+			unknownFuture.get();
+			Assert.fail("Exception expected");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+		}
+		
+		bitfinexApiBroker.close();
+	}
+	
+	/**
+	 * Test the subscriptions of the standby connection
+	 */
+	@Test
+	public void testStandbyConnection() {
+		final BitfinexApiBroker bitfinexApiBroker = BitfinexApiBrokerBuilder.create()
+				.withStandbyConnections().build();
+		
+		final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD);
+		bitfinexApiBroker.subscribeChannel(symbol);
+		
+		final ConnectionShard primary = bitfinexApiBroker.getPrimaryConnection();
+		final ConnectionShard standby = primary.getStandby();
+		
+		Assert.assertNotNull(bitfinexApiBroker.getFeedArbiter());
+		Assert.assertTrue(standby.isStandby());
+		Assert.assertFalse(primary.isStandby());
+		Assert.assertTrue(primary.getPendingSymbols().contains(symbol));
+		Assert.assertTrue(standby.getPendingSymbols().contains(symbol));
+		
+		bitfinexApiBroker.addToChannelSymbolMap(5, symbol);
+		Assert.assertEquals(5, bitfinexApiBroker.getChannelForSymbol(symbol));
+		
+		bitfinexApiBroker.unsubscribeChannel(symbol);
+		Assert.assertTrue(standby.getPendingSymbols().isEmpty());
+		Assert.assertEquals(0, standby.getChannelCount());
+		
+		bitfinexApiBroker.close();
+	}
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexTick;
+import com.github.jnidzwetzki.bitfinex.v2.entity.Wallet;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.manager.BoundedCallback.OverflowPolicy;
+import com.github.jnidzwetzki.bitfinex.v2.manager.EventPublisher;
+import com.github.jnidzwetzki.bitfinex.v2.manager.QuoteManager;
+import com.github.jnidzwetzki.bitfinex.v2.manager.WalletManager;
+
+public class EventPublisherTest {
+
+	/**
+	 * Test the demand of a subscriber
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=10000)
+	public void testDemand() throws InterruptedException {
+		final ExecutorService executorService = Executors.newFixedThreadPool(10);
+		final BitfinexApiBroker bitfinexApiBroker = Mockito.mock(BitfinexApiBroker.class);
+		Mockito.when(bitfinexApiBroker.getExecutorService()).thenReturn(executorService);
+		final QuoteManager quoteManager = new QuoteManager(bitfinexApiBroker);
+		final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD);
+		
+		final EventPublisher<BitfinexTick> publisher 
+			= quoteManager.createTickPublisher(symbol, 2, OverflowPolicy.DROP_OLDEST);
+		
+		final TestSubscriber<BitfinexTick> subscriber = new TestSubscriber<>();
+		publisher.subscribe(subscriber);
+		Assert.assertEquals(1, publisher.getSubscriberCount());
+		
+		// No demand, only the latest two ticks are kept
+		for(int i = 0; i < 5; i++) {
+			quoteManager.handleNewTick(symbol, new BitfinexTick(i, 10, 12, 15, 8, 100));
+		}
+		
+		Assert.assertTrue(subscriber.items.isEmpty());
+		Assert.assertEquals(3, publisher.getDroppedEvents());
+		
+		subscriber.subscription.get().request(10);
+		publisher.close();
+		subscriber.terminatedLatch.await();
+		
+		Assert.assertEquals(2, subscriber.items.size());
+		Assert.assertEquals(3, subscriber.items.get(0).getTimestamp());
+		Assert.assertEquals(4, subscriber.items.get(1).getTimestamp());
+		Assert.assertNull(subscriber.error.get());
+		Assert.assertEquals(2, publisher.getDeliveredEvents());
+		Assert.assertEquals(0, publisher.getSubscriberCount());
+		
+		// The closed publisher is unregistered and completes new subscribers
+		quoteManager.handleNewTick(symbol, new BitfinexTick(5, 10, 12, 15, 8, 100));
+		final TestSubscriber<BitfinexTick> lateSubscriber = new TestSubscriber<>();
+		publisher.subscribe(lateSubscriber);
+		lateSubscriber.terminatedLatch.await();
+		Assert.assertTrue(lateSubscriber.items.isEmpty());
+		
+		executorService.shutdown();
+	}
+	
+	/**
+	 * Test the disconnect of a slow wallet subscriber
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=10000)
+	public void testDisconnect() throws InterruptedException {
+		final ExecutorService executorService = Executors.newFixedThreadPool(10);
+		final BitfinexApiBroker bitfinexApiBroker = Mockito.mock(BitfinexApiBroker.class);
+		Mockito.when(bitfinexApiBroker.getExecutorService()).thenReturn(executorService);
+		final WalletManager walletManager = new WalletManager(bitfinexApiBroker);
+		
+		final EventPublisher<Wallet> publisher = walletManager.createPublisher(1, OverflowPolicy.DISCONNECT);
+		
+		final TestSubscriber<Wallet> subscriber = new TestSubscriber<>();
+		publisher.subscribe(subscriber);
+		
+		walletManager.notifyCallbacks(new Wallet(Wallet.WALLET_TYPE_EXCHANGE, "BTC", 
+				BigDecimal.ONE, BigDecimal.ZERO, BigDecimal.ONE));
+		walletManager.notifyCallbacks(new Wallet(Wallet.WALLET_TYPE_EXCHANGE, "USD", 
+				BigDecimal.ONE, BigDecimal.ZERO, BigDecimal.ONE));
+		
+		subscriber.terminatedLatch.await();
+		
+		Assert.assertTrue(subscriber.error.get() instanceof APIException);
+		Assert.assertTrue(subscriber.items.isEmpty());
+		Assert.assertEquals(2, publisher.getDroppedEvents());
+		Assert.assertEquals(0, publisher.getSubscriberCount());
+		
+		executorService.shutdown();
+	}
+	
+	/**
+	 * The publishers are fed by the websocket thread, so they can't block
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testBlockPolicyRejected() {
+		final ExecutorService executorService = Executors.newFixedThreadPool(1);
+		final BitfinexApiBroker bitfinexApiBroker = Mockito.mock(BitfinexApiBroker.class);
+		Mockito.when(bitfinexApiBroker.getExecutorService()).thenReturn(executorService);
+		final WalletManager walletManager = new WalletManager(bitfinexApiBroker);
+		
+		try {
+			walletManager.createPublisher(1, OverflowPolicy.BLOCK);
+		} finally {
+			executorService.shutdown();
+		}
+	}
+	
+	/**
+	 * A subscriber that records the signals
+	 */
+	private static class TestSubscriber<T> implements Subscriber<T> {
+		
+		private final AtomicReference<Subscription> subscription = new AtomicReference<>();
+		
+		private final List<T> items = new CopyOnWriteArrayList<>();
+		
+		private final AtomicReference<Throwable> error = new AtomicReference<>();
+		
+		private final CountDownLatch terminatedLatch = new CountDownLatch(1);
+
+		@Override
+		public void onSubscribe(final Subscription subscription) {
+			this.subscription.set(subscription);
+		}
+
+		@Override
+		public void onNext(final T item) {
+			items.add(item);
+		}
+
+		@Override
+		public void onError(final Throwable throwable) {
+			error.set(throwable);
+			terminatedLatch.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			terminatedLatch.countDown();
+		}
+	}
+}
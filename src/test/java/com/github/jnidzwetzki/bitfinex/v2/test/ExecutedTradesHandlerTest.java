@@ -17,9 +17,12 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.test;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
 
 import org.json.JSONArray;
 import org.junit.Assert;
@@ -30,6 +33,7 @@ import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ExecutedTradeHandler;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.ExecutedTrade;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexExecutedTradeSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.manager.QuoteManager;
 
@@ -131,4 +135,54 @@ public class ExecutedTradesHandlerTest {
 		latch.await();
 	}
 	
+	/**
+	 * Test the list callbacks for snapshots and updates
+	 * @throws APIException
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=10000)
+	public void testExecutedTradesListCallback() throws APIException, InterruptedException {
+		
+		final String snapshotValue = "[[190631057,1518037080162,0.007,8175.9],[190631052,1518037080110,-0.25,8175.8]]";
+		final String updateValue = "[190631060,1518037080170,0.5,8176.0]";
+
+		final BitfinexExecutedTradeSymbol symbol 
+			= new BitfinexExecutedTradeSymbol(BitfinexCurrencyPair.BTC_USD);
+		
+		final ExecutorService executorService = Executors.newFixedThreadPool(10);
+		final BitfinexApiBroker bitfinexApiBroker = Mockito.mock(BitfinexApiBroker.class);
+		Mockito.when(bitfinexApiBroker.getExecutorService()).thenReturn(executorService);
+		final QuoteManager quoteManager = new QuoteManager(bitfinexApiBroker);
+		Mockito.when(bitfinexApiBroker.getQuoteManager()).thenReturn(quoteManager);
+
+		final CountDownLatch latch = new CountDownLatch(2);
+		final List<List<ExecutedTrade>> lists = new CopyOnWriteArrayList<>();
+
+		final BiConsumer<BitfinexExecutedTradeSymbol, List<ExecutedTrade>> callback = (s, l) -> {
+			Assert.assertEquals(symbol, s);
+			lists.add(l);
+			latch.countDown();
+		};
+		
+		quoteManager.registerExecutedTradeListCallback(symbol, callback);
+						
+		final ExecutedTradeHandler handler = new ExecutedTradeHandler();
+		handler.handleChannelData(bitfinexApiBroker, symbol, new JSONArray(snapshotValue));
+		handler.handleChannelData(bitfinexApiBroker, symbol, new JSONArray(updateValue));
+		
+		latch.await();
+		
+		// The snapshot is delivered in one call, before the update
+		Assert.assertEquals(2, lists.size());
+		Assert.assertEquals(2, lists.get(0).size());
+		Assert.assertEquals(190631057, lists.get(0).get(0).getId());
+		Assert.assertEquals(190631052, lists.get(0).get(1).getId());
+		Assert.assertEquals(1, lists.get(1).size());
+		Assert.assertEquals(190631060, lists.get(1).get(0).getId());
+		
+		Assert.assertTrue(quoteManager.removeExecutedTradeListCallback(symbol, callback));
+		Assert.assertFalse(quoteManager.removeExecutedTradeListCallback(symbol, callback));
+		executorService.shutdown();
+	}
+	
 }
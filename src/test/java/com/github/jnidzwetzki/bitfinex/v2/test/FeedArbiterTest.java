@@ -0,0 +1,266 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexExecutedTradeSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.FeedArbiter;
+
+public class FeedArbiterTest {
+	
+	/**
+	 * The ticker symbol of the tests
+	 */
+	private final static BitfinexTickerSymbol SYMBOL = new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD);
+	
+	/**
+	 * The orderbook symbol of the tests
+	 */
+	private final static RawOrderbookConfiguration BOOK = new RawOrderbookConfiguration(BitfinexCurrencyPair.BTC_USD);
+	
+	/**
+	 * The trade symbol of the tests
+	 */
+	private final static BitfinexExecutedTradeSymbol TRADES = new BitfinexExecutedTradeSymbol(BitfinexCurrencyPair.BTC_USD);
+
+	/**
+	 * Test the first arrival delivery
+	 */
+	@Test
+	public void testFirstArrival() {
+		final FeedArbiter arbiter = new FeedArbiter();
+		
+		// The ticker goes back to an old state
+		Assert.assertTrue(arbiter.accept(SYMBOL, FeedArbiter.LINE_A, "[7000,1,1]]"));
+		Assert.assertFalse(arbiter.accept(SYMBOL, FeedArbiter.LINE_B, "[7000,1,1]]"));
+		Assert.assertTrue(arbiter.accept(SYMBOL, FeedArbiter.LINE_A, "[7000,2,3]]"));
+		Assert.assertTrue(arbiter.accept(SYMBOL, FeedArbiter.LINE_A, "[7000,1,1]]"));
+		Assert.assertFalse(arbiter.accept(SYMBOL, FeedArbiter.LINE_B, "[7000,2,3]]"));
+		Assert.assertFalse(arbiter.accept(SYMBOL, FeedArbiter.LINE_B, "[7000,1,1]]"));
+		
+		// Line B is ahead
+		Assert.assertTrue(arbiter.accept(SYMBOL, FeedArbiter.LINE_B, "[7001,1,1]]"));
+		Assert.assertFalse(arbiter.accept(SYMBOL, FeedArbiter.LINE_A, "[7001,1,1]]"));
+		
+		Assert.assertEquals(4, arbiter.getDeliveredFrames());
+		Assert.assertEquals(4, arbiter.getDroppedFrames());
+	}
+	
+	/**
+	 * Test the deduplication of the trades by the trade id
+	 */
+	@Test
+	public void testTradeIds() {
+		final FeedArbiter arbiter = new FeedArbiter();
+		
+		Assert.assertTrue(arbiter.accept(TRADES, FeedArbiter.LINE_A, "[[3,1000,1,7000],[2,999,1,7000]]]"));
+		
+		// The older snapshot of line B and the trades of the delivered snapshot are dropped
+		Assert.assertFalse(arbiter.accept(TRADES, FeedArbiter.LINE_B, "[[2,999,1,7000],[1,998,1,7000]]]"));
+		Assert.assertFalse(arbiter.accept(TRADES, FeedArbiter.LINE_B, "\"te\",[3,1000,1,7000]]"));
+		
+		// Both lines deliver new trades, in any order
+		Assert.assertTrue(arbiter.accept(TRADES, FeedArbiter.LINE_B, "\"te\",[4,1001,1,7000]]"));
+		Assert.assertTrue(arbiter.accept(TRADES, FeedArbiter.LINE_A, "\"te\",[5,1002,-1,7001]]"));
+		Assert.assertFalse(arbiter.accept(TRADES, FeedArbiter.LINE_A, "\"te\",[4,1001,1,7000]]"));
+		Assert.assertFalse(arbiter.accept(TRADES, FeedArbiter.LINE_B, "\"te\",[5,1002,-1,7001]]"));
+		
+		// The trades in flight are not delivered twice after a reset
+		arbiter.reset(TRADES);
+		Assert.assertFalse(arbiter.accept(TRADES, FeedArbiter.LINE_A, "\"te\",[5,1002,-1,7001]]"));
+		Assert.assertTrue(arbiter.accept(TRADES, FeedArbiter.LINE_B, "[[5,1002,-1,7001],[4,1001,1,7000]]]"));
+		Assert.assertFalse(arbiter.accept(TRADES, FeedArbiter.LINE_A, "[[5,1002,-1,7001],[4,1001,1,7000]]]"));
+	}
+	
+	/**
+	 * Test the snapshot handling
+	 */
+	@Test
+	public void testSnapshot() {
+		final FeedArbiter arbiter = new FeedArbiter();
+		
+		Assert.assertTrue(arbiter.accept(BOOK, FeedArbiter.LINE_A, "[[1,7000,1],[2,7001,-1]]]"));
+		Assert.assertFalse(arbiter.accept(BOOK, FeedArbiter.LINE_B, "[[1,7000,1],[2,7001,-1]]]"));
+		
+		// Line B got the same snapshot and is aligned
+		Assert.assertTrue(arbiter.accept(BOOK, FeedArbiter.LINE_B, "[3,7000,1]]"));
+		Assert.assertFalse(arbiter.accept(BOOK, FeedArbiter.LINE_A, "[3,7000,1]]"));
+		
+		// The next snapshot is delivered after a reset, frames of the old subscription are dropped
+		arbiter.reset(BOOK);
+		Assert.assertFalse(arbiter.accept(BOOK, FeedArbiter.LINE_A, "[4,7000,1]]"));
+		Assert.assertTrue(arbiter.accept(BOOK, FeedArbiter.LINE_B, "[[1,7000,2],[2,7001,-1]]]"));
+		Assert.assertFalse(arbiter.accept(BOOK, FeedArbiter.LINE_A, "[]]"));
+	}
+	
+	/**
+	 * Test a line with a older snapshot, the line is aligned by the checksum 
+	 * and does not replay older values
+	 */
+	@Test
+	public void testOlderSnapshot() {
+		final FeedArbiter arbiter = new FeedArbiter();
+		
+		Assert.assertTrue(arbiter.accept(BOOK, FeedArbiter.LINE_A, "[[1,7000,1],[2,7001,-1]]]"));
+		Assert.assertTrue(arbiter.accept(BOOK, FeedArbiter.LINE_A, "[1,7000,2]]"));
+		Assert.assertTrue(arbiter.accept(BOOK, FeedArbiter.LINE_A, "\"cs\",1234]"));
+		
+		// The snapshot of line B is older, the old values are not delivered
+		Assert.assertFalse(arbiter.accept(BOOK, FeedArbiter.LINE_B, "[[1,7000,3],[2,7001,-1]]]"));
+		Assert.assertFalse(arbiter.accept(BOOK, FeedArbiter.LINE_B, "[1,7000,1]]"));
+		Assert.assertFalse(arbiter.accept(BOOK, FeedArbiter.LINE_B, "\"cs\",1000]"));
+		Assert.assertFalse(arbiter.accept(BOOK, FeedArbiter.LINE_B, "[1,7000,2]]"));
+		Assert.assertFalse(arbiter.accept(BOOK, FeedArbiter.LINE_B, "\"cs\",1234]"));
+		
+		// Line B is aligned
+		Assert.assertTrue(arbiter.accept(BOOK, FeedArbiter.LINE_B, "[2,7001,0]]"));
+		Assert.assertFalse(arbiter.accept(BOOK, FeedArbiter.LINE_A, "[2,7001,0]]"));
+		Assert.assertTrue(arbiter.accept(BOOK, FeedArbiter.LINE_A, "\"cs\",1500]"));
+		Assert.assertFalse(arbiter.accept(BOOK, FeedArbiter.LINE_B, "\"cs\",1500]"));
+	}
+	
+	/**
+	 * Test a line with a newer snapshot, the line is aligned when the other 
+	 * line delivers the checksum
+	 */
+	@Test
+	public void testNewerSnapshot() {
+		final FeedArbiter arbiter = new FeedArbiter();
+		
+		Assert.assertTrue(arbiter.accept(BOOK, FeedArbiter.LINE_A, "[[1,7000,1],[2,7001,-1]]]"));
+		
+		// The snapshot of line B contains the next update
+		Assert.assertFalse(arbiter.accept(BOOK, FeedArbiter.LINE_B, "[[1,7000,2],[2,7001,-1]]]"));
+		Assert.assertFalse(arbiter.accept(BOOK, FeedArbiter.LINE_B, "\"cs\",1234]"));
+		Assert.assertFalse(arbiter.accept(BOOK, FeedArbiter.LINE_B, "[2,7001,0]]"));
+		
+		Assert.assertTrue(arbiter.accept(BOOK, FeedArbiter.LINE_A, "[1,7000,2]]"));
+		Assert.assertTrue(arbiter.accept(BOOK, FeedArbiter.LINE_A, "\"cs\",1234]"));
+		
+		// Line B is aligned and ahead
+		Assert.assertTrue(arbiter.accept(BOOK, FeedArbiter.LINE_B, "\"cs\",1500]"));
+		Assert.assertFalse(arbiter.accept(BOOK, FeedArbiter.LINE_A, "[2,7001,0]]"));
+		Assert.assertFalse(arbiter.accept(BOOK, FeedArbiter.LINE_A, "\"cs\",1500]"));
+	}
+	
+	/**
+	 * Test the reset of one line (e.g. the reconnect of the line)
+	 */
+	@Test
+	public void testResetLine() {
+		final FeedArbiter arbiter = new FeedArbiter();
+		
+		Assert.assertTrue(arbiter.accept(BOOK, FeedArbiter.LINE_A, "[[1,7000,1]]]"));
+		Assert.assertFalse(arbiter.accept(BOOK, FeedArbiter.LINE_B, "[[1,7000,1]]]"));
+		Assert.assertTrue(arbiter.accept(BOOK, FeedArbiter.LINE_A, "[1,7000,2]]"));
+		
+		// Line A keeps delivering, line B is aligned again
+		arbiter.resetLine(BOOK, FeedArbiter.LINE_B);
+		Assert.assertTrue(arbiter.accept(BOOK, FeedArbiter.LINE_A, "\"cs\",1234]"));
+		Assert.assertFalse(arbiter.accept(BOOK, FeedArbiter.LINE_B, "[[1,7000,2]]]"));
+		Assert.assertFalse(arbiter.accept(BOOK, FeedArbiter.LINE_B, "\"cs\",1234]"));
+		Assert.assertTrue(arbiter.accept(BOOK, FeedArbiter.LINE_B, "[1,7000,3]]"));
+		
+		// Line B is the only aligned line, the reset of line B resets the symbol
+		arbiter.resetLine(BOOK, FeedArbiter.LINE_A);
+		arbiter.resetLine(BOOK, FeedArbiter.LINE_B);
+		Assert.assertFalse(arbiter.accept(BOOK, FeedArbiter.LINE_A, "[1,7000,4]]"));
+		Assert.assertTrue(arbiter.accept(BOOK, FeedArbiter.LINE_A, "[[1,7000,4]]]"));
+	}
+	
+	/**
+	 * Test the window of the markers
+	 */
+	@Test
+	public void testWindow() {
+		final FeedArbiter arbiter = new FeedArbiter(2);
+		
+		Assert.assertTrue(arbiter.accept(SYMBOL, FeedArbiter.LINE_A, "[1]]"));
+		Assert.assertTrue(arbiter.accept(SYMBOL, FeedArbiter.LINE_A, "[2]]"));
+		Assert.assertTrue(arbiter.accept(SYMBOL, FeedArbiter.LINE_A, "[3]]"));
+		
+		// The first marker is evicted, line B is aligned by the second frame
+		Assert.assertFalse(arbiter.accept(SYMBOL, FeedArbiter.LINE_B, "[1]]"));
+		Assert.assertFalse(arbiter.accept(SYMBOL, FeedArbiter.LINE_B, "[2]]"));
+		Assert.assertFalse(arbiter.accept(SYMBOL, FeedArbiter.LINE_B, "[3]]"));
+		Assert.assertTrue(arbiter.accept(SYMBOL, FeedArbiter.LINE_B, "[4]]"));
+		Assert.assertEquals(4, arbiter.getDeliveredFrames());
+	}
+	
+	/**
+	 * Test two lines that are read by two threads, the frames are 
+	 * delivered once, in order and by one thread at a time
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=60000)
+	public void testConcurrentLines() throws InterruptedException {
+		final int frames = 20000;
+		final FeedArbiter arbiter = new FeedArbiter(frames);
+		final List<Integer> delivered = new ArrayList<>();
+		final AtomicInteger concurrentDeliveries = new AtomicInteger();
+		final AtomicInteger handlers = new AtomicInteger();
+		
+		final Runnable[] lines = new Runnable[2];
+		
+		for(int line = 0; line < 2; line++) {
+			final int lineId = line;
+			
+			lines[line] = () -> {
+				for(int i = 0; i < frames; i++) {
+					final int frame = i;
+					final String message = "[" + (lineId + 1) + ",[" + frame + ",1,1]]";
+					
+					arbiter.accept(SYMBOL, lineId, message, message.indexOf(',') + 1, () -> {
+						if(handlers.incrementAndGet() > 1) {
+							concurrentDeliveries.incrementAndGet();
+						}
+						
+						delivered.add(frame);
+						handlers.decrementAndGet();
+					});
+				}
+			};
+		}
+		
+		final Thread threadA = new Thread(lines[FeedArbiter.LINE_A]);
+		final Thread threadB = new Thread(lines[FeedArbiter.LINE_B]);
+		threadA.start();
+		threadB.start();
+		threadA.join();
+		threadB.join();
+		
+		Assert.assertEquals(0, concurrentDeliveries.get());
+		Assert.assertEquals(frames, delivered.size());
+		
+		for(int i = 0; i < frames; i++) {
+			Assert.assertEquals(i, (int) delivered.get(i));
+		}
+		
+		Assert.assertEquals(frames, arbiter.getDeliveredFrames());
+		Assert.assertEquals(frames, arbiter.getDroppedFrames());
+	}
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.OrderbookHandler;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexTick;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderBookFrequency;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderBookPrecision;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderbookManager;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+import com.github.jnidzwetzki.bitfinex.v2.util.JSONFrameReader;
+
+public class FixedPointTest {
+
+	/**
+	 * Test the parsing of fixed-point values
+	 */
+	@Test
+	public void testScaledLong() {
+		final JSONFrameReader reader = new JSONFrameReader(
+				"[1,1.5,-0.00000001,8175.9,123.456789125,1e-8,-2.5E2,0.125,92233720368.54775807]");
+		
+		reader.beginArray();
+		Assert.assertEquals(100000000L, reader.nextScaledLong(8));
+		Assert.assertEquals(150L, reader.nextScaledLong(2));
+		Assert.assertEquals(-1L, reader.nextScaledLong(8));
+		Assert.assertEquals(817590000000L, reader.nextScaledLong(8));
+		Assert.assertEquals(12345678912L, reader.nextScaledLong(8));
+		Assert.assertEquals(1L, reader.nextScaledLong(8));
+		Assert.assertEquals(-25000L, reader.nextScaledLong(2));
+		Assert.assertEquals(12L, reader.nextScaledLong(2));
+		Assert.assertEquals(Long.MAX_VALUE, reader.nextScaledLong(8));
+		reader.endArray();
+		
+		reader.reset("[92233720368.54775808]");
+		reader.beginArray();
+		
+		try {
+			reader.nextScaledLong(8);
+			Assert.fail("Overflow not detected");
+		} catch (ArithmeticException e) {
+			// Expected
+		}
+	}
+	
+	/**
+	 * Test the conversion between fixed-point and BigDecimal values
+	 */
+	@Test
+	public void testEntityConversion() {
+		final OrderbookEntry entry1 = new OrderbookEntry(817590000000L, 3, -150000000L, 8, 8);
+		Assert.assertTrue(entry1.isFixedPoint());
+		Assert.assertEquals(0, new BigDecimal("8175.9").compareTo(entry1.getPrice()));
+		Assert.assertEquals(0, new BigDecimal("-1.5").compareTo(entry1.getAmount()));
+		Assert.assertEquals(3, entry1.getCount().intValue());
+		
+		final OrderbookEntry entry2 = new OrderbookEntry(new BigDecimal("8175.9"), 
+				new BigDecimal(3), new BigDecimal("-1.5"));
+		Assert.assertFalse(entry2.isFixedPoint());
+		Assert.assertEquals(8175900000000000L, entry2.getPriceMantissa());
+		Assert.assertEquals(-150000000L, entry2.getAmountMantissa());
+		Assert.assertEquals(3, entry2.getCountValue());
+		
+		final BitfinexTick tick = new BitfinexTick(10, 100, 200, 300, 50, 2, 1);
+		Assert.assertEquals(BitfinexTick.INVALID_VOLUME, tick.getVolume());
+		Assert.assertEquals(3.0, tick.getHigh().doubleValue(), 0.0001);
+		Assert.assertEquals(tick, new BitfinexTick(10, 100, 200, 300, 50, 2, 1));
+		
+		Assert.assertEquals(0, FixedPoint.compare(15, 1, 150, 2));
+		Assert.assertTrue(FixedPoint.compare(15, 1, 151, 2) < 0);
+		Assert.assertTrue(FixedPoint.compare(Long.MAX_VALUE, 0, 1, 18) > 0);
+		Assert.assertEquals(1.5, FixedPoint.toDouble(150, 2), 0.0001);
+	}
+	
+	/**
+	 * Test the orderbook handler in fixed-point mode
+	 * @throws APIException 
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=10000)
+	public void testFixedPointOrderbook() throws APIException, InterruptedException {
+		final OrderbookConfiguration configuration = new OrderbookConfiguration(
+				BitfinexCurrencyPair.BTC_USD, OrderBookPrecision.P0, OrderBookFrequency.F0, 25);
+		
+		final ExecutorService executorService = Executors.newFixedThreadPool(10);
+		final BitfinexApiBroker bitfinexApiBroker = Mockito.mock(BitfinexApiBroker.class);
+		Mockito.when(bitfinexApiBroker.getExecutorService()).thenReturn(executorService);
+		Mockito.when(bitfinexApiBroker.isFixedPointEnabled()).thenReturn(true);
+		final OrderbookManager orderbookManager = new OrderbookManager(bitfinexApiBroker);
+		Mockito.when(bitfinexApiBroker.getOrderbookManager()).thenReturn(orderbookManager);
+		
+		final CountDownLatch latch = new CountDownLatch(2);
+		final List<OrderbookEntry> entries = new ArrayList<>();
+		
+		orderbookManager.registerOrderbookCallback(configuration, (c, e) -> {
+			synchronized (entries) {
+				entries.add(e);
+			}
+			latch.countDown();
+		});
+		
+		final OrderbookHandler handler = new OrderbookHandler();
+		handler.handleChannelFrame(bitfinexApiBroker, configuration, 
+				new JSONFrameReader("[[8175.9,2,1.25],[8176,1,-0.5]]"));
+		
+		latch.await();
+		
+		synchronized (entries) {
+			for(final OrderbookEntry entry : entries) {
+				Assert.assertTrue(entry.isFixedPoint());
+				Assert.assertEquals(FixedPoint.DEFAULT_PRICE_SCALE, entry.getPriceScale());
+				
+				if(entry.getCountValue() == 2) {
+					Assert.assertEquals(8175900000000000L, entry.getPriceMantissa());
+					Assert.assertEquals(125000000L, entry.getAmountMantissa());
+				} else {
+					Assert.assertEquals(8176000000000000L, entry.getPriceMantissa());
+					Assert.assertEquals(-50000000L, entry.getAmountMantissa());
+				}
+			}
+		}
+		
+		executorService.shutdown();
+	}
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.FrameClassifier;
+import com.github.jnidzwetzki.bitfinex.v2.util.FrameClassifier.FrameMarker;
+
+public class FrameClassifierTest {
+	
+	/**
+	 * Broker that exposes the channel callback
+	 */
+	private static class ChannelCallbackBroker extends BitfinexApiBroker {
+		public void receiveChannelCallback(final String message) {
+			handleChannelCallback(message);
+		}
+	}
+
+	/**
+	 * Test the channel id detection
+	 */
+	@Test
+	public void testChannelId() {
+		Assert.assertEquals(0, FrameClassifier.getChannelId("[0,\"hb\"]"));
+		Assert.assertEquals(4711, FrameClassifier.getChannelId("[4711,[1,2,3]]"));
+		Assert.assertEquals(17, FrameClassifier.getChannelId(" [ 17 , \"hb\"]"));
+		Assert.assertEquals(FrameClassifier.INVALID_CHANNEL, FrameClassifier.getChannelId("{\"event\":\"info\"}"));
+		Assert.assertEquals(FrameClassifier.INVALID_CHANNEL, FrameClassifier.getChannelId("[\"abc\"]"));
+		Assert.assertEquals(FrameClassifier.INVALID_CHANNEL, FrameClassifier.getChannelId("[12345678901,1]"));
+	}
+	
+	/**
+	 * Test the marker detection
+	 */
+	@Test
+	public void testMarker() {
+		Assert.assertEquals(FrameMarker.HEARTBEAT, FrameClassifier.getMarker("[0,\"hb\"]"));
+		Assert.assertEquals(FrameMarker.HEARTBEAT, FrameClassifier.getMarker("[4711, \"hb\"]"));
+		Assert.assertEquals(FrameMarker.TRADE_EXECUTED, FrameClassifier.getMarker("[4711,\"te\",[1,2,3,4]]"));
+		Assert.assertEquals(FrameMarker.TRADE_UPDATE, FrameClassifier.getMarker("[4711,\"tu\",[1,2,3,4]]"));
+		Assert.assertEquals(FrameMarker.NONE, FrameClassifier.getMarker("[4711,[1,2,3]]"));
+		Assert.assertEquals(FrameMarker.OTHER, FrameClassifier.getMarker("[0,\"ws\",[]]"));
+		Assert.assertEquals(FrameMarker.OTHER, FrameClassifier.getMarker("[0,\"hbx\"]"));
+		Assert.assertEquals(FrameMarker.INVALID, FrameClassifier.getMarker("[0]"));
+	}
+	
+	/**
+	 * Test the heartbeat fast path
+	 */
+	@Test
+	public void testChannelHeartbeat() {
+		final ChannelCallbackBroker bitfinexApiBroker = new ChannelCallbackBroker();
+		final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD);
+		bitfinexApiBroker.addToChannelSymbolMap(12, symbol);
+		
+		Assert.assertEquals(-1, bitfinexApiBroker.getQuoteManager().getHeartbeatForSymbol(symbol));
+		
+		final long now = System.currentTimeMillis();
+		bitfinexApiBroker.receiveChannelCallback("[12,\"hb\"]");
+		Assert.assertTrue(now <= bitfinexApiBroker.getQuoteManager().getHeartbeatForSymbol(symbol));
+		
+		bitfinexApiBroker.close();
+	}
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.util.FrameClassifier;
+import com.github.jnidzwetzki.bitfinex.v2.util.FramePipeline;
+
+public class FramePipelineTest {
+
+	/**
+	 * Test the order of the frames per channel
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=20000)
+	public void testChannelOrder() throws InterruptedException {
+		final int channels = 16;
+		final int framesPerChannel = 10000;
+		
+		final Map<Integer, Integer> lastSequence = new ConcurrentHashMap<>();
+		final Map<Integer, String> channelThreads = new ConcurrentHashMap<>();
+		final CountDownLatch latch = new CountDownLatch(channels * framesPerChannel);
+		
+		final FramePipeline pipeline = new FramePipeline(4, 64, (frame) -> {
+			final int channel = FrameClassifier.getChannelId(frame);
+			final int sequence = Integer.parseInt(frame.substring(frame.indexOf(',') + 1, frame.length() - 1));
+			
+			// Sequences of a channel are processed in order and by one thread
+			final Integer last = lastSequence.put(channel, sequence);
+			Assert.assertEquals(last == null ? 0 : last + 1, sequence);
+			
+			final String thread = channelThreads.putIfAbsent(channel, Thread.currentThread().getName());
+			Assert.assertTrue(thread == null || thread.equals(Thread.currentThread().getName()));
+			
+			latch.countDown();
+		});
+		
+		Assert.assertEquals(4, pipeline.getWorkers());
+		pipeline.start();
+		Assert.assertTrue(pipeline.isRunning());
+		
+		for(int sequence = 0; sequence < framesPerChannel; sequence++) {
+			for(int channel = 1; channel <= channels; channel++) {
+				pipeline.offer(channel, "[" + channel + "," + sequence + "]");
+			}
+		}
+		
+		latch.await();
+		
+		Assert.assertEquals(0, pipeline.getPendingFrames());
+		Assert.assertEquals(4, channelThreads.values().stream().distinct().count());
+		
+		for(int channel = 1; channel <= channels; channel++) {
+			Assert.assertEquals(framesPerChannel - 1, lastSequence.get(channel).intValue());
+		}
+		
+		pipeline.close();
+		Assert.assertFalse(pipeline.isRunning());
+	}
+	
+	/**
+	 * Test the invalid parameter
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidCapacity() {
+		new FramePipeline(2, 100, (f) -> {});
+	}
+}
@@ -17,7 +17,9 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.test;
 
+import java.util.Arrays;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -25,6 +27,7 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.ConnectionShard;
 import com.github.jnidzwetzki.bitfinex.v2.HeartbeatThread;
 import com.github.jnidzwetzki.bitfinex.v2.WebsocketClientEndpoint;
 import com.github.jnidzwetzki.bitfinex.v2.callback.api.HeartbeatHandler;
@@ -73,6 +76,46 @@ public class HeartbeatManagerTest {
 		}
 	}
 	
+	/**
+	 * Test the reconnect of a failed shard, while the primary connection 
+	 * keeps the global heartbeat alive
+	 * @throws Exception
+	 */
+	@Test(timeout=30000)
+	public void testReconnectFailedShard() throws Exception {
+		final CountDownLatch reconnectLatch = new CountDownLatch(1);
+		
+		final BitfinexApiBroker bitfinexApiBroker = Mockito.mock(BitfinexApiBroker.class);
+		final WebsocketClientEndpoint websocketClientEndpoint = Mockito.mock(WebsocketClientEndpoint.class);
+		Mockito.when(websocketClientEndpoint.isConnected()).thenReturn(true);
+		Mockito.when(bitfinexApiBroker.getWebsocketEndpoint()).thenReturn(websocketClientEndpoint);
+		Mockito.when(bitfinexApiBroker.getLastHeatbeat()).thenReturn(new AtomicLong(Long.MAX_VALUE / 2));
+		
+		final ConnectionShard primaryConnection = Mockito.mock(ConnectionShard.class);
+		final ConnectionShard failedConnection = Mockito.mock(ConnectionShard.class);
+		Mockito.when(primaryConnection.isConnected()).thenReturn(true);
+		Mockito.when(failedConnection.isConnected()).thenReturn(false);
+		Mockito.when(bitfinexApiBroker.getConnections())
+			.thenReturn(Arrays.asList(primaryConnection, failedConnection));
+		
+		Mockito.when(bitfinexApiBroker.reconnectConnection(failedConnection)).then((i) -> {
+			reconnectLatch.countDown();
+			return true;
+		});
+		
+		final Thread heartbeatThread = new Thread(new HeartbeatThread(bitfinexApiBroker));
+		
+		try {
+			heartbeatThread.start();
+			reconnectLatch.await();
+		} finally {
+			heartbeatThread.interrupt();
+		}
+		
+		Mockito.verify(bitfinexApiBroker, Mockito.never()).reconnect();
+		Mockito.verify(bitfinexApiBroker, Mockito.never()).reconnectConnection(primaryConnection);
+	}
+	
 	/**
 	 * Test the heartbeart handler
 	 * @throws APIException 
@@ -18,6 +18,7 @@
 package com.github.jnidzwetzki.bitfinex.v2.test;
 
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 
 import org.junit.Assert;
@@ -296,13 +297,51 @@ public class IntegrationTest {
 		bitfinexClient.close();
 	}
 	
+	/**
+	 * Test the checksums of the P0 and R0 books against the checksums 
+	 * published by Bitfinex
+	 * @throws Exception 
+	 */
+	@Test(timeout=120000)
+	public void testOrderbookChecksums() throws Exception {
+		final BitfinexApiBroker bitfinexClient = new BitfinexApiBroker();
+		
+		try {
+			bitfinexClient.connect();
+			
+			final OrderbookConfiguration orderbookConfiguration = new OrderbookConfiguration(
+					BitfinexCurrencyPair.BTC_USD, OrderBookPrecision.P0, OrderBookFrequency.F0, 25);
+			final RawOrderbookConfiguration rawOrderbookConfiguration = new RawOrderbookConfiguration(
+					BitfinexCurrencyPair.BTC_USD);
+			
+			final OrderbookManager orderbookManager = bitfinexClient.getOrderbookManager();
+			final RawOrderbookManager rawOrderbookManager = bitfinexClient.getRawOrderbookManager();
+			
+			orderbookManager.subscribeOrderbook(orderbookConfiguration).get(10, TimeUnit.SECONDS);
+			rawOrderbookManager.subscribeOrderbook(rawOrderbookConfiguration).get(10, TimeUnit.SECONDS);
+			
+			// Await at least 10 checksums per book
+			while(orderbookManager.getVerifiedChecksums() < 10 
+					|| rawOrderbookManager.getVerifiedChecksums() < 10) {
+				Thread.sleep(100);
+			}
+			
+			Assert.assertEquals(0, orderbookManager.getChecksumMismatches());
+			Assert.assertEquals(0, rawOrderbookManager.getChecksumMismatches());
+			
+			orderbookManager.unsubscribeOrderbook(orderbookConfiguration);
+			rawOrderbookManager.unsubscribeOrderbook(rawOrderbookConfiguration);
+		} finally {
+			bitfinexClient.close();
+		}
+	}
+	
 	/**
 	 * Test the session reconnect
-	 * @throws APIException 
-	 * @throws InterruptedException 
+	 * @throws Exception 
 	 */
 	@Test
-	public void testReconnect() throws APIException, InterruptedException {
+	public void testReconnect() throws Exception {
 		final BitfinexApiBroker bitfinexClient = new BitfinexApiBroker();
 		bitfinexClient.connect();
 		
@@ -310,8 +349,7 @@ public class IntegrationTest {
 
 		final QuoteManager orderbookManager = bitfinexClient.getQuoteManager();
 		
-		orderbookManager.subscribeTicker(symbol);
-		Thread.sleep(1000);
+		orderbookManager.subscribeTicker(symbol).get(10, TimeUnit.SECONDS);
 		bitfinexClient.reconnect();
 		
 		// Await at least 2 callbacks
@@ -0,0 +1,213 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.CandlestickHandler;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.Timeframe;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexCandlestickSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.manager.QuoteManager;
+import com.github.jnidzwetzki.bitfinex.v2.util.JSONFrameReader;
+
+public class JSONFrameReaderTest {
+
+	/**
+	 * The delta for double compares
+	 */
+	private static final double DELTA = 0.001;
+
+	/**
+	 * Test the reading of a orderbook frame
+	 */
+	@Test
+	public void testReadOrderbookFrame() {
+		final JSONFrameReader reader = new JSONFrameReader("[3829,[13182,1,-0.1]]");
+		
+		reader.beginArray();
+		Assert.assertEquals(3829, reader.nextInt());
+		Assert.assertEquals(JSONFrameReader.Token.BEGIN_ARRAY, reader.peek());
+		reader.beginArray();
+		Assert.assertEquals(13182, reader.nextLong());
+		Assert.assertEquals(1, reader.nextBigDecimal().intValue());
+		Assert.assertEquals(-0.1, reader.nextBigDecimal().doubleValue(), DELTA);
+		Assert.assertFalse(reader.hasNext());
+		reader.endArray();
+		reader.endArray();
+		Assert.assertEquals(JSONFrameReader.Token.END_DOCUMENT, reader.peek());
+	}
+	
+	/**
+	 * Test the reading of strings, literals and nested values
+	 */
+	@Test
+	public void testReadStringsAndSkip() {
+		final JSONFrameReader reader = new JSONFrameReader(
+				"[0, \"te\", [{\"a\": [1, 2]}, null, true, \"x\\\"y\", 1.5e-7, false]]");
+		
+		reader.beginArray();
+		Assert.assertEquals(0, reader.nextInt());
+		Assert.assertFalse(reader.nextStringEquals("tu"));
+		Assert.assertTrue(reader.nextStringEquals("te"));
+		reader.beginArray();
+		reader.skipValue();
+		Assert.assertTrue(reader.isNextNull());
+		reader.nextNull();
+		Assert.assertTrue(reader.nextBoolean());
+		Assert.assertEquals("x\"y", reader.nextString());
+		Assert.assertEquals(1.5e-7, reader.nextDouble(), 0.0000000001);
+		Assert.assertFalse(reader.nextBoolean());
+		reader.endArray();
+		reader.endArray();
+	}
+	
+	/**
+	 * Test the reuse of the reader
+	 */
+	@Test
+	public void testResetReader() {
+		final JSONFrameReader reader = new JSONFrameReader("[1,\"hb\"]");
+		reader.beginArray();
+		Assert.assertEquals(1, reader.nextInt());
+		
+		reader.reset("[2,[5,6]]");
+		reader.beginArray();
+		Assert.assertEquals(2, reader.nextInt());
+		reader.skipValue();
+		reader.endArray();
+	}
+	
+	/**
+	 * Test invalid frames
+	 */
+	@Test(expected=JSONException.class)
+	public void testInvalidFrame() {
+		final JSONFrameReader reader = new JSONFrameReader("[1,\"hb\"]");
+		reader.beginArray();
+		reader.nextInt();
+		reader.nextLong();
+	}
+	
+	/**
+	 * Test malformed numbers
+	 */
+	@Test
+	public void testMalformedNumber() {
+		final JSONFrameReader reader = new JSONFrameReader("[1.2.3,--1,\"\\uZZZZ\"]");
+		reader.beginArray();
+		
+		try {
+			reader.nextBigDecimal();
+			Assert.fail("Exception expected");
+		} catch (JSONException e) {
+			// Expected
+		}
+		
+		try {
+			reader.nextDouble();
+			Assert.fail("Exception expected");
+		} catch (JSONException e) {
+			// Expected
+		}
+		
+		try {
+			reader.nextString();
+			Assert.fail("Exception expected");
+		} catch (JSONException e) {
+			// Expected
+		}
+	}
+	
+	/**
+	 * Test the handler with a malformed number
+	 * @throws APIException
+	 */
+	@Test(expected=APIException.class)
+	public void testMalformedCandlestick() throws APIException {
+		final BitfinexCandlestickSymbol symbol 
+			= new BitfinexCandlestickSymbol(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_1);
+		
+		final BitfinexApiBroker bitfinexApiBroker = Mockito.mock(BitfinexApiBroker.class);
+		
+		final JSONFrameReader reader = new JSONFrameReader("[42,[15134900000,15996,1.5.9,16000,15980,318.5]]");
+		reader.beginArray();
+		reader.nextInt();
+		
+		final CandlestickHandler candlestickHandler = new CandlestickHandler();
+		candlestickHandler.handleChannelFrame(bitfinexApiBroker, symbol, reader);
+	}
+	
+	/**
+	 * Test the streaming candlestick handler
+	 * @throws APIException
+	 */
+	@Test(timeout=10000)
+	public void testStreamingCandlestickHandler() throws APIException, InterruptedException {
+		final String callbackValue = "[42,[[15134900000,15996,15997,16000,15980,318.5139342],[15135100000,15899,15996,16097,15890,1137.180342268]]]";
+
+		final BitfinexCandlestickSymbol symbol 
+			= new BitfinexCandlestickSymbol(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_1);
+			
+		final ExecutorService executorService = Executors.newFixedThreadPool(10);
+		final BitfinexApiBroker bitfinexApiBroker = Mockito.mock(BitfinexApiBroker.class);
+		Mockito.when(bitfinexApiBroker.getExecutorService()).thenReturn(executorService);
+		final QuoteManager tickerManager = new QuoteManager(bitfinexApiBroker);
+		Mockito.when(bitfinexApiBroker.getQuoteManager()).thenReturn(tickerManager);
+
+		final AtomicInteger counter = new AtomicInteger(0);
+		final CountDownLatch latch = new CountDownLatch(2);
+		
+		tickerManager.registerCandlestickCallback(symbol, (s, c) -> {
+			Assert.assertEquals(symbol, s);
+			final int counterValue = counter.getAndIncrement();
+			if(counterValue == 0) {
+				Assert.assertEquals(15996, c.getOpen().doubleValue(), DELTA);
+				Assert.assertEquals(318.5139342, c.getVolume().doubleValue(), DELTA);
+			} else if(counterValue == 1) {
+				Assert.assertEquals(15899, c.getOpen().doubleValue(), DELTA);
+				Assert.assertEquals(1137.180342268, c.getVolume().doubleValue(), DELTA);
+			} else {
+				throw new IllegalArgumentException("Illegal call, expected 2 candlesticks");
+			}
+			latch.countDown();
+		});
+		
+		final JSONFrameReader reader = new JSONFrameReader(callbackValue);
+		reader.beginArray();
+		Assert.assertEquals(42, reader.nextInt());
+		
+		final CandlestickHandler candlestickHandler = new CandlestickHandler();
+		candlestickHandler.handleChannelFrame(bitfinexApiBroker, symbol, reader);
+		reader.endArray();
+		
+		latch.await();
+		Assert.assertEquals(2, counter.get());
+		executorService.shutdown();
+	}
+}
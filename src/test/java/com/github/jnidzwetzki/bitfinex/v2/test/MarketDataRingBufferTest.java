@@ -0,0 +1,207 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexTick;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.manager.QuoteManager;
+import com.github.jnidzwetzki.bitfinex.v2.util.MarketDataRingBuffer;
+import com.github.jnidzwetzki.bitfinex.v2.util.MarketDataRingBuffer.EventType;
+import com.github.jnidzwetzki.bitfinex.v2.util.MarketDataRingBuffer.WaitStrategy;
+
+public class MarketDataRingBufferTest {
+	
+	/**
+	 * The number of events per producer
+	 */
+	private final static int EVENTS = 50000;
+
+	/**
+	 * Test the transport with all wait strategies
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=60000)
+	public void testWaitStrategies() throws InterruptedException {
+		for(final WaitStrategy waitStrategy : WaitStrategy.values()) {
+			testTransport(waitStrategy);
+		}
+	}
+	
+	/**
+	 * Test single events on a quiet feed, each event must wake up the blocked consumer
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=60000)
+	public void testBlockingConsumerWakeup() throws InterruptedException {
+		final MarketDataRingBuffer ringBuffer = new MarketDataRingBuffer(16, WaitStrategy.BLOCKING);
+		final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD);
+		final Semaphore processed = new Semaphore(0);
+		
+		ringBuffer.registerHandler((e, endOfBatch) -> processed.release());
+		ringBuffer.start();
+		
+		for(int i = 0; i < 10000; i++) {
+			ringBuffer.publish(EventType.TICK, symbol, i);
+			Assert.assertTrue("Event " + i + " not processed", processed.tryAcquire(5, TimeUnit.SECONDS));
+		}
+		
+		ringBuffer.close();
+	}
+	
+	/**
+	 * Test the publishing into a closed buffer, the events are dropped 
+	 * and a waiting producer is released
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=10000)
+	public void testPublishAfterClose() throws InterruptedException {
+		for(final WaitStrategy waitStrategy : WaitStrategy.values()) {
+			final MarketDataRingBuffer ringBuffer = new MarketDataRingBuffer(4, waitStrategy);
+			final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD);
+			
+			// The consumer is not started, the buffer is full after 4 events
+			for(int i = 0; i < 4; i++) {
+				Assert.assertEquals(i, ringBuffer.publish(EventType.TICK, symbol, i));
+			}
+			
+			final CountDownLatch published = new CountDownLatch(1);
+			
+			final Thread producer = new Thread(() -> {
+				Assert.assertEquals(MarketDataRingBuffer.DROPPED, ringBuffer.publish(EventType.TICK, symbol, 4));
+				published.countDown();
+			});
+			
+			producer.start();
+			Assert.assertFalse(published.await(100, TimeUnit.MILLISECONDS));
+			
+			ringBuffer.close();
+			published.await();
+			
+			for(int i = 0; i < 10; i++) {
+				Assert.assertEquals(MarketDataRingBuffer.DROPPED, ringBuffer.publish(EventType.TICK, symbol, i));
+			}
+			
+			Assert.assertTrue(ringBuffer.isClosed());
+			Assert.assertEquals(11, ringBuffer.getDroppedEvents());
+		}
+	}
+	
+	/**
+	 * Test the publishing by the managers
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=10000)
+	public void testManagerPublishing() throws InterruptedException {
+		final ExecutorService executorService = Executors.newFixedThreadPool(10);
+		final BitfinexApiBroker bitfinexApiBroker = Mockito.mock(BitfinexApiBroker.class);
+		final MarketDataRingBuffer ringBuffer = new MarketDataRingBuffer(16, WaitStrategy.BLOCKING);
+		Mockito.when(bitfinexApiBroker.getExecutorService()).thenReturn(executorService);
+		Mockito.when(bitfinexApiBroker.getMarketDataRingBuffer()).thenReturn(ringBuffer);
+		Mockito.doAnswer((i) -> ringBuffer.publish(i.getArgument(0), i.getArgument(1), i.getArgument(2)))
+			.when(bitfinexApiBroker).publishMarketData(Mockito.any(), Mockito.any(), Mockito.any());
+		
+		final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD);
+		final BitfinexTick tick = new BitfinexTick(1, 10, 12, 15, 8, 100);
+		final CountDownLatch latch = new CountDownLatch(1);
+		
+		ringBuffer.registerHandler((e, endOfBatch) -> {
+			Assert.assertEquals(EventType.TICK, e.getType());
+			Assert.assertEquals(symbol, e.getSymbol());
+			Assert.assertSame(tick, e.getPayload(BitfinexTick.class));
+			latch.countDown();
+		});
+		
+		ringBuffer.start();
+		
+		final QuoteManager quoteManager = new QuoteManager(bitfinexApiBroker);
+		quoteManager.handleNewTick(symbol, tick);
+		
+		latch.await();
+		ringBuffer.close();
+		Assert.assertFalse(ringBuffer.isRunning());
+		executorService.shutdown();
+	}
+	
+	/**
+	 * Transport the events of two producers through a small buffer
+	 * @param waitStrategy
+	 * @throws InterruptedException
+	 */
+	private void testTransport(final WaitStrategy waitStrategy) throws InterruptedException {
+		final MarketDataRingBuffer ringBuffer = new MarketDataRingBuffer(64, waitStrategy);
+		final BitfinexTickerSymbol symbol1 = new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD);
+		final BitfinexTickerSymbol symbol2 = new BitfinexTickerSymbol(BitfinexCurrencyPair.ETH_USD);
+		
+		final int[] lastValue = new int[2];
+		final AtomicBoolean orderViolated = new AtomicBoolean(false);
+		final CountDownLatch latch = new CountDownLatch(2 * EVENTS);
+		
+		ringBuffer.registerHandler((e, endOfBatch) -> {
+			final int producer = e.getSymbol().equals(symbol1) ? 0 : 1;
+			final int value = e.getPayload(Integer.class);
+			
+			if(lastValue[producer] != value - 1) {
+				orderViolated.set(true);
+			}
+			
+			lastValue[producer] = value;
+			latch.countDown();
+		});
+		
+		ringBuffer.start();
+		
+		final Thread producer1 = new Thread(() -> publish(ringBuffer, symbol1));
+		final Thread producer2 = new Thread(() -> publish(ringBuffer, symbol2));
+		producer1.start();
+		producer2.start();
+		
+		latch.await();
+		producer1.join();
+		producer2.join();
+		ringBuffer.close();
+		
+		Assert.assertFalse(waitStrategy.toString(), orderViolated.get());
+		Assert.assertEquals(EVENTS, lastValue[0]);
+		Assert.assertEquals(EVENTS, lastValue[1]);
+		Assert.assertEquals(0, ringBuffer.getPendingEvents());
+	}
+	
+	/**
+	 * Publish the events
+	 * @param ringBuffer
+	 * @param symbol
+	 */
+	private void publish(final MarketDataRingBuffer ringBuffer, final BitfinexTickerSymbol symbol) {
+		for(int i = 1; i <= EVENTS; i++) {
+			ringBuffer.publish(EventType.TICK, symbol, i);
+		}
+	}
+}
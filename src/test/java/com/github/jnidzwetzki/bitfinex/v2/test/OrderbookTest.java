@@ -17,15 +17,29 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.test;
 
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
 import org.json.JSONObject;
 import org.json.JSONTokener;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.Mockito;
 
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
 import com.github.jnidzwetzki.bitfinex.v2.entity.OrderBookFrequency;
 import com.github.jnidzwetzki.bitfinex.v2.entity.OrderBookPrecision;
 import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderbookManager;
 
 public class OrderbookTest {
 
@@ -65,5 +79,58 @@ public class OrderbookTest {
 		Assert.assertEquals(OrderBookPrecision.P0, configuration.getOrderBookPrecision());
 		Assert.assertEquals(25, configuration.getPricePoints());
 	}
+	
+	/**
+	 * Test the conflating orderbook callback
+	 * @throws APIException 
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=10000)
+	public void testConflatingOrderbookCallback() throws APIException, InterruptedException {
+		final ExecutorService executorService = Executors.newSingleThreadExecutor();
+		final BitfinexApiBroker bitfinexApiBroker = Mockito.mock(BitfinexApiBroker.class);
+		Mockito.when(bitfinexApiBroker.getExecutorService()).thenReturn(executorService);
+		final OrderbookManager orderbookManager = new OrderbookManager(bitfinexApiBroker);
+		
+		final OrderbookConfiguration configuration = new OrderbookConfiguration(
+				BitfinexCurrencyPair.BTC_USD, OrderBookPrecision.P0, OrderBookFrequency.F0, 25);
+		
+		final List<OrderbookEntry> receivedEntries = new CopyOnWriteArrayList<>();
+		final CountDownLatch deliveryLatch = new CountDownLatch(2);
+		
+		final BiConsumer<OrderbookConfiguration, OrderbookEntry> callback = (c, e) -> {
+			receivedEntries.add(e);
+			deliveryLatch.countDown();
+		};
+		
+		orderbookManager.registerConflatingOrderbookCallback(configuration, callback);
+		
+		// Block the executor, the consumer is slower than the feed
+		final CountDownLatch blockLatch = new CountDownLatch(1);
+		executorService.submit(() -> {
+			blockLatch.await();
+			return null;
+		});
+		
+		for(int i = 1; i <= 100; i++) {
+			orderbookManager.handleNewOrderbookEntry(configuration, 
+					new OrderbookEntry(new BigDecimal(100), BigDecimal.ONE, new BigDecimal(i)));
+			orderbookManager.handleNewOrderbookEntry(configuration, 
+					new OrderbookEntry(new BigDecimal("100.0"), BigDecimal.ONE, new BigDecimal(-i)));
+		}
+		
+		blockLatch.countDown();
+		deliveryLatch.await();
+		executorService.shutdown();
+		executorService.awaitTermination(10, TimeUnit.SECONDS);
+		
+		// Only the latest bid and ask of the price level are delivered
+		Assert.assertEquals(2, receivedEntries.size());
+		Assert.assertEquals(100, receivedEntries.get(0).getAmount().intValue());
+		Assert.assertEquals(-100, receivedEntries.get(1).getAmount().intValue());
+		
+		Assert.assertTrue(orderbookManager.removeOrderbookCallback(configuration, callback));
+		Assert.assertFalse(orderbookManager.removeOrderbookCallback(configuration, callback));
+	}
 
 }
@@ -17,13 +17,31 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.test;
 
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.json.JSONObject;
 import org.json.JSONTokener;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.Mockito;
 
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.RawOrderbookHandler;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
 import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.manager.RawOrderbook;
+import com.github.jnidzwetzki.bitfinex.v2.manager.RawOrderbook.Side;
+import com.github.jnidzwetzki.bitfinex.v2.manager.RawOrderbookManager;
+import com.github.jnidzwetzki.bitfinex.v2.util.JSONFrameReader;
+import com.github.jnidzwetzki.bitfinex.v2.util.LongIntHashMap;
 
 public class RawOrderbookTest {
 
@@ -60,4 +78,224 @@ public class RawOrderbookTest {
 	
 		Assert.assertEquals(BitfinexCurrencyPair.BTC_USD, configuration.getCurrencyPair());
 	}
+	
+	/**
+	 * Test the order id indexed book
+	 */
+	@Test
+	public void testRawOrderbook() {
+		final RawOrderbook orderbook = new RawOrderbook(new RawOrderbookConfiguration(BitfinexCurrencyPair.BTC_USD));
+		
+		orderbook.update(1, 100, 5);
+		orderbook.update(2, 100, 3);
+		orderbook.update(3, 99, 1);
+		orderbook.update(4, 101, -2);
+		orderbook.update(5, 102, -7);
+		orderbook.update(6, 101, -1);
+		
+		Assert.assertEquals(6, orderbook.getOrderCount());
+		Assert.assertEquals(2, orderbook.getLevels(Side.BID));
+		Assert.assertEquals(100, orderbook.getBestBidPrice());
+		Assert.assertEquals(101, orderbook.getBestAskPrice());
+		Assert.assertEquals(8, orderbook.getAmount(Side.BID, 0));
+		Assert.assertEquals(2, orderbook.getOrderCount(Side.BID, 0));
+		Assert.assertEquals(-3, orderbook.getAmountForPrice(Side.ASK, 101));
+		Assert.assertEquals(102, orderbook.getPrice(Side.ASK, 1));
+		
+		// Queue order
+		final long[] orderIds = new long[10];
+		Assert.assertEquals(2, orderbook.getOrderIds(Side.ASK, 0, orderIds));
+		Assert.assertEquals(4, orderIds[0]);
+		Assert.assertEquals(6, orderIds[1]);
+		
+		// Amount change keeps the queue position
+		orderbook.update(4, 101, -1);
+		Assert.assertEquals(-2, orderbook.getAmount(Side.ASK, 0));
+		final List<RawOrderbookEntry> orders = orderbook.getOrders(Side.ASK, 0);
+		Assert.assertEquals(4, orders.get(0).getOrderId());
+		Assert.assertEquals(-1, orders.get(0).getAmountMantissa());
+		
+		// Price change moves the order
+		orderbook.update(1, 99, 5);
+		Assert.assertEquals(3, orderbook.getAmount(Side.BID, 0));
+		Assert.assertEquals(6, orderbook.getAmount(Side.BID, 1));
+		Assert.assertEquals(2, orderbook.getOrderIds(Side.BID, 1, orderIds));
+		Assert.assertEquals(3, orderIds[0]);
+		Assert.assertEquals(1, orderIds[1]);
+		
+		// Delete orders
+		orderbook.update(2, 0, 1);
+		Assert.assertEquals(99, orderbook.getBestBidPrice());
+		Assert.assertEquals(1, orderbook.getLevels(Side.BID));
+		orderbook.update(4, 0, -1);
+		orderbook.update(6, 0, -1);
+		Assert.assertEquals(102, orderbook.getBestAskPrice());
+		Assert.assertNull(orderbook.getOrder(6));
+		Assert.assertEquals(99, orderbook.getOrder(3).getPriceMantissa());
+		Assert.assertEquals(3, orderbook.getOrderCount());
+		
+		orderbook.clear();
+		Assert.assertEquals(0, orderbook.getOrderCount());
+		Assert.assertEquals(RawOrderbook.NO_VALUE, orderbook.getBestBidPrice());
+	}
+	
+	/**
+	 * Test the growing of the book
+	 */
+	@Test
+	public void testRawOrderbookGrow() {
+		final RawOrderbook orderbook = new RawOrderbook(new RawOrderbookConfiguration(BitfinexCurrencyPair.BTC_USD));
+		
+		for(int i = 0; i < 5000; i++) {
+			orderbook.update(i, 1000 + (i % 700), (i % 2 == 0) ? 1 : -1);
+		}
+		
+		Assert.assertEquals(5000, orderbook.getOrderCount());
+		Assert.assertEquals(350, orderbook.getLevels(Side.BID));
+		Assert.assertEquals(1698, orderbook.getBestBidPrice());
+		Assert.assertEquals(1001, orderbook.getBestAskPrice());
+		
+		for(int i = 0; i < 5000; i += 2) {
+			orderbook.update(i, 0, 1);
+		}
+		
+		Assert.assertEquals(2500, orderbook.getOrderCount());
+		Assert.assertEquals(0, orderbook.getLevels(Side.BID));
+		Assert.assertEquals(350, orderbook.getLevels(Side.ASK));
+	}
+	
+	/**
+	 * Test a snapshot that can't be applied, the book is cleared and resubscribed
+	 */
+	@Test
+	public void testInvalidSnapshotResync() {
+		final RawOrderbookConfiguration configuration = new RawOrderbookConfiguration(BitfinexCurrencyPair.TRX_BTC);
+		final ExecutorService executorService = Executors.newFixedThreadPool(10);
+		final BitfinexApiBroker bitfinexApiBroker = Mockito.mock(BitfinexApiBroker.class);
+		Mockito.when(bitfinexApiBroker.getExecutorService()).thenReturn(executorService);
+		final RawOrderbookManager rawOrderbookManager = new RawOrderbookManager(bitfinexApiBroker);
+		
+		rawOrderbookManager.handleOrderbookSnapshot(configuration, Arrays.asList(
+				new RawOrderbookEntry(1, new BigDecimal("0.0000035123"), new BigDecimal("25")),
+				new RawOrderbookEntry(2, new BigDecimal("1e-20"), BigDecimal.ONE)));
+		
+		Assert.assertEquals(0, rawOrderbookManager.getOrderbook(configuration).getOrderCount());
+		Assert.assertEquals(1, rawOrderbookManager.getInvalidUpdates());
+		Mockito.verify(bitfinexApiBroker).resubscribeChannel(configuration);
+		Mockito.verify(bitfinexApiBroker, Mockito.never()).publishMarketData(Mockito.any(), 
+				Mockito.any(), Mockito.any());
+		
+		executorService.shutdown();
+	}
+	
+	/**
+	 * Test the primitive hash map
+	 */
+	@Test
+	public void testLongIntHashMap() {
+		final LongIntHashMap map = new LongIntHashMap(4);
+		
+		for(int i = 0; i < 1000; i++) {
+			Assert.assertEquals(LongIntHashMap.NO_VALUE, map.put(i * 1024L, i));
+		}
+		
+		Assert.assertEquals(1000, map.size());
+		Assert.assertEquals(17, map.get(17 * 1024L));
+		Assert.assertEquals(17, map.put(17 * 1024L, 18));
+		
+		for(int i = 0; i < 1000; i += 3) {
+			Assert.assertTrue(map.remove(i * 1024L) != LongIntHashMap.NO_VALUE);
+		}
+		
+		for(int i = 0; i < 1000; i++) {
+			Assert.assertEquals(i % 3 != 0, map.containsKey(i * 1024L));
+		}
+		
+		Assert.assertEquals(LongIntHashMap.NO_VALUE, map.remove(-5));
+		map.clear();
+		Assert.assertTrue(map.isEmpty());
+	}
+	
+	/**
+	 * Test the maintenance by the manager
+	 * @throws APIException 
+	 */
+	@Test
+	public void testRawOrderbookManager() throws APIException {
+		final RawOrderbookConfiguration configuration = new RawOrderbookConfiguration(BitfinexCurrencyPair.BTC_USD);
+		final ExecutorService executorService = Executors.newFixedThreadPool(10);
+		final BitfinexApiBroker bitfinexApiBroker = Mockito.mock(BitfinexApiBroker.class);
+		Mockito.when(bitfinexApiBroker.getExecutorService()).thenReturn(executorService);
+		final RawOrderbookManager rawOrderbookManager = new RawOrderbookManager(bitfinexApiBroker);
+		Mockito.when(bitfinexApiBroker.getRawOrderbookManager()).thenReturn(rawOrderbookManager);
+		
+		final RawOrderbookHandler handler = new RawOrderbookHandler();
+		handler.handleChannelFrame(bitfinexApiBroker, configuration, 
+				new JSONFrameReader("[[1001,8175.9,1.25],[1002,8175.9,0.5],[1003,8176,-0.5]]"));
+		
+		final RawOrderbook orderbook = rawOrderbookManager.getOrderbook(configuration);
+		Assert.assertEquals(3, orderbook.getOrderCount());
+		Assert.assertEquals(2, orderbook.getOrderCount(Side.BID, 0));
+		Assert.assertEquals(175000000L, orderbook.getAmount(Side.BID, 0));
+		
+		handler.handleChannelFrame(bitfinexApiBroker, configuration, new JSONFrameReader("[1001,0,1]"));
+		Assert.assertEquals(50000000L, orderbook.getAmount(Side.BID, 0));
+		
+		executorService.shutdown();
+	}
+	
+	/**
+	 * Test the batch callback
+	 * @throws APIException 
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=10000)
+	public void testOrderbookBatchCallback() throws APIException, InterruptedException {
+		final RawOrderbookConfiguration configuration = new RawOrderbookConfiguration(BitfinexCurrencyPair.BTC_USD);
+		final ExecutorService executorService = Executors.newFixedThreadPool(10);
+		final BitfinexApiBroker bitfinexApiBroker = Mockito.mock(BitfinexApiBroker.class);
+		Mockito.when(bitfinexApiBroker.getExecutorService()).thenReturn(executorService);
+		final RawOrderbookManager rawOrderbookManager = new RawOrderbookManager(bitfinexApiBroker);
+		Mockito.when(bitfinexApiBroker.getRawOrderbookManager()).thenReturn(rawOrderbookManager);
+		
+		final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+		final List<Boolean> snapshotFlags = new CopyOnWriteArrayList<>();
+		final CountDownLatch latch = new CountDownLatch(12);
+		
+		rawOrderbookManager.registerOrderbookBatchCallback(configuration, (c, entries, snapshot) -> {
+			batchSizes.add(entries.size());
+			snapshotFlags.add(snapshot);
+			latch.countDown();
+		});
+		
+		final RawOrderbookHandler handler = new RawOrderbookHandler();
+		
+		// Snapshot, 10 updates and a new snapshot after a reconnect
+		handler.handleChannelFrame(bitfinexApiBroker, configuration, 
+				new JSONFrameReader("[[1001,8175.9,1.25],[1002,8175.9,0.5],[1003,8176,-0.5]]"));
+		
+		for(int i = 0; i < 10; i++) {
+			handler.handleChannelFrame(bitfinexApiBroker, configuration, 
+					new JSONFrameReader("[" + (2000 + i) + ",8170,1]"));
+		}
+		
+		handler.handleChannelFrame(bitfinexApiBroker, configuration, 
+				new JSONFrameReader("[[1001,8175.9,1.25],[1003,8176,-0.5]]"));
+		
+		latch.await();
+		
+		Assert.assertEquals(12, batchSizes.size());
+		Assert.assertEquals(3, (int) batchSizes.get(0));
+		Assert.assertTrue(snapshotFlags.get(0));
+		
+		for(int i = 1; i <= 10; i++) {
+			Assert.assertEquals(1, (int) batchSizes.get(i));
+			Assert.assertFalse(snapshotFlags.get(i));
+		}
+		
+		Assert.assertEquals(2, (int) batchSizes.get(11));
+		Assert.assertTrue(snapshotFlags.get(11));
+		
+		executorService.shutdown();
+	}
 }
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.manager.BiConsumerCallbackManager;
+import com.github.jnidzwetzki.bitfinex.v2.util.StripedExecutor;
+
+public class StripedExecutorTest {
+
+	/**
+	 * Test the lane assignment
+	 */
+	@Test
+	public void testLanes() {
+		final ExecutorService executorService = Executors.newFixedThreadPool(2);
+		
+		Assert.assertEquals(1, new StripedExecutor(executorService, 1).getLanes());
+		Assert.assertEquals(4, new StripedExecutor(executorService, 3).getLanes());
+		
+		final StripedExecutor stripedExecutor = new StripedExecutor(executorService, 8);
+		Assert.assertEquals(8, stripedExecutor.getLanes());
+		
+		for(final BitfinexCurrencyPair currencyPair : BitfinexCurrencyPair.values()) {
+			final int lane = stripedExecutor.getLane(currencyPair);
+			Assert.assertTrue(lane >= 0 && lane < 8);
+			Assert.assertEquals(lane, stripedExecutor.getLane(currencyPair));
+		}
+		
+		executorService.shutdown();
+	}
+	
+	/**
+	 * Test the order of the tasks per stripe
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=30000)
+	public void testOrderPerStripe() throws InterruptedException {
+		final ExecutorService executorService = Executors.newFixedThreadPool(10);
+		final StripedExecutor stripedExecutor = new StripedExecutor(executorService);
+		
+		final int stripes = 8;
+		final int tasks = 10000;
+		final int[] lastValue = new int[stripes];
+		final AtomicBoolean orderViolated = new AtomicBoolean(false);
+		final CountDownLatch latch = new CountDownLatch(stripes * tasks);
+		
+		for(int task = 1; task <= tasks; task++) {
+			for(int stripe = 0; stripe < stripes; stripe++) {
+				final int currentStripe = stripe;
+				final int value = task;
+				
+				stripedExecutor.execute("stripe-" + stripe, () -> {
+					if(lastValue[currentStripe] != value - 1) {
+						orderViolated.set(true);
+					}
+					
+					lastValue[currentStripe] = value;
+					latch.countDown();
+				});
+			}
+		}
+		
+		latch.await();
+		Assert.assertFalse(orderViolated.get());
+		
+		executorService.shutdown();
+	}
+	
+	/**
+	 * Test that a snapshot does not overtake the queued updates of the symbol
+	 * @throws InterruptedException 
+	 * @throws APIException 
+	 */
+	@Test(timeout=30000)
+	public void testSnapshotOrder() throws InterruptedException, APIException {
+		final ExecutorService executorService = Executors.newFixedThreadPool(10);
+		final BiConsumerCallbackManager<String, Integer> callbackManager 
+			= new BiConsumerCallbackManager<>(executorService);
+		
+		final List<Integer> events = new ArrayList<>();
+		final CountDownLatch latch = new CountDownLatch(4);
+		
+		callbackManager.registerCallback("symbol", (s, e) -> {
+			// Keep the first update in the lane while the snapshot arrives
+			if(e == 1) {
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			
+			synchronized (events) {
+				events.add(e);
+			}
+			
+			latch.countDown();
+		});
+		
+		callbackManager.handleEvent("symbol", 1);
+		callbackManager.handleEventsList("symbol", Arrays.asList(2, 3));
+		callbackManager.handleEvent("symbol", 4);
+		
+		latch.await();
+		
+		synchronized (events) {
+			Assert.assertEquals(Arrays.asList(1, 2, 3, 4), events);
+		}
+		
+		executorService.shutdown();
+	}
+	
+	/**
+	 * Test the dedicated lanes, a blocking callback does not delay 
+	 * the other callback of the same symbol
+	 * @throws InterruptedException 
+	 * @throws APIException 
+	 */
+	@Test(timeout=30000)
+	public void testDedicatedLanes() throws InterruptedException, APIException {
+		final ExecutorService executorService = Executors.newCachedThreadPool();
+		final BiConsumerCallbackManager<String, Integer> callbackManager 
+			= new BiConsumerCallbackManager<>(executorService, true);
+		
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch blockedLatch = new CountDownLatch(4);
+		final CountDownLatch latch = new CountDownLatch(4);
+		final List<Integer> blockedEvents = new ArrayList<>();
+		final List<Integer> events = new ArrayList<>();
+		
+		callbackManager.registerCallback("symbol", (s, e) -> {
+			try {
+				release.await();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			
+			synchronized (blockedEvents) {
+				blockedEvents.add(e);
+			}
+			
+			blockedLatch.countDown();
+		});
+		
+		callbackManager.registerCallback("symbol", (s, e) -> {
+			synchronized (events) {
+				events.add(e);
+			}
+			
+			latch.countDown();
+		});
+		
+		callbackManager.handleEvent("symbol", 1);
+		callbackManager.handleEventsList("symbol", Arrays.asList(2, 3));
+		callbackManager.handleEvent("symbol", 4);
+		
+		// Delivered while the first callback blocks
+		latch.await();
+		release.countDown();
+		blockedLatch.await();
+		
+		synchronized (events) {
+			Assert.assertEquals(Arrays.asList(1, 2, 3, 4), events);
+		}
+		
+		synchronized (blockedEvents) {
+			Assert.assertEquals(Arrays.asList(1, 2, 3, 4), blockedEvents);
+		}
+		
+		final StripedExecutor stripedExecutor = new StripedExecutor(executorService, true);
+		Assert.assertTrue(stripedExecutor.isDedicatedLanes());
+		stripedExecutor.execute("symbol", "callback1", () -> {});
+		stripedExecutor.execute("symbol", "callback2", () -> {});
+		Assert.assertEquals(2, stripedExecutor.getLanes());
+		stripedExecutor.removeCallback("callback1");
+		Assert.assertEquals(1, stripedExecutor.getLanes());
+		
+		executorService.shutdown();
+	}
+}
@@ -20,6 +20,8 @@ package com.github.jnidzwetzki.bitfinex.v2.test;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 
 import org.json.JSONArray;
 import org.junit.Assert;
@@ -96,4 +98,49 @@ public class TickHandlerTest {
 		Assert.assertTrue(tickerManager.getLastTick(symbol) != null);
 	}
 	
+	/**
+	 * Test the registration of callbacks while events are processed
+	 * @throws APIException
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=20000)
+	public void testCallbackRegistrationDuringEvents() throws APIException, InterruptedException {
+		final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD);
+		
+		final ExecutorService executorService = Executors.newFixedThreadPool(10);
+		final BitfinexApiBroker bitfinexApiBroker = Mockito.mock(BitfinexApiBroker.class);
+		Mockito.when(bitfinexApiBroker.getExecutorService()).thenReturn(executorService);
+		final QuoteManager tickerManager = new QuoteManager(bitfinexApiBroker);
+		
+		final int events = 10000;
+		final CountDownLatch latch = new CountDownLatch(events);
+		tickerManager.registerTickCallback(symbol, (s, t) -> latch.countDown());
+		
+		final AtomicBoolean failed = new AtomicBoolean(false);
+		final Thread feedThread = new Thread(() -> {
+			try {
+				for(int i = 0; i < events; i++) {
+					tickerManager.handleNewTick(symbol, new BitfinexTick(i, 10, 12, 15, 8, 100));
+				}
+			} catch(Exception e) {
+				failed.set(true);
+			}
+		});
+		
+		feedThread.start();
+		
+		for(int i = 0; i < 1000; i++) {
+			final BiConsumer<BitfinexTickerSymbol, BitfinexTick> callback = (s, t) -> {};
+			tickerManager.registerTickCallback(symbol, callback);
+			Assert.assertTrue(tickerManager.removeTickCallback(symbol, callback));
+			Assert.assertFalse(tickerManager.removeTickCallback(symbol, callback));
+		}
+		
+		feedThread.join();
+		latch.await();
+		Assert.assertFalse(failed.get());
+		
+		executorService.shutdown();
+	}
+	
 }
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.FeedArbiter;
+import com.github.jnidzwetzki.bitfinex.v2.util.TimerWheel;
+
+public class TimerWheelTest {
+	
+	/**
+	 * Broker that exposes the channel callback
+	 */
+	private static class ChannelCallbackBroker extends BitfinexApiBroker {
+		public void receiveChannelCallback(final String message) {
+			handleChannelCallback(message);
+		}
+	}
+
+	/**
+	 * Test the expiry and the refresh of the deadlines
+	 */
+	@Test
+	public void testExpiry() {
+		final List<String> expired = new ArrayList<>();
+		
+		// The timeout is longer than one round of the wheel
+		final TimerWheel<String> timerWheel = new TimerWheel<>(1, 4, 10, expired::add);
+		
+		timerWheel.touch("a", 0);
+		timerWheel.touch("b", 0);
+		timerWheel.touch("c", 0);
+		timerWheel.remove("c");
+		
+		timerWheel.advance(5);
+		Assert.assertTrue(expired.isEmpty());
+		
+		// Refresh the deadline of a
+		timerWheel.touch("a", 8);
+		timerWheel.advance(10);
+		Assert.assertEquals(1, expired.size());
+		Assert.assertEquals("b", expired.get(0));
+		Assert.assertFalse(timerWheel.contains("b"));
+		
+		timerWheel.advance(17);
+		Assert.assertEquals(1, expired.size());
+		
+		timerWheel.advance(18);
+		Assert.assertEquals(2, expired.size());
+		Assert.assertEquals("a", expired.get(1));
+		Assert.assertEquals(0, timerWheel.size());
+	}
+	
+	/**
+	 * Test the channel deadlines of the broker
+	 */
+	@Test
+	public void testChannelTimeouts() {
+		final ChannelCallbackBroker bitfinexApiBroker = new ChannelCallbackBroker();
+		final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD);
+		bitfinexApiBroker.addToChannelSymbolMap(12, symbol);
+		
+		// The channel is watched from the confirmation on
+		final TimerWheel<BitfinexStreamSymbol> channelTimeouts = bitfinexApiBroker.getChannelTimeouts().get(FeedArbiter.LINE_A);
+		Assert.assertTrue(channelTimeouts.contains(symbol));
+		
+		bitfinexApiBroker.receiveChannelCallback("[12,\"hb\"]");
+		Assert.assertTrue(channelTimeouts.contains(symbol));
+		
+		// The primary line does not refresh the deadline of the standby line
+		Assert.assertFalse(bitfinexApiBroker.getChannelTimeouts().get(FeedArbiter.LINE_B).contains(symbol));
+		
+		bitfinexApiBroker.unsubscribeChannel(symbol);
+		Assert.assertFalse(channelTimeouts.contains(symbol));
+		
+		bitfinexApiBroker.close();
+	}
+	
+	/**
+	 * Test the deadline of a subscription that is not confirmed yet
+	 */
+	@Test
+	public void testPendingSubscriptionTimeout() {
+		final ChannelCallbackBroker bitfinexApiBroker = new ChannelCallbackBroker();
+		final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD);
+		final TimerWheel<BitfinexStreamSymbol> channelTimeouts = bitfinexApiBroker.getChannelTimeouts().get(FeedArbiter.LINE_A);
+		
+		bitfinexApiBroker.subscribeChannel(symbol);
+		Assert.assertTrue(channelTimeouts.contains(symbol));
+		
+		// The rejected subscription is not watched
+		bitfinexApiBroker.failSubscription(symbol, new APIException("Rejected"));
+		Assert.assertFalse(channelTimeouts.contains(symbol));
+		
+		bitfinexApiBroker.close();
+	}
+	
+	/**
+	 * Test the timeout of a channel on a closed connection, the channel 
+	 * is resubscribed by the reconnect of the connection
+	 */
+	@Test
+	public void testChannelTimeoutOnClosedConnection() {
+		final ChannelCallbackBroker bitfinexApiBroker = new ChannelCallbackBroker();
+		final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.BTC_USD);
+		bitfinexApiBroker.addToChannelSymbolMap(12, symbol);
+		bitfinexApiBroker.receiveChannelCallback("[12,\"hb\"]");
+		
+		final TimerWheel<BitfinexStreamSymbol> channelTimeouts = bitfinexApiBroker.getChannelTimeouts().get(FeedArbiter.LINE_A);
+		channelTimeouts.advance(System.currentTimeMillis() + 2 * channelTimeouts.getTimeoutMs());
+		
+		Assert.assertFalse(channelTimeouts.contains(symbol));
+		Assert.assertEquals(12, bitfinexApiBroker.getChannelForSymbol(symbol));
+		Assert.assertTrue(bitfinexApiBroker.getPrimaryConnection().getPendingSymbols().isEmpty());
+		
+		bitfinexApiBroker.close();
+	}
+}